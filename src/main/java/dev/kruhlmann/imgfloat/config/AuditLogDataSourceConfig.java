@@ -1,10 +1,12 @@
 package dev.kruhlmann.imgfloat.config;
 
 import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.persistence.EntityManagerFactory;
 import javax.sql.DataSource;
 import org.flywaydb.core.Flyway;
 import org.flywaydb.core.api.configuration.FluentConfiguration;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.flyway.FlywayProperties;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
@@ -38,8 +40,13 @@ public class AuditLogDataSourceConfig {
 
     @Bean
     @ConfigurationProperties("imgfloat.audit.datasource.hikari")
-    public HikariDataSource auditDataSource(@Qualifier("auditDataSourceProperties") DataSourceProperties properties) {
-        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    public HikariDataSource auditDataSource(
+        @Qualifier("auditDataSourceProperties") DataSourceProperties properties,
+        ObjectProvider<MeterRegistry> meterRegistry
+    ) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        DataSourceMetrics.track(dataSource, meterRegistry);
+        return dataSource;
     }
 
     @Bean
@@ -0,0 +1,144 @@
+package dev.kruhlmann.imgfloat.config;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+
+/**
+ * STOMP encoder that encodes the part of a MESSAGE frame shared by all subscribers only once per broadcast. The
+ * simple broker hands every subscriber the same payload array, so the headers common to the broadcast, the body and
+ * the frame terminator are cached by payload identity; each session only encodes its own {@code subscription} and
+ * {@code message-id} headers in front of that. Other frames are encoded by {@link StompEncoder} as usual.
+ */
+public class CachingStompEncoder extends StompEncoder {
+
+    private static final int CACHE_SIZE = 256;
+    private static final byte LF = '\n';
+    private static final byte COLON = ':';
+    private static final String CONTENT_LENGTH = "content-length";
+    private static final String SUBSCRIPTION_HEADER = StompHeaderAccessor.STOMP_SUBSCRIPTION_HEADER;
+    private static final String MESSAGE_ID_HEADER = StompHeaderAccessor.STOMP_MESSAGE_ID_HEADER;
+    private static final byte[] MESSAGE_COMMAND = "MESSAGE\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SUBSCRIPTION_PREFIX = (SUBSCRIPTION_HEADER + ":").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] MESSAGE_ID_PREFIX = (MESSAGE_ID_HEADER + ":").getBytes(StandardCharsets.UTF_8);
+
+    private final AtomicReferenceArray<SharedFrame> cache = new AtomicReferenceArray<>(CACHE_SIZE);
+
+    @Override
+    public byte[] encode(Map<String, Object> headers, byte[] payload) {
+        if (StompHeaderAccessor.getCommand(headers) != StompCommand.MESSAGE) {
+            return super.encode(headers, payload);
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, List<String>> nativeHeaders = (Map<String, List<String>>) headers.get(
+            NativeMessageHeaderAccessor.NATIVE_HEADERS
+        );
+        if (nativeHeaders == null) {
+            return super.encode(headers, payload);
+        }
+
+        byte[] shared = sharedPart(SimpMessageHeaderAccessor.getDestination(headers), nativeHeaders, payload);
+        byte[] subscription = headerLine(SUBSCRIPTION_PREFIX, nativeHeaders.get(SUBSCRIPTION_HEADER));
+        byte[] messageId = headerLine(MESSAGE_ID_PREFIX, nativeHeaders.get(MESSAGE_ID_HEADER));
+        byte[] frame = new byte[MESSAGE_COMMAND.length + subscription.length + messageId.length + shared.length];
+        int offset = 0;
+        for (byte[] part : new byte[][] { MESSAGE_COMMAND, subscription, messageId, shared }) {
+            System.arraycopy(part, 0, frame, offset, part.length);
+            offset += part.length;
+        }
+        return frame;
+    }
+
+    private byte[] sharedPart(String destination, Map<String, List<String>> nativeHeaders, byte[] payload) {
+        int slot = System.identityHashCode(payload) & (CACHE_SIZE - 1);
+        SharedFrame cached = cache.get(slot);
+        if (cached != null && cached.payload() == payload && cached.destination().equals(destination)) {
+            return cached.bytes();
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream(256 + payload.length);
+        for (Map.Entry<String, List<String>> entry : nativeHeaders.entrySet()) {
+            String name = entry.getKey();
+            if (isPerSubscriber(name) || CONTENT_LENGTH.equals(name)) {
+                continue;
+            }
+            for (String value : entry.getValue()) {
+                writeHeaderLine(output, name, value);
+            }
+        }
+        writeHeaderLine(output, CONTENT_LENGTH, Integer.toString(payload.length));
+        output.write(LF);
+        output.writeBytes(payload);
+        output.write(0);
+        byte[] bytes = output.toByteArray();
+        if (destination != null) {
+            cache.set(slot, new SharedFrame(payload, destination, bytes));
+        }
+        return bytes;
+    }
+
+    private static boolean isPerSubscriber(String name) {
+        return (
+            SUBSCRIPTION_HEADER.equals(name) ||
+            MESSAGE_ID_HEADER.equals(name)
+        );
+    }
+
+    /**
+     * Encodes a per-subscriber header. The broker sets exactly one value for each of them.
+     */
+    private static byte[] headerLine(byte[] prefix, List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return new byte[0];
+        }
+        byte[] value = escape(values.get(0)).getBytes(StandardCharsets.UTF_8);
+        byte[] line = new byte[prefix.length + value.length + 1];
+        System.arraycopy(prefix, 0, line, 0, prefix.length);
+        System.arraycopy(value, 0, line, prefix.length, value.length);
+        line[line.length - 1] = LF;
+        return line;
+    }
+
+    private static void writeHeaderLine(ByteArrayOutputStream output, String name, String value) {
+        output.writeBytes(escape(name).getBytes(StandardCharsets.UTF_8));
+        output.write(COLON);
+        output.writeBytes(escape(value).getBytes(StandardCharsets.UTF_8));
+        output.write(LF);
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder escaped = null;
+        for (int index = 0; index < value.length(); index++) {
+            char c = value.charAt(index);
+            String replacement = switch (c) {
+                case '\\' -> "\\\\";
+                case ':' -> "\\c";
+                case '\n' -> "\\n";
+                case '\r' -> "\\r";
+                default -> null;
+            };
+            if (replacement != null && escaped == null) {
+                escaped = new StringBuilder(value.length() + 8).append(value, 0, index);
+            }
+            if (escaped != null) {
+                if (replacement != null) {
+                    escaped.append(replacement);
+                } else {
+                    escaped.append(c);
+                }
+            }
+        }
+        return escaped == null ? value : escaped.toString();
+    }
+
+    private record SharedFrame(byte[] payload, String destination, byte[] bytes) {}
+}
@@ -0,0 +1,52 @@
+package dev.kruhlmann.imgfloat.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import dev.kruhlmann.imgfloat.service.ChannelEventBus;
+import dev.kruhlmann.imgfloat.service.InProcessChannelEventBus;
+import dev.kruhlmann.imgfloat.service.MeteredChannelEventBus;
+import dev.kruhlmann.imgfloat.service.RelayChannelEventBus;
+import dev.kruhlmann.imgfloat.service.TransactionalChannelEventBus;
+import java.util.Arrays;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+/**
+ * Picks how channel events reach subscribers: directly through this node's broker, or through the TCP relay when
+ * imgfloat runs as several nodes behind a load balancer. Services publish through {@link TransactionalChannelEventBus},
+ * which holds events back until the surrounding transaction commits. {@link MeteredChannelEventBus} counts the events
+ * that are handed on.
+ */
+@Configuration
+public class ChannelEventBusConfig {
+
+    @Bean
+    @Primary
+    public ChannelEventBus channelEventBus(
+        @Qualifier("channelEventDeliveryBus") ChannelEventBus deliveryBus,
+        MeterRegistry meterRegistry
+    ) {
+        return new TransactionalChannelEventBus(new MeteredChannelEventBus(deliveryBus, meterRegistry));
+    }
+
+    @Bean
+    public ChannelEventBus channelEventDeliveryBus(
+        SimpMessagingTemplate messagingTemplate,
+        ObjectMapper objectMapper,
+        @Value("${IMGFLOAT_EVENT_BUS_NODES:}") String nodes,
+        @Value("${IMGFLOAT_EVENT_BUS_NODE:}") String node,
+        @Value("${IMGFLOAT_EVENT_BUS_SECRET:}") String secret,
+        @Value("${IMGFLOAT_EVENT_BUS_QUEUE_CAPACITY:10000}") int queueCapacity
+    ) {
+        List<String> members = Arrays.stream(nodes.split(",")).map(String::trim).filter((entry) -> !entry.isEmpty()).toList();
+        if (members.isEmpty()) {
+            return new InProcessChannelEventBus(messagingTemplate);
+        }
+        return new RelayChannelEventBus(messagingTemplate, objectMapper, node.trim(), members, secret, queueCapacity);
+    }
+}
@@ -0,0 +1,80 @@
+package dev.kruhlmann.imgfloat.config;
+
+import dev.kruhlmann.imgfloat.service.ChannelEventLog;
+import java.nio.charset.StandardCharsets;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stamps every message published to a channel topic with its sequence number and records it in the
+ * {@link ChannelEventLog}. Runs on the broker channel, so it sees each published event once, already serialized,
+ * regardless of which service sent it. Messages flagged with {@link ChannelEventLog#TRANSIENT_HEADER} (live
+ * previews) are delivered unnumbered and are not replayed.
+ */
+@Component
+public class ChannelEventSequenceInterceptor implements ChannelInterceptor {
+
+    public static final String SEQUENCE_HEADER = "seq";
+    public static final String EPOCH_HEADER = "epoch";
+    private static final String CHANNEL_TOPIC_PREFIX = "/topic/channel/";
+
+    private final ChannelEventLog channelEventLog;
+
+    public ChannelEventSequenceInterceptor(ChannelEventLog channelEventLog) {
+        this.channelEventLog = channelEventLog;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        String broadcaster = sequencedBroadcaster(message);
+        if (broadcaster == null) {
+            return message;
+        }
+        channelEventLog.acquire(broadcaster);
+        try {
+            long seq = channelEventLog.append(broadcaster, body(message.getPayload()));
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+            accessor.setNativeHeader(SEQUENCE_HEADER, Long.toString(seq));
+            accessor.setNativeHeader(EPOCH_HEADER, channelEventLog.getEpoch());
+            return MessageBuilder.createMessage(message.getPayload(), accessor.getMessageHeaders());
+        } catch (RuntimeException ex) {
+            channelEventLog.release(broadcaster);
+            throw ex;
+        }
+    }
+
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        String broadcaster = sequencedBroadcaster(message);
+        if (broadcaster != null) {
+            channelEventLog.release(broadcaster);
+        }
+    }
+
+    private static String sequencedBroadcaster(Message<?> message) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+            return null;
+        }
+        if (Boolean.TRUE.equals(message.getHeaders().get(ChannelEventLog.TRANSIENT_HEADER))) {
+            return null;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination == null || !destination.startsWith(CHANNEL_TOPIC_PREFIX)) {
+            return null;
+        }
+        String broadcaster = destination.substring(CHANNEL_TOPIC_PREFIX.length());
+        return broadcaster.isEmpty() || broadcaster.contains("/") ? null : broadcaster;
+    }
+
+    private static String body(Object payload) {
+        if (payload instanceof byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        return String.valueOf(payload);
+    }
+}
@@ -0,0 +1,44 @@
+package dev.kruhlmann.imgfloat.config;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.broker.DefaultSubscriptionRegistry;
+import org.springframework.util.MultiValueMap;
+
+/**
+ * Subscription registry that keeps a new subscription from being cached twice for its destination. The default
+ * registry records a subscription for its session first and appends it to the cached subscribers of its destination
+ * afterwards; a lookup running in between fills the cache from the session records, already including the new
+ * subscription, and the append then adds it a second time, so the session receives every message to that destination
+ * twice. Lookups are held off while a subscription is being added; they still run concurrently with each other.
+ */
+public class ConsistentSubscriptionRegistry extends DefaultSubscriptionRegistry {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Override
+    protected void addSubscriptionInternal(
+        String sessionId,
+        String subscriptionId,
+        String destination,
+        Message<?> message
+    ) {
+        lock.writeLock().lock();
+        try {
+            super.addSubscriptionInternal(sessionId, subscriptionId, destination, message);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected MultiValueMap<String, String> findSubscriptionsInternal(String destination, Message<?> message) {
+        lock.readLock().lock();
+        try {
+            return super.findSubscriptionsInternal(destination, message);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
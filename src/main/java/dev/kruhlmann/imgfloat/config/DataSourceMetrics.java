@@ -0,0 +1,23 @@
+package dev.kruhlmann.imgfloat.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * Publishes Hikari pool metrics ({@code hikaricp.connections.*}, tagged with the pool name). The tracker has to be
+ * set while the data source bean is created: Flyway migrates on initialization and starts the pool, after which
+ * Hikari no longer accepts a tracker, so Spring Boot's own binder would come too late.
+ */
+final class DataSourceMetrics {
+
+    private DataSourceMetrics() {}
+
+    static void track(HikariDataSource dataSource, ObjectProvider<MeterRegistry> meterRegistry) {
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry != null) {
+            dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+        }
+    }
+}
@@ -2,10 +2,12 @@ package dev.kruhlmann.imgfloat.config;
 
 import com.zaxxer.hikari.HikariDataSource;
 import dev.kruhlmann.imgfloat.repository.audit.AuditLogRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.persistence.EntityManagerFactory;
 import javax.sql.DataSource;
 import org.flywaydb.core.Flyway;
 import org.flywaydb.core.api.configuration.FluentConfiguration;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.flyway.FlywayProperties;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
@@ -41,8 +43,13 @@ public class PrimaryDataSourceConfig {
     @Bean
     @Primary
     @ConfigurationProperties("spring.datasource.hikari")
-    public HikariDataSource dataSource(@Qualifier("dataSourceProperties") DataSourceProperties properties) {
-        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    public HikariDataSource dataSource(
+        @Qualifier("dataSourceProperties") DataSourceProperties properties,
+        ObjectProvider<MeterRegistry> meterRegistry
+    ) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        DataSourceMetrics.track(dataSource, meterRegistry);
+        return dataSource;
     }
 
     @Bean
@@ -1,29 +1,35 @@
 package dev.kruhlmann.imgfloat.config;
 
+import dev.kruhlmann.imgfloat.service.RateLimitPolicy;
+import dev.kruhlmann.imgfloat.service.RateLimitService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.Set;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.lang.NonNull;
 import org.springframework.web.servlet.HandlerInterceptor;
 
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
-
 /**
- * Simple in-memory IP-based rate limiter for the public copyright report submission endpoint.
- * Limits each IP to {@value #MAX_REQUESTS_PER_WINDOW} requests per {@value #WINDOW_MILLIS}ms window.
+ * Rejects requests with {@code 429 Too Many Requests} once the client has used up its budget for the
+ * {@link RateLimitPolicy} of the paths this interceptor is registered for. Only the given HTTP methods count.
+ * <p>
+ * The client address is taken from the servlet request. Tomcat only replaces it with {@code X-Forwarded-For} when the
+ * request comes from a trusted proxy ({@code server.tomcat.remoteip.internal-proxies}, private and loopback addresses
+ * by default), so clients connecting directly cannot get a fresh budget by forging the header.
  */
 public class RateLimitInterceptor implements HandlerInterceptor {
 
-    private static final Logger LOG = LoggerFactory.getLogger(RateLimitInterceptor.class);
-    private static final int MAX_REQUESTS_PER_WINDOW = 5;
-    private static final long WINDOW_MILLIS = 60 * 60 * 1000L; // 1 hour
-
-    private record BucketEntry(AtomicInteger count, long windowStart) {}
+    private final RateLimitService rateLimitService;
+    private final RateLimitPolicy policy;
+    private final Set<String> methods;
 
-    private final ConcurrentHashMap<String, BucketEntry> buckets = new ConcurrentHashMap<>();
+    public RateLimitInterceptor(RateLimitService rateLimitService, RateLimitPolicy policy, String... methods) {
+        this.rateLimitService = rateLimitService;
+        this.policy = policy;
+        this.methods = Set.of(methods);
+    }
 
     @Override
     public boolean preHandle(
@@ -31,35 +37,18 @@ public class RateLimitInterceptor implements HandlerInterceptor {
         @NonNull HttpServletResponse response,
         @NonNull Object handler
     ) throws Exception {
-        String uri = request.getRequestURI();
-        if (!"POST".equalsIgnoreCase(request.getMethod()) || !uri.contains("copyright-reports")) {
+        if (!methods.contains(request.getMethod())) {
             return true;
         }
-        String ip = resolveClientIp(request);
-        long now = System.currentTimeMillis();
-        BucketEntry entry = buckets.compute(ip, (key, existing) -> {
-            if (existing == null || (now - existing.windowStart()) >= WINDOW_MILLIS) {
-                return new BucketEntry(new AtomicInteger(1), now);
-            }
-            existing.count().incrementAndGet();
-            return existing;
-        });
-        int count = entry.count().get();
-        if (count > MAX_REQUESTS_PER_WINDOW) {
-            LOG.warn("Rate limit exceeded for IP {} on {}", ip, uri);
-            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
-            response.setContentType("application/json");
-            response.getWriter().write("{\"error\":\"Too many requests. Please try again later.\"}");
-            return false;
-        }
-        return true;
-    }
-
-    private String resolveClientIp(HttpServletRequest request) {
-        String forwarded = request.getHeader("X-Forwarded-For");
-        if (forwarded != null && !forwarded.isBlank()) {
-            return forwarded.split(",")[0].trim();
+        String key = RateLimitService.clientKey(request.getUserPrincipal(), request.getRemoteAddr());
+        long retryAfterMillis = rateLimitService.tryAcquire(policy, key);
+        if (retryAfterMillis == 0) {
+            return true;
         }
-        return request.getRemoteAddr();
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, (retryAfterMillis + 999) / 1000)));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"error\":\"Too many requests. Please try again later.\"}");
+        return false;
     }
 }
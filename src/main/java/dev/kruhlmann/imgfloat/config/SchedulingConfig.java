@@ -1,8 +1,10 @@
 package dev.kruhlmann.imgfloat.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 @Configuration
@@ -16,4 +18,127 @@ public class SchedulingConfig {
         scheduler.initialize();
         return scheduler;
     }
+
+    @Bean
+    public ThreadPoolTaskExecutor emoteSyncTaskExecutor(
+        @Value("${IMGFLOAT_EMOTE_SYNC_PARALLELISM:4}") int parallelism
+    ) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(Math.max(parallelism, 1));
+        executor.setMaxPoolSize(Math.max(parallelism, 1));
+        executor.setThreadNamePrefix("emote-sync-worker-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Loads channel emote catalogs that overlays asked for but that are not cached. Kept apart from the sync pool so
+     * that misses do not wait behind a running sync; the queue is bounded because any request can cause a miss, and
+     * a rejected load is treated like a failed one.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor emoteCacheLoadTaskExecutor(
+        @Value("${IMGFLOAT_EMOTE_CACHE_LOAD_THREADS:4}") int threads,
+        @Value("${IMGFLOAT_EMOTE_CACHE_LOAD_QUEUE_CAPACITY:100}") int queueCapacity
+    ) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(Math.max(threads, 1));
+        executor.setMaxPoolSize(Math.max(threads, 1));
+        executor.setQueueCapacity(Math.max(queueCapacity, 0));
+        executor.setThreadNamePrefix("emote-cache-load-");
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor emoteDownloadTaskExecutor(
+        @Value("${IMGFLOAT_EMOTE_DOWNLOAD_THREADS:8}") int threads
+    ) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(Math.max(threads, 1));
+        executor.setMaxPoolSize(Math.max(threads, 1));
+        executor.setThreadNamePrefix("emote-download-");
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor twitchLookupTaskExecutor(
+        @Value("${IMGFLOAT_TWITCH_LOOKUP_THREADS:4}") int threads
+    ) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(Math.max(threads, 1));
+        executor.setMaxPoolSize(Math.max(threads, 1));
+        executor.setThreadNamePrefix("twitch-lookup-");
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean
+    public ThreadPoolTaskScheduler twitchChatTaskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(2);
+        scheduler.setThreadNamePrefix("twitch-chat-relay-");
+        scheduler.initialize();
+        return scheduler;
+    }
+
+    @Bean
+    public TaskScheduler auditRetentionTaskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("audit-retention-");
+        scheduler.initialize();
+        return scheduler;
+    }
+
+    @Bean
+    public TaskScheduler displayOrderTaskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("display-order-");
+        scheduler.initialize();
+        return scheduler;
+    }
+
+    @Bean
+    public TaskScheduler previewTaskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("preview-");
+        scheduler.initialize();
+        return scheduler;
+    }
+
+    @Bean
+    public TaskScheduler webSocketHeartbeatTaskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("ws-heartbeat-");
+        scheduler.initialize();
+        return scheduler;
+    }
+
+    /**
+     * Works out the playlist timers of a started track, which can mean loading the audio file and probing it. Kept
+     * off {@link #playlistPlaybackTaskScheduler()} so that a slow probe does not hold up every channel's timers.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor playlistPlanningTaskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(2);
+        executor.setThreadNamePrefix("playlist-planning-");
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean
+    public TaskScheduler playlistPlaybackTaskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("playlist-playback-");
+        scheduler.initialize();
+        return scheduler;
+    }
 }
@@ -1,19 +1,27 @@
 package dev.kruhlmann.imgfloat.config;
 
+import dev.kruhlmann.imgfloat.model.OauthSessionUser;
+import dev.kruhlmann.imgfloat.service.AuthorizationService;
+import dev.kruhlmann.imgfloat.service.TwitchIdentityService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.constraints.NotNull;
+import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.security.authorization.AuthorizationDecision;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
 import org.springframework.security.oauth2.client.endpoint.DefaultAuthorizationCodeTokenResponseClient;
 import org.springframework.security.oauth2.client.endpoint.OAuth2AccessTokenResponseClient;
 import org.springframework.security.oauth2.client.endpoint.OAuth2AuthorizationCodeGrantRequest;
@@ -27,6 +35,7 @@ import org.springframework.security.web.csrf.CsrfFilter;
 import org.springframework.security.web.csrf.CsrfToken;
 import org.springframework.security.web.csrf.CsrfTokenRequestAttributeHandler;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.filter.OncePerRequestFilter;
 import org.springframework.web.util.WebUtils;
@@ -38,10 +47,19 @@ public class SecurityConfig {
 
     private static final Logger LOG = LoggerFactory.getLogger(SecurityConfig.class);
 
+    /**
+     * Metrics on the public port are limited to system administrators. A separate management port, set with
+     * {@code MANAGEMENT_SERVER_PORT}, passes through this chain as well; it is left open for the metrics scraper and
+     * should not be reachable from the internet.
+     */
     @Bean
     SecurityFilterChain securityFilterChain(
         HttpSecurity http,
-        OAuth2AuthorizedClientRepository authorizedClientRepository
+        OAuth2AuthorizedClientRepository authorizedClientRepository,
+        TwitchOAuth2UserService twitchOAuth2UserService,
+        AuthorizationService authorizationService,
+        @Value("${server.port:8080}") int serverPort,
+        @Value("${management.server.port:-1}") int managementPort
     ) throws Exception {
         CsrfTokenRequestAttributeHandler csrfRequestHandler = new CsrfTokenRequestAttributeHandler();
         csrfRequestHandler.setCsrfRequestAttributeName("_csrf");
@@ -67,6 +85,12 @@ public class SecurityConfig {
                         "/report"
                     )
                     .permitAll()
+                    .requestMatchers(managementPort(serverPort, managementPort))
+                    .permitAll()
+                    .requestMatchers("/actuator/prometheus")
+                    .access((authentication, context) ->
+                        new AuthorizationDecision(isSystemAdministrator(authentication.get(), authorizationService))
+                    )
                     .requestMatchers(HttpMethod.GET, "/view/*/broadcast")
                     .permitAll()
                     .requestMatchers(HttpMethod.GET, "/api/channels")
@@ -77,6 +101,8 @@ public class SecurityConfig {
                     .permitAll()
                     .requestMatchers(HttpMethod.GET, "/api/channels/*/canvas")
                     .permitAll()
+                    .requestMatchers(HttpMethod.GET, "/api/channels/*/events")
+                    .permitAll()
                     .requestMatchers(HttpMethod.GET, "/api/channels/*/script-assets/*/attachments/*/content")
                     .permitAll()
                     .requestMatchers(HttpMethod.GET, "/api/channels/*/assets/*/content")
@@ -98,7 +124,7 @@ public class SecurityConfig {
                 oauth
                     .authorizedClientRepository(authorizedClientRepository)
                     .tokenEndpoint((token) -> token.accessTokenResponseClient(twitchAccessTokenResponseClient()))
-                    .userInfoEndpoint((user) -> user.userService(twitchOAuth2UserService()))
+                    .userInfoEndpoint((user) -> user.userService(twitchOAuth2UserService))
             )
             .logout((logout) -> logout.logoutSuccessUrl("/").permitAll())
             .exceptionHandling((exceptions) ->
@@ -130,8 +156,25 @@ public class SecurityConfig {
     }
 
     @Bean
-    TwitchOAuth2UserService twitchOAuth2UserService() {
-        return new TwitchOAuth2UserService();
+    TwitchOAuth2UserService twitchOAuth2UserService(TwitchIdentityService twitchIdentityService) {
+        return new TwitchOAuth2UserService((login, userId) -> twitchIdentityService.record(Map.of(login, userId)));
+    }
+
+    private static RequestMatcher managementPort(int serverPort, int managementPort) {
+        if (managementPort <= 0 || managementPort == serverPort) {
+            return (request) -> false;
+        }
+        return (request) -> request.getLocalPort() == managementPort;
+    }
+
+    private static boolean isSystemAdministrator(
+        Authentication authentication,
+        AuthorizationService authorizationService
+    ) {
+        return (
+            authentication instanceof OAuth2AuthenticationToken token &&
+            authorizationService.userIsSystemAdministrator(OauthSessionUser.from(token).login())
+        );
     }
 
     private AccessDeniedHandler csrfAccessDeniedHandler() {
@@ -0,0 +1,80 @@
+package dev.kruhlmann.imgfloat.config;
+
+import dev.kruhlmann.imgfloat.service.RateLimitPolicy;
+import dev.kruhlmann.imgfloat.service.RateLimitService;
+import java.security.Principal;
+import java.util.Map;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+/**
+ * Drops STOMP {@code SEND} frames from clients that exceed the {@link RateLimitPolicy#WEBSOCKET_MESSAGES} limit.
+ * Runs on the client inbound channel, before messages reach the inbound executor. Anonymous sessions are limited by
+ * the address they connected from, which {@link #handshakeInterceptor()} stores in the session attributes.
+ */
+@Component
+public class StompRateLimitInterceptor implements ChannelInterceptor {
+
+    public static final String REMOTE_ADDRESS_ATTRIBUTE = StompRateLimitInterceptor.class.getName() + ".remoteAddress";
+
+    private final RateLimitService rateLimitService;
+
+    public StompRateLimitInterceptor(RateLimitService rateLimitService) {
+        this.rateLimitService = rateLimitService;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+            return message;
+        }
+        Principal user = SimpMessageHeaderAccessor.getUser(message.getHeaders());
+        String address = remoteAddress(message);
+        String key = user == null && address == null
+            ? "session:" + SimpMessageHeaderAccessor.getSessionId(message.getHeaders())
+            : RateLimitService.clientKey(user, address);
+        return rateLimitService.tryAcquire(RateLimitPolicy.WEBSOCKET_MESSAGES, key) == 0 ? message : null;
+    }
+
+    /**
+     * @return a handshake interceptor that records the client address of each WebSocket session
+     */
+    public HandshakeInterceptor handshakeInterceptor() {
+        return new HandshakeInterceptor() {
+            @Override
+            public boolean beforeHandshake(
+                ServerHttpRequest request,
+                ServerHttpResponse response,
+                WebSocketHandler wsHandler,
+                Map<String, Object> attributes
+            ) {
+                if (request.getRemoteAddress() != null && request.getRemoteAddress().getAddress() != null) {
+                    attributes.put(REMOTE_ADDRESS_ATTRIBUTE, request.getRemoteAddress().getAddress().getHostAddress());
+                }
+                return true;
+            }
+
+            @Override
+            public void afterHandshake(
+                ServerHttpRequest request,
+                ServerHttpResponse response,
+                WebSocketHandler wsHandler,
+                Exception exception
+            ) {}
+        };
+    }
+
+    private static String remoteAddress(Message<?> message) {
+        Map<String, Object> attributes = SimpMessageHeaderAccessor.getSessionAttributes(message.getHeaders());
+        Object address = attributes != null ? attributes.get(REMOTE_ADDRESS_ATTRIBUTE) : null;
+        return address != null ? address.toString() : null;
+    }
+}
@@ -40,6 +40,9 @@ public class SystemEnvironmentValidator {
     @Value("${IMGFLOAT_AUDIT_DB_PATH:${IMGFLOAT_DB_PATH:#{null}}}")
     private String auditDbPath;
 
+    @Value("${IMGFLOAT_AUDIT_ARCHIVE_PATH:#{null}}")
+    private String auditArchivePath;
+
     @Value("${IMGFLOAT_INITIAL_TWITCH_USERNAME_SYSADMIN:#{null}}")
     private String initialSysadmin;
 
@@ -77,6 +80,7 @@ public class SystemEnvironmentValidator {
         checkString(initialSysadmin, "IMGFLOAT_INITIAL_TWITCH_USERNAME_SYSADMIN", missing);
         checkString(dbPath, "IMGFLOAT_DB_PATH", missing);
         checkString(auditDbPath, "IMGFLOAT_AUDIT_DB_PATH", missing);
+        checkString(auditArchivePath, "IMGFLOAT_AUDIT_ARCHIVE_PATH", missing);
         checkString(twitchClientSecret, "TWITCH_CLIENT_SECRET", missing);
         checkString(assetsPath, "IMGFLOAT_ASSETS_PATH", missing);
         checkString(previewsPath, "IMGFLOAT_PREVIEWS_PATH", missing);
@@ -95,6 +99,7 @@ public class SystemEnvironmentValidator {
         LOG.info(" - SPRING_SERVLET_MULTIPART_MAX_REQUEST_SIZE: {} ({} bytes)", springMaxRequestSize, maxRequestBytes);
         LOG.info(" - IMGFLOAT_DB_PATH: {}", dbPath);
         LOG.info(" - IMGFLOAT_AUDIT_DB_PATH: {}", auditDbPath);
+        LOG.info(" - IMGFLOAT_AUDIT_ARCHIVE_PATH: {}", auditArchivePath);
         LOG.info(" - IMGFLOAT_INITIAL_TWITCH_USERNAME_SYSADMIN: {}", initialSysadmin);
         LOG.info(" - IMGFLOAT_ASSETS_PATH: {}", assetsPath);
         LOG.info(" - IMGFLOAT_PREVIEWS_PATH: {}", previewsPath);
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
 import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
@@ -25,13 +26,21 @@ import org.springframework.web.client.RestTemplate;
 class TwitchOAuth2UserService implements OAuth2UserService<OAuth2UserRequest, OAuth2User> {
 
     private final Function<OAuth2UserRequest, RestTemplate> restTemplateFactory;
+    private final BiConsumer<String, String> loginListener;
 
-    TwitchOAuth2UserService() {
-        this(TwitchOAuth2UserService::createRestTemplate);
+    TwitchOAuth2UserService(BiConsumer<String, String> loginListener) {
+        this(TwitchOAuth2UserService::createRestTemplate, loginListener);
     }
 
-    TwitchOAuth2UserService(Function<OAuth2UserRequest, RestTemplate> restTemplateFactory) {
+    /**
+     * @param loginListener receives the login and user ID of every user that signs in
+     */
+    TwitchOAuth2UserService(
+        Function<OAuth2UserRequest, RestTemplate> restTemplateFactory,
+        BiConsumer<String, String> loginListener
+    ) {
         this.restTemplateFactory = restTemplateFactory;
+        this.loginListener = loginListener;
     }
 
     @Override
@@ -40,6 +49,9 @@ class TwitchOAuth2UserService implements OAuth2UserService<OAuth2UserRequest, OA
         delegate.setRestOperations(restTemplateFactory.apply(userRequest));
         OAuth2User delegateUser = delegate.loadUser(twitchUserRequest(userRequest));
         Map<String, Object> twitchUser = unwrapUserAttributes(delegateUser.getAttributes());
+        if (twitchUser.get("id") instanceof String userId && !userId.isBlank()) {
+            loginListener.accept((String) twitchUser.get("login"), userId);
+        }
         return new DefaultOAuth2User(delegateUser.getAuthorities(), twitchUser, "login");
     }
 
@@ -1,6 +1,7 @@
 package dev.kruhlmann.imgfloat.config;
 
-import org.springframework.context.annotation.Bean;
+import dev.kruhlmann.imgfloat.service.RateLimitPolicy;
+import dev.kruhlmann.imgfloat.service.RateLimitService;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
@@ -8,14 +9,31 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 @Configuration
 public class WebMvcConfig implements WebMvcConfigurer {
 
-    @Bean
-    public RateLimitInterceptor rateLimitInterceptor() {
-        return new RateLimitInterceptor();
+    private final RateLimitService rateLimitService;
+
+    public WebMvcConfig(RateLimitService rateLimitService) {
+        this.rateLimitService = rateLimitService;
     }
 
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
-        registry.addInterceptor(rateLimitInterceptor())
+        registry
+            .addInterceptor(new RateLimitInterceptor(rateLimitService, RateLimitPolicy.COPYRIGHT_REPORTS, "POST"))
             .addPathPatterns("/api/assets/*/copyright-reports");
+        registry
+            .addInterceptor(new RateLimitInterceptor(rateLimitService, RateLimitPolicy.UPLOADS, "POST", "PUT"))
+            .addPathPatterns(
+                "/api/channels/*/assets",
+                "/api/channels/*/assets/code",
+                "/api/channels/*/assets/*/code",
+                "/api/channels/*/assets/*/attachments",
+                "/api/channels/*/assets/*/logo"
+            );
+        registry
+            .addInterceptor(new RateLimitInterceptor(rateLimitService, RateLimitPolicy.MARKETPLACE, "POST"))
+            .addPathPatterns("/api/marketplace/scripts/*/import", "/api/marketplace/scripts/*/heart");
+        registry
+            .addInterceptor(new RateLimitInterceptor(rateLimitService, RateLimitPolicy.EMOTE_CATALOGS, "GET"))
+            .addPathPatterns("/api/twitch/emotes", "/api/7tv/emotes");
     }
 }
@@ -1,23 +1,156 @@
 package dev.kruhlmann.imgfloat.config;
 
+import dev.kruhlmann.imgfloat.service.WebSocketTransportMonitor;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.config.SimpleBrokerRegistration;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.messaging.StompSubProtocolHandler;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    public static final String BROKER_DESTINATION_PREFIX = "/topic";
+    public static final String SOCKJS_ENDPOINT = "/ws";
+    public static final String NATIVE_ENDPOINT = "/ws/native";
+
+    private final ChannelEventSequenceInterceptor channelEventSequenceInterceptor;
+    private final StompRateLimitInterceptor stompRateLimitInterceptor;
+    private final WebSocketTransportSettings transportSettings;
+    private final WebSocketTransportMonitor transportMonitor;
+    private final TaskScheduler heartbeatTaskScheduler;
+
+    public WebSocketConfig(
+        ChannelEventSequenceInterceptor channelEventSequenceInterceptor,
+        StompRateLimitInterceptor stompRateLimitInterceptor,
+        WebSocketTransportSettings transportSettings,
+        WebSocketTransportMonitor transportMonitor,
+        @Qualifier("webSocketHeartbeatTaskScheduler") TaskScheduler heartbeatTaskScheduler
+    ) {
+        this.channelEventSequenceInterceptor = channelEventSequenceInterceptor;
+        this.stompRateLimitInterceptor = stompRateLimitInterceptor;
+        this.transportSettings = transportSettings;
+        this.transportMonitor = transportMonitor;
+        this.heartbeatTaskScheduler = heartbeatTaskScheduler;
+    }
+
+    /**
+     * Overlays connect to the native endpoint directly and skip SockJS framing and its info round trip; the SockJS
+     * endpoint stays as the fallback. The servlet container negotiates permessage-deflate on native connections
+     * whenever the browser offers it, which compresses the repetitive JSON of asset events.
+     */
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
-        registry.addEndpoint("/ws").setAllowedOriginPatterns("*").withSockJS();
+        registry
+            .addEndpoint(NATIVE_ENDPOINT)
+            .setAllowedOriginPatterns("*")
+            .addInterceptors(stompRateLimitInterceptor.handshakeInterceptor());
+        registry
+            .addEndpoint(SOCKJS_ENDPOINT)
+            .setAllowedOriginPatterns("*")
+            .addInterceptors(stompRateLimitInterceptor.handshakeInterceptor())
+            .withSockJS();
     }
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic");
+        SimpleBrokerRegistration broker = config.enableSimpleBroker(BROKER_DESTINATION_PREFIX);
+        long heartbeatMillis = transportSettings.getHeartbeatMillis();
+        if (heartbeatMillis > 0) {
+            broker.setHeartbeatValue(new long[] { heartbeatMillis, heartbeatMillis }).setTaskScheduler(
+                heartbeatTaskScheduler
+            );
+        }
         config.setApplicationDestinationPrefixes("/app");
+        // Outbound messages are written by a thread pool; without this, two events for one session can swap order.
+        config.setPreservePublishOrder(true);
+        config
+            .configureBrokerChannel()
+            .interceptors(channelEventSequenceInterceptor, transportMonitor.brokerChannelInterceptor());
+    }
+
+    /**
+     * Sessions are wrapped in a buffering decorator that closes the connection once either limit is exceeded, which
+     * is how slow consumers get disconnected instead of pinning outbound threads.
+     */
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration
+            .setSendBufferSizeLimit(transportSettings.getSendBufferSizeLimitBytes())
+            .setSendTimeLimit(transportSettings.getSendTimeLimitMillis())
+            .setMessageSizeLimit(transportSettings.getMessageSizeLimitBytes());
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration
+            .taskExecutor()
+            .corePoolSize(transportSettings.getInboundThreads())
+            .maxPoolSize(transportSettings.getInboundThreads())
+            .queueCapacity(transportSettings.getExecutorQueueCapacity());
+        registration.interceptors(stompRateLimitInterceptor);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration
+            .taskExecutor()
+            .corePoolSize(transportSettings.getOutboundThreads())
+            .maxPoolSize(transportSettings.getOutboundThreads())
+            .queueCapacity(transportSettings.getExecutorQueueCapacity());
+        registration.interceptors(transportMonitor);
+    }
+
+    /**
+     * The endpoint registry offers no hook for the STOMP encoder, so it is swapped on the protocol handler once the
+     * handler has been registered.
+     */
+    @Bean
+    public SmartInitializingSingleton stompEncoderInstaller(
+        @Qualifier("subProtocolWebSocketHandler") WebSocketHandler subProtocolWebSocketHandler
+    ) {
+        return () -> {
+            if (subProtocolWebSocketHandler instanceof SubProtocolWebSocketHandler handler) {
+                StompEncoder encoder = stompEncoder();
+                handler
+                    .getProtocolHandlers()
+                    .stream()
+                    .filter(StompSubProtocolHandler.class::isInstance)
+                    .forEach((protocolHandler) -> ((StompSubProtocolHandler) protocolHandler).setEncoder(encoder));
+            }
+        };
+    }
+
+    /**
+     * The broker registration offers no hook for the subscription registry either, so it is replaced on the simple
+     * broker the same way; the broker re-applies its path matcher, cache limit and selector header to the new one.
+     */
+    @Bean
+    public SmartInitializingSingleton subscriptionRegistryInstaller(
+        @Qualifier("simpleBrokerMessageHandler") AbstractBrokerMessageHandler simpleBrokerMessageHandler
+    ) {
+        return () -> {
+            if (simpleBrokerMessageHandler instanceof SimpleBrokerMessageHandler broker) {
+                broker.setSubscriptionRegistry(new ConsistentSubscriptionRegistry());
+            }
+        };
+    }
+
+    public static StompEncoder stompEncoder() {
+        return new CachingStompEncoder();
     }
 }
@@ -0,0 +1,67 @@
+package dev.kruhlmann.imgfloat.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Limits applied to the STOMP broker and its WebSocket sessions. A session whose send buffer or in-flight send
+ * exceeds its limit is disconnected, so one overlay on a bad connection cannot hold outbound threads indefinitely.
+ */
+@Component
+public class WebSocketTransportSettings {
+
+    private final int inboundThreads;
+    private final int outboundThreads;
+    private final int executorQueueCapacity;
+    private final int sendBufferSizeLimitBytes;
+    private final int sendTimeLimitMillis;
+    private final int messageSizeLimitBytes;
+    private final long heartbeatMillis;
+
+    public WebSocketTransportSettings(
+        @Value("${IMGFLOAT_WS_INBOUND_THREADS:0}") int inboundThreads,
+        @Value("${IMGFLOAT_WS_OUTBOUND_THREADS:0}") int outboundThreads,
+        @Value("${IMGFLOAT_WS_EXECUTOR_QUEUE_CAPACITY:10000}") int executorQueueCapacity,
+        @Value("${IMGFLOAT_WS_SEND_BUFFER_KB:512}") int sendBufferKb,
+        @Value("${IMGFLOAT_WS_SEND_TIME_LIMIT_SECONDS:10}") int sendTimeLimitSeconds,
+        @Value("${IMGFLOAT_WS_MESSAGE_SIZE_LIMIT_KB:128}") int messageSizeLimitKb,
+        @Value("${IMGFLOAT_WS_HEARTBEAT_SECONDS:10}") int heartbeatSeconds
+    ) {
+        int defaultThreads = Runtime.getRuntime().availableProcessors() * 2;
+        this.inboundThreads = inboundThreads > 0 ? inboundThreads : defaultThreads;
+        this.outboundThreads = outboundThreads > 0 ? outboundThreads : defaultThreads;
+        this.executorQueueCapacity = Math.max(executorQueueCapacity, 1);
+        this.sendBufferSizeLimitBytes = Math.max(sendBufferKb, 1) * 1024;
+        this.sendTimeLimitMillis = Math.max(sendTimeLimitSeconds, 1) * 1000;
+        this.messageSizeLimitBytes = Math.max(messageSizeLimitKb, 1) * 1024;
+        this.heartbeatMillis = Math.max(heartbeatSeconds, 0) * 1000L;
+    }
+
+    public int getInboundThreads() {
+        return inboundThreads;
+    }
+
+    public int getOutboundThreads() {
+        return outboundThreads;
+    }
+
+    public int getExecutorQueueCapacity() {
+        return executorQueueCapacity;
+    }
+
+    public int getSendBufferSizeLimitBytes() {
+        return sendBufferSizeLimitBytes;
+    }
+
+    public int getSendTimeLimitMillis() {
+        return sendTimeLimitMillis;
+    }
+
+    public int getMessageSizeLimitBytes() {
+        return messageSizeLimitBytes;
+    }
+
+    public long getHeartbeatMillis() {
+        return heartbeatMillis;
+    }
+}
@@ -1,5 +1,7 @@
 package dev.kruhlmann.imgfloat.controller;
 
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
 import dev.kruhlmann.imgfloat.model.api.response.AuditLogEntryView;
 import dev.kruhlmann.imgfloat.model.api.response.AuditLogPageView;
 import dev.kruhlmann.imgfloat.model.OauthSessionUser;
@@ -16,6 +18,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
 @RestController
 @RequestMapping("/api/channels/{broadcaster}/audit")
@@ -51,6 +54,39 @@ public class AuditLogApiController {
         Page<AuditLogEntryView> auditPage = auditLogService
             .listEntries(broadcaster, actor, action, search, page, size)
             .map(AuditLogEntryView::fromEntry);
+        return toPageView(auditPage);
+    }
+
+    @GetMapping("/archive")
+    public AuditLogPageView listArchivedAuditEntries(
+        @PathVariable("broadcaster") String broadcaster,
+        @RequestParam(name = "month", required = false) String month,
+        @RequestParam(name = "search", required = false) String search,
+        @RequestParam(name = "actor", required = false) String actor,
+        @RequestParam(name = "action", required = false) String action,
+        @RequestParam(name = "page", defaultValue = "0") int page,
+        @RequestParam(name = "size", defaultValue = "25") int size,
+        OAuth2AuthenticationToken oauthToken
+    ) {
+        String sessionUsername = OauthSessionUser.from(oauthToken).login();
+        authorizationService.userMatchesSessionUsernameOrThrowHttpError(broadcaster, sessionUsername);
+        LOG.info(
+            "Listing archived audit log entries for {} by {}",
+            LogSanitizer.sanitize(broadcaster),
+            LogSanitizer.sanitize(sessionUsername)
+        );
+        Page<AuditLogEntryView> auditPage;
+        try {
+            auditPage = auditLogService
+                .listArchivedEntries(broadcaster, month, actor, action, search, page, size)
+                .map(AuditLogEntryView::fromEntry);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(BAD_REQUEST, e.getMessage(), e);
+        }
+        return toPageView(auditPage);
+    }
+
+    private AuditLogPageView toPageView(Page<AuditLogEntryView> auditPage) {
         return new AuditLogPageView(
             auditPage.getContent(),
             auditPage.getNumber(),
@@ -30,6 +30,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 /**
@@ -110,6 +111,7 @@ public class ChannelAdminApiController {
     @GetMapping("/suggestions")
     public Collection<TwitchUserProfile> listAdminSuggestions(
         @PathVariable("broadcaster") String broadcaster,
+        @RequestParam(name = "refresh", defaultValue = "false") boolean refresh,
         OAuth2AuthenticationToken oauthToken,
         HttpServletRequest request
     ) {
@@ -118,6 +120,9 @@ public class ChannelAdminApiController {
         String logSessionUsername = LogSanitizer.sanitize(sessionUsername);
         authorizationService.userMatchesSessionUsernameOrThrowHttpError(broadcaster, sessionUsername);
         LOG.debug("Listing admin suggestions for {} by {}", logBroadcaster, logSessionUsername);
+        if (refresh) {
+            twitchUserLookupService.invalidateModerators(broadcaster);
+        }
         var channel = channelDirectoryService.getOrCreateChannel(broadcaster);
         OAuth2AuthorizedClient authorizedClient = resolveAuthorizedClient(oauthToken, request);
 
@@ -10,9 +10,11 @@ import dev.kruhlmann.imgfloat.model.api.request.PlaybackRequest;
 import dev.kruhlmann.imgfloat.model.api.request.TransformRequest;
 import dev.kruhlmann.imgfloat.model.api.request.VisibilityRequest;
 import dev.kruhlmann.imgfloat.model.api.response.AssetView;
+import dev.kruhlmann.imgfloat.model.api.response.ChannelEventReplayView;
 import dev.kruhlmann.imgfloat.model.OauthSessionUser;
 import dev.kruhlmann.imgfloat.service.AuthorizationService;
 import dev.kruhlmann.imgfloat.service.ChannelDirectoryService;
+import dev.kruhlmann.imgfloat.service.ChannelEventLog;
 import dev.kruhlmann.imgfloat.service.ChannelSettingsService;
 import dev.kruhlmann.imgfloat.service.media.MediaDetectionService;
 import dev.kruhlmann.imgfloat.util.LogSanitizer;
@@ -33,6 +35,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
@@ -51,15 +54,18 @@ public class ChannelApiController {
     private final ChannelDirectoryService channelDirectoryService;
     private final ChannelSettingsService channelSettingsService;
     private final AuthorizationService authorizationService;
+    private final ChannelEventLog channelEventLog;
 
     public ChannelApiController(
         ChannelDirectoryService channelDirectoryService,
         ChannelSettingsService channelSettingsService,
-        AuthorizationService authorizationService
+        AuthorizationService authorizationService,
+        ChannelEventLog channelEventLog
     ) {
         this.channelDirectoryService = channelDirectoryService;
         this.channelSettingsService = channelSettingsService;
         this.authorizationService = authorizationService;
+        this.channelEventLog = channelEventLog;
     }
 
     @GetMapping("/assets")
@@ -72,6 +78,25 @@ public class ChannelApiController {
         return channelDirectoryService.getVisibleAssets(broadcaster);
     }
 
+    @GetMapping("/events")
+    public ChannelEventReplayView replayEvents(
+        @PathVariable("broadcaster") String broadcaster,
+        @RequestParam(name = "since") long since,
+        @RequestParam(name = "epoch", required = false) String epoch
+    ) {
+        ChannelEventLog.Replay replay = channelEventLog.replay(broadcaster, since, epoch);
+        return new ChannelEventReplayView(
+            replay.epoch(),
+            replay.latest(),
+            replay.complete(),
+            replay
+                .events()
+                .stream()
+                .map((event) -> new ChannelEventReplayView.ReplayedEvent(event.seq(), event.body()))
+                .toList()
+        );
+    }
+
     @GetMapping("/canvas")
     public CanvasSettingsRequest getCanvas(@PathVariable("broadcaster") String broadcaster) {
         return channelSettingsService.getCanvasSettings(broadcaster);
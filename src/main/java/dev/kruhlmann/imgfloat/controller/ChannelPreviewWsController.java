@@ -2,37 +2,39 @@ package dev.kruhlmann.imgfloat.controller;
 
 import jakarta.validation.Valid;
 import java.security.Principal;
-import java.util.Locale;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
 import org.springframework.stereotype.Controller;
 
 import dev.kruhlmann.imgfloat.model.OauthSessionUser;
 import dev.kruhlmann.imgfloat.model.api.request.TransformRequest;
-import dev.kruhlmann.imgfloat.model.api.response.AssetEvent;
 import dev.kruhlmann.imgfloat.service.AuthorizationService;
 import dev.kruhlmann.imgfloat.service.ChannelDirectoryService;
+import dev.kruhlmann.imgfloat.service.PreviewAuthorizationCache;
+import dev.kruhlmann.imgfloat.service.TransformPreviewCoalescer;
 
 @Controller
 public class ChannelPreviewWsController {
 
     private final ChannelDirectoryService channelDirectoryService;
     private final AuthorizationService authorizationService;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final TransformPreviewCoalescer transformPreviewCoalescer;
+    private final PreviewAuthorizationCache previewAuthorizationCache;
 
     @Autowired
     public ChannelPreviewWsController(
         ChannelDirectoryService channelDirectoryService,
         AuthorizationService authorizationService,
-        SimpMessagingTemplate messagingTemplate
+        TransformPreviewCoalescer transformPreviewCoalescer,
+        PreviewAuthorizationCache previewAuthorizationCache
     ) {
         this.channelDirectoryService = channelDirectoryService;
         this.authorizationService = authorizationService;
-        this.messagingTemplate = messagingTemplate;
+        this.transformPreviewCoalescer = transformPreviewCoalescer;
+        this.previewAuthorizationCache = previewAuthorizationCache;
     }
 
     @MessageMapping("/channel/{broadcaster}/assets/{assetId}/preview")
@@ -43,16 +45,15 @@ public class ChannelPreviewWsController {
         Principal principal
     ) {
         String sessionUsername = sessionUsername(principal);
-        authorizationService.userIsBroadcasterOrChannelAdminForBroadcasterOrThrowHttpError(
-            broadcaster,
-            sessionUsername
+        previewAuthorizationCache.authorize(broadcaster, sessionUsername, () ->
+            authorizationService.userIsBroadcasterOrChannelAdminForBroadcasterOrThrowHttpError(
+                broadcaster,
+                sessionUsername
+            )
         );
         channelDirectoryService
             .previewTransform(broadcaster, assetId, request)
-            .ifPresent((patch) -> messagingTemplate.convertAndSend(
-                topicFor(broadcaster),
-                AssetEvent.preview(broadcaster, assetId, patch)
-            ));
+            .ifPresent((patch) -> transformPreviewCoalescer.submit(broadcaster, assetId, patch));
     }
 
     private String sessionUsername(Principal principal) {
@@ -62,8 +63,4 @@ public class ChannelPreviewWsController {
         }
         return principal == null ? null : principal.getName();
     }
-
-    private String topicFor(String broadcaster) {
-        return "/topic/channel/" + broadcaster.toLowerCase(Locale.ROOT);
-    }
 }
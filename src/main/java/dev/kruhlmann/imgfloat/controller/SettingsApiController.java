@@ -2,14 +2,19 @@ package dev.kruhlmann.imgfloat.controller;
 
 import dev.kruhlmann.imgfloat.model.OauthSessionUser;
 import dev.kruhlmann.imgfloat.model.db.imgfloat.Settings;
+import dev.kruhlmann.imgfloat.service.AuditLogRetentionService;
 import dev.kruhlmann.imgfloat.service.AuthorizationService;
+import dev.kruhlmann.imgfloat.service.EmoteSyncScheduler;
+import dev.kruhlmann.imgfloat.service.RateLimitService;
 import dev.kruhlmann.imgfloat.service.SettingsService;
+import dev.kruhlmann.imgfloat.service.WebSocketTransportMonitor;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -24,10 +29,25 @@ public class SettingsApiController {
 
     private final SettingsService settingsService;
     private final AuthorizationService authorizationService;
+    private final AuditLogRetentionService auditLogRetentionService;
+    private final WebSocketTransportMonitor webSocketTransportMonitor;
+    private final EmoteSyncScheduler emoteSyncScheduler;
+    private final RateLimitService rateLimitService;
 
-    public SettingsApiController(SettingsService settingsService, AuthorizationService authorizationService) {
+    public SettingsApiController(
+        SettingsService settingsService,
+        AuthorizationService authorizationService,
+        AuditLogRetentionService auditLogRetentionService,
+        WebSocketTransportMonitor webSocketTransportMonitor,
+        EmoteSyncScheduler emoteSyncScheduler,
+        RateLimitService rateLimitService
+    ) {
         this.settingsService = settingsService;
         this.authorizationService = authorizationService;
+        this.auditLogRetentionService = auditLogRetentionService;
+        this.webSocketTransportMonitor = webSocketTransportMonitor;
+        this.emoteSyncScheduler = emoteSyncScheduler;
+        this.rateLimitService = rateLimitService;
     }
 
     @PutMapping("/set")
@@ -46,4 +66,42 @@ public class SettingsApiController {
         Settings savedSettings = settingsService.save(newSettings);
         return ResponseEntity.ok().body(savedSettings);
     }
+
+    @GetMapping("/audit-retention")
+    public ResponseEntity<AuditLogRetentionService.RetentionReport> getAuditRetentionReport(
+        OAuth2AuthenticationToken oauthToken
+    ) {
+        String sessionUsername = OauthSessionUser.from(oauthToken).login();
+        authorizationService.userIsSystemAdministratorOrThrowHttpError(sessionUsername);
+        return auditLogRetentionService
+            .getLastReport()
+            .map((report) -> ResponseEntity.ok().body(report))
+            .orElseGet(() -> ResponseEntity.noContent().build());
+    }
+
+    @GetMapping("/websocket-transport")
+    public ResponseEntity<WebSocketTransportMonitor.TransportReport> getWebSocketTransportReport(
+        OAuth2AuthenticationToken oauthToken
+    ) {
+        String sessionUsername = OauthSessionUser.from(oauthToken).login();
+        authorizationService.userIsSystemAdministratorOrThrowHttpError(sessionUsername);
+        return ResponseEntity.ok().body(webSocketTransportMonitor.report());
+    }
+
+    @GetMapping("/emote-sync")
+    public ResponseEntity<EmoteSyncScheduler.SyncReport> getEmoteSyncReport(OAuth2AuthenticationToken oauthToken) {
+        String sessionUsername = OauthSessionUser.from(oauthToken).login();
+        authorizationService.userIsSystemAdministratorOrThrowHttpError(sessionUsername);
+        return emoteSyncScheduler
+            .getLastReport()
+            .map((report) -> ResponseEntity.ok().body(report))
+            .orElseGet(() -> ResponseEntity.noContent().build());
+    }
+
+    @GetMapping("/rate-limits")
+    public ResponseEntity<RateLimitService.RateLimitReport> getRateLimitReport(OAuth2AuthenticationToken oauthToken) {
+        String sessionUsername = OauthSessionUser.from(oauthToken).login();
+        authorizationService.userIsSystemAdministratorOrThrowHttpError(sessionUsername);
+        return ResponseEntity.ok().body(rateLimitService.report());
+    }
 }
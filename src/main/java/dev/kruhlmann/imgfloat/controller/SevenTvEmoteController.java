@@ -1,7 +1,10 @@
 package dev.kruhlmann.imgfloat.controller;
 
+import dev.kruhlmann.imgfloat.service.EmoteCatalog;
+import dev.kruhlmann.imgfloat.service.EmoteSyncScheduler;
 import dev.kruhlmann.imgfloat.service.SevenTvEmoteService;
-import java.util.List;
+import java.time.Duration;
+import org.springframework.http.CacheControl;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -14,25 +17,39 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/api/7tv/emotes")
 public class SevenTvEmoteController {
 
+    private static final CacheControl IMAGE_CACHE_CONTROL = CacheControl.maxAge(Duration.ofDays(365))
+        .cachePublic()
+        .immutable();
+
     private final SevenTvEmoteService sevenTvEmoteService;
+    private final EmoteSyncScheduler emoteSyncScheduler;
 
-    public SevenTvEmoteController(SevenTvEmoteService sevenTvEmoteService) {
+    public SevenTvEmoteController(SevenTvEmoteService sevenTvEmoteService, EmoteSyncScheduler emoteSyncScheduler) {
         this.sevenTvEmoteService = sevenTvEmoteService;
+        this.emoteSyncScheduler = emoteSyncScheduler;
     }
 
     @GetMapping
-    public EmoteCatalogResponse fetchEmoteCatalog(@RequestParam(value = "channel", required = false) String channel) {
-        List<SevenTvEmoteService.EmoteDescriptor> channelEmotes = sevenTvEmoteService.getChannelEmotes(channel);
-        return new EmoteCatalogResponse(channelEmotes);
+    public ResponseEntity<byte[]> fetchEmoteCatalog(@RequestParam(value = "channel", required = false) String channel) {
+        emoteSyncScheduler.recordActivity(channel);
+        EmoteCatalog catalog = sevenTvEmoteService.getEmoteCatalog(channel);
+        return ResponseEntity.ok()
+            .cacheControl(CacheControl.noCache())
+            .eTag(catalog.etag())
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(catalog.json());
     }
 
     @GetMapping("/{emoteId}")
     public ResponseEntity<byte[]> fetchEmoteAsset(@PathVariable("emoteId") String emoteId) {
         return sevenTvEmoteService
             .loadEmoteAsset(emoteId)
-            .map((asset) -> ResponseEntity.ok().contentType(MediaType.parseMediaType(asset.mediaType())).body(asset.bytes()))
+            .map((asset) ->
+                ResponseEntity.ok()
+                    .cacheControl(IMAGE_CACHE_CONTROL)
+                    .contentType(MediaType.parseMediaType(asset.mediaType()))
+                    .body(asset.bytes())
+            )
             .orElseGet(() -> ResponseEntity.notFound().build());
     }
-
-    public record EmoteCatalogResponse(List<SevenTvEmoteService.EmoteDescriptor> channel) {}
 }
@@ -1,7 +1,10 @@
 package dev.kruhlmann.imgfloat.controller;
 
+import dev.kruhlmann.imgfloat.service.EmoteCatalog;
+import dev.kruhlmann.imgfloat.service.EmoteSyncScheduler;
 import dev.kruhlmann.imgfloat.service.TwitchEmoteService;
-import java.util.List;
+import java.time.Duration;
+import org.springframework.http.CacheControl;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -14,29 +17,45 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/api/twitch/emotes")
 public class TwitchEmoteController {
 
+    private static final CacheControl IMAGE_CACHE_CONTROL = CacheControl.maxAge(Duration.ofDays(365))
+        .cachePublic()
+        .immutable();
+
     private final TwitchEmoteService twitchEmoteService;
+    private final EmoteSyncScheduler emoteSyncScheduler;
 
-    public TwitchEmoteController(TwitchEmoteService twitchEmoteService) {
+    public TwitchEmoteController(TwitchEmoteService twitchEmoteService, EmoteSyncScheduler emoteSyncScheduler) {
         this.twitchEmoteService = twitchEmoteService;
+        this.emoteSyncScheduler = emoteSyncScheduler;
     }
 
+    /**
+     * Serves the catalog serialized when the emotes were last fetched. Clients revalidate it with its {@code ETag}.
+     */
     @GetMapping
-    public EmoteCatalogResponse fetchEmoteCatalog(@RequestParam(value = "channel", required = false) String channel) {
-        List<TwitchEmoteService.EmoteDescriptor> global = twitchEmoteService.getGlobalEmotes();
-        List<TwitchEmoteService.EmoteDescriptor> channelEmotes = twitchEmoteService.getChannelEmotes(channel);
-        return new EmoteCatalogResponse(global, channelEmotes);
+    public ResponseEntity<byte[]> fetchEmoteCatalog(@RequestParam(value = "channel", required = false) String channel) {
+        emoteSyncScheduler.recordActivity(channel);
+        EmoteCatalog catalog = twitchEmoteService.getEmoteCatalog(channel);
+        return ResponseEntity.ok()
+            .cacheControl(CacheControl.noCache())
+            .eTag(catalog.etag())
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(catalog.json());
     }
 
+    /**
+     * Serves an emote image. An emote ID always names the same image, so clients may keep it indefinitely.
+     */
     @GetMapping("/{emoteId}")
     public ResponseEntity<byte[]> fetchEmoteAsset(@PathVariable("emoteId") String emoteId) {
         return twitchEmoteService
             .loadEmoteAsset(emoteId)
-            .map((asset) -> ResponseEntity.ok().contentType(MediaType.parseMediaType(asset.mediaType())).body(asset.bytes()))
+            .map((asset) ->
+                ResponseEntity.ok()
+                    .cacheControl(IMAGE_CACHE_CONTROL)
+                    .contentType(MediaType.parseMediaType(asset.mediaType()))
+                    .body(asset.bytes())
+            )
             .orElseGet(() -> ResponseEntity.notFound().build());
     }
-
-    public record EmoteCatalogResponse(
-        List<TwitchEmoteService.EmoteDescriptor> global,
-        List<TwitchEmoteService.EmoteDescriptor> channel
-    ) {}
 }
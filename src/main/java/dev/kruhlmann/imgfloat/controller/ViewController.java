@@ -12,6 +12,7 @@ import dev.kruhlmann.imgfloat.service.GitInfoService;
 import dev.kruhlmann.imgfloat.service.GithubReleaseService;
 import dev.kruhlmann.imgfloat.service.SettingsService;
 import dev.kruhlmann.imgfloat.service.SystemAdministratorService;
+import dev.kruhlmann.imgfloat.service.TwitchChatRelay;
 import dev.kruhlmann.imgfloat.service.VersionService;
 import dev.kruhlmann.imgfloat.util.LogSanitizer;
 import org.slf4j.Logger;
@@ -34,6 +35,7 @@ public class ViewController {
     private final AuthorizationService authorizationService;
     private final GithubReleaseService githubReleaseService;
     private final SystemAdministratorService systemAdministratorService;
+    private final TwitchChatRelay twitchChatRelay;
     private final long uploadLimitBytes;
     private final boolean isStaging;
     private final String docsUrl;
@@ -47,6 +49,7 @@ public class ViewController {
         AuthorizationService authorizationService,
         GithubReleaseService githubReleaseService,
         SystemAdministratorService systemAdministratorService,
+        TwitchChatRelay twitchChatRelay,
         long uploadLimitBytes,
         @Value("${IMGFLOAT_IS_STAGING:0}") String isStagingFlag,
         @Value("${IMGFLOAT_DOCS_URL:https://docs.imgflo.at}") String docsUrl
@@ -59,6 +62,7 @@ public class ViewController {
         this.authorizationService = authorizationService;
         this.githubReleaseService = githubReleaseService;
         this.systemAdministratorService = systemAdministratorService;
+        this.twitchChatRelay = twitchChatRelay;
         this.uploadLimitBytes = uploadLimitBytes;
         this.isStaging = "1".equals(isStagingFlag);
         this.docsUrl = docsUrl;
@@ -190,6 +194,7 @@ public class ViewController {
         String logBroadcaster = LogSanitizer.sanitize(broadcaster);
         LOG.debug("Rendering broadcast overlay for {}", logBroadcaster);
         model.addAttribute("broadcaster", broadcaster.toLowerCase());
+        model.addAttribute("chatRelay", twitchChatRelay.isEnabled());
         return "broadcast";
     }
 
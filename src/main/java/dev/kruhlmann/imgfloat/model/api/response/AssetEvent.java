@@ -1,6 +1,7 @@
 package dev.kruhlmann.imgfloat.model.api.response;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.List;
 
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class AssetEvent {
@@ -12,6 +13,7 @@ public class AssetEvent {
         PLAY,
         PREVIEW,
         DELETED,
+        ORDER,
     }
 
     private Type type;
@@ -20,6 +22,8 @@ public class AssetEvent {
     private String assetId;
     private Boolean play;
     private AssetPatch patch;
+    private List<String> layerOrder;
+    private List<String> scriptLayerOrder;
 
     public static AssetEvent created(String channel, AssetView asset) {
         AssetEvent event = new AssetEvent();
@@ -85,6 +89,19 @@ public class AssetEvent {
         return event;
     }
 
+    /**
+     * Carries the complete new order of the visual and/or script layer, top first. A layer that did not change is
+     * left out.
+     */
+    public static AssetEvent order(String channel, List<String> layerOrder, List<String> scriptLayerOrder) {
+        AssetEvent event = new AssetEvent();
+        event.type = Type.ORDER;
+        event.channel = channel;
+        event.layerOrder = layerOrder;
+        event.scriptLayerOrder = scriptLayerOrder;
+        return event;
+    }
+
     public Type getType() {
         return type;
     }
@@ -108,4 +125,12 @@ public class AssetEvent {
     public AssetPatch getPatch() {
         return patch;
     }
+
+    public List<String> getLayerOrder() {
+        return layerOrder;
+    }
+
+    public List<String> getScriptLayerOrder() {
+        return scriptLayerOrder;
+    }
 }
@@ -83,10 +83,79 @@ public record AssetPatch(
         return new AssetPatch(assetId, null, null, null, null, null, null, null, order, null, null, null, null, null, null);
     }
 
+    /**
+     * Produces a patch carrying the playback limits of a visual asset after a global settings change.
+     */
+    public static AssetPatch forVisualLimits(VisualAsset asset) {
+        return new AssetPatch(
+            asset.getId(),
+            null,
+            null,
+            null,
+            null,
+            null,
+            asset.getSpeed(),
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            asset.getAudioVolume()
+        );
+    }
+
+    /**
+     * Produces a patch carrying the playback limits of an audio asset after a global settings change.
+     */
+    public static AssetPatch forAudioLimits(AudioAsset asset) {
+        return new AssetPatch(
+            asset.getId(),
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            asset.getAudioSpeed(),
+            asset.getAudioPitch(),
+            asset.getAudioVolume()
+        );
+    }
+
     public static AssetPatch fromVisibility(String assetId, boolean hidden) {
         return new AssetPatch(assetId, null, null, null, null, null, null, null, null, hidden, null, null, null, null, null);
     }
 
+    /**
+     * Combines this patch with a later patch of the same asset; fields set by {@code later} win.
+     */
+    public AssetPatch merge(AssetPatch later) {
+        return new AssetPatch(
+            id,
+            later.x() != null ? later.x() : x,
+            later.y() != null ? later.y() : y,
+            later.width() != null ? later.width() : width,
+            later.height() != null ? later.height() : height,
+            later.rotation() != null ? later.rotation() : rotation,
+            later.speed() != null ? later.speed() : speed,
+            later.muted() != null ? later.muted() : muted,
+            later.order() != null ? later.order() : order,
+            later.hidden() != null ? later.hidden() : hidden,
+            later.audioLoop() != null ? later.audioLoop() : audioLoop,
+            later.audioDelayMillis() != null ? later.audioDelayMillis() : audioDelayMillis,
+            later.audioSpeed() != null ? later.audioSpeed() : audioSpeed,
+            later.audioPitch() != null ? later.audioPitch() : audioPitch,
+            later.audioVolume() != null ? later.audioVolume() : audioVolume
+        );
+    }
+
     private static Double changed(double before, double after) {
         return Double.compare(before, after) == 0 ? null : after;
     }
@@ -0,0 +1,15 @@
+package dev.kruhlmann.imgfloat.model.api.response;
+
+import java.util.List;
+
+/**
+ * Several channel events published together after one request committed. Clients apply {@code events} in order, as
+ * if each had arrived on its own.
+ */
+public record ChannelEventBatch(String type, String channel, List<Object> events) {
+    public static final String TYPE = "BATCH";
+
+    public static ChannelEventBatch of(String channel, List<Object> events) {
+        return new ChannelEventBatch(TYPE, channel, List.copyOf(events));
+    }
+}
@@ -0,0 +1,15 @@
+package dev.kruhlmann.imgfloat.model.api.response;
+
+import java.util.List;
+
+/**
+ * Returned by GET /api/channels/{broadcaster}/events. When {@code complete} is false the requested events are no
+ * longer buffered and the client must reload the full channel state; {@code seq} is the sequence number that state
+ * corresponds to.
+ */
+public record ChannelEventReplayView(String epoch, long seq, boolean complete, List<ReplayedEvent> events) {
+    /**
+     * A missed event; {@code body} is the exact STOMP message body that was published.
+     */
+    public record ReplayedEvent(long seq, String body) {}
+}
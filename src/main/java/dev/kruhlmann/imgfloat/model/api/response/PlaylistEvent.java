@@ -15,6 +15,7 @@ public class PlaylistEvent {
         PLAYLIST_NEXT,
         PLAYLIST_PREV,
         PLAYLIST_ENDED,
+        PLAYLIST_PREFETCH,
     }
 
     private Type type;
@@ -22,6 +23,8 @@ public class PlaylistEvent {
     private String playlistId;
     private String trackId;
     private PlaylistView payload;
+    private String contentUrl;
+    private Long startsInMillis;
 
     private PlaylistEvent() {}
 
@@ -103,9 +106,31 @@ public class PlaylistEvent {
         return e;
     }
 
+    /**
+     * Hint that {@code trackId} is expected to start in {@code startsInMillis}, so clients can start loading it.
+     */
+    public static PlaylistEvent prefetch(
+        String channel,
+        String playlistId,
+        String trackId,
+        String contentUrl,
+        long startsInMillis
+    ) {
+        PlaylistEvent e = new PlaylistEvent();
+        e.type = Type.PLAYLIST_PREFETCH;
+        e.channel = channel;
+        e.playlistId = playlistId;
+        e.trackId = trackId;
+        e.contentUrl = contentUrl;
+        e.startsInMillis = startsInMillis;
+        return e;
+    }
+
     public Type getType() { return type; }
     public String getChannel() { return channel; }
     public String getPlaylistId() { return playlistId; }
     public String getTrackId() { return trackId; }
     public PlaylistView getPayload() { return payload; }
+    public String getContentUrl() { return contentUrl; }
+    public Long getStartsInMillis() { return startsInMillis; }
 }
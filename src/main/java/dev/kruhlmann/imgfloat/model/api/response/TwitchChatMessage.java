@@ -0,0 +1,16 @@
+package dev.kruhlmann.imgfloat.model.api.response;
+
+import java.util.Map;
+
+/**
+ * A Twitch chat message relayed to overlays, shaped like the messages the overlay parses itself when it reads chat
+ * directly.
+ */
+public record TwitchChatMessage(
+    String channel,
+    String displayName,
+    String message,
+    Map<String, String> tags,
+    String prefix,
+    String raw
+) {}
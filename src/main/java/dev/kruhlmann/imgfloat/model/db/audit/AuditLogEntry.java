@@ -42,6 +42,22 @@ public class AuditLogEntry {
         this.createdAt = Instant.now();
     }
 
+    public AuditLogEntry(
+        String id,
+        String broadcaster,
+        String actor,
+        String action,
+        String details,
+        Instant createdAt
+    ) {
+        this.id = id;
+        this.broadcaster = normalize(broadcaster);
+        this.actor = normalize(actor);
+        this.action = action == null || action.isBlank() ? "UNKNOWN" : action;
+        this.details = details;
+        this.createdAt = createdAt;
+    }
+
     @PrePersist
     public void prepare() {
         if (id == null) {
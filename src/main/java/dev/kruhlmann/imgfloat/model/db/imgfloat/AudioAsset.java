@@ -26,6 +26,9 @@ public class AudioAsset {
     private Double audioVolume;
     private boolean hidden;
 
+    @Column(name = "duration_millis", columnDefinition = "INTEGER")
+    private Long durationMillis;
+
     public AudioAsset() {}
 
     public AudioAsset(String assetId, String name) {
@@ -141,4 +144,15 @@ public class AudioAsset {
     public void setHidden(boolean hidden) {
         this.hidden = hidden;
     }
+
+    /**
+     * Playback length at normal speed as probed at upload, or {@code null} when it could not be determined.
+     */
+    public Long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public void setDurationMillis(Long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
 }
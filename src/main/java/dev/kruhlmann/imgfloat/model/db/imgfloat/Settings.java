@@ -69,6 +69,24 @@ public class Settings {
         return s;
     }
 
+    public Settings copy() {
+        Settings s = new Settings();
+        s.id = id;
+        s.minAssetPlaybackSpeedFraction = minAssetPlaybackSpeedFraction;
+        s.maxAssetPlaybackSpeedFraction = maxAssetPlaybackSpeedFraction;
+        s.minAssetAudioPitchFraction = minAssetAudioPitchFraction;
+        s.maxAssetAudioPitchFraction = maxAssetAudioPitchFraction;
+        s.minAssetVolumeFraction = minAssetVolumeFraction;
+        s.maxAssetVolumeFraction = maxAssetVolumeFraction;
+        s.maxCanvasSideLengthPixels = maxCanvasSideLengthPixels;
+        s.canvasFramesPerSecond = canvasFramesPerSecond;
+        s.emoteSyncIntervalMinutes = emoteSyncIntervalMinutes;
+        s.lastEmoteSyncAt = lastEmoteSyncAt;
+        s.createdAt = createdAt;
+        s.updatedAt = updatedAt;
+        return s;
+    }
+
     public void setId(int id) {
         this.id = id;
     }
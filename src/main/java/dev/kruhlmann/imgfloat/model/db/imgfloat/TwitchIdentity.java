@@ -0,0 +1,49 @@
+package dev.kruhlmann.imgfloat.model.db.imgfloat;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.Instant;
+
+/**
+ * The Twitch user ID behind a login. Logins can be renamed, so an identity is looked up again once it is old.
+ */
+@Entity
+@Table(name = "twitch_identities")
+public class TwitchIdentity {
+
+    @Id
+    private String login;
+
+    @Column(name = "user_id", nullable = false, unique = true)
+    private String userId;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    public TwitchIdentity() {}
+
+    public TwitchIdentity(String login, String userId) {
+        this.login = login;
+        this.userId = userId;
+        this.updatedAt = Instant.now();
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void confirm(String userId) {
+        this.userId = userId;
+        this.updatedAt = Instant.now();
+    }
+}
@@ -3,7 +3,27 @@ package dev.kruhlmann.imgfloat.repository;
 import dev.kruhlmann.imgfloat.model.db.imgfloat.Asset;
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface AssetRepository extends JpaRepository<Asset, String> {
     List<Asset> findByBroadcaster(String broadcaster);
+
+    /**
+     * Sets the display order of many assets in one statement. {@code keys} is a JSON object mapping asset ids to
+     * their new display order.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query(
+        value = """
+        UPDATE assets
+        SET display_order = (SELECT entry.value FROM json_each(:keys) AS entry WHERE entry.key = assets.id)
+        WHERE id IN (SELECT entry.key FROM json_each(:keys) AS entry)
+        """,
+        nativeQuery = true
+    )
+    int updateDisplayOrders(@Param("keys") String keys);
 }
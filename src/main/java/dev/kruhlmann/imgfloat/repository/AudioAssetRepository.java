@@ -4,7 +4,67 @@ import dev.kruhlmann.imgfloat.model.db.imgfloat.AudioAsset;
 import java.util.Collection;
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface AudioAssetRepository extends JpaRepository<AudioAsset, String> {
     List<AudioAsset> findByIdIn(Collection<String> ids);
+
+    // Effective values mirror the null/range handling of the AudioAsset getters.
+    @Query(
+        value = """
+        SELECT id
+        FROM audio_assets
+        WHERE MAX(COALESCE(audio_speed, 1.0), 0.1) NOT BETWEEN :minSpeed AND :maxSpeed
+            OR MAX(COALESCE(audio_pitch, 1.0), 0.1) NOT BETWEEN :minPitch AND :maxPitch
+            OR MIN(MAX(COALESCE(audio_volume, 1.0), 0.0), 1.0) NOT BETWEEN :minVolume AND :maxVolume
+        LIMIT :limit
+        """,
+        nativeQuery = true
+    )
+    List<String> findIdsOutsideLimits(
+        @Param("minSpeed") double minSpeed,
+        @Param("maxSpeed") double maxSpeed,
+        @Param("minPitch") double minPitch,
+        @Param("maxPitch") double maxPitch,
+        @Param("minVolume") double minVolume,
+        @Param("maxVolume") double maxVolume,
+        @Param("limit") int limit
+    );
+
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query(
+        value = """
+        UPDATE audio_assets
+        SET audio_speed = CASE
+                WHEN MAX(COALESCE(audio_speed, 1.0), 0.1) NOT BETWEEN :minSpeed AND :maxSpeed
+                    THEN MIN(MAX(MAX(COALESCE(audio_speed, 1.0), 0.1), :minSpeed), :maxSpeed)
+                ELSE audio_speed
+            END,
+            audio_pitch = CASE
+                WHEN MAX(COALESCE(audio_pitch, 1.0), 0.1) NOT BETWEEN :minPitch AND :maxPitch
+                    THEN MIN(MAX(MAX(COALESCE(audio_pitch, 1.0), 0.1), :minPitch), :maxPitch)
+                ELSE audio_pitch
+            END,
+            audio_volume = CASE
+                WHEN MIN(MAX(COALESCE(audio_volume, 1.0), 0.0), 1.0) NOT BETWEEN :minVolume AND :maxVolume
+                    THEN MIN(MAX(MIN(MAX(COALESCE(audio_volume, 1.0), 0.0), 1.0), :minVolume), :maxVolume)
+                ELSE audio_volume
+            END
+        WHERE id IN (:ids)
+        """,
+        nativeQuery = true
+    )
+    int clampToLimits(
+        @Param("ids") Collection<String> ids,
+        @Param("minSpeed") double minSpeed,
+        @Param("maxSpeed") double maxSpeed,
+        @Param("minPitch") double minPitch,
+        @Param("maxPitch") double maxPitch,
+        @Param("minVolume") double minVolume,
+        @Param("maxVolume") double maxVolume
+    );
 }
@@ -3,7 +3,39 @@ package dev.kruhlmann.imgfloat.repository;
 import dev.kruhlmann.imgfloat.model.db.imgfloat.Channel;
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface ChannelRepository extends JpaRepository<Channel, String> {
     List<Channel> findTop50ByBroadcasterContainingIgnoreCaseOrderByBroadcasterAsc(String broadcasterFragment);
+
+    List<Channel> findAllByPlaylistIsPlayingTrueAndPlaylistIsPausedFalse();
+
+    /**
+     * Stores the playback position of many channels in one statement. {@code positions} is a JSON object mapping
+     * broadcasters to {@code {"playlistId", "trackId", "position"}}; a channel is only updated while it is still
+     * playing that track of that playlist.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Transactional
+    @Query(
+        value = """
+        UPDATE channels
+        SET playlist_track_position = (
+            SELECT json_extract(entry.value, '$.position') FROM json_each(:positions) AS entry
+            WHERE entry.key = channels.broadcaster
+        )
+        WHERE playlist_is_playing = 1
+        AND playlist_is_paused = 0
+        AND broadcaster IN (
+            SELECT entry.key FROM json_each(:positions) AS entry
+            WHERE json_extract(entry.value, '$.playlistId') = channels.active_playlist_id
+            AND json_extract(entry.value, '$.trackId') = channels.playlist_current_track_id
+        )
+        """,
+        nativeQuery = true
+    )
+    int updatePlaylistTrackPositions(@Param("positions") String positions);
 }
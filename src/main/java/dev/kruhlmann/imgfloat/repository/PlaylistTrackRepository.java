@@ -1,11 +1,12 @@
 package dev.kruhlmann.imgfloat.repository;
 
 import dev.kruhlmann.imgfloat.model.db.imgfloat.PlaylistTrack;
+import java.util.Collection;
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 public interface PlaylistTrackRepository extends JpaRepository<PlaylistTrack, String> {
     List<PlaylistTrack> findAllByPlaylistIdOrderByTrackOrderAsc(String playlistId);
+    List<PlaylistTrack> findAllByPlaylistIdInOrderByTrackOrderAsc(Collection<String> playlistIds);
     void deleteAllByPlaylistId(String playlistId);
-    int countByPlaylistId(String playlistId);
 }
@@ -0,0 +1,10 @@
+package dev.kruhlmann.imgfloat.repository;
+
+import dev.kruhlmann.imgfloat.model.db.imgfloat.TwitchIdentity;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface TwitchIdentityRepository extends JpaRepository<TwitchIdentity, String> {
+    List<TwitchIdentity> findAllByUserIdIn(Collection<String> userIds);
+}
@@ -4,8 +4,58 @@ import dev.kruhlmann.imgfloat.model.db.imgfloat.VisualAsset;
 import java.util.Collection;
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface VisualAssetRepository extends JpaRepository<VisualAsset, String> {
     List<VisualAsset> findByIdIn(Collection<String> ids);
     List<VisualAsset> findByIdInAndHiddenFalse(Collection<String> ids);
+
+    // Effective values mirror the null/range handling of VisualAsset#getSpeed and #getAudioVolume.
+    @Query(
+        value = """
+        SELECT id
+        FROM visual_assets
+        WHERE COALESCE(speed, 1.0) NOT BETWEEN :minSpeed AND :maxSpeed
+            OR MIN(MAX(COALESCE(audio_volume, 1.0), 0.0), 1.0) NOT BETWEEN :minVolume AND :maxVolume
+        LIMIT :limit
+        """,
+        nativeQuery = true
+    )
+    List<String> findIdsOutsideLimits(
+        @Param("minSpeed") double minSpeed,
+        @Param("maxSpeed") double maxSpeed,
+        @Param("minVolume") double minVolume,
+        @Param("maxVolume") double maxVolume,
+        @Param("limit") int limit
+    );
+
+    @Modifying(clearAutomatically = true)
+    @Transactional
+    @Query(
+        value = """
+        UPDATE visual_assets
+        SET speed = CASE
+                WHEN COALESCE(speed, 1.0) NOT BETWEEN :minSpeed AND :maxSpeed
+                    THEN MIN(MAX(COALESCE(speed, 1.0), :minSpeed), :maxSpeed)
+                ELSE speed
+            END,
+            audio_volume = CASE
+                WHEN MIN(MAX(COALESCE(audio_volume, 1.0), 0.0), 1.0) NOT BETWEEN :minVolume AND :maxVolume
+                    THEN MIN(MAX(MIN(MAX(COALESCE(audio_volume, 1.0), 0.0), 1.0), :minVolume), :maxVolume)
+                ELSE audio_volume
+            END
+        WHERE id IN (:ids)
+        """,
+        nativeQuery = true
+    )
+    int clampToLimits(
+        @Param("ids") Collection<String> ids,
+        @Param("minSpeed") double minSpeed,
+        @Param("maxSpeed") double maxSpeed,
+        @Param("minVolume") double minVolume,
+        @Param("maxVolume") double maxVolume
+    );
 }
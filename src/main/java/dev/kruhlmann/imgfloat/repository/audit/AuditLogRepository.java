@@ -1,6 +1,8 @@
 package dev.kruhlmann.imgfloat.repository.audit;
 
 import dev.kruhlmann.imgfloat.model.db.audit.AuditLogEntry;
+import java.time.Instant;
+import java.util.List;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -35,4 +37,6 @@ public interface AuditLogRepository extends JpaRepository<AuditLogEntry, String>
     );
 
     void deleteByBroadcaster(String broadcaster);
+
+    List<AuditLogEntry> findByCreatedAtBeforeOrderByCreatedAtAsc(Instant cutoff, Pageable pageable);
 }
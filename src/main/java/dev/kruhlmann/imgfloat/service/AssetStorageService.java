@@ -1,12 +1,16 @@
 package dev.kruhlmann.imgfloat.service;
 
 import dev.kruhlmann.imgfloat.service.media.AssetContent;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import java.io.IOException;
 import java.nio.file.*;
 import dev.kruhlmann.imgfloat.service.media.MediaTypeRegistry;
 import java.util.Locale;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -20,10 +24,15 @@ public class AssetStorageService {
 
     private final Path assetRoot;
     private final Path previewRoot;
+    private final StorageMeters assetReads;
+    private final StorageMeters assetWrites;
+    private final StorageMeters previewReads;
+    private final StorageMeters previewWrites;
 
     public AssetStorageService(
         @Value("${IMGFLOAT_ASSETS_PATH:#{null}}") String assetRoot,
-        @Value("${IMGFLOAT_PREVIEWS_PATH:#{null}}") String previewRoot
+        @Value("${IMGFLOAT_PREVIEWS_PATH:#{null}}") String previewRoot,
+        MeterRegistry meterRegistry
     ) {
         String assetsBase = assetRoot != null
             ? assetRoot
@@ -40,6 +49,10 @@ public class AssetStorageService {
         } catch (IOException e) {
             throw new IllegalStateException("Failed to create asset storage directories", e);
         }
+        this.assetReads = new StorageMeters(meterRegistry, "read", "asset");
+        this.assetWrites = new StorageMeters(meterRegistry, "write", "asset");
+        this.previewReads = new StorageMeters(meterRegistry, "read", "preview");
+        this.previewWrites = new StorageMeters(meterRegistry, "write", "preview");
     }
 
     public void storeAsset(String broadcaster, String assetId, byte[] assetBytes, String mediaType) throws IOException {
@@ -48,6 +61,7 @@ public class AssetStorageService {
         }
 
         Path file = assetPath(broadcaster, assetId, mediaType);
+        long start = System.nanoTime();
         Files.createDirectories(file.getParent());
 
         Files.write(
@@ -57,6 +71,7 @@ public class AssetStorageService {
             StandardOpenOption.TRUNCATE_EXISTING,
             StandardOpenOption.WRITE
         );
+        assetWrites.record(start, assetBytes.length);
         LOG.info("Wrote asset to {}", file);
     }
 
@@ -64,6 +79,7 @@ public class AssetStorageService {
         if (previewBytes == null || previewBytes.length == 0) return;
 
         Path file = previewPath(broadcaster, assetId);
+        long start = System.nanoTime();
         Files.createDirectories(file.getParent());
 
         Files.write(
@@ -73,16 +89,19 @@ public class AssetStorageService {
             StandardOpenOption.TRUNCATE_EXISTING,
             StandardOpenOption.WRITE
         );
+        previewWrites.record(start, previewBytes.length);
         LOG.info("Wrote asset preview to {}", file);
     }
 
     public Optional<AssetContent> loadAssetFile(String broadcaster, String assetId, String mediaType) {
         try {
             Path file = assetPath(broadcaster, assetId, mediaType);
+            long start = System.nanoTime();
 
             if (!Files.exists(file)) return Optional.empty();
 
             byte[] bytes = Files.readAllBytes(file);
+            assetReads.record(start, bytes.length);
             return Optional.of(new AssetContent(bytes, mediaType));
         } catch (Exception e) {
             LOG.warn("Failed to load asset {}", assetId, e);
@@ -93,9 +112,11 @@ public class AssetStorageService {
     public Optional<AssetContent> loadPreview(String broadcaster, String assetId) {
         try {
             Path file = previewPath(broadcaster, assetId);
+            long start = System.nanoTime();
             if (!Files.exists(file)) return Optional.empty();
 
             byte[] bytes = Files.readAllBytes(file);
+            previewReads.record(start, bytes.length);
             return Optional.of(new AssetContent(bytes, DEFAULT_PREVIEW_MEDIA_TYPE));
         } catch (Exception e) {
             LOG.warn("Failed to load preview {}", assetId, e);
@@ -200,4 +221,26 @@ public class AssetStorageService {
         }
         return resolved;
     }
+
+    /**
+     * Latency and size of one kind of file operation. Tags name the operation and file kind only, never the channel.
+     */
+    private record StorageMeters(Timer latency, DistributionSummary size) {
+        private StorageMeters(MeterRegistry meterRegistry, String operation, String file) {
+            this(
+                Timer.builder("imgfloat.storage.latency")
+                    .tags("operation", operation, "file", file)
+                    .register(meterRegistry),
+                DistributionSummary.builder("imgfloat.storage.size")
+                    .baseUnit("bytes")
+                    .tags("operation", operation, "file", file)
+                    .register(meterRegistry)
+            );
+        }
+
+        private void record(long startNanos, long bytes) {
+            latency.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            size.record(bytes);
+        }
+    }
 }
@@ -0,0 +1,309 @@
+package dev.kruhlmann.imgfloat.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.kruhlmann.imgfloat.model.db.audit.AuditLogEntry;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Gzip-compressed NDJSON segments holding audit log entries that have aged out of the hot audit
+ * database, grouped by month. Each append writes every month of the batch to a segment file of its
+ * own, which is synced to disk and then renamed into place, so an interrupted write never touches
+ * entries archived earlier. Reading a damaged segment keeps the entries before the damage.
+ */
+@Component
+public class AuditLogArchive {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AuditLogArchive.class);
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM");
+    private static final Pattern SEGMENT_NAME = Pattern.compile("audit-(\\d{4}-\\d{2})(-[0-9a-f-]+)?\\.ndjson\\.gz");
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final Pattern MONTH_PATTERN = Pattern.compile("\\d{4}-\\d{2}");
+
+    private final Path archiveRoot;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public AuditLogArchive(@Value("${IMGFLOAT_AUDIT_ARCHIVE_PATH:#{null}}") String archivePath) {
+        // The path is required outside of tests (see SystemEnvironmentValidator); archived entries are deleted from
+        // the audit database, so they must not end up in a temporary directory.
+        String base = archivePath != null
+            ? archivePath
+            : Paths.get(System.getProperty("java.io.tmpdir"), "imgfloat-audit-archive").toString();
+        this.archiveRoot = Paths.get(base).normalize().toAbsolutePath();
+        try {
+            Files.createDirectories(this.archiveRoot);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to create audit archive directory", e);
+        }
+        deleteTemporaryFiles();
+    }
+
+    public synchronized void append(List<AuditLogEntry> entries) throws IOException {
+        if (entries == null || entries.isEmpty()) {
+            return;
+        }
+        Map<YearMonth, List<AuditLogEntry>> byMonth = new TreeMap<>();
+        for (AuditLogEntry entry : entries) {
+            byMonth.computeIfAbsent(monthOf(entry.getCreatedAt()), (month) -> new ArrayList<>()).add(entry);
+        }
+        for (Map.Entry<YearMonth, List<AuditLogEntry>> segment : byMonth.entrySet()) {
+            writeSegment(newSegmentPath(segment.getKey()), segment.getValue());
+        }
+    }
+
+    /**
+     * Returns archived entries for the broadcaster matching the filters, newest first. When
+     * {@code month} is set only that segment is read; otherwise every segment is scanned.
+     */
+    public synchronized List<AuditLogEntry> search(
+        String broadcaster,
+        YearMonth month,
+        Predicate<AuditLogEntry> filter
+    ) {
+        Map<String, AuditLogEntry> matches = new LinkedHashMap<>();
+        for (Path segment : listSegments(month)) {
+            readSegment(segment, (entry) -> {
+                if (broadcaster.equals(entry.getBroadcaster()) && filter.test(entry)) {
+                    matches.putIfAbsent(entry.getId(), entry);
+                }
+            });
+        }
+        return matches
+            .values()
+            .stream()
+            .sorted(Comparator.comparing(AuditLogEntry::getCreatedAt, Comparator.nullsLast(Comparator.reverseOrder())))
+            .toList();
+    }
+
+    public synchronized void deleteBroadcaster(String broadcaster) {
+        for (Path segment : listSegments(null)) {
+            List<AuditLogEntry> entries = new ArrayList<>();
+            boolean intact = readSegment(segment, entries::add);
+            List<AuditLogEntry> kept = entries
+                .stream()
+                .filter((entry) -> !broadcaster.equals(entry.getBroadcaster()))
+                .toList();
+            // The unreadable rest of a damaged segment may hold the broadcaster's entries too, so it is dropped.
+            if (intact && kept.size() == entries.size()) {
+                continue;
+            }
+            try {
+                if (kept.isEmpty()) {
+                    Files.delete(segment);
+                } else {
+                    writeSegment(segment, kept);
+                }
+            } catch (IOException e) {
+                LOG.warn("Failed to purge broadcaster from audit archive segment {}", segment, e);
+            }
+        }
+    }
+
+    public synchronized long sizeBytes() {
+        long total = 0;
+        for (Path segment : listSegments(null)) {
+            try {
+                total += Files.size(segment);
+            } catch (IOException e) {
+                LOG.debug("Unable to size audit archive segment {}", segment, e);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Writes the entries to a temporary file, syncs it and renames it over {@code segment}, so the segment either
+     * holds all of the entries or keeps its previous contents.
+     */
+    private void writeSegment(Path segment, List<AuditLogEntry> entries) throws IOException {
+        Path temporary = segment.resolveSibling(segment.getFileName() + TEMPORARY_SUFFIX);
+        try {
+            try (
+                BufferedWriter writer = new BufferedWriter(
+                    new OutputStreamWriter(
+                        new GZIPOutputStream(Files.newOutputStream(temporary)),
+                        StandardCharsets.UTF_8
+                    )
+                )
+            ) {
+                writeEntries(writer, entries);
+            }
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temporary, segment, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            deleteQuietly(temporary);
+            throw e;
+        }
+        try (FileChannel directory = FileChannel.open(archiveRoot, StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            // Not every platform can sync a directory; the rename is still atomic there.
+            LOG.debug("Unable to sync audit archive directory {}", archiveRoot, e);
+        }
+    }
+
+    private void writeEntries(BufferedWriter writer, List<AuditLogEntry> entries) throws IOException {
+        for (AuditLogEntry entry : entries) {
+            ArchivedEntry archived = new ArchivedEntry(
+                entry.getId(),
+                entry.getBroadcaster(),
+                entry.getActor(),
+                entry.getAction(),
+                entry.getDetails(),
+                entry.getCreatedAt() == null ? null : entry.getCreatedAt().toString()
+            );
+            writer.write(objectMapper.writeValueAsString(archived));
+            writer.newLine();
+        }
+    }
+
+    /**
+     * Passes each entry of the segment to {@code consumer}. Decompressed bytes are split into lines by hand, so every
+     * complete line read before a damaged part of the segment still reaches the consumer.
+     *
+     * @return whether the whole segment could be read
+     */
+    private boolean readSegment(Path segment, Consumer<AuditLogEntry> consumer) {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int entries = 0;
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(segment))) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                for (int index = 0; index < read; index++) {
+                    if (buffer[index] != '\n') {
+                        line.write(buffer[index]);
+                        continue;
+                    }
+                    String text = line.toString(StandardCharsets.UTF_8);
+                    line.reset();
+                    if (text.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        consumer.accept(parseLine(text));
+                        entries++;
+                    } catch (IllegalStateException e) {
+                        LOG.warn("Skipping malformed line in audit archive segment {}", segment, e);
+                    }
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            LOG.warn("Audit archive segment {} is damaged; kept the {} entries before the damage", segment, entries, e);
+            return false;
+        }
+    }
+
+    private AuditLogEntry parseLine(String line) {
+        try {
+            ArchivedEntry archived = objectMapper.readValue(line, ArchivedEntry.class);
+            return new AuditLogEntry(
+                archived.id(),
+                archived.broadcaster(),
+                archived.actor(),
+                archived.action(),
+                archived.details(),
+                archived.createdAt() == null ? null : Instant.parse(archived.createdAt())
+            );
+        } catch (IOException e) {
+            throw new IllegalStateException("Malformed audit archive line", e);
+        }
+    }
+
+    private List<Path> listSegments(YearMonth month) {
+        String monthName = month == null ? null : MONTH_FORMAT.format(month);
+        try (Stream<Path> files = Files.list(archiveRoot)) {
+            return files
+                .filter((path) -> {
+                    Matcher matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+                    return matcher.matches() && (monthName == null || monthName.equals(matcher.group(1)));
+                })
+                .sorted(Comparator.comparing((Path path) -> path.getFileName().toString()).reversed())
+                .toList();
+        } catch (IOException e) {
+            LOG.warn("Failed to list audit archive directory {}", archiveRoot, e);
+            return List.of();
+        }
+    }
+
+    private Path newSegmentPath(YearMonth month) {
+        return archiveRoot.resolve("audit-" + MONTH_FORMAT.format(month) + "-" + UUID.randomUUID() + ".ndjson.gz");
+    }
+
+    private void deleteTemporaryFiles() {
+        try (Stream<Path> files = Files.list(archiveRoot)) {
+            files
+                .filter((path) -> path.getFileName().toString().endsWith(TEMPORARY_SUFFIX))
+                .forEach(this::deleteQuietly);
+        } catch (IOException e) {
+            LOG.warn("Failed to list audit archive directory {}", archiveRoot, e);
+        }
+    }
+
+    private YearMonth monthOf(Instant instant) {
+        Instant resolved = instant == null ? Instant.EPOCH : instant;
+        return YearMonth.from(resolved.atZone(ZoneOffset.UTC));
+    }
+
+    static YearMonth parseMonth(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        if (!MONTH_PATTERN.matcher(value.trim()).matches()) {
+            throw new IllegalArgumentException("Month must be formatted as yyyy-MM");
+        }
+        return YearMonth.parse(value.trim(), MONTH_FORMAT);
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOG.debug("Failed to delete {}", path, e);
+        }
+    }
+
+    private record ArchivedEntry(
+        String id,
+        String broadcaster,
+        String actor,
+        String action,
+        String details,
+        String createdAt
+    ) {}
+}
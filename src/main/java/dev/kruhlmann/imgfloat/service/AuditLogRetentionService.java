@@ -0,0 +1,163 @@
+package dev.kruhlmann.imgfloat.service;
+
+import dev.kruhlmann.imgfloat.model.db.audit.AuditLogEntry;
+import dev.kruhlmann.imgfloat.repository.audit.AuditLogRepository;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+@Service
+public class AuditLogRetentionService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AuditLogRetentionService.class);
+    private static final Duration INITIAL_DELAY = Duration.ofMinutes(5);
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    private final AuditLogRepository auditLogRepository;
+    private final AuditLogArchive auditLogArchive;
+    private final JdbcTemplate auditJdbcTemplate;
+    private final TaskScheduler taskScheduler;
+    private final int retentionDays;
+    private final int batchSize;
+    private final int intervalMinutes;
+    private final AtomicReference<RetentionReport> lastReport = new AtomicReference<>();
+
+    public AuditLogRetentionService(
+        AuditLogRepository auditLogRepository,
+        AuditLogArchive auditLogArchive,
+        @Qualifier("auditDataSource") DataSource auditDataSource,
+        @Qualifier("auditRetentionTaskScheduler") TaskScheduler taskScheduler,
+        @Value("${IMGFLOAT_AUDIT_RETENTION_DAYS:90}") int retentionDays,
+        @Value("${IMGFLOAT_AUDIT_ARCHIVE_BATCH_SIZE:500}") int batchSize,
+        @Value("${IMGFLOAT_AUDIT_RETENTION_INTERVAL_MINUTES:360}") int intervalMinutes
+    ) {
+        this.auditLogRepository = auditLogRepository;
+        this.auditLogArchive = auditLogArchive;
+        this.auditJdbcTemplate = new JdbcTemplate(auditDataSource);
+        this.taskScheduler = taskScheduler;
+        this.retentionDays = retentionDays;
+        this.batchSize = Math.max(batchSize, 1);
+        this.intervalMinutes = Math.max(intervalMinutes, 1);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleRetention() {
+        if (retentionDays <= 0) {
+            LOG.info("Audit log retention disabled; entries are kept in the audit database indefinitely");
+            return;
+        }
+        taskScheduler.scheduleWithFixedDelay(
+            this::applyRetention,
+            Instant.now().plus(INITIAL_DELAY),
+            Duration.ofMinutes(intervalMinutes)
+        );
+    }
+
+    public Optional<RetentionReport> getLastReport() {
+        return Optional.ofNullable(lastReport.get());
+    }
+
+    /**
+     * Moves entries older than the hot window into the archive in batches, then returns freed pages to the
+     * filesystem. Entries are only deleted once their batch is synced to its own archive segment, so a failure
+     * part-way through leaves at worst a duplicate copy that archive reads de-duplicate by id.
+     */
+    public RetentionReport applyRetention() {
+        Instant startedAt = Instant.now();
+        Instant cutoff = startedAt.minus(Duration.ofDays(retentionDays));
+        long sizeBefore = databaseSizeBytes();
+        int archived = 0;
+        try {
+            List<AuditLogEntry> batch;
+            do {
+                batch = auditLogRepository.findByCreatedAtBeforeOrderByCreatedAtAsc(cutoff, PageRequest.of(0, batchSize));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                auditLogArchive.append(batch);
+                auditLogRepository.deleteAllByIdInBatch(batch.stream().map(AuditLogEntry::getId).toList());
+                archived += batch.size();
+            } while (batch.size() == batchSize);
+        } catch (IOException | DataAccessException ex) {
+            LOG.error("Audit log archival failed after moving {} entries", archived, ex);
+        }
+        if (archived > 0) {
+            compact();
+        }
+        long sizeAfter = databaseSizeBytes();
+        RetentionReport report = new RetentionReport(
+            startedAt,
+            Duration.between(startedAt, Instant.now()),
+            archived,
+            sizeBefore,
+            sizeAfter,
+            Math.max(sizeBefore - sizeAfter, 0),
+            auditLogArchive.sizeBytes()
+        );
+        lastReport.set(report);
+        LOG.info(
+            "Audit log retention archived {} entries older than {} days in {} ms; reclaimed {} bytes ({} -> {} bytes), archive is {} bytes",
+            report.archivedEntries(),
+            retentionDays,
+            report.duration().toMillis(),
+            report.reclaimedBytes(),
+            report.databaseBytesBefore(),
+            report.databaseBytesAfter(),
+            report.archiveBytes()
+        );
+        return report;
+    }
+
+    private void compact() {
+        try {
+            Integer autoVacuum = auditJdbcTemplate.queryForObject("PRAGMA auto_vacuum", Integer.class);
+            if (autoVacuum == null || autoVacuum != AUTO_VACUUM_INCREMENTAL) {
+                // Switching auto_vacuum mode only takes effect after a full VACUUM, which is a one-off cost.
+                LOG.info("Enabling incremental auto-vacuum on the audit database");
+                auditJdbcTemplate.execute("PRAGMA auto_vacuum = INCREMENTAL");
+                auditJdbcTemplate.execute("VACUUM");
+            } else {
+                auditJdbcTemplate.execute("PRAGMA incremental_vacuum");
+            }
+            auditJdbcTemplate.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+        } catch (DataAccessException ex) {
+            LOG.warn("Unable to compact the audit database", ex);
+        }
+    }
+
+    private long databaseSizeBytes() {
+        try {
+            Long pageCount = auditJdbcTemplate.queryForObject("PRAGMA page_count", Long.class);
+            Long pageSize = auditJdbcTemplate.queryForObject("PRAGMA page_size", Long.class);
+            return pageCount == null || pageSize == null ? 0 : pageCount * pageSize;
+        } catch (DataAccessException ex) {
+            LOG.debug("Unable to measure the audit database size", ex);
+            return 0;
+        }
+    }
+
+    public record RetentionReport(
+        Instant ranAt,
+        Duration duration,
+        int archivedEntries,
+        long databaseBytesBefore,
+        long databaseBytesAfter,
+        long reclaimedBytes,
+        long archiveBytes
+    ) {}
+}
@@ -4,7 +4,11 @@ import dev.kruhlmann.imgfloat.model.db.audit.AuditLogEntry;
 import dev.kruhlmann.imgfloat.repository.audit.AuditLogRepository;
 import dev.kruhlmann.imgfloat.util.LogSanitizer;
 import dev.kruhlmann.imgfloat.util.StringNormalizer;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Locale;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.slf4j.Logger;
@@ -19,9 +23,11 @@ public class AuditLogService {
     private static final String DEFAULT_ACTOR = "system";
 
     private final AuditLogRepository auditLogRepository;
+    private final AuditLogArchive auditLogArchive;
 
-    public AuditLogService(AuditLogRepository auditLogRepository) {
+    public AuditLogService(AuditLogRepository auditLogRepository, AuditLogArchive auditLogArchive) {
         this.auditLogRepository = auditLogRepository;
+        this.auditLogArchive = auditLogArchive;
     }
 
     public void recordEntry(String broadcaster, String actor, String action, String details) {
@@ -79,12 +85,53 @@ public class AuditLogService {
         );
     }
 
+    public Page<AuditLogEntry> listArchivedEntries(
+        String broadcaster,
+        String month,
+        String actor,
+        String action,
+        String search,
+        int page,
+        int size
+    ) {
+        String normalizedBroadcaster = StringNormalizer.toLowerCaseRoot(broadcaster);
+        if (normalizedBroadcaster == null || normalizedBroadcaster.isBlank()) {
+            return Page.empty();
+        }
+        YearMonth archiveMonth = AuditLogArchive.parseMonth(month);
+        String normalizedActor = normalizeFilter(actor);
+        String normalizedAction = normalizeFilter(action);
+        String normalizedSearch = normalizeFilter(search);
+        int safePage = Math.max(page, 0);
+        int safeSize = Math.min(Math.max(size, 1), 200);
+        List<AuditLogEntry> matches = auditLogArchive.search(
+            normalizedBroadcaster,
+            archiveMonth,
+            (entry) ->
+                (normalizedActor == null || normalizedActor.equals(lower(entry.getActor()))) &&
+                (normalizedAction == null || lower(entry.getAction()).contains(normalizedAction)) &&
+                (normalizedSearch == null ||
+                    lower(entry.getActor()).contains(normalizedSearch) ||
+                    lower(entry.getAction()).contains(normalizedSearch) ||
+                    lower(entry.getDetails()).contains(normalizedSearch))
+        );
+        PageRequest pageRequest = PageRequest.of(safePage, safeSize, Sort.by(Sort.Direction.DESC, "createdAt"));
+        int from = (int) Math.min(pageRequest.getOffset(), matches.size());
+        int to = Math.min(from + safeSize, matches.size());
+        return new PageImpl<>(matches.subList(from, to), pageRequest, matches.size());
+    }
+
     public void deleteEntriesForBroadcaster(String broadcaster) {
         String normalizedBroadcaster = StringNormalizer.toLowerCaseRoot(broadcaster);
         if (normalizedBroadcaster == null || normalizedBroadcaster.isBlank()) {
             return;
         }
         auditLogRepository.deleteByBroadcaster(normalizedBroadcaster);
+        auditLogArchive.deleteBroadcaster(normalizedBroadcaster);
+    }
+
+    private String lower(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
     }
 
     private String normalizeFilter(String value) {
@@ -0,0 +1,37 @@
+package dev.kruhlmann.imgfloat.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Hit and miss counts of one in-memory cache, published under the meter names Micrometer uses for caches
+ * ({@code cache.gets} with a {@code result} tag, and {@code cache.size}), so hit ratios read the same for every cache.
+ */
+public final class CacheMetrics {
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public void hit() {
+        hits.increment();
+    }
+
+    public void miss() {
+        misses.increment();
+    }
+
+    public void bindTo(MeterRegistry registry, String cache, Supplier<Number> size) {
+        FunctionCounter.builder("cache.gets", hits, LongAdder::doubleValue)
+            .tags("cache", cache, "result", "hit")
+            .description("Lookups that found a cached value")
+            .register(registry);
+        FunctionCounter.builder("cache.gets", misses, LongAdder::doubleValue)
+            .tags("cache", cache, "result", "miss")
+            .description("Lookups that found no cached value")
+            .register(registry);
+        Gauge.builder("cache.size", size).tags("cache", cache).description("Entries in the cache").register(registry);
+    }
+}
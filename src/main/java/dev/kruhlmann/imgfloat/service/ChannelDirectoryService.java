@@ -45,11 +45,11 @@ import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.DataAccessException;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
@@ -67,6 +67,8 @@ public class ChannelDirectoryService {
         AssetType.MODEL,
         AssetType.OTHER
     );
+    private static final long PREVIEW_BASELINE_TTL_NANOS = 2_000_000_000L;
+    private static final int MAX_PREVIEW_BASELINES = 1024;
 
     private final ChannelRepository channelRepository;
     private final AssetRepository assetRepository;
@@ -76,7 +78,7 @@ public class ChannelDirectoryService {
     private final ScriptAssetAttachmentRepository scriptAssetAttachmentRepository;
     private final ScriptAssetFileRepository scriptAssetFileRepository;
     private final MarketplaceScriptHeartRepository marketplaceScriptHeartRepository;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final ChannelEventBus channelEventBus;
     private final AssetStorageService assetStorageService;
     private final MediaDetectionService mediaDetectionService;
     private final MediaOptimizationService mediaOptimizationService;
@@ -84,6 +86,10 @@ public class ChannelDirectoryService {
     private final long uploadLimitBytes;
     private final MarketplaceScriptSeedLoader marketplaceScriptSeedLoader;
     private final AuditLogService auditLogService;
+    private final DisplayOrderService displayOrderService;
+    private final TransformPreviewCoalescer transformPreviewCoalescer;
+    private final PreviewAuthorizationCache previewAuthorizationCache;
+    private final Map<String, PreviewBaseline> previewBaselines = new ConcurrentHashMap<>();
 
     public ChannelDirectoryService(
         ChannelRepository channelRepository,
@@ -94,14 +100,17 @@ public class ChannelDirectoryService {
         ScriptAssetAttachmentRepository scriptAssetAttachmentRepository,
         ScriptAssetFileRepository scriptAssetFileRepository,
         MarketplaceScriptHeartRepository marketplaceScriptHeartRepository,
-        SimpMessagingTemplate messagingTemplate,
+        ChannelEventBus channelEventBus,
         AssetStorageService assetStorageService,
         MediaDetectionService mediaDetectionService,
         MediaOptimizationService mediaOptimizationService,
         SettingsService settingsService,
         long uploadLimitBytes,
         MarketplaceScriptSeedLoader marketplaceScriptSeedLoader,
-        AuditLogService auditLogService
+        AuditLogService auditLogService,
+        DisplayOrderService displayOrderService,
+        TransformPreviewCoalescer transformPreviewCoalescer,
+        PreviewAuthorizationCache previewAuthorizationCache
     ) {
         this.channelRepository = channelRepository;
         this.assetRepository = assetRepository;
@@ -111,7 +120,7 @@ public class ChannelDirectoryService {
         this.scriptAssetAttachmentRepository = scriptAssetAttachmentRepository;
         this.scriptAssetFileRepository = scriptAssetFileRepository;
         this.marketplaceScriptHeartRepository = marketplaceScriptHeartRepository;
-        this.messagingTemplate = messagingTemplate;
+        this.channelEventBus = channelEventBus;
         this.assetStorageService = assetStorageService;
         this.mediaDetectionService = mediaDetectionService;
         this.mediaOptimizationService = mediaOptimizationService;
@@ -119,6 +128,9 @@ public class ChannelDirectoryService {
         this.uploadLimitBytes = uploadLimitBytes;
         this.marketplaceScriptSeedLoader = marketplaceScriptSeedLoader;
         this.auditLogService = auditLogService;
+        this.displayOrderService = displayOrderService;
+        this.transformPreviewCoalescer = transformPreviewCoalescer;
+        this.previewAuthorizationCache = previewAuthorizationCache;
     }
 
     public Channel getOrCreateChannel(String broadcaster) {
@@ -141,7 +153,7 @@ public class ChannelDirectoryService {
         boolean added = channel.addAdmin(normalizedUsername);
         if (added) {
             channelRepository.saveAndFlush(channel);
-            messagingTemplate.convertAndSend(topicFor(broadcaster), "Admin added: " + username);
+            channelEventBus.publish(broadcaster, "Admin added: " + username);
             auditLogService.recordEntry(
                 channel.getBroadcaster(),
                 actor,
@@ -158,7 +170,8 @@ public class ChannelDirectoryService {
         boolean removed = channel.removeAdmin(normalizedUsername);
         if (removed) {
             channelRepository.saveAndFlush(channel);
-            messagingTemplate.convertAndSend(topicFor(broadcaster), "Admin removed: " + username);
+            previewAuthorizationCache.evictAfterCommit(channel.getBroadcaster(), normalizedUsername);
+            channelEventBus.publish(broadcaster, "Admin removed: " + username);
             auditLogService.recordEntry(
                 channel.getBroadcaster(),
                 actor,
@@ -242,6 +255,7 @@ public class ChannelDirectoryService {
             AudioAsset audio = new AudioAsset(asset.getId(), safeName);
             audio.setMediaType(optimized.mediaType());
             audio.setOriginalMediaType(mediaType);
+            audio.setDurationMillis(mediaOptimizationService.probeAudioDurationMillis(optimized.bytes()).orElse(null));
             audioAssetRepository.save(audio);
             view = AssetView.fromAudio(channel.getBroadcaster(), asset, audio);
         } else if (isCode) {
@@ -273,7 +287,7 @@ public class ChannelDirectoryService {
             view = AssetView.fromVisual(channel.getBroadcaster(), asset, visual);
         }
 
-        messagingTemplate.convertAndSend(topicFor(broadcaster), AssetEvent.created(broadcaster, view));
+        channelEventBus.publish(broadcaster, AssetEvent.created(broadcaster, view));
         auditLogService.recordEntry(
             channel.getBroadcaster(),
             actor,
@@ -322,7 +336,7 @@ public class ChannelDirectoryService {
         script.setAttachments(List.of());
         scriptAssetRepository.save(script);
         AssetView view = AssetView.fromScript(channel.getBroadcaster(), asset, script);
-        messagingTemplate.convertAndSend(topicFor(broadcaster), AssetEvent.created(broadcaster, view));
+        channelEventBus.publish(broadcaster, AssetEvent.created(broadcaster, view));
         auditLogService.recordEntry(
             channel.getBroadcaster(),
             actor,
@@ -389,7 +403,7 @@ public class ChannelDirectoryService {
                 assetRepository.save(asset);
                 scriptAssetRepository.save(script);
                 AssetView view = AssetView.fromScript(normalized, asset, script);
-                messagingTemplate.convertAndSend(topicFor(broadcaster), AssetEvent.updated(broadcaster, view));
+                channelEventBus.publish(broadcaster, AssetEvent.updated(broadcaster, view));
                 auditLogService.recordEntry(
                     asset.getBroadcaster(),
                     actor,
@@ -441,7 +455,7 @@ public class ChannelDirectoryService {
         removeScriptAssetFileIfOrphaned(previousLogoFileId);
 
         AssetView view = AssetView.fromScript(asset.getBroadcaster(), asset, script);
-        messagingTemplate.convertAndSend(topicFor(broadcaster), AssetEvent.updated(broadcaster, view));
+        channelEventBus.publish(broadcaster, AssetEvent.updated(broadcaster, view));
         auditLogService.recordEntry(
             asset.getBroadcaster(),
             actor,
@@ -466,7 +480,7 @@ public class ChannelDirectoryService {
         scriptAssetRepository.save(script);
         removeScriptAssetFileIfOrphaned(previousLogoFileId);
         AssetView view = AssetView.fromScript(asset.getBroadcaster(), asset, script);
-        messagingTemplate.convertAndSend(topicFor(broadcaster), AssetEvent.updated(broadcaster, view));
+        channelEventBus.publish(broadcaster, AssetEvent.updated(broadcaster, view));
         auditLogService.recordEntry(
             asset.getBroadcaster(),
             actor,
@@ -547,7 +561,7 @@ public class ChannelDirectoryService {
             }
             script.setAttachments(loadScriptAttachments(asset.getBroadcaster(), asset.getId(), null));
             AssetView view = AssetView.fromScript(asset.getBroadcaster(), asset, script);
-            messagingTemplate.convertAndSend(topicFor(targetBroadcaster), AssetEvent.created(targetBroadcaster, view));
+            channelEventBus.publish(targetBroadcaster, AssetEvent.created(targetBroadcaster, view));
             imported = Optional.of(view);
         }
         imported.ifPresent((view) ->
@@ -629,7 +643,7 @@ public class ChannelDirectoryService {
         script.setAttachments(loadScriptAttachments(asset.getBroadcaster(), asset.getId(), null));
         scriptAssetRepository.save(script);
         AssetView view = AssetView.fromScript(asset.getBroadcaster(), asset, script);
-        messagingTemplate.convertAndSend(topicFor(targetBroadcaster), AssetEvent.created(targetBroadcaster, view));
+        channelEventBus.publish(targetBroadcaster, AssetEvent.created(targetBroadcaster, view));
         return Optional.of(view);
     }
 
@@ -710,7 +724,7 @@ public class ChannelDirectoryService {
                     AssetView view = AssetView.fromAudio(normalized, asset, audio);
                     AssetPatch patch = AssetPatch.fromAudioTransform(before, audio, req);
                     if (hasPatchChanges(patch)) {
-                        messagingTemplate.convertAndSend(topicFor(broadcaster), AssetEvent.updated(broadcaster, patch));
+                        channelEventBus.publish(broadcaster, AssetEvent.updated(broadcaster, patch));
                         auditLogService.recordEntry(
                             asset.getBroadcaster(),
                             actor,
@@ -725,29 +739,26 @@ public class ChannelDirectoryService {
                     ScriptAsset script = scriptAssetRepository
                         .findById(asset.getId())
                         .orElseThrow(() -> new ResponseStatusException(BAD_REQUEST, "Asset is not a script"));
-                    Integer beforeOrder = asset.getDisplayOrder();
-                    List<Asset> orderUpdates;
                     if (req.getOrder() != null) {
                         if (req.getOrder() < 1) {
                             throw new ResponseStatusException(BAD_REQUEST, "Order must be >= 1");
                         }
-                        orderUpdates = updateDisplayOrder(
+                        DisplayOrderService.Move move = displayOrderService.move(
                             normalized,
                             asset,
                             req.getOrder(),
                             EnumSet.of(AssetType.SCRIPT)
                         );
-                        if (!Objects.equals(beforeOrder, asset.getDisplayOrder())) {
-                            AssetPatch patch = AssetPatch.forOrder(asset.getId(), asset.getDisplayOrder());
-                            messagingTemplate.convertAndSend(topicFor(broadcaster), AssetEvent.updated(broadcaster, patch));
+                        if (move.changed()) {
+                            AssetPatch patch = AssetPatch.forOrder(asset.getId(), move.rank());
+                            channelEventBus.publish(broadcaster, AssetEvent.updated(broadcaster, patch));
                             auditLogService.recordEntry(
                                 asset.getBroadcaster(),
                                 actor,
                                 "SCRIPT_ORDER_UPDATED",
-                                formatScriptTransformDetails(asset.getId(), asset.getDisplayOrder())
+                                formatScriptTransformDetails(asset.getId(), move.rank())
                             );
                         }
-                        publishOrderUpdates(broadcaster, asset.getId(), orderUpdates);
                     }
                     script.setAttachments(loadScriptAttachments(normalized, asset.getId(), null));
                     return AssetView.fromScript(normalized, asset, script);
@@ -756,6 +767,10 @@ public class ChannelDirectoryService {
                 VisualAsset visual = visualAssetRepository
                     .findById(asset.getId())
                     .orElseThrow(() -> new ResponseStatusException(BAD_REQUEST, "Asset is not visual"));
+                validateVisualTransform(req);
+                DisplayOrderService.Move move = req.getOrder() == null
+                    ? null
+                    : displayOrderService.move(normalized, asset, req.getOrder(), VISUAL_ASSET_TYPES);
                 AssetPatch.VisualSnapshot before = new AssetPatch.VisualSnapshot(
                     visual.getX(),
                     visual.getY(),
@@ -764,38 +779,29 @@ public class ChannelDirectoryService {
                     visual.getRotation(),
                     visual.getSpeed(),
                     visual.isMuted(),
-                    displayOrderValue(asset),
+                    move == null ? displayOrderValue(asset) : move.previousRank(),
                     visual.getAudioVolume()
                 );
-                validateVisualTransform(req);
-                List<Asset> orderUpdates = List.of();
 
                 if (req.getX() != null) visual.setX(req.getX());
                 if (req.getY() != null) visual.setY(req.getY());
                 if (req.getWidth() != null) visual.setWidth(req.getWidth());
                 if (req.getHeight() != null) visual.setHeight(req.getHeight());
                 if (req.getRotation() != null) visual.setRotation(req.getRotation());
-                if (req.getOrder() != null) {
-                    orderUpdates = updateDisplayOrder(
-                        normalized,
-                        asset,
-                        req.getOrder(),
-                        EnumSet.of(AssetType.IMAGE, AssetType.VIDEO, AssetType.MODEL, AssetType.OTHER)
-                    );
-                    if (asset.getDisplayOrder() != null) {
-                        req.setOrder(asset.getDisplayOrder());
-                    }
+                if (move != null) {
+                    req.setOrder(move.rank());
                 }
                 if (req.getSpeed() != null) visual.setSpeed(req.getSpeed());
                 if (req.getMuted() != null) visual.setMuted(req.getMuted());
                 if (req.getAudioVolume() != null) visual.setAudioVolume(req.getAudioVolume());
 
                 visualAssetRepository.save(visual);
+                evictPreview(normalized, asset.getId());
 
                 AssetView view = AssetView.fromVisual(normalized, asset, visual);
                 AssetPatch patch = AssetPatch.fromVisualTransform(before, visual, req);
                 if (hasPatchChanges(patch)) {
-                    messagingTemplate.convertAndSend(topicFor(broadcaster), AssetEvent.updated(broadcaster, patch));
+                    channelEventBus.publish(broadcaster, AssetEvent.updated(broadcaster, patch));
                     auditLogService.recordEntry(
                         asset.getBroadcaster(),
                         actor,
@@ -803,26 +809,18 @@ public class ChannelDirectoryService {
                         formatVisualTransformDetails(asset.getId(), req)
                     );
                 }
-            publishOrderUpdates(broadcaster, asset.getId(), orderUpdates);
             return view;
         });
     }
 
+    /**
+     * Builds the patch a live drag frame would apply. The stored transform is served from a short-lived baseline
+     * cache so a drag does not hit the database on every frame; committed updates and deletions evict it.
+     */
     public Optional<AssetPatch> previewTransform(String broadcaster, String assetId, TransformRequest request) {
         String normalized = StringNormalizer.toLowerCaseRoot(broadcaster);
-
-        Asset asset = assetRepository
-            .findById(assetId)
-            .filter((stored) -> normalized.equals(stored.getBroadcaster()))
-            .orElseThrow(() -> new ResponseStatusException(BAD_REQUEST, "Asset not found"));
-
-        if (!VISUAL_ASSET_TYPES.contains(asset.getAssetType())) {
-            throw new ResponseStatusException(BAD_REQUEST, "Asset is not visual");
-        }
-
-        VisualAsset visual = visualAssetRepository
-            .findById(asset.getId())
-            .orElseThrow(() -> new ResponseStatusException(BAD_REQUEST, "Asset is not visual"));
+        PreviewBaseline baseline = previewBaseline(normalized, assetId);
+        VisualAsset visual = baseline.visual();
 
         TransformRequest previewRequest = copyVisualTransformRequest(request);
         validateVisualBounds(previewRequest);
@@ -835,7 +833,7 @@ public class ChannelDirectoryService {
             visual.getRotation(),
             visual.getSpeed(),
             visual.isMuted(),
-            displayOrderValue(asset),
+            baseline.order(),
             visual.getAudioVolume()
         );
 
@@ -867,6 +865,42 @@ public class ChannelDirectoryService {
         return hasPatchChanges(patch) ? Optional.of(patch) : Optional.empty();
     }
 
+    private PreviewBaseline previewBaseline(String broadcaster, String assetId) {
+        long now = System.nanoTime();
+        PreviewBaseline cached = previewBaselines.get(assetId);
+        if (cached != null && cached.broadcaster().equals(broadcaster) && !cached.isExpired(now)) {
+            return cached;
+        }
+
+        Asset asset = assetRepository
+            .findById(assetId)
+            .filter((stored) -> broadcaster.equals(stored.getBroadcaster()))
+            .orElseThrow(() -> new ResponseStatusException(BAD_REQUEST, "Asset not found"));
+
+        if (!VISUAL_ASSET_TYPES.contains(asset.getAssetType())) {
+            throw new ResponseStatusException(BAD_REQUEST, "Asset is not visual");
+        }
+
+        VisualAsset visual = visualAssetRepository
+            .findById(asset.getId())
+            .orElseThrow(() -> new ResponseStatusException(BAD_REQUEST, "Asset is not visual"));
+
+        if (previewBaselines.size() >= MAX_PREVIEW_BASELINES) {
+            previewBaselines.values().removeIf((baseline) -> baseline.isExpired(now));
+        }
+        PreviewBaseline loaded = new PreviewBaseline(broadcaster, visual.shallowCopy(), displayOrderValue(asset), now);
+        previewBaselines.put(assetId, loaded);
+        return loaded;
+    }
+
+    /**
+     * Forgets the cached preview baseline and any unpublished preview of an asset whose stored state changed.
+     */
+    private void evictPreview(String broadcaster, String assetId) {
+        previewBaselines.remove(assetId);
+        transformPreviewCoalescer.discard(broadcaster, assetId);
+    }
+
     @Transactional
     public void reorderAssets(
         String broadcaster,
@@ -877,47 +911,45 @@ public class ChannelDirectoryService {
             return;
         }
         String normalized = StringNormalizer.toLowerCaseRoot(broadcaster);
-        applyBulkOrderUpdates(
-            broadcaster,
-            normalized,
-            updates,
-            EnumSet.of(AssetType.SCRIPT),
-            actor,
-            true
-        );
-        applyBulkOrderUpdates(
+        List<Asset> assets = assetRepository.findByBroadcaster(normalized);
+        Map<String, Integer> changedRanks = new LinkedHashMap<>();
+        List<DisplayOrderService.LayerOrder> layers = new ArrayList<>();
+        List<Asset> scriptOrder = reorderLayer(assets, updates, EnumSet.of(AssetType.SCRIPT), changedRanks);
+        if (scriptOrder != null) {
+            layers.add(new DisplayOrderService.LayerOrder(EnumSet.of(AssetType.SCRIPT), scriptOrder));
+        }
+        List<Asset> visualOrder = reorderLayer(assets, updates, VISUAL_ASSET_TYPES, changedRanks);
+        if (visualOrder != null) {
+            layers.add(new DisplayOrderService.LayerOrder(VISUAL_ASSET_TYPES, visualOrder));
+        }
+        if (layers.isEmpty()) {
+            return;
+        }
+        displayOrderService.applyOrders(normalized, layers);
+        channelEventBus.publish(
             broadcaster,
-            normalized,
-            updates,
-            EnumSet.of(AssetType.IMAGE, AssetType.VIDEO, AssetType.MODEL, AssetType.OTHER),
-            actor,
-            false
+            AssetEvent.order(
+                broadcaster,
+                visualOrder == null ? null : visualOrder.stream().map(Asset::getId).toList(),
+                scriptOrder == null ? null : scriptOrder.stream().map(Asset::getId).toList()
+            )
         );
+        auditLogService.recordEntry(normalized, actor, "ASSETS_REORDERED", formatReorderDetails(changedRanks));
     }
 
-    private void applyBulkOrderUpdates(
-        String broadcaster,
-        String normalized,
+    /**
+     * Applies the requested ranks to one layer and returns its new order, top first, or {@code null} when no asset
+     * of the layer changes rank. Every asset whose rank changes is added to {@code changedRanks}.
+     */
+    private List<Asset> reorderLayer(
+        List<Asset> assets,
         List<AssetOrderRequest.AssetOrderUpdate> updates,
-        EnumSet<AssetType> types,
-        String actor,
-        boolean script
+        Set<AssetType> types,
+        Map<String, Integer> changedRanks
     ) {
-        if (updates == null || updates.isEmpty()) {
-            return;
-        }
-        List<Asset> bucket = assetRepository
-            .findByBroadcaster(normalized)
-            .stream()
-            .filter((asset) -> types.contains(asset.getAssetType()))
-            .sorted(
-                Comparator.comparingInt(this::displayOrderValue)
-                    .reversed()
-                    .thenComparing(Asset::getCreatedAt, Comparator.nullsFirst(Comparator.naturalOrder()))
-            )
-            .toList();
+        List<Asset> bucket = displayOrderService.sortLayer(assets, types);
         if (bucket.isEmpty()) {
-            return;
+            return null;
         }
         Map<String, Integer> desiredOrder = new HashMap<>();
         Set<String> bucketIds = bucket.stream().map(Asset::getId).collect(Collectors.toSet());
@@ -939,7 +971,7 @@ public class ChannelDirectoryService {
             desiredOrder.put(assetId, order);
         }
         if (desiredOrder.isEmpty()) {
-            return;
+            return null;
         }
         Map<String, Integer> originalIndex = new HashMap<>();
         for (int index = 0; index < bucket.size(); index++) {
@@ -955,39 +987,15 @@ public class ChannelDirectoryService {
             }
             return Integer.compare(originalIndex.getOrDefault(a.getId(), Integer.MAX_VALUE), originalIndex.getOrDefault(b.getId(), Integer.MAX_VALUE));
         });
-        List<Asset> changed = new ArrayList<>();
+        boolean changed = false;
         for (int index = 0; index < ordered.size(); index++) {
             Asset asset = ordered.get(index);
-            int nextOrder = ordered.size() - index;
-            if (asset.getDisplayOrder() == null || asset.getDisplayOrder() != nextOrder) {
-                asset.setDisplayOrder(nextOrder);
-                changed.add(asset);
-            }
-        }
-        if (changed.isEmpty()) {
-            return;
-        }
-        assetRepository.saveAll(changed);
-        publishOrderUpdates(broadcaster, null, changed);
-        for (Asset asset : changed) {
-            if (script) {
-                auditLogService.recordEntry(
-                    asset.getBroadcaster(),
-                    actor,
-                    "SCRIPT_ORDER_UPDATED",
-                    formatScriptTransformDetails(asset.getId(), asset.getDisplayOrder())
-                );
-            } else {
-                TransformRequest logDetails = new TransformRequest();
-                logDetails.setOrder(asset.getDisplayOrder());
-                auditLogService.recordEntry(
-                    asset.getBroadcaster(),
-                    actor,
-                    "VISUAL_UPDATED",
-                    formatVisualTransformDetails(asset.getId(), logDetails)
-                );
+            if (originalIndex.get(asset.getId()) != index) {
+                changedRanks.put(asset.getId(), ordered.size() - index);
+                changed = true;
             }
         }
+        return changed ? ordered : null;
     }
 
     private void validateVisualTransform(TransformRequest req) {
@@ -1092,7 +1100,7 @@ public class ChannelDirectoryService {
                     throw new ResponseStatusException(BAD_REQUEST, "Asset data missing");
                 }
                 boolean play = req == null || req.getPlay();
-                messagingTemplate.convertAndSend(topicFor(broadcaster), AssetEvent.play(broadcaster, view, play));
+                channelEventBus.publish(broadcaster, AssetEvent.play(broadcaster, view, play));
                 auditLogService.recordEntry(
                     asset.getBroadcaster(),
                     actor,
@@ -1128,8 +1136,8 @@ public class ChannelDirectoryService {
                     AssetView view = AssetView.fromAudio(normalized, asset, audio);
                     AssetPatch patch = AssetPatch.fromVisibility(asset.getId(), hidden);
                     AssetView payload = hidden ? null : view;
-                    messagingTemplate.convertAndSend(
-                        topicFor(broadcaster),
+                    channelEventBus.publish(
+                        broadcaster,
                         AssetEvent.visibility(broadcaster, patch, payload)
                     );
                     auditLogService.recordEntry(
@@ -1157,11 +1165,12 @@ public class ChannelDirectoryService {
                 }
                 visual.setHidden(hidden);
                 visualAssetRepository.save(visual);
+                evictPreview(normalized, asset.getId());
                 AssetView view = AssetView.fromVisual(normalized, asset, visual);
                 AssetPatch patch = AssetPatch.fromVisibility(asset.getId(), hidden);
                 AssetView payload = hidden ? null : view;
-                messagingTemplate.convertAndSend(
-                    topicFor(broadcaster),
+                channelEventBus.publish(
+                    broadcaster,
                     AssetEvent.visibility(broadcaster, patch, payload)
                 );
                 auditLogService.recordEntry(
@@ -1201,10 +1210,11 @@ public class ChannelDirectoryService {
                         case SCRIPT -> scriptAssetRepository.deleteById(asset.getId());
                         default -> visualAssetRepository.deleteById(asset.getId());
                     }
+                    evictPreview(asset.getBroadcaster(), asset.getId());
                     assetRepository.delete(asset);
                 }
-                messagingTemplate.convertAndSend(
-                    topicFor(asset.getBroadcaster()),
+                channelEventBus.publish(
+                    asset.getBroadcaster(),
                     AssetEvent.deleted(asset.getBroadcaster(), assetId)
                 );
                 auditLogService.recordEntry(
@@ -1290,7 +1300,7 @@ public class ChannelDirectoryService {
             .orElseThrow(() -> new ResponseStatusException(BAD_REQUEST, "Asset is not a script"));
         script.setAttachments(loadScriptAttachments(asset.getBroadcaster(), asset.getId(), null));
         AssetView scriptView = AssetView.fromScript(asset.getBroadcaster(), asset, script);
-        messagingTemplate.convertAndSend(topicFor(broadcaster), AssetEvent.updated(broadcaster, scriptView));
+        channelEventBus.publish(broadcaster, AssetEvent.updated(broadcaster, scriptView));
         auditLogService.recordEntry(
             asset.getBroadcaster(),
             actor,
@@ -1326,7 +1336,7 @@ public class ChannelDirectoryService {
             .orElseThrow(() -> new ResponseStatusException(BAD_REQUEST, "Asset is not a script"));
         script.setAttachments(loadScriptAttachments(asset.getBroadcaster(), asset.getId(), null));
         AssetView scriptView = AssetView.fromScript(asset.getBroadcaster(), asset, script);
-        messagingTemplate.convertAndSend(topicFor(broadcaster), AssetEvent.updated(broadcaster, scriptView));
+        channelEventBus.publish(broadcaster, AssetEvent.updated(broadcaster, scriptView));
         auditLogService.recordEntry(
             asset.getBroadcaster(),
             actor,
@@ -1461,10 +1471,6 @@ public class ChannelDirectoryService {
         }
     }
 
-    private String topicFor(String broadcaster) {
-        return "/topic/channel/" + StringNormalizer.toLowerCaseRoot(broadcaster);
-    }
-
     private List<AssetView> sortAndMapAssets(String broadcaster, Collection<Asset> assets) {
         List<String> audioIds = assets
             .stream()
@@ -1528,18 +1534,7 @@ public class ChannelDirectoryService {
     }
 
     private int nextDisplayOrder(String broadcaster, AssetType... types) {
-        return (
-            assetRepository
-                .findByBroadcaster(StringNormalizer.toLowerCaseRoot(broadcaster))
-                .stream()
-                .filter((asset) -> Arrays.asList(types).contains(asset.getAssetType()))
-                .map(Asset::getDisplayOrder)
-                .filter(Objects::nonNull)
-                .mapToInt(Integer::intValue)
-                .max()
-                .orElse(0) +
-            1
-        );
+        return displayOrderService.nextKey(broadcaster, EnumSet.copyOf(Arrays.asList(types)));
     }
 
     private int displayOrderValue(Asset asset) {
@@ -1549,8 +1544,8 @@ public class ChannelDirectoryService {
 
     /**
      * Resolves the effective sort key for an asset during a bulk reorder operation.
-     * Assets with an explicit desired order use that value; others fall back to their
-     * current display order, or their inverse original-index position as a last resort.
+     * Assets with an explicit desired order use that value; others keep their current
+     * rank within the layer, derived from their original position.
      */
     private int resolveOrderForSort(
         Asset asset,
@@ -1562,62 +1557,9 @@ public class ChannelDirectoryService {
         if (desiredOrder.containsKey(id)) {
             return desiredOrder.get(id);
         }
-        if (asset.getDisplayOrder() != null) {
-            return asset.getDisplayOrder();
-        }
         return bucketSize - originalIndex.getOrDefault(id, bucketSize);
     }
 
-    private List<Asset> updateDisplayOrder(String broadcaster, Asset target, int desiredOrder, Set<AssetType> types) {
-        if (target == null || types == null || types.isEmpty()) {
-            return List.of();
-        }
-        List<Asset> ordered = assetRepository
-            .findByBroadcaster(StringNormalizer.toLowerCaseRoot(broadcaster))
-            .stream()
-            .filter((asset) -> types.contains(asset.getAssetType()))
-            .sorted(
-                Comparator.comparingInt(this::displayOrderValue)
-                    .reversed()
-                    .thenComparing(Asset::getCreatedAt, Comparator.nullsFirst(Comparator.naturalOrder()))
-            )
-            .collect(Collectors.toCollection(ArrayList::new));
-
-        ordered.removeIf((asset) -> asset.getId().equals(target.getId()));
-        int insertIndex = Math.max(0, Math.min(ordered.size(), ordered.size() - desiredOrder));
-        ordered.add(insertIndex, target);
-
-        int size = ordered.size();
-        List<Asset> changed = new ArrayList<>();
-        for (int index = 0; index < size; index++) {
-            Asset asset = ordered.get(index);
-            int nextOrder = size - index;
-            if (asset.getDisplayOrder() == null || asset.getDisplayOrder() != nextOrder) {
-                asset.setDisplayOrder(nextOrder);
-                changed.add(asset);
-            }
-        }
-
-        if (!changed.isEmpty()) {
-            assetRepository.saveAll(changed);
-        }
-        return changed;
-    }
-
-    private void publishOrderUpdates(String broadcaster, String targetAssetId, List<Asset> updates) {
-        if (updates == null || updates.isEmpty()) {
-            return;
-        }
-        updates
-            .stream()
-            .filter((asset) -> asset.getDisplayOrder() != null)
-            .filter((asset) -> !asset.getId().equals(targetAssetId))
-            .forEach((asset) -> {
-                AssetPatch patch = AssetPatch.forOrder(asset.getId(), asset.getDisplayOrder());
-                messagingTemplate.convertAndSend(topicFor(broadcaster), AssetEvent.updated(broadcaster, patch));
-            });
-    }
-
     private AssetView resolveAssetView(String broadcaster, Asset asset) {
         return resolveAssetView(broadcaster, asset, null, null, null, null);
     }
@@ -1834,6 +1776,13 @@ public class ChannelDirectoryService {
         return detail;
     }
 
+    private String formatReorderDetails(Map<String, Integer> changedRanks) {
+        return formatTransformDetails(
+            "Reordered " + changedRanks.size() + " assets",
+            changedRanks.entrySet().stream().map((entry) -> entry.getKey() + "=" + entry.getValue()).toList()
+        );
+    }
+
     private String formatTransformDetails(String summary, List<String> parts) {
         if (parts == null || parts.isEmpty()) {
             return summary;
@@ -1859,4 +1808,10 @@ public class ChannelDirectoryService {
             patch.audioVolume() != null
         );
     }
+
+    private record PreviewBaseline(String broadcaster, VisualAsset visual, int order, long loadedAtNanos) {
+        boolean isExpired(long now) {
+            return now - loadedAtNanos >= PREVIEW_BASELINE_TTL_NANOS;
+        }
+    }
 }
@@ -0,0 +1,175 @@
+package dev.kruhlmann.imgfloat.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Emotes of one provider by normalized channel login, holding at most a fixed number of channels and evicting the
+ * least recently requested one. An entry past its time to live is still served while a single background load
+ * replaces it. Entries without emotes, which includes channels that do not exist, live for a shorter time so that
+ * unknown channels do not reach the provider on every request. A request for a channel that is not cached waits
+ * for its load only up to a short deadline and gets nothing otherwise; the load carries on and fills the cache.
+ * <p>
+ * When the provider cannot be reached, a cached entry is kept and not retried until the shorter time has passed.
+ */
+public final class ChannelEmoteCache<T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ChannelEmoteCache.class);
+
+    private final String provider;
+    private final Function<String, Optional<T>> loader;
+    private final Predicate<T> isEmpty;
+    private final Executor loadExecutor;
+    private final Duration ttl;
+    private final Duration emptyTtl;
+    private final Duration missDeadline;
+    private final Map<String, Entry<T>> entries;
+    private final Map<String, CompletableFuture<Optional<T>>> loading = new ConcurrentHashMap<>();
+    private final CacheMetrics metrics = new CacheMetrics();
+
+    /**
+     * @param loader loads a channel's emotes, or nothing when the provider cannot be reached
+     * @param isEmpty whether loaded emotes count as empty, and so are kept for {@code emptyTtl} only
+     */
+    public ChannelEmoteCache(
+        String provider,
+        Function<String, Optional<T>> loader,
+        Predicate<T> isEmpty,
+        Executor loadExecutor,
+        int maxChannels,
+        Duration ttl,
+        Duration emptyTtl,
+        Duration missDeadline
+    ) {
+        this.provider = provider;
+        this.loader = loader;
+        this.isEmpty = isEmpty;
+        this.loadExecutor = loadExecutor;
+        this.ttl = ttl;
+        this.emptyTtl = emptyTtl;
+        this.missDeadline = missDeadline;
+        int capacity = Math.max(maxChannels, 1);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<T>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the channel's emotes, starting a background load when they are missing or expired. Nothing is
+     * returned when the channel is not cached and its load does not finish within the deadline.
+     */
+    public Optional<T> get(String key) {
+        Entry<T> entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry != null) {
+            metrics.hit();
+            if (!entry.expiresAt().isAfter(Instant.now())) {
+                load(key);
+            }
+            return Optional.of(entry.value());
+        }
+        metrics.miss();
+        try {
+            return load(key).get(missDeadline.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            LOG.debug("{} emotes for {} are still loading", provider, key);
+            return Optional.empty();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        } catch (ExecutionException ex) {
+            return Optional.empty();
+        }
+    }
+
+    public void put(String key, T value) {
+        Duration lifetime = isEmpty.test(value) ? emptyTtl : ttl;
+        synchronized (this) {
+            entries.put(key, new Entry<>(value, Instant.now().plus(lifetime)));
+        }
+    }
+
+    /**
+     * Replaces the cached value of every channel, keeping when each expires.
+     */
+    public synchronized void replaceAll(UnaryOperator<T> update) {
+        entries.replaceAll((key, entry) -> new Entry<>(update.apply(entry.value()), entry.expiresAt()));
+    }
+
+    /**
+     * Replaces the channel's value if it is still {@code expected}, keeping when it expires.
+     */
+    public synchronized void replace(String key, T expected, T value) {
+        Entry<T> entry = entries.get(key);
+        if (entry != null && entry.value() == expected) {
+            entries.put(key, new Entry<>(value, entry.expiresAt()));
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Publishes the hits and misses of {@link #get(String)}. An expired entry that is served while it reloads counts
+     * as a hit.
+     */
+    public void bindTo(MeterRegistry registry, String cacheName) {
+        metrics.bindTo(registry, cacheName, this::size);
+    }
+
+    private CompletableFuture<Optional<T>> load(String key) {
+        CompletableFuture<Optional<T>> pending = new CompletableFuture<>();
+        CompletableFuture<Optional<T>> running = loading.putIfAbsent(key, pending);
+        if (running != null) {
+            return running;
+        }
+        try {
+            loadExecutor.execute(() -> {
+                Optional<T> loaded = Optional.empty();
+                try {
+                    loaded = loader.apply(key);
+                } catch (RuntimeException ex) {
+                    LOG.warn("Unable to load {} emotes for {}", provider, key, ex);
+                }
+                loaded.ifPresentOrElse((value) -> put(key, value), () -> backOff(key));
+                loading.remove(key, pending);
+                pending.complete(loaded);
+            });
+        } catch (RejectedExecutionException ex) {
+            loading.remove(key, pending);
+            pending.complete(Optional.empty());
+        }
+        return pending;
+    }
+
+    private synchronized void backOff(String key) {
+        Entry<T> entry = entries.get(key);
+        if (entry != null) {
+            entries.put(key, new Entry<>(entry.value(), Instant.now().plus(emptyTtl)));
+        }
+    }
+
+    private record Entry<T>(T value, Instant expiresAt) {}
+}
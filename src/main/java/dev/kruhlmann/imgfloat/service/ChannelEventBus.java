@@ -0,0 +1,21 @@
+package dev.kruhlmann.imgfloat.service;
+
+/**
+ * Delivers channel events to every overlay and dashboard subscribed to {@code /topic/channel/{broadcaster}}, no
+ * matter which imgfloat node the subscriber is connected to. Events of one channel are delivered in the order they
+ * were published.
+ */
+public interface ChannelEventBus {
+    String CHANNEL_TOPIC_PREFIX = "/topic/channel/";
+
+    /**
+     * Publishes {@code event} to the channel. The event is numbered and kept for overlays that reconnect.
+     */
+    void publish(String broadcaster, Object event);
+
+    /**
+     * Publishes an event that is superseded by the next regular event, such as a live preview. Transient events are
+     * neither numbered nor replayed.
+     */
+    void publishTransient(String broadcaster, Object event);
+}
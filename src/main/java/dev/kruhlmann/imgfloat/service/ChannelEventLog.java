@@ -0,0 +1,196 @@
+package dev.kruhlmann.imgfloat.service;
+
+import dev.kruhlmann.imgfloat.util.StringNormalizer;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Numbers the events published to each channel topic and keeps the most recent ones so a reconnecting overlay can
+ * catch up on what it missed instead of reloading everything. Sequence numbers restart with the process, so every
+ * replay is tied to the {@link #getEpoch() epoch} the numbers were issued in.
+ * <p>
+ * Channels that publish nothing for a while are dropped. A channel that publishes again continues above every
+ * number issued before it was dropped, since overlays ignore events numbered at or below the last one they saw.
+ */
+@Service
+public class ChannelEventLog {
+
+    /** Message header marking an event that is delivered without a sequence number and never replayed. */
+    public static final String TRANSIENT_HEADER = "imgfloatTransient";
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final int capacity;
+    private final long idleNanos;
+    private final LongSupplier nanoClock;
+    private final Map<String, ChannelBuffer> channels = new ConcurrentHashMap<>();
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong droppedFloor = new AtomicLong();
+    private final AtomicLong nextSweep;
+
+    @Autowired
+    public ChannelEventLog(
+        @Value("${IMGFLOAT_EVENT_REPLAY_SIZE:256}") int capacity,
+        @Value("${IMGFLOAT_EVENT_REPLAY_IDLE_MINUTES:60}") long idleMinutes
+    ) {
+        this(capacity, Duration.ofMinutes(Math.max(idleMinutes, 1)), System::nanoTime);
+    }
+
+    ChannelEventLog(int capacity, Duration idle, LongSupplier nanoClock) {
+        this.capacity = Math.max(capacity, 1);
+        this.idleNanos = idle.toNanos();
+        this.nanoClock = nanoClock;
+        this.nextSweep = new AtomicLong(nanoClock.getAsLong() + idleNanos);
+    }
+
+    public String getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Locks the channel so the next event is numbered and delivered before any other event of the same channel.
+     * Every call must be paired with {@link #release(String)} on the same thread.
+     */
+    public void acquire(String broadcaster) {
+        while (true) {
+            ChannelBuffer buffer = buffer(broadcaster);
+            buffer.lock.lock();
+            if (!buffer.dropped) {
+                return;
+            }
+            buffer.lock.unlock();
+        }
+    }
+
+    public void release(String broadcaster) {
+        ChannelBuffer buffer = channels.get(normalize(broadcaster));
+        if (buffer != null && buffer.lock.isHeldByCurrentThread()) {
+            buffer.lock.unlock();
+        }
+    }
+
+    /**
+     * Assigns the next sequence number of the channel to {@code body} and keeps it for replay.
+     */
+    public long append(String broadcaster, String body) {
+        long now = nanoClock.getAsLong();
+        long seq;
+        while (true) {
+            ChannelBuffer buffer = buffer(broadcaster);
+            synchronized (buffer) {
+                if (buffer.dropped) {
+                    continue;
+                }
+                seq = ++buffer.latest;
+                buffer.lastAppendAt = now;
+                buffer.events.addLast(new SequencedEvent(seq, body));
+                while (buffer.events.size() > capacity) {
+                    buffer.evictedThrough = buffer.events.removeFirst().seq();
+                }
+                break;
+            }
+        }
+        appended.incrementAndGet();
+        long sweepAt = nextSweep.get();
+        if (now - sweepAt >= 0 && nextSweep.compareAndSet(sweepAt, now + idleNanos / 4)) {
+            dropIdle(now);
+        }
+        return seq;
+    }
+
+    /**
+     * @return the number of channels with buffered events
+     */
+    int trackedChannels() {
+        return channels.size();
+    }
+
+    /**
+     * Returns the events published after {@code since}. The replay is incomplete when events after {@code since}
+     * have already been dropped or the numbers belong to an earlier epoch; the client then needs a full snapshot.
+     */
+    public Replay replay(String broadcaster, long since, String clientEpoch) {
+        ChannelBuffer buffer = channels.get(normalize(broadcaster));
+        if (buffer == null) {
+            return new Replay(epoch, 0, epoch.equals(clientEpoch) && since == 0, List.of());
+        }
+        synchronized (buffer) {
+            boolean complete = epoch.equals(clientEpoch) && since >= buffer.evictedThrough && since <= buffer.latest;
+            if (!complete) {
+                return new Replay(epoch, buffer.latest, false, List.of());
+            }
+            List<SequencedEvent> missed = new ArrayList<>();
+            for (SequencedEvent event : buffer.events) {
+                if (event.seq() > since) {
+                    missed.add(event);
+                }
+            }
+            return new Replay(epoch, buffer.latest, true, missed);
+        }
+    }
+
+    private ChannelBuffer buffer(String broadcaster) {
+        return channels.computeIfAbsent(
+            normalize(broadcaster),
+            (key) -> new ChannelBuffer(droppedFloor.get(), nanoClock.getAsLong())
+        );
+    }
+
+    /**
+     * Drops the buffers of channels that have not published for the idle period. Buffers locked by a publisher are
+     * in use and kept.
+     */
+    private void dropIdle(long now) {
+        channels.forEach((channel, buffer) -> {
+            if (!buffer.lock.tryLock()) {
+                return;
+            }
+            try {
+                synchronized (buffer) {
+                    if (now - buffer.lastAppendAt < idleNanos) {
+                        return;
+                    }
+                    buffer.dropped = true;
+                    // Every number issued so far is at most the number of events appended so far
+                    droppedFloor.accumulateAndGet(appended.get(), Math::max);
+                    channels.remove(channel, buffer);
+                }
+            } finally {
+                buffer.lock.unlock();
+            }
+        });
+    }
+
+    private static String normalize(String broadcaster) {
+        return StringNormalizer.toLowerCaseRoot(broadcaster);
+    }
+
+    public record SequencedEvent(long seq, String body) {}
+
+    public record Replay(String epoch, long latest, boolean complete, List<SequencedEvent> events) {}
+
+    private static final class ChannelBuffer {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ArrayDeque<SequencedEvent> events = new ArrayDeque<>();
+        private long latest;
+        private long evictedThrough;
+        private long lastAppendAt;
+        private boolean dropped;
+
+        private ChannelBuffer(long firstSeq, long createdAt) {
+            this.latest = firstSeq;
+            this.evictedThrough = firstSeq;
+            this.lastAppendAt = createdAt;
+        }
+    }
+}
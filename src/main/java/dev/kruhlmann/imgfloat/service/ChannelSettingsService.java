@@ -12,7 +12,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -27,18 +26,18 @@ public class ChannelSettingsService {
 
     private final ChannelRepository channelRepository;
     private final SettingsService settingsService;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final ChannelEventBus channelEventBus;
     private final AuditLogService auditLogService;
 
     public ChannelSettingsService(
         ChannelRepository channelRepository,
         SettingsService settingsService,
-        SimpMessagingTemplate messagingTemplate,
+        ChannelEventBus channelEventBus,
         AuditLogService auditLogService
     ) {
         this.channelRepository = channelRepository;
         this.settingsService = settingsService;
-        this.messagingTemplate = messagingTemplate;
+        this.channelEventBus = channelEventBus;
         this.auditLogService = auditLogService;
     }
 
@@ -70,7 +69,7 @@ public class ChannelSettingsService {
             channel.getCanvasHeight(),
             channel.getMaxVolumeDb()
         );
-        messagingTemplate.convertAndSend(topicFor(broadcaster), CanvasEvent.updated(broadcaster, response));
+        channelEventBus.publish(broadcaster, CanvasEvent.updated(broadcaster, response));
 
         boolean changed =
             beforeWidth != channel.getCanvasWidth() ||
@@ -195,8 +194,4 @@ public class ChannelSettingsService {
             .orElseGet(() -> channelRepository.save(new Channel(normalized)));
     }
 
-    private String topicFor(String broadcaster) {
-        return "/topic/channel/" + StringNormalizer.toLowerCaseRoot(broadcaster);
-    }
-
 }
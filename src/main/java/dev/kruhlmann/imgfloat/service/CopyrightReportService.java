@@ -14,7 +14,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
@@ -36,7 +35,7 @@ public class CopyrightReportService {
     private final ChannelRepository channelRepository;
     private final ChannelDirectoryService channelDirectoryService;
     private final AuditLogService auditLogService;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final ChannelEventBus channelEventBus;
 
     public CopyrightReportService(
         CopyrightReportRepository copyrightReportRepository,
@@ -44,14 +43,14 @@ public class CopyrightReportService {
         ChannelRepository channelRepository,
         ChannelDirectoryService channelDirectoryService,
         AuditLogService auditLogService,
-        SimpMessagingTemplate messagingTemplate
+        ChannelEventBus channelEventBus
     ) {
         this.copyrightReportRepository = copyrightReportRepository;
         this.assetRepository = assetRepository;
         this.channelRepository = channelRepository;
         this.channelDirectoryService = channelDirectoryService;
         this.auditLogService = auditLogService;
-        this.messagingTemplate = messagingTemplate;
+        this.channelEventBus = channelEventBus;
     }
 
     @Transactional
@@ -183,8 +182,8 @@ public class CopyrightReportService {
                 report.setStatus(CopyrightReportStatus.NOTIFIED);
                 report.setResolutionNotes(request.resolutionNotes());
                 report.setResolvedBy(reviewerUsername);
-                messagingTemplate.convertAndSend(
-                    "/topic/channel/" + broadcaster,
+                channelEventBus.publish(
+                    broadcaster,
                     Map.of(
                         "type", "COPYRIGHT_WARNING",
                         "reportId", reportId,
@@ -0,0 +1,296 @@
+package dev.kruhlmann.imgfloat.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.kruhlmann.imgfloat.model.AssetType;
+import dev.kruhlmann.imgfloat.model.db.imgfloat.Asset;
+import dev.kruhlmann.imgfloat.repository.AssetRepository;
+import dev.kruhlmann.imgfloat.util.StringNormalizer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Maintains the sparse display-order keys of asset layers. Keys are spaced {@link #GAP} apart so that moving an
+ * asset only rewrites that asset's key; a layer is renumbered only once the space between two neighbours runs out.
+ * Clients never see the keys themselves, only an asset's rank within its layer (1 = bottom).
+ */
+@Service
+public class DisplayOrderService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DisplayOrderService.class);
+
+    static final int GAP = 1024;
+    private static final int MIN_GAP = 8;
+    private static final Duration REBALANCE_DELAY = Duration.ofSeconds(30);
+
+    public static final Comparator<Asset> TOP_FIRST = Comparator
+        .comparingInt(DisplayOrderService::keyOf)
+        .reversed()
+        .thenComparing(Asset::getCreatedAt, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final AssetRepository assetRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskScheduler taskScheduler;
+    private final Set<Layer> pendingRebalances = ConcurrentHashMap.newKeySet();
+
+    public DisplayOrderService(
+        AssetRepository assetRepository,
+        ObjectMapper objectMapper,
+        PlatformTransactionManager transactionManager,
+        @Qualifier("displayOrderTaskScheduler") TaskScheduler taskScheduler
+    ) {
+        this.assetRepository = assetRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.taskScheduler = taskScheduler;
+    }
+
+    /**
+     * Returns the assets of the layer sorted from the top (highest key) to the bottom.
+     */
+    public List<Asset> loadLayer(String broadcaster, Set<AssetType> types) {
+        return sortLayer(assetRepository.findByBroadcaster(StringNormalizer.toLowerCaseRoot(broadcaster)), types);
+    }
+
+    /**
+     * Picks the assets of the layer out of {@code assets}, sorted from the top to the bottom.
+     */
+    public List<Asset> sortLayer(Collection<Asset> assets, Set<AssetType> types) {
+        return assets
+            .stream()
+            .filter((asset) -> types.contains(asset.getAssetType()))
+            .sorted(TOP_FIRST)
+            .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    /**
+     * Returns a key that places a new asset above every existing asset of the layer.
+     */
+    public int nextKey(String broadcaster, Set<AssetType> types) {
+        List<Asset> layer = loadLayer(broadcaster, types);
+        long top = layer.isEmpty() || layer.get(0).getDisplayOrder() == null ? 0 : layer.get(0).getDisplayOrder();
+        if (top + GAP > Integer.MAX_VALUE) {
+            write(renumber(layer));
+            top = keyOf(layer.get(0));
+        }
+        return (int) top + GAP;
+    }
+
+    /**
+     * Moves {@code target} to {@code desiredRank} within its layer. Only the target's key is written unless its new
+     * neighbours have no space left between them, in which case the layer is renumbered without changing any rank.
+     */
+    public Move move(String broadcaster, Asset target, int desiredRank, Set<AssetType> types) {
+        List<Asset> ordered = loadLayer(broadcaster, types);
+        int previousIndex = -1;
+        for (int index = 0; index < ordered.size(); index++) {
+            if (ordered.get(index).getId().equals(target.getId())) {
+                previousIndex = index;
+                break;
+            }
+        }
+        int previousRank = previousIndex < 0 ? 0 : ordered.size() - previousIndex;
+        ordered.removeIf((asset) -> asset.getId().equals(target.getId()));
+        int insertIndex = Math.max(0, Math.min(ordered.size(), ordered.size() - desiredRank));
+        ordered.add(insertIndex, target);
+        int rank = ordered.size() - insertIndex;
+        if (rank != previousRank) {
+            write(assignKeys(broadcaster, types, ordered, stableIndices(ordered, target.getId())));
+        }
+        return new Move(previousRank, rank);
+    }
+
+    /**
+     * Persists the new order of each layer in a single statement, rewriting the keys of as few assets as possible:
+     * the longest run of assets whose keys are already in order keeps its keys.
+     *
+     * @return the assets whose keys were written
+     */
+    public List<Asset> applyOrders(String broadcaster, List<LayerOrder> layers) {
+        Map<Asset, Integer> keys = new LinkedHashMap<>();
+        for (LayerOrder layer : layers) {
+            List<Asset> ordered = layer.ordered();
+            keys.putAll(assignKeys(broadcaster, layer.types(), ordered, stableIndices(ordered, null)));
+        }
+        write(keys);
+        return List.copyOf(keys.keySet());
+    }
+
+    /**
+     * Spreads the keys of the layer evenly again. Ranks are unchanged, so no client needs to be told.
+     */
+    public void rebalance(String broadcaster, Set<AssetType> types) {
+        Map<Asset, Integer> keys = renumber(loadLayer(broadcaster, types));
+        write(keys);
+        if (!keys.isEmpty()) {
+            LOG.info("Rebalanced display order of {} assets for {}", keys.size(), broadcaster);
+        }
+    }
+
+    /**
+     * Computes new keys for the assets outside {@code stable}, returning only the keys that differ from the stored
+     * ones. Nothing is written.
+     */
+    private Map<Asset, Integer> assignKeys(String broadcaster, Set<AssetType> types, List<Asset> ordered, Set<Integer> stable) {
+        int size = ordered.size();
+        int[] keys = new int[size];
+        boolean crowded = false;
+        int index = 0;
+        while (index < size) {
+            if (stable.contains(index)) {
+                keys[index] = ordered.get(index).getDisplayOrder();
+                index++;
+                continue;
+            }
+            int start = index;
+            while (index < size && !stable.contains(index)) {
+                index++;
+            }
+            int count = index - start;
+            long lower = index < size ? ordered.get(index).getDisplayOrder() : 0;
+            long upper = start > 0 ? keys[start - 1] : lower + (long) GAP * (count + 1);
+            long step = (upper - lower) / (count + 1);
+            if (step < 1 || upper > Integer.MAX_VALUE) {
+                return renumber(ordered);
+            }
+            crowded |= step < MIN_GAP;
+            for (int offset = 0; offset < count; offset++) {
+                keys[start + offset] = (int) (upper - step * (offset + 1));
+            }
+        }
+
+        Map<Asset, Integer> changed = new LinkedHashMap<>();
+        for (int position = 0; position < size; position++) {
+            Asset asset = ordered.get(position);
+            if (asset.getDisplayOrder() == null || asset.getDisplayOrder() != keys[position]) {
+                changed.put(asset, keys[position]);
+            }
+        }
+        if (crowded) {
+            scheduleRebalance(broadcaster, types);
+        }
+        return changed;
+    }
+
+    private Map<Asset, Integer> renumber(List<Asset> ordered) {
+        int size = ordered.size();
+        int gap = (int) Math.max(1, Math.min(GAP, Integer.MAX_VALUE / Math.max(size, 1)));
+        Map<Asset, Integer> changed = new LinkedHashMap<>();
+        for (int index = 0; index < size; index++) {
+            Asset asset = ordered.get(index);
+            int key = (size - index) * gap;
+            if (asset.getDisplayOrder() == null || asset.getDisplayOrder() != key) {
+                changed.put(asset, key);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Writes all keys with one UPDATE. The repository clears the persistence context afterwards, so the loaded
+     * entities are updated in memory only to keep callers' views consistent and are not flushed again.
+     */
+    private void write(Map<Asset, Integer> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> byId = new LinkedHashMap<>();
+        keys.forEach((asset, key) -> byId.put(asset.getId(), key));
+        try {
+            assetRepository.updateDisplayOrders(objectMapper.writeValueAsString(byId));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize display order keys", e);
+        }
+        keys.forEach(Asset::setDisplayOrder);
+    }
+
+    private void scheduleRebalance(String broadcaster, Set<AssetType> types) {
+        Layer layer = new Layer(StringNormalizer.toLowerCaseRoot(broadcaster), Set.copyOf(types));
+        if (!pendingRebalances.add(layer)) {
+            return;
+        }
+        taskScheduler.schedule(
+            () -> {
+                pendingRebalances.remove(layer);
+                try {
+                    transactionTemplate.executeWithoutResult((status) -> rebalance(layer.broadcaster(), layer.types()));
+                } catch (DataAccessException ex) {
+                    LOG.warn("Failed to rebalance display order for {}", layer.broadcaster(), ex);
+                }
+            },
+            Instant.now().plus(REBALANCE_DELAY)
+        );
+    }
+
+    /**
+     * Indices of the longest subsequence of {@code ordered} whose keys are strictly decreasing, i.e. the assets that
+     * can keep their keys. The asset with {@code excludedId} is never part of it.
+     */
+    private static Set<Integer> stableIndices(List<Asset> ordered, String excludedId) {
+        int size = ordered.size();
+        int[] tails = new int[size];
+        int[] previous = new int[size];
+        int length = 0;
+        for (int index = 0; index < size; index++) {
+            Asset asset = ordered.get(index);
+            Integer key = asset.getDisplayOrder();
+            if (key == null || asset.getId().equals(excludedId)) {
+                continue;
+            }
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (ordered.get(tails[mid]).getDisplayOrder() > key) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            previous[index] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = index;
+            if (low == length) {
+                length++;
+            }
+        }
+        Set<Integer> stable = new HashSet<>();
+        for (int index = length == 0 ? -1 : tails[length - 1]; index >= 0; index = previous[index]) {
+            stable.add(index);
+        }
+        return stable;
+    }
+
+    private static int keyOf(Asset asset) {
+        Integer value = asset == null ? null : asset.getDisplayOrder();
+        return value == null ? Integer.MIN_VALUE : value;
+    }
+
+    public record Move(int previousRank, int rank) {
+        public boolean changed() {
+            return previousRank != rank;
+        }
+    }
+
+    public record LayerOrder(Set<AssetType> types, List<Asset> ordered) {}
+
+    private record Layer(String broadcaster, Set<AssetType> types) {}
+}
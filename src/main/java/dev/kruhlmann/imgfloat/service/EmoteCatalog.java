@@ -0,0 +1,25 @@
+package dev.kruhlmann.imgfloat.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * An emote catalog response serialized once, with an {@code ETag} derived from its contents so that an overlay
+ * reloading an unchanged emote set gets a 304.
+ */
+public record EmoteCatalog(byte[] json, String etag) {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    static EmoteCatalog of(Object body) {
+        try {
+            byte[] json = OBJECT_MAPPER.writeValueAsBytes(body);
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+            return new EmoteCatalog(json, "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"");
+        } catch (JsonProcessingException | NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("Unable to serialize emote catalog", ex);
+        }
+    }
+}
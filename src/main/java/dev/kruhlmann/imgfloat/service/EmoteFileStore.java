@@ -0,0 +1,309 @@
+package dev.kruhlmann.imgfloat.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Emote image files of one provider, spread over 256 subdirectories of the cache root and indexed by an
+ * append-only manifest ({@code manifest.tsv}) so that looking up a cached emote never lists the directory. The
+ * manifest is read the first time an emote is looked up; each stored emote appends one line, and a later line for
+ * the same emote replaces the earlier one. The manifest is rewritten once its superseded lines outnumber the current
+ * ones by more than {@value #REWRITE_SLACK_LINES}, so that a small cache is not rewritten on every few stores.
+ * <p>
+ * A cache root written before the manifest existed holds all files directly in the root; those are moved into
+ * their subdirectories and indexed when the manifest is first read.
+ */
+public final class EmoteFileStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EmoteFileStore.class);
+    private static final String MANIFEST_NAME = "manifest.tsv";
+    private static final int REWRITE_SLACK_LINES = 1024;
+    private static final String MANIFEST_HEADER = "# id\tpath\tmediaType\tsize\tfetchedAtMillis\tetag\tlastModified";
+    private static final Pattern EMOTE_ID = Pattern.compile("[A-Za-z0-9_-]+");
+
+    private final Path root;
+    private final Path manifest;
+    private final Function<String, String> mediaTypeForFileName;
+    private volatile Map<String, StoredEmote> entries;
+    private int manifestLines;
+
+    /**
+     * @param mediaTypeForFileName media type of a file moved over from a cache root without a manifest, by name
+     */
+    public EmoteFileStore(Path root, Function<String, String> mediaTypeForFileName) {
+        this.root = root;
+        this.manifest = root.resolve(MANIFEST_NAME);
+        this.mediaTypeForFileName = mediaTypeForFileName;
+    }
+
+    public Optional<StoredEmote> find(String id) {
+        if (id == null || !EMOTE_ID.matcher(id).matches()) {
+            return Optional.empty();
+        }
+        StoredEmote stored = entries().get(id);
+        if (stored == null) {
+            return Optional.empty();
+        }
+        if (!Files.isRegularFile(stored.path())) {
+            entries().remove(id, stored);
+            return Optional.empty();
+        }
+        return Optional.of(stored);
+    }
+
+    /**
+     * Writes the image into the emote's subdirectory and records it in the manifest. The file is written to a
+     * temporary file first and renamed into place, so readers never see a partial image.
+     *
+     * @param etag the {@code ETag} the image was served with, if any
+     * @param lastModified the {@code Last-Modified} date the image was served with, if any
+     */
+    public StoredEmote store(
+        String id,
+        String extension,
+        byte[] bytes,
+        String mediaType,
+        String etag,
+        String lastModified
+    ) throws IOException {
+        if (id == null || !EMOTE_ID.matcher(id).matches()) {
+            throw new IOException("Invalid emote id " + id);
+        }
+        Path path = root.resolve(shardOf(id)).resolve(id + "." + extension);
+        Files.createDirectories(path.getParent());
+        Path temp = Files.createTempFile(path.getParent(), id, ".tmp");
+        try {
+            Files.write(temp, bytes);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        StoredEmote stored = new StoredEmote(
+            id,
+            path,
+            mediaType,
+            bytes.length,
+            Instant.ofEpochMilli(System.currentTimeMillis()),
+            headerValue(etag),
+            headerValue(lastModified)
+        );
+        StoredEmote previous = record(stored);
+        if (previous != null && !previous.path().equals(path)) {
+            Files.deleteIfExists(previous.path());
+        }
+        return stored;
+    }
+
+    /**
+     * Records that the provider confirmed the stored image is still current.
+     */
+    public StoredEmote revalidated(StoredEmote stored) throws IOException {
+        StoredEmote refreshed = new StoredEmote(
+            stored.id(),
+            stored.path(),
+            stored.mediaType(),
+            stored.size(),
+            Instant.ofEpochMilli(System.currentTimeMillis()),
+            stored.etag(),
+            stored.lastModified()
+        );
+        record(refreshed);
+        return refreshed;
+    }
+
+    private synchronized StoredEmote record(StoredEmote stored) throws IOException {
+        Map<String, StoredEmote> current = entries();
+        appendToManifest(stored);
+        StoredEmote previous = current.put(stored.id(), stored);
+        if (manifestLines - current.size() > current.size() + REWRITE_SLACK_LINES) {
+            rewriteManifest(current);
+        }
+        return previous;
+    }
+
+    private Map<String, StoredEmote> entries() {
+        Map<String, StoredEmote> loaded = entries;
+        if (loaded != null) {
+            return loaded;
+        }
+        synchronized (this) {
+            if (entries == null) {
+                entries = load();
+            }
+            return entries;
+        }
+    }
+
+    private Map<String, StoredEmote> load() {
+        Map<String, StoredEmote> loaded = new ConcurrentHashMap<>();
+        if (!Files.exists(manifest)) {
+            migrateFlatFiles(loaded);
+            return loaded;
+        }
+        int lines = 0;
+        try (BufferedReader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                lines++;
+                parse(line).ifPresent((stored) -> loaded.put(stored.id(), stored));
+            }
+        } catch (IOException ex) {
+            LOG.warn("Unable to read emote manifest {}", manifest, ex);
+        }
+        manifestLines = lines;
+        LOG.info("Loaded {} cached emotes from {}", loaded.size(), manifest);
+        return loaded;
+    }
+
+    private Optional<StoredEmote> parse(String line) {
+        // Lines written before revalidation was added have no etag and lastModified fields
+        String[] fields = line.split("\t", -1);
+        if ((fields.length != 5 && fields.length != 7) || !EMOTE_ID.matcher(fields[0]).matches()) {
+            return Optional.empty();
+        }
+        try {
+            Path path = root.resolve(fields[1]).normalize();
+            if (!path.startsWith(root)) {
+                return Optional.empty();
+            }
+            return Optional.of(
+                new StoredEmote(
+                    fields[0],
+                    path,
+                    fields[2],
+                    Long.parseLong(fields[3]),
+                    Instant.ofEpochMilli(Long.parseLong(fields[4])),
+                    fields.length == 7 ? headerValue(fields[5]) : null,
+                    fields.length == 7 ? headerValue(fields[6]) : null
+                )
+            );
+        } catch (RuntimeException ex) {
+            return Optional.empty();
+        }
+    }
+
+    private void migrateFlatFiles(Map<String, StoredEmote> loaded) {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(root)) {
+            files = stream.filter(Files::isRegularFile).toList();
+        } catch (IOException ex) {
+            LOG.warn("Unable to list emote cache {}", root, ex);
+            files = List.of();
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.startsWith(MANIFEST_NAME)) {
+                continue;
+            }
+            int dot = name.indexOf('.');
+            String id = dot == -1 ? name : name.substring(0, dot);
+            if (!EMOTE_ID.matcher(id).matches()) {
+                continue;
+            }
+            try {
+                Path target = root.resolve(shardOf(id)).resolve(name);
+                Files.createDirectories(target.getParent());
+                Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+                loaded.put(
+                    id,
+                    new StoredEmote(
+                        id,
+                        target,
+                        mediaTypeForFileName.apply(name),
+                        Files.size(target),
+                        Instant.ofEpochMilli(Files.getLastModifiedTime(target).toMillis()),
+                        null,
+                        null
+                    )
+                );
+            } catch (IOException ex) {
+                LOG.warn("Unable to move cached emote {} into its subdirectory", name, ex);
+            }
+        }
+        rewriteManifest(loaded);
+        if (!loaded.isEmpty()) {
+            LOG.info("Indexed {} cached emotes in {}", loaded.size(), manifest);
+        }
+    }
+
+    private void appendToManifest(StoredEmote stored) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        if (!Files.exists(manifest)) {
+            lines.append(MANIFEST_HEADER).append('\n');
+        }
+        lines.append(format(stored)).append('\n');
+        Files.writeString(
+            manifest,
+            lines,
+            StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.APPEND
+        );
+        manifestLines++;
+    }
+
+    private synchronized void rewriteManifest(Map<String, StoredEmote> current) {
+        Path temp = root.resolve(MANIFEST_NAME + ".tmp");
+        StringBuilder lines = new StringBuilder(MANIFEST_HEADER).append('\n');
+        current.values().forEach((emote) -> lines.append(format(emote)).append('\n'));
+        try {
+            Files.writeString(temp, lines, StandardCharsets.UTF_8);
+            Files.move(temp, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            manifestLines = current.size();
+        } catch (IOException ex) {
+            LOG.warn("Unable to rewrite emote manifest {}", manifest, ex);
+        }
+    }
+
+    private String format(StoredEmote emote) {
+        return String.join(
+            "\t",
+            emote.id(),
+            root.relativize(emote.path()).toString(),
+            emote.mediaType(),
+            Long.toString(emote.size()),
+            Long.toString(emote.fetchedAt().toEpochMilli()),
+            emote.etag() != null ? emote.etag() : "",
+            emote.lastModified() != null ? emote.lastModified() : ""
+        );
+    }
+
+    private static String headerValue(String value) {
+        if (value == null || value.isBlank() || value.contains("\t") || value.contains("\n") || value.contains("\r")) {
+            return null;
+        }
+        return value;
+    }
+
+    private static String shardOf(String id) {
+        return String.format("%02x", id.hashCode() & 0xff);
+    }
+
+    public record StoredEmote(
+        String id,
+        Path path,
+        String mediaType,
+        long size,
+        Instant fetchedAt,
+        String etag,
+        String lastModified
+    ) {}
+}
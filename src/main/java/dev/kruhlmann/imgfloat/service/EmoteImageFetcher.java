@@ -0,0 +1,163 @@
+package dev.kruhlmann.imgfloat.service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Downloads emote images of one provider into its {@link EmoteFileStore} on a shared, bounded download pool. Only
+ * one download per emote runs at a time; callers asking for an emote that is already being downloaded share its
+ * result. A stored image older than the revalidation age is re-requested with {@code If-None-Match} and
+ * {@code If-Modified-Since} when the caller asks for revalidation, so an unchanged image costs a 304 and no body.
+ * When a download fails, the stored image, if any, is kept.
+ */
+public final class EmoteImageFetcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EmoteImageFetcher.class);
+
+    private final String provider;
+    private final RestTemplate restTemplate;
+    private final EmoteFileStore fileStore;
+    private final Executor downloadExecutor;
+    private final Duration revalidateAfter;
+    private final Function<String, String> mediaTypeForFileName;
+    private final Map<String, CompletableFuture<Optional<EmoteFileStore.StoredEmote>>> inFlight =
+        new ConcurrentHashMap<>();
+
+    /**
+     * @param mediaTypeForFileName media type of an image served without a {@code Content-Type}, by file name
+     */
+    public EmoteImageFetcher(
+        String provider,
+        RestTemplate restTemplate,
+        EmoteFileStore fileStore,
+        Executor downloadExecutor,
+        Duration revalidateAfter,
+        Function<String, String> mediaTypeForFileName
+    ) {
+        this.provider = provider;
+        this.restTemplate = restTemplate;
+        this.fileStore = fileStore;
+        this.downloadExecutor = downloadExecutor;
+        this.revalidateAfter = revalidateAfter;
+        this.mediaTypeForFileName = mediaTypeForFileName;
+    }
+
+    /**
+     * Returns the stored image of the emote, downloading it first if it is not stored yet, or revalidating it if
+     * {@code revalidate} is set and the stored copy is older than the revalidation age.
+     */
+    public CompletableFuture<Optional<EmoteFileStore.StoredEmote>> fetch(
+        String id,
+        String imageUrl,
+        String extension,
+        boolean revalidate
+    ) {
+        Optional<EmoteFileStore.StoredEmote> stored = fileStore.find(id);
+        if (stored.isPresent() && (!revalidate || !isStale(stored.get()))) {
+            return CompletableFuture.completedFuture(stored);
+        }
+        CompletableFuture<Optional<EmoteFileStore.StoredEmote>> download = new CompletableFuture<>();
+        // Callers joining the download share the fallback to the stored image, not just the raw download
+        CompletableFuture<Optional<EmoteFileStore.StoredEmote>> result = download.exceptionally((ex) -> {
+            LOG.warn("Unable to download {} emote {}", provider, id, ex);
+            return stored;
+        });
+        CompletableFuture<Optional<EmoteFileStore.StoredEmote>> running = inFlight.putIfAbsent(id, result);
+        if (running != null) {
+            return running;
+        }
+        try {
+            downloadExecutor.execute(() -> {
+                // Leave the in-flight map before completing, so a caller woken by the result starts afresh
+                try {
+                    Optional<EmoteFileStore.StoredEmote> downloaded = download(
+                        id,
+                        imageUrl,
+                        extension,
+                        fileStore.find(id)
+                    );
+                    inFlight.remove(id, result);
+                    download.complete(downloaded);
+                } catch (RuntimeException ex) {
+                    inFlight.remove(id, result);
+                    download.completeExceptionally(ex);
+                }
+            });
+        } catch (RuntimeException ex) {
+            inFlight.remove(id, result);
+            download.completeExceptionally(ex);
+        }
+        return result;
+    }
+
+    private boolean isStale(EmoteFileStore.StoredEmote stored) {
+        return !stored.fetchedAt().plus(revalidateAfter).isAfter(Instant.now());
+    }
+
+    private Optional<EmoteFileStore.StoredEmote> download(
+        String id,
+        String imageUrl,
+        String extension,
+        Optional<EmoteFileStore.StoredEmote> stored
+    ) {
+        HttpHeaders headers = new HttpHeaders();
+        stored.ifPresent((current) -> {
+            if (current.etag() != null) {
+                headers.set(HttpHeaders.IF_NONE_MATCH, current.etag());
+            }
+            if (current.lastModified() != null) {
+                headers.set(HttpHeaders.IF_MODIFIED_SINCE, current.lastModified());
+            }
+        });
+        try {
+            ResponseEntity<byte[]> response = restTemplate.exchange(
+                URI.create(imageUrl),
+                HttpMethod.GET,
+                new HttpEntity<>(headers),
+                byte[].class
+            );
+            if (response.getStatusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED) && stored.isPresent()) {
+                return Optional.of(fileStore.revalidated(stored.get()));
+            }
+            byte[] bytes = response.getBody();
+            if (bytes == null || bytes.length == 0) {
+                return stored;
+            }
+            MediaType mediaType = response.getHeaders().getContentType();
+            String resolvedMediaType = mediaType != null
+                ? mediaType.toString()
+                : mediaTypeForFileName.apply(id + "." + extension);
+            return Optional.of(
+                fileStore.store(
+                    id,
+                    extension,
+                    bytes,
+                    resolvedMediaType,
+                    response.getHeaders().getETag(),
+                    response.getHeaders().getFirst(HttpHeaders.LAST_MODIFIED)
+                )
+            );
+        } catch (IOException | RestClientException ex) {
+            LOG.warn("Unable to download {} emote {}", provider, id, ex);
+            return stored;
+        }
+    }
+}
@@ -3,43 +3,93 @@ package dev.kruhlmann.imgfloat.service;
 import dev.kruhlmann.imgfloat.model.db.imgfloat.Channel;
 import dev.kruhlmann.imgfloat.model.db.imgfloat.Settings;
 import dev.kruhlmann.imgfloat.repository.ChannelRepository;
+import dev.kruhlmann.imgfloat.util.StringNormalizer;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.Trigger;
 import org.springframework.scheduling.TriggerContext;
 import org.springframework.scheduling.annotation.SchedulingConfigurer;
 import org.springframework.scheduling.config.ScheduledTaskRegistrar;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
 
+/**
+ * Refreshes the Twitch and 7TV emotes of every channel on the interval configured in {@link Settings}.
+ * <p>
+ * Refreshes run on the {@code emoteSyncTaskExecutor} pool, so at most its size are in flight at once, and each
+ * provider starts at most its configured number of refreshes per second. Channels whose emote catalog was requested
+ * recently go first. A channel is skipped while its emotes are fresh: for half the sync interval when it is in use,
+ * and for the idle refresh window when nobody has requested its emotes within that window.
+ */
 @Service
 public class EmoteSyncScheduler implements SchedulingConfigurer {
 
     private static final Logger LOG = LoggerFactory.getLogger(EmoteSyncScheduler.class);
     private static final int DEFAULT_INTERVAL_MINUTES = 60;
+    private static final int PROGRESS_STEPS = 10;
+    private static final int MAX_TRACKED_REQUESTS = 10_000;
 
     private final SettingsService settingsService;
     private final ChannelRepository channelRepository;
     private final TwitchEmoteService twitchEmoteService;
     private final SevenTvEmoteService sevenTvEmoteService;
+    private final TwitchIdentityService identityService;
     private final TaskScheduler taskScheduler;
+    private final Executor syncExecutor;
+    private final MeterRegistry meterRegistry;
+    private final Duration idleRefresh;
+    private final List<Provider> providers;
+    private final Map<String, Instant> lastRequested = boundedRequestLog();
+    private final Map<String, Instant> lastRefreshed = new ConcurrentHashMap<>();
+    private final AtomicReference<SyncReport> lastReport = new AtomicReference<>();
 
     public EmoteSyncScheduler(
         SettingsService settingsService,
         ChannelRepository channelRepository,
         TwitchEmoteService twitchEmoteService,
         SevenTvEmoteService sevenTvEmoteService,
-        @Qualifier("emoteSyncTaskScheduler") TaskScheduler taskScheduler
+        TwitchIdentityService identityService,
+        @Qualifier("emoteSyncTaskScheduler") TaskScheduler taskScheduler,
+        @Qualifier("emoteSyncTaskExecutor") Executor syncExecutor,
+        MeterRegistry meterRegistry,
+        @Value("${IMGFLOAT_EMOTE_SYNC_TWITCH_PER_SECOND:5}") double twitchPerSecond,
+        @Value("${IMGFLOAT_EMOTE_SYNC_7TV_PER_SECOND:5}") double sevenTvPerSecond,
+        @Value("${IMGFLOAT_EMOTE_SYNC_IDLE_REFRESH_HOURS:24}") int idleRefreshHours
     ) {
         this.settingsService = settingsService;
         this.channelRepository = channelRepository;
         this.twitchEmoteService = twitchEmoteService;
         this.sevenTvEmoteService = sevenTvEmoteService;
+        this.identityService = identityService;
         this.taskScheduler = taskScheduler;
+        this.syncExecutor = syncExecutor;
+        this.meterRegistry = meterRegistry;
+        this.idleRefresh = Duration.ofHours(Math.max(idleRefreshHours, 1));
+        this.providers = List.of(
+            new Provider("twitch", twitchEmoteService::refreshChannelEmotes, new RequestPacer(twitchPerSecond)),
+            new Provider("7tv", sevenTvEmoteService::refreshChannelEmotes, new RequestPacer(sevenTvPerSecond))
+        );
     }
 
     @Override
@@ -48,6 +98,26 @@ public class EmoteSyncScheduler implements SchedulingConfigurer {
         taskRegistrar.addTriggerTask(this::syncEmotes, buildTrigger());
     }
 
+    /**
+     * Notes that an overlay or dashboard asked for the channel's emotes, which moves the channel to the front of
+     * the next sync. The login comes straight from the request, so only the most recently requested
+     * {@value #MAX_TRACKED_REQUESTS} logins are remembered.
+     */
+    public void recordActivity(String channelLogin) {
+        if (channelLogin == null || channelLogin.isBlank()) {
+            return;
+        }
+        lastRequested.put(StringNormalizer.toLowerCaseRoot(channelLogin), Instant.now());
+    }
+
+    int trackedRequests() {
+        return lastRequested.size();
+    }
+
+    public Optional<SyncReport> getLastReport() {
+        return Optional.ofNullable(lastReport.get());
+    }
+
     private Trigger buildTrigger() {
         return (TriggerContext triggerContext) -> {
             int interval = resolveIntervalMinutes();
@@ -72,23 +142,242 @@ public class EmoteSyncScheduler implements SchedulingConfigurer {
         return interval > 0 ? interval : DEFAULT_INTERVAL_MINUTES;
     }
 
-    private void syncEmotes() {
+    SyncReport syncEmotes() {
         int interval = resolveIntervalMinutes();
+        Instant startedAt = Instant.now();
         LOG.info("Synchronizing emotes (interval {} minutes)", interval);
-        List<Channel> channels = List.of();
+        List<ProviderRun> runs = providers.stream().map(ProviderRun::new).toList();
+        int channelCount = 0;
+        String outcome = "failure";
         try {
-            channels = channelRepository.findAll();
             twitchEmoteService.refreshGlobalEmotes();
-            for (Channel channel : channels) {
-                String broadcaster = channel.getBroadcaster();
-                twitchEmoteService.refreshChannelEmotes(broadcaster);
-                sevenTvEmoteService.refreshChannelEmotes(broadcaster);
+            List<String> broadcasters = prioritized(channelRepository.findAll(), startedAt);
+            channelCount = broadcasters.size();
+            resolveUserIds(broadcasters);
+            Duration activeFreshness = Duration.ofMinutes(interval).dividedBy(2);
+            List<Runnable> refreshes = new ArrayList<>();
+            for (String broadcaster : broadcasters) {
+                Duration freshness = isActive(broadcaster, startedAt) ? activeFreshness : idleRefresh;
+                for (ProviderRun run : runs) {
+                    if (run.isFresh(broadcaster, startedAt.minus(freshness))) {
+                        run.skipped.incrementAndGet();
+                    } else {
+                        refreshes.add(() -> run.refresh(broadcaster));
+                    }
+                }
             }
-            LOG.info("Completed emote sync for {} channels", channels.size());
+            runAll(refreshes);
+            outcome = "success";
         } catch (Exception ex) {
             LOG.error("Emote sync failed", ex);
         } finally {
             settingsService.updateLastEmoteSyncAt(Instant.now());
         }
+        SyncReport report = new SyncReport(
+            startedAt,
+            Duration.between(startedAt, Instant.now()),
+            channelCount,
+            runs.stream().map(ProviderRun::report).toList()
+        );
+        lastReport.set(report);
+        meterRegistry.timer("imgfloat.emote.sync", "outcome", outcome).record(report.duration());
+        LOG.info(
+            "Completed emote sync for {} channels in {} ms: {}",
+            report.channels(),
+            report.duration().toMillis(),
+            report.providers()
+        );
+        return report;
     }
+
+    private List<String> prioritized(List<Channel> channels, Instant now) {
+        Comparator<String> mostRecentlyRequested = Comparator.comparing(
+            (String broadcaster) -> lastRequested.getOrDefault(broadcaster, Instant.EPOCH)
+        ).reversed();
+        List<String> broadcasters = channels
+            .stream()
+            .map(Channel::getBroadcaster)
+            .map(StringNormalizer::toLowerCaseRoot)
+            .distinct()
+            .toList();
+        synchronized (lastRequested) {
+            lastRequested.values().removeIf((requestedAt) -> requestedAt.isBefore(now.minus(idleRefresh)));
+            lastRequested.keySet().retainAll(Set.copyOf(broadcasters));
+        }
+        return broadcasters.stream().sorted(mostRecentlyRequested).toList();
+    }
+
+    private static Map<String, Instant> boundedRequestLog() {
+        return Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Instant> eldest) {
+                    return size() > MAX_TRACKED_REQUESTS;
+                }
+            }
+        );
+    }
+
+    /**
+     * Looks up the user IDs of all channels up front, so that channels which are not stored yet are resolved in a
+     * few batched requests rather than one request each during the refreshes.
+     */
+    private void resolveUserIds(List<String> broadcasters) {
+        try {
+            identityService.findUserIds(broadcasters);
+        } catch (RestClientException ex) {
+            LOG.warn("Unable to resolve Twitch user IDs before the emote sync", ex);
+        }
+    }
+
+    private boolean isActive(String broadcaster, Instant now) {
+        Instant requestedAt = lastRequested.get(broadcaster);
+        return requestedAt != null && requestedAt.isAfter(now.minus(idleRefresh));
+    }
+
+    private void runAll(List<Runnable> refreshes) {
+        int total = refreshes.size();
+        if (total == 0) {
+            return;
+        }
+        AtomicInteger completed = new AtomicInteger();
+        int step = Math.max(total / PROGRESS_STEPS, 1);
+        CompletableFuture<?>[] futures = refreshes
+            .stream()
+            .map((refresh) ->
+                CompletableFuture.runAsync(refresh, syncExecutor).whenComplete((ignored, ex) -> {
+                    int done = completed.incrementAndGet();
+                    if (done % step == 0 && done < total) {
+                        LOG.info("Emote sync progress: {}/{} refreshes", done, total);
+                    }
+                })
+            )
+            .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(futures).join();
+    }
+
+    /**
+     * One provider's refresh of a channel's emotes; answers whether the provider could be reached.
+     */
+    @FunctionalInterface
+    private interface ChannelRefresh {
+        boolean refresh(String broadcaster);
+    }
+
+    private record Provider(String name, ChannelRefresh refresh, RequestPacer pacer) {}
+
+    /**
+     * Spaces out the start of a provider's refreshes so they never exceed its rate, however many workers are free.
+     */
+    private static final class RequestPacer {
+
+        private final long intervalNanos;
+        private long nextPermitNanos = System.nanoTime();
+
+        RequestPacer(double perSecond) {
+            this.intervalNanos = perSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / perSecond) : 0;
+        }
+
+        void acquire() throws InterruptedException {
+            if (intervalNanos == 0) {
+                return;
+            }
+            long waitNanos;
+            synchronized (this) {
+                long now = System.nanoTime();
+                long permit = Math.max(now, nextPermitNanos);
+                nextPermitNanos = permit + intervalNanos;
+                waitNanos = permit - now;
+            }
+            if (waitNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+        }
+    }
+
+    /**
+     * A provider's counters for one sync run. Successful refresh times outlive the run in {@link #lastRefreshed}.
+     */
+    private final class ProviderRun {
+
+        private final Provider provider;
+        private final AtomicInteger refreshed = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger skipped = new AtomicInteger();
+        private final AtomicLong totalMillis = new AtomicLong();
+        private final AtomicLong maxMillis = new AtomicLong();
+
+        ProviderRun(Provider provider) {
+            this.provider = provider;
+        }
+
+        boolean isFresh(String broadcaster, Instant freshAfter) {
+            Instant refreshedAt = lastRefreshed.get(key(broadcaster));
+            return refreshedAt != null && refreshedAt.isAfter(freshAfter);
+        }
+
+        void refresh(String broadcaster) {
+            try {
+                provider.pacer().acquire();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                failed.incrementAndGet();
+                return;
+            }
+            long started = System.nanoTime();
+            boolean succeeded;
+            try {
+                succeeded = provider.refresh().refresh(broadcaster);
+            } catch (RuntimeException ex) {
+                LOG.warn("Refreshing {} emotes of {} failed", provider.name(), broadcaster, ex);
+                succeeded = false;
+            }
+            long nanos = System.nanoTime() - started;
+            meterRegistry
+                .timer(
+                    "imgfloat.emote.refresh",
+                    "provider",
+                    provider.name(),
+                    "outcome",
+                    succeeded ? "success" : "failure"
+                )
+                .record(nanos, TimeUnit.NANOSECONDS);
+            long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+            totalMillis.addAndGet(millis);
+            maxMillis.accumulateAndGet(millis, Math::max);
+            if (succeeded) {
+                lastRefreshed.put(key(broadcaster), Instant.now());
+                refreshed.incrementAndGet();
+            } else {
+                failed.incrementAndGet();
+            }
+        }
+
+        ProviderReport report() {
+            int attempted = refreshed.get() + failed.get();
+            return new ProviderReport(
+                provider.name(),
+                refreshed.get(),
+                failed.get(),
+                skipped.get(),
+                attempted == 0 ? 0 : totalMillis.get() / attempted,
+                maxMillis.get()
+            );
+        }
+
+        private String key(String broadcaster) {
+            return provider.name() + ":" + broadcaster;
+        }
+    }
+
+    public record SyncReport(Instant ranAt, Duration duration, int channels, List<ProviderReport> providers) {}
+
+    public record ProviderReport(
+        String provider,
+        int refreshed,
+        int failed,
+        int skipped,
+        long averageMillis,
+        long maxMillis
+    ) {}
 }
@@ -0,0 +1,35 @@
+package dev.kruhlmann.imgfloat.service;
+
+import dev.kruhlmann.imgfloat.util.StringNormalizer;
+import org.springframework.messaging.core.MessagePostProcessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+
+/**
+ * Hands channel events straight to this node's broker. Used when imgfloat runs as a single node.
+ */
+public class InProcessChannelEventBus implements ChannelEventBus {
+
+    private static final MessagePostProcessor TRANSIENT = (message) ->
+        MessageBuilder.fromMessage(message).setHeader(ChannelEventLog.TRANSIENT_HEADER, true).build();
+
+    private final SimpMessagingTemplate messagingTemplate;
+
+    public InProcessChannelEventBus(SimpMessagingTemplate messagingTemplate) {
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    @Override
+    public void publish(String broadcaster, Object event) {
+        messagingTemplate.convertAndSend(topicFor(broadcaster), event);
+    }
+
+    @Override
+    public void publishTransient(String broadcaster, Object event) {
+        messagingTemplate.convertAndSend(topicFor(broadcaster), event, TRANSIENT);
+    }
+
+    private static String topicFor(String broadcaster) {
+        return CHANNEL_TOPIC_PREFIX + StringNormalizer.toLowerCaseRoot(broadcaster);
+    }
+}
@@ -0,0 +1,111 @@
+package dev.kruhlmann.imgfloat.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One line of IRC as sent by Twitch chat: optional IRCv3 tags, optional prefix, the command and its parameters,
+ * the last of which may contain spaces.
+ */
+record IrcMessage(Map<String, String> tags, String prefix, String command, List<String> params, String raw) {
+    /**
+     * @return the parsed line, or {@code null} when it holds no command
+     */
+    static IrcMessage parse(String line) {
+        if (line == null || line.isBlank()) {
+            return null;
+        }
+        String rest = line;
+        Map<String, String> tags = Map.of();
+        if (rest.startsWith("@")) {
+            int end = rest.indexOf(' ');
+            if (end < 0) {
+                return null;
+            }
+            tags = parseTags(rest.substring(1, end));
+            rest = rest.substring(end + 1).stripLeading();
+        }
+        String prefix = "";
+        if (rest.startsWith(":")) {
+            int end = rest.indexOf(' ');
+            if (end < 0) {
+                return null;
+            }
+            prefix = rest.substring(1, end);
+            rest = rest.substring(end + 1).stripLeading();
+        }
+        List<String> params = new ArrayList<>();
+        String command = null;
+        while (!rest.isEmpty()) {
+            if (command != null && rest.startsWith(":")) {
+                params.add(rest.substring(1));
+                break;
+            }
+            int end = rest.indexOf(' ');
+            String word = end < 0 ? rest : rest.substring(0, end);
+            if (command == null) {
+                command = word;
+            } else {
+                params.add(word);
+            }
+            rest = end < 0 ? "" : rest.substring(end + 1).stripLeading();
+        }
+        if (command == null) {
+            return null;
+        }
+        return new IrcMessage(tags, prefix, command, List.copyOf(params), line);
+    }
+
+    String param(int index) {
+        return index < params.size() ? params.get(index) : null;
+    }
+
+    /**
+     * @return the nick of the prefix {@code nick!user@host}
+     */
+    String nick() {
+        int end = prefix.indexOf('!');
+        return end < 0 ? prefix : prefix.substring(0, end);
+    }
+
+    private static Map<String, String> parseTags(String rawTags) {
+        Map<String, String> tags = new LinkedHashMap<>();
+        for (String entry : rawTags.split(";")) {
+            if (entry.isEmpty()) {
+                continue;
+            }
+            int separator = entry.indexOf('=');
+            if (separator < 0) {
+                tags.put(entry, "");
+            } else {
+                tags.put(entry.substring(0, separator), unescape(entry.substring(separator + 1)));
+            }
+        }
+        return tags;
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder unescaped = new StringBuilder(value.length());
+        for (int index = 0; index < value.length(); index++) {
+            char character = value.charAt(index);
+            if (character != '\\' || index + 1 == value.length()) {
+                unescaped.append(character);
+                continue;
+            }
+            char escaped = value.charAt(++index);
+            switch (escaped) {
+                case ':' -> unescaped.append(';');
+                case 's' -> unescaped.append(' ');
+                case 'r' -> unescaped.append('\r');
+                case 'n' -> unescaped.append('\n');
+                default -> unescaped.append(escaped);
+            }
+        }
+        return unescaped.toString();
+    }
+}
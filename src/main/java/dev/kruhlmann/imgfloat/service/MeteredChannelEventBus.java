@@ -0,0 +1,59 @@
+package dev.kruhlmann.imgfloat.service;
+
+import dev.kruhlmann.imgfloat.model.api.response.AssetEvent;
+import dev.kruhlmann.imgfloat.model.api.response.CanvasEvent;
+import dev.kruhlmann.imgfloat.model.api.response.ChannelEventBatch;
+import dev.kruhlmann.imgfloat.model.api.response.PlaylistEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Locale;
+
+/**
+ * Counts the channel events handed to the delivery bus by event type. Events inside a {@link ChannelEventBatch} are
+ * counted one by one. The type is the only tag: per-channel counts would grow with every channel ever seen.
+ */
+public class MeteredChannelEventBus implements ChannelEventBus {
+
+    private final ChannelEventBus delegate;
+    private final MeterRegistry meterRegistry;
+
+    public MeteredChannelEventBus(ChannelEventBus delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void publish(String broadcaster, Object event) {
+        delegate.publish(broadcaster, event);
+        count(event, "regular");
+    }
+
+    @Override
+    public void publishTransient(String broadcaster, Object event) {
+        delegate.publishTransient(broadcaster, event);
+        count(event, "transient");
+    }
+
+    private void count(Object event, String delivery) {
+        if (event instanceof ChannelEventBatch batch) {
+            batch.events().forEach((batched) -> count(batched, delivery));
+            return;
+        }
+        meterRegistry.counter("imgfloat.channel.events", "type", eventType(event), "delivery", delivery).increment();
+    }
+
+    static String eventType(Object event) {
+        if (event instanceof AssetEvent assetEvent && assetEvent.getType() != null) {
+            return "asset_" + assetEvent.getType().name().toLowerCase(Locale.ROOT);
+        }
+        if (event instanceof PlaylistEvent playlistEvent && playlistEvent.getType() != null) {
+            return playlistEvent.getType().name().toLowerCase(Locale.ROOT);
+        }
+        if (event instanceof CanvasEvent) {
+            return "canvas";
+        }
+        if (event instanceof String) {
+            return "text";
+        }
+        return "other";
+    }
+}
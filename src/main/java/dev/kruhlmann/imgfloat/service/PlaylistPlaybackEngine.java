@@ -0,0 +1,333 @@
+package dev.kruhlmann.imgfloat.service;
+
+import dev.kruhlmann.imgfloat.model.api.response.PlaylistEvent;
+import dev.kruhlmann.imgfloat.model.db.imgfloat.AudioAsset;
+import dev.kruhlmann.imgfloat.model.db.imgfloat.Channel;
+import dev.kruhlmann.imgfloat.model.db.imgfloat.PlaylistTrack;
+import dev.kruhlmann.imgfloat.repository.AudioAssetRepository;
+import dev.kruhlmann.imgfloat.repository.ChannelRepository;
+import dev.kruhlmann.imgfloat.repository.PlaylistTrackRepository;
+import dev.kruhlmann.imgfloat.service.media.MediaOptimizationService;
+import dev.kruhlmann.imgfloat.util.StringNormalizer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Server-side playlist clock. Once a track starts, the engine works out when it will end from the duration probed at
+ * upload and the asset's playback rate, publishes a {@link PlaylistEvent.Type#PLAYLIST_PREFETCH} hint for the next
+ * track shortly before that, and advances the playlist itself when the track is over. Overlays still report the
+ * end of a track, and whichever report arrives first advances it; the rest no longer match the current track and are
+ * ignored by {@link PlaylistService#commandTrackEnded}.
+ */
+@Service
+public class PlaylistPlaybackEngine {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PlaylistPlaybackEngine.class);
+    // Lets an overlay that is playing in time report the end first; the engine only steps in for stalled overlays.
+    private static final Duration ADVANCE_GRACE = Duration.ofMillis(750);
+    private static final double MIN_PLAYBACK_RATE = 0.25;
+
+    private final PlaylistTrackRepository playlistTrackRepository;
+    private final AudioAssetRepository audioAssetRepository;
+    private final ChannelRepository channelRepository;
+    private final AssetStorageService assetStorageService;
+    private final MediaOptimizationService mediaOptimizationService;
+    private final ChannelEventBus channelEventBus;
+    private final ObjectProvider<PlaylistService> playlistService;
+    private final TaskScheduler taskScheduler;
+    private final Executor planningExecutor;
+    private final Duration prefetchLead;
+    private final Map<String, Playback> playbacks = new ConcurrentHashMap<>();
+    private final Set<String> unprobeableAudioIds = ConcurrentHashMap.newKeySet();
+
+    public PlaylistPlaybackEngine(
+        PlaylistTrackRepository playlistTrackRepository,
+        AudioAssetRepository audioAssetRepository,
+        ChannelRepository channelRepository,
+        AssetStorageService assetStorageService,
+        MediaOptimizationService mediaOptimizationService,
+        ChannelEventBus channelEventBus,
+        ObjectProvider<PlaylistService> playlistService,
+        @Qualifier("playlistPlaybackTaskScheduler") TaskScheduler taskScheduler,
+        @Qualifier("playlistPlanningTaskExecutor") Executor planningExecutor,
+        @Value("${IMGFLOAT_PLAYLIST_PREFETCH_SECONDS:5}") int prefetchSeconds
+    ) {
+        this.playlistTrackRepository = playlistTrackRepository;
+        this.audioAssetRepository = audioAssetRepository;
+        this.channelRepository = channelRepository;
+        this.assetStorageService = assetStorageService;
+        this.mediaOptimizationService = mediaOptimizationService;
+        this.channelEventBus = channelEventBus;
+        this.playlistService = playlistService;
+        this.taskScheduler = taskScheduler;
+        this.planningExecutor = planningExecutor;
+        this.prefetchLead = Duration.ofSeconds(Math.max(prefetchSeconds, 0));
+    }
+
+    /**
+     * Picks up the playlists that were playing when the server stopped, from their last flushed position.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePlayingChannels() {
+        List<Channel> playing;
+        try {
+            playing = channelRepository.findAllByPlaylistIsPlayingTrueAndPlaylistIsPausedFalse();
+        } catch (DataAccessException ex) {
+            LOG.warn("Unable to load playing playlists; the playback clock starts with the next command", ex);
+            return;
+        }
+        for (Channel channel : playing) {
+            if (channel.getActivePlaylistId() != null && channel.getPlaylistCurrentTrackId() != null) {
+                start(
+                    channel.getBroadcaster(),
+                    channel.getActivePlaylistId(),
+                    channel.getPlaylistCurrentTrackId(),
+                    channel.getPlaylistTrackPosition()
+                );
+            }
+        }
+    }
+
+    /**
+     * Starts the clock for {@code trackId} at {@code positionSeconds} once the current transaction commits, replacing
+     * whatever the channel was playing.
+     */
+    public void trackStartedAfterCommit(String broadcaster, String playlistId, String trackId, double positionSeconds) {
+        afterCommit(() -> start(broadcaster, playlistId, trackId, positionSeconds));
+    }
+
+    /**
+     * Stops the channel's clock once the current transaction commits.
+     */
+    public void stopAfterCommit(String broadcaster) {
+        afterCommit(() -> stop(broadcaster));
+    }
+
+    /**
+     * Returns where the channel's clock says {@code trackId} is, in seconds, if the clock is running for that track.
+     */
+    public OptionalDouble position(String broadcaster, String playlistId, String trackId) {
+        Playback playback = playbacks.get(StringNormalizer.toLowerCaseRoot(broadcaster));
+        if (playback == null || !playback.playlistId().equals(playlistId) || !playback.trackId().equals(trackId)) {
+            return OptionalDouble.empty();
+        }
+        return OptionalDouble.of(playback.positionAt(Instant.now()));
+    }
+
+    void start(String broadcaster, String playlistId, String trackId, double positionSeconds) {
+        String key = StringNormalizer.toLowerCaseRoot(broadcaster);
+        Playback playback = new Playback(playlistId, trackId, Instant.now(), Math.max(0, positionSeconds));
+        Playback previous = playbacks.put(key, playback);
+        if (previous != null) {
+            previous.cancel();
+        }
+        // Durations may need probing, so plan the timers off both the request thread and the timer thread.
+        try {
+            planningExecutor.execute(() -> plan(key, playback));
+        } catch (RejectedExecutionException ex) {
+            LOG.warn("Unable to plan playlist playback for {}; waiting for overlays to report its end", key, ex);
+        }
+    }
+
+    void stop(String broadcaster) {
+        Playback previous = playbacks.remove(StringNormalizer.toLowerCaseRoot(broadcaster));
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    private void plan(String broadcaster, Playback playback) {
+        if (playbacks.get(broadcaster) != playback) {
+            return;
+        }
+        try {
+            List<PlaylistTrack> tracks = playlistTrackRepository.findAllByPlaylistIdOrderByTrackOrderAsc(
+                playback.playlistId()
+            );
+            int index = indexOf(tracks, playback.trackId());
+            if (index < 0) {
+                return;
+            }
+            AudioAsset audio = audioAssetRepository.findById(tracks.get(index).getAudioAssetId()).orElse(null);
+            Long durationMillis = audio == null ? null : durationMillis(broadcaster, audio);
+            if (durationMillis == null) {
+                LOG.debug(
+                    "No duration for track {} of {}; waiting for overlays to report its end",
+                    playback.trackId(),
+                    broadcaster
+                );
+                return;
+            }
+            double rate = Math.max(MIN_PLAYBACK_RATE, audio.getAudioSpeed() * audio.getAudioPitch());
+            Instant now = Instant.now();
+            Duration remaining = playback.remainingAt(now, durationMillis, rate);
+            PlaylistTrack next = index + 1 < tracks.size() ? tracks.get(index + 1) : null;
+            synchronized (playback) {
+                if (playback.cancelled) {
+                    return;
+                }
+                playback.rate = rate;
+                playback.durationMillis = durationMillis;
+                if (next != null) {
+                    Duration untilPrefetch = remaining.minus(prefetchLead);
+                    playback.timers.add(
+                        taskScheduler.schedule(
+                            () -> prefetch(broadcaster, playback, next),
+                            now.plus(untilPrefetch.isNegative() ? Duration.ZERO : untilPrefetch)
+                        )
+                    );
+                }
+                playback.timers.add(
+                    taskScheduler.schedule(() -> advance(broadcaster, playback), now.plus(remaining).plus(ADVANCE_GRACE))
+                );
+            }
+        } catch (RuntimeException ex) {
+            LOG.warn("Unable to plan playlist playback for {}", broadcaster, ex);
+        }
+    }
+
+    private void prefetch(String broadcaster, Playback playback, PlaylistTrack next) {
+        if (playbacks.get(broadcaster) != playback) {
+            return;
+        }
+        Instant now = Instant.now();
+        long startsInMillis = playback.remainingAt(now, playback.durationMillis, playback.rate).toMillis();
+        String contentUrl = "/api/channels/" + broadcaster + "/assets/" + next.getAudioAssetId() + "/content";
+        try {
+            channelEventBus.publishTransient(
+                broadcaster,
+                PlaylistEvent.prefetch(broadcaster, playback.playlistId(), next.getId(), contentUrl, startsInMillis)
+            );
+        } catch (RuntimeException ex) {
+            LOG.warn("Unable to publish playlist prefetch hint for {}", broadcaster, ex);
+        }
+    }
+
+    private void advance(String broadcaster, Playback playback) {
+        if (playbacks.get(broadcaster) != playback) {
+            return;
+        }
+        try {
+            playlistService.getObject().commandTrackEnded(broadcaster, playback.playlistId(), playback.trackId());
+        } catch (RuntimeException ex) {
+            LOG.warn("Unable to advance playlist {} for {}", playback.playlistId(), broadcaster, ex);
+        }
+    }
+
+    /**
+     * Returns the asset's duration, probing the stored file once for audio uploaded before durations were recorded.
+     */
+    private Long durationMillis(String broadcaster, AudioAsset audio) {
+        if (audio.getDurationMillis() != null) {
+            return audio.getDurationMillis();
+        }
+        if (unprobeableAudioIds.contains(audio.getId())) {
+            return null;
+        }
+        Long probed = assetStorageService
+            .loadAssetFile(broadcaster, audio.getId(), audio.getMediaType())
+            .flatMap((content) -> mediaOptimizationService.probeAudioDurationMillis(content.bytes()))
+            .orElse(null);
+        if (probed == null) {
+            unprobeableAudioIds.add(audio.getId());
+            return null;
+        }
+        audio.setDurationMillis(probed);
+        audioAssetRepository.save(audio);
+        return probed;
+    }
+
+    private static int indexOf(List<PlaylistTrack> tracks, String trackId) {
+        for (int index = 0; index < tracks.size(); index++) {
+            if (tracks.get(index).getId().equals(trackId)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            }
+        );
+    }
+
+    /**
+     * One track playing on one channel. The clock runs from {@code startPosition} at {@code startedAt}; rate and
+     * duration are filled in once known.
+     */
+    private static final class Playback {
+
+        private final String playlistId;
+        private final String trackId;
+        private final Instant startedAt;
+        private final double startPosition;
+        private final List<ScheduledFuture<?>> timers = new ArrayList<>();
+        private volatile double rate = 1.0;
+        private volatile Long durationMillis;
+        private boolean cancelled;
+
+        private Playback(String playlistId, String trackId, Instant startedAt, double startPosition) {
+            this.playlistId = playlistId;
+            this.trackId = trackId;
+            this.startedAt = startedAt;
+            this.startPosition = startPosition;
+        }
+
+        String playlistId() {
+            return playlistId;
+        }
+
+        String trackId() {
+            return trackId;
+        }
+
+        double positionAt(Instant now) {
+            double position = startPosition + Duration.between(startedAt, now).toMillis() / 1000.0 * rate;
+            Long duration = durationMillis;
+            return duration == null ? position : Math.min(position, duration / 1000.0);
+        }
+
+        Duration remainingAt(Instant now, long durationMillis, double rate) {
+            double elapsedMillis = Duration.between(startedAt, now).toMillis();
+            double remainingMillis = (durationMillis - startPosition * 1000) / rate - elapsedMillis;
+            return Duration.ofMillis(Math.max(0, Math.round(remainingMillis)));
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            timers.forEach((timer) -> timer.cancel(false));
+            timers.clear();
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package dev.kruhlmann.imgfloat.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.kruhlmann.imgfloat.model.db.imgfloat.Channel;
+import dev.kruhlmann.imgfloat.repository.ChannelRepository;
+import dev.kruhlmann.imgfloat.util.StringNormalizer;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Authoritative playlist playback state of each channel, kept in memory so that position heartbeats from overlays
+ * do not each write the {@code channels} row. Reported positions are written back in one statement on a coarse
+ * interval and at shutdown; state transitions (play, pause, next, ...) are written by {@link PlaylistService}
+ * itself and only evict the cached state once their transaction commits.
+ * <p>
+ * Other nodes' transitions are not visible here, so when imgfloat runs as several nodes the state is read from the
+ * database each time and positions are written as they are reported.
+ */
+@Service
+public class PlaylistPlaybackStateStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PlaylistPlaybackStateStore.class);
+
+    private final ChannelRepository channelRepository;
+    private final ObjectMapper objectMapper;
+    private final TaskScheduler taskScheduler;
+    private final Duration flushInterval;
+    private final boolean cached;
+    private final Map<String, Entry> states = new ConcurrentHashMap<>();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public PlaylistPlaybackStateStore(
+        ChannelRepository channelRepository,
+        ObjectMapper objectMapper,
+        @Qualifier("playlistPlaybackTaskScheduler") TaskScheduler taskScheduler,
+        @Value("${IMGFLOAT_PLAYLIST_POSITION_FLUSH_SECONDS:15}") int flushIntervalSeconds,
+        @Value("${IMGFLOAT_EVENT_BUS_NODES:}") String eventBusNodes
+    ) {
+        this.channelRepository = channelRepository;
+        this.objectMapper = objectMapper;
+        this.taskScheduler = taskScheduler;
+        this.flushInterval = Duration.ofSeconds(Math.max(flushIntervalSeconds, 1));
+        this.cached = eventBusNodes.isBlank();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleFlush() {
+        if (!cached) {
+            return;
+        }
+        taskScheduler.scheduleWithFixedDelay(this::flush, Instant.now().plus(flushInterval), flushInterval);
+    }
+
+    /**
+     * Returns the playback state of the channel, reading it from the database the first time it is needed.
+     */
+    public Optional<PlaybackState> get(String broadcaster) {
+        String key = StringNormalizer.toLowerCaseRoot(broadcaster);
+        if (!cached) {
+            return channelRepository.findById(key).map(this::snapshot);
+        }
+        Entry entry = states.get(key);
+        if (entry != null) {
+            return Optional.of(entry.state);
+        }
+        // Read outside the map so a slow database read never holds a map bin that a committing transition needs.
+        long evictionsBeforeRead = evictions.get();
+        Optional<PlaybackState> loaded = channelRepository.findById(key).map(this::snapshot);
+        if (loaded.isEmpty()) {
+            return Optional.empty();
+        }
+        if (evictions.get() != evictionsBeforeRead) {
+            // A transition committed while reading; do not cache what may be the state before it.
+            return loaded;
+        }
+        return Optional.of(states.computeIfAbsent(key, (ignored) -> new Entry(loaded.get(), false)).state);
+    }
+
+    /**
+     * Records a position heartbeat if the channel is still playing {@code trackId} of {@code playlistId}.
+     *
+     * @return whether the position was accepted
+     */
+    public boolean reportPosition(String broadcaster, String playlistId, String trackId, double position) {
+        if (!cached) {
+            return trackId != null && writePosition(broadcaster, new PendingPosition(playlistId, trackId, position));
+        }
+        if (get(broadcaster).isEmpty()) {
+            return false;
+        }
+        boolean[] accepted = { false };
+        states.computeIfPresent(StringNormalizer.toLowerCaseRoot(broadcaster), (key, entry) -> {
+            PlaybackState state = entry.state;
+            if (!state.isPlaying()
+                || state.isPaused()
+                || !playlistId.equals(state.playlistId())
+                || trackId == null
+                || !trackId.equals(state.currentTrackId())) {
+                return entry;
+            }
+            accepted[0] = true;
+            return new Entry(state.withPosition(position, Instant.now()), true);
+        });
+        return accepted[0];
+    }
+
+    /**
+     * Drops the cached state of the channel once the current transaction commits, so the next read picks up the
+     * transition written to the database. Positions not flushed yet are dropped with it; every transition either
+     * resets the position or writes it itself.
+     */
+    public void evictAfterCommit(String broadcaster) {
+        String key = StringNormalizer.toLowerCaseRoot(broadcaster);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(key);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(key);
+                }
+            }
+        );
+    }
+
+    private void evict(String key) {
+        evictions.incrementAndGet();
+        states.remove(key);
+    }
+
+    /**
+     * Writes the positions reported since the last flush to the database in one statement.
+     *
+     * @return the number of channels updated
+     */
+    public int flush() {
+        Map<String, PendingPosition> positions = new LinkedHashMap<>();
+        states.forEach((key, entry) -> {
+            if (entry.dirty) {
+                PlaybackState state = entry.state;
+                positions.put(key, new PendingPosition(state.playlistId(), state.currentTrackId(), state.position()));
+            }
+        });
+        if (positions.isEmpty()) {
+            return 0;
+        }
+        int updated;
+        try {
+            updated = writePositions(positions);
+        } catch (JsonProcessingException | DataAccessException ex) {
+            LOG.warn("Failed to flush playlist positions of {} channels", positions.size(), ex);
+            return 0;
+        }
+        positions.forEach((key, written) ->
+            states.computeIfPresent(key, (ignored, entry) ->
+                entry.dirty && entry.state.position() == written.position() ? new Entry(entry.state, false) : entry
+            )
+        );
+        return updated;
+    }
+
+    /**
+     * Writes a single reported position straight to the database, which only takes it while the channel is still
+     * playing that track.
+     */
+    private boolean writePosition(String broadcaster, PendingPosition position) {
+        try {
+            return writePositions(Map.of(StringNormalizer.toLowerCaseRoot(broadcaster), position)) > 0;
+        } catch (JsonProcessingException | DataAccessException ex) {
+            LOG.warn("Failed to write the playlist position of {}", broadcaster, ex);
+            return false;
+        }
+    }
+
+    private int writePositions(Map<String, PendingPosition> positions) throws JsonProcessingException {
+        return channelRepository.updatePlaylistTrackPositions(objectMapper.writeValueAsString(positions));
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        int updated = flush();
+        if (updated > 0) {
+            LOG.info("Flushed playlist positions of {} channels on shutdown", updated);
+        }
+    }
+
+    private PlaybackState snapshot(Channel channel) {
+        return new PlaybackState(
+            channel.getActivePlaylistId(),
+            channel.getPlaylistCurrentTrackId(),
+            channel.isPlaylistIsPlaying(),
+            channel.isPlaylistIsPaused(),
+            channel.getPlaylistTrackPosition(),
+            Instant.now()
+        );
+    }
+
+    public record PlaybackState(
+        String playlistId,
+        String currentTrackId,
+        boolean isPlaying,
+        boolean isPaused,
+        double position,
+        Instant updatedAt
+    ) {
+        PlaybackState withPosition(double position, Instant updatedAt) {
+            return new PlaybackState(playlistId, currentTrackId, isPlaying, isPaused, position, updatedAt);
+        }
+    }
+
+    private record Entry(PlaybackState state, boolean dirty) {}
+
+    private record PendingPosition(String playlistId, String trackId, double position) {}
+}
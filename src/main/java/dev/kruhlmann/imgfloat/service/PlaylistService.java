@@ -15,6 +15,9 @@ import dev.kruhlmann.imgfloat.repository.AudioAssetRepository;
 import dev.kruhlmann.imgfloat.repository.ChannelRepository;
 import dev.kruhlmann.imgfloat.repository.PlaylistRepository;
 import dev.kruhlmann.imgfloat.repository.PlaylistTrackRepository;
+import dev.kruhlmann.imgfloat.util.LogSanitizer;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -22,7 +25,6 @@ import java.util.Optional;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
@@ -36,28 +38,43 @@ public class PlaylistService {
     private final PlaylistTrackRepository playlistTrackRepository;
     private final AudioAssetRepository audioAssetRepository;
     private final ChannelRepository channelRepository;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final ChannelEventBus channelEventBus;
+    private final PlaylistPlaybackStateStore playbackStateStore;
+    private final PlaylistPlaybackEngine playbackEngine;
+    private final PlaylistViewCache playlistViewCache;
 
     public PlaylistService(
         PlaylistRepository playlistRepository,
         PlaylistTrackRepository playlistTrackRepository,
         AudioAssetRepository audioAssetRepository,
         ChannelRepository channelRepository,
-        SimpMessagingTemplate messagingTemplate
+        ChannelEventBus channelEventBus,
+        PlaylistPlaybackStateStore playbackStateStore,
+        PlaylistPlaybackEngine playbackEngine,
+        PlaylistViewCache playlistViewCache
     ) {
         this.playlistRepository = playlistRepository;
         this.playlistTrackRepository = playlistTrackRepository;
         this.audioAssetRepository = audioAssetRepository;
         this.channelRepository = channelRepository;
-        this.messagingTemplate = messagingTemplate;
+        this.channelEventBus = channelEventBus;
+        this.playbackStateStore = playbackStateStore;
+        this.playbackEngine = playbackEngine;
+        this.playlistViewCache = playlistViewCache;
     }
 
     // ── CRUD ──────────────────────────────────────────────────────────────
 
     @Transactional(readOnly = true)
     public List<PlaylistView> listPlaylists(String broadcaster) {
+        Optional<List<PlaylistView>> cached = playlistViewCache.list(broadcaster);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
         List<Playlist> playlists = playlistRepository.findAllByBroadcasterOrderByCreatedAtAsc(normalize(broadcaster));
-        return playlists.stream().map(p -> toView(p, loadTracks(p.getId()))).toList();
+        List<PlaylistView> views = loadViews(playlists);
+        playlistViewCache.putAll(broadcaster, views);
+        return views;
     }
 
     @Transactional
@@ -65,6 +82,7 @@ public class PlaylistService {
         Playlist playlist = new Playlist(normalize(broadcaster), name.trim());
         playlistRepository.save(playlist);
         PlaylistView view = toView(playlist, List.of());
+        playlistViewCache.putAfterCommit(broadcaster, view);
         publish(broadcaster, PlaylistEvent.created(normalize(broadcaster), view));
         return view;
     }
@@ -74,10 +92,7 @@ public class PlaylistService {
         Playlist playlist = requirePlaylist(broadcaster, playlistId);
         playlist.setName(name.trim());
         playlistRepository.save(playlist);
-        List<PlaylistTrackView> tracks = loadTracks(playlistId);
-        PlaylistView view = toView(playlist, tracks);
-        publish(broadcaster, PlaylistEvent.updated(normalize(broadcaster), view));
-        return view;
+        return updateAndPublish(broadcaster, toView(playlist, trackViews(broadcaster, playlistId)));
     }
 
     @Transactional
@@ -88,11 +103,12 @@ public class PlaylistService {
             if (wasActive) {
                 channel.setActivePlaylistId(null);
                 clearPlaybackState(channel);
+                saveTransition(channel);
             }
-            channelRepository.save(channel);
         });
         playlistTrackRepository.deleteAllByPlaylistId(playlistId);
         playlistRepository.delete(playlist);
+        playlistViewCache.removeAfterCommit(broadcaster, playlistId);
         publish(broadcaster, PlaylistEvent.deleted(normalize(broadcaster), playlistId));
     }
 
@@ -100,18 +116,20 @@ public class PlaylistService {
 
     @Transactional
     public PlaylistView addTrack(String broadcaster, String playlistId, String audioAssetId) {
-        requirePlaylist(broadcaster, playlistId);
-        audioAssetRepository.findById(audioAssetId)
+        Playlist playlist = requirePlaylist(broadcaster, playlistId);
+        AudioAsset audio = audioAssetRepository.findById(audioAssetId)
             .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Audio asset not found"));
-        int nextOrder = playlistTrackRepository.countByPlaylistId(playlistId);
-        PlaylistTrack track = new PlaylistTrack(playlistId, audioAssetId, nextOrder);
+        // Track orders are kept contiguous, so the current track count is the next order
+        List<PlaylistTrackView> tracks = new ArrayList<>(trackViews(broadcaster, playlistId));
+        PlaylistTrack track = new PlaylistTrack(playlistId, audioAssetId, tracks.size());
         playlistTrackRepository.save(track);
-        return refreshAndPublish(broadcaster, playlistId);
+        tracks.add(new PlaylistTrackView(track.getId(), audioAssetId, audio.getName(), track.getTrackOrder()));
+        return updateAndPublish(broadcaster, toView(playlist, tracks));
     }
 
     @Transactional
     public PlaylistView removeTrack(String broadcaster, String playlistId, String trackId) {
-        requirePlaylist(broadcaster, playlistId);
+        Playlist playlist = requirePlaylist(broadcaster, playlistId);
         PlaylistTrack track = playlistTrackRepository.findById(trackId)
             .filter(t -> t.getPlaylistId().equals(playlistId))
             .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Track not found"));
@@ -126,48 +144,46 @@ public class PlaylistService {
         channelRepository.findById(normalize(broadcaster)).ifPresent(channel -> {
             if (trackId.equals(channel.getPlaylistCurrentTrackId())) {
                 clearPlaybackState(channel);
-                channelRepository.save(channel);
+                saveTransition(channel);
             }
         });
-        return refreshAndPublish(broadcaster, playlistId);
+        return updateAndPublish(broadcaster, toView(playlist, trackViews(broadcaster, playlistId, remaining)));
     }
 
     @Transactional
     public PlaylistView reorderTracks(String broadcaster, String playlistId, List<String> trackIds) {
-        requirePlaylist(broadcaster, playlistId);
+        Playlist playlist = requirePlaylist(broadcaster, playlistId);
         List<PlaylistTrack> tracks = playlistTrackRepository.findAllByPlaylistIdOrderByTrackOrderAsc(playlistId);
         Map<String, PlaylistTrack> byId = tracks.stream().collect(Collectors.toMap(PlaylistTrack::getId, t -> t));
         if (trackIds.size() != tracks.size() || !byId.keySet().containsAll(trackIds)) {
             throw new ResponseStatusException(BAD_REQUEST, "trackIds must contain exactly the current track IDs");
         }
-        for (int i = 0; i < trackIds.size(); i++) {
-            byId.get(trackIds.get(i)).setTrackOrder(i);
+        List<PlaylistTrack> reordered = trackIds.stream().map(byId::get).toList();
+        for (int i = 0; i < reordered.size(); i++) {
+            reordered.get(i).setTrackOrder(i);
         }
-        playlistTrackRepository.saveAll(byId.values());
-        return refreshAndPublish(broadcaster, playlistId);
+        playlistTrackRepository.saveAll(reordered);
+        return updateAndPublish(broadcaster, toView(playlist, trackViews(broadcaster, playlistId, reordered)));
     }
 
     // ── Active playlist ───────────────────────────────────────────────────
 
     @Transactional(readOnly = true)
     public Optional<ActivePlaylistState> getActivePlaylistState(String broadcaster) {
-        Channel channel = channelRepository.findById(normalize(broadcaster)).orElse(null);
-        if (channel == null || channel.getActivePlaylistId() == null) {
+        PlaylistPlaybackStateStore.PlaybackState playback = playbackStateStore.get(broadcaster).orElse(null);
+        if (playback == null || playback.playlistId() == null) {
             return Optional.empty();
         }
-        return playlistRepository.findByIdAndBroadcaster(channel.getActivePlaylistId(), normalize(broadcaster))
-            .map(p -> {
-                List<PlaylistTrackView> tracks = loadTracks(p.getId());
-                return new ActivePlaylistState(
-                    p.getId(),
-                    p.getName(),
-                    tracks,
-                    channel.getPlaylistCurrentTrackId(),
-                    channel.isPlaylistIsPlaying(),
-                    channel.isPlaylistIsPaused(),
-                    channel.getPlaylistTrackPosition()
-                );
-            });
+        return findView(broadcaster, playback.playlistId())
+            .map(view -> new ActivePlaylistState(
+                view.id(),
+                view.name(),
+                view.tracks(),
+                playback.currentTrackId(),
+                playback.isPlaying(),
+                playback.isPaused(),
+                currentPosition(broadcaster, playback)
+            ));
     }
 
     @Transactional
@@ -177,12 +193,12 @@ public class PlaylistService {
 
         PlaylistView view = null;
         if (playlistId != null) {
-            Playlist playlist = requirePlaylist(broadcaster, playlistId);
-            view = toView(playlist, loadTracks(playlistId));
+            view = findView(broadcaster, playlistId)
+                .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Playlist not found"));
         }
         channel.setActivePlaylistId(playlistId);
         clearPlaybackState(channel);
-        channelRepository.save(channel);
+        saveTransition(channel);
         publish(broadcaster, PlaylistEvent.selected(normalize(broadcaster), view));
         return Optional.ofNullable(view);
     }
@@ -204,7 +220,7 @@ public class PlaylistService {
             channel.setPlaylistIsPlaying(true);
             channel.setPlaylistIsPaused(false);
             channel.setPlaylistTrackPosition(0.0);
-            channelRepository.save(channel);
+            saveTransition(channel);
         });
         publish(broadcaster, PlaylistEvent.play(normalize(broadcaster), playlistId, resolvedTrackId));
     }
@@ -212,9 +228,13 @@ public class PlaylistService {
     @Transactional
     public void commandPause(String broadcaster, String playlistId) {
         requirePlaylist(broadcaster, playlistId);
+        Optional<Double> position = playbackStateStore.get(broadcaster)
+            .filter(playback -> playlistId.equals(playback.playlistId()))
+            .map(playback -> currentPosition(broadcaster, playback));
         channelRepository.findById(normalize(broadcaster)).ifPresent(channel -> {
             channel.setPlaylistIsPaused(true);
-            channelRepository.save(channel);
+            position.ifPresent(channel::setPlaylistTrackPosition);
+            saveTransition(channel);
         });
         publish(broadcaster, PlaylistEvent.pause(normalize(broadcaster), playlistId));
     }
@@ -238,13 +258,13 @@ public class PlaylistService {
                 channel.setPlaylistIsPlaying(true);
                 channel.setPlaylistIsPaused(false);
                 channel.setPlaylistTrackPosition(0.0);
-                channelRepository.save(channel);
+                saveTransition(channel);
             });
             publish(broadcaster, PlaylistEvent.next(normalize(broadcaster), playlistId, nextTrackId));
         } else {
             channelRepository.findById(normalize(broadcaster)).ifPresent(channel -> {
                 clearPlaybackState(channel);
-                channelRepository.save(channel);
+                saveTransition(channel);
             });
             publish(broadcaster, PlaylistEvent.ended(normalize(broadcaster), playlistId));
         }
@@ -269,34 +289,75 @@ public class PlaylistService {
             channel.setPlaylistIsPlaying(true);
             channel.setPlaylistIsPaused(false);
             channel.setPlaylistTrackPosition(0.0);
-            channelRepository.save(channel);
+            saveTransition(channel);
         });
         publish(broadcaster, PlaylistEvent.prev(normalize(broadcaster), playlistId, prevTrackId));
     }
 
+    /**
+     * Advances past {@code finishedTrackId} if it is still the track playing. Every overlay and the playback engine
+     * report the same end; only the first report advances, later ones name a track that is no longer current.
+     */
     @Transactional
     public void commandTrackEnded(String broadcaster, String playlistId, String finishedTrackId) {
+        Channel channel = channelRepository.findById(normalize(broadcaster)).orElse(null);
+        if (channel == null
+                || !playlistId.equals(channel.getActivePlaylistId())
+                || !channel.isPlaylistIsPlaying()
+                || channel.isPlaylistIsPaused()
+                || finishedTrackId == null
+                || !finishedTrackId.equals(channel.getPlaylistCurrentTrackId())) {
+            LOG.debug(
+                "Ignoring duplicate or stale end of track {} for {}",
+                LogSanitizer.sanitize(finishedTrackId),
+                LogSanitizer.sanitize(normalize(broadcaster))
+            );
+            return;
+        }
         commandNext(broadcaster, playlistId, finishedTrackId);
     }
 
     // ── Position reporting ────────────────────────────────────────────────
 
-    @Transactional
+    /**
+     * Records a position heartbeat in memory; {@link PlaylistPlaybackStateStore} writes it back periodically.
+     */
     public void reportPosition(String broadcaster, String playlistId, String trackId, double position) {
-        channelRepository.findById(normalize(broadcaster)).ifPresent(channel -> {
-            // Only persist if this is still the active playlist and we're playing
-            if (playlistId.equals(channel.getActivePlaylistId())
-                    && channel.isPlaylistIsPlaying()
-                    && !channel.isPlaylistIsPaused()
-                    && trackId.equals(channel.getPlaylistCurrentTrackId())) {
-                channel.setPlaylistTrackPosition(position);
-                channelRepository.save(channel);
-            }
-        });
+        playbackStateStore.reportPosition(broadcaster, playlistId, trackId, position);
     }
 
     // ── Helpers ───────────────────────────────────────────────────────────
 
+    private void saveTransition(Channel channel) {
+        channelRepository.save(channel);
+        playbackStateStore.evictAfterCommit(channel.getBroadcaster());
+        if (channel.getActivePlaylistId() != null
+                && channel.getPlaylistCurrentTrackId() != null
+                && channel.isPlaylistIsPlaying()
+                && !channel.isPlaylistIsPaused()) {
+            playbackEngine.trackStartedAfterCommit(
+                channel.getBroadcaster(),
+                channel.getActivePlaylistId(),
+                channel.getPlaylistCurrentTrackId(),
+                channel.getPlaylistTrackPosition()
+            );
+        } else {
+            playbackEngine.stopAfterCommit(channel.getBroadcaster());
+        }
+    }
+
+    /**
+     * Position of the current track: the playback engine's clock while it runs, otherwise the last reported one.
+     */
+    private double currentPosition(String broadcaster, PlaylistPlaybackStateStore.PlaybackState playback) {
+        if (!playback.isPlaying() || playback.isPaused() || playback.currentTrackId() == null) {
+            return playback.position();
+        }
+        return playbackEngine
+            .position(broadcaster, playback.playlistId(), playback.currentTrackId())
+            .orElse(playback.position());
+    }
+
     private void clearPlaybackState(Channel channel) {
         channel.setPlaylistCurrentTrackId(null);
         channel.setPlaylistIsPlaying(false);
@@ -309,11 +370,65 @@ public class PlaylistService {
             .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Playlist not found"));
     }
 
+    /**
+     * Builds the views of {@code playlists} from one track query and one audio name lookup for all of them.
+     */
+    private List<PlaylistView> loadViews(List<Playlist> playlists) {
+        if (playlists.isEmpty()) {
+            return List.of();
+        }
+        List<String> playlistIds = playlists.stream().map(Playlist::getId).toList();
+        List<PlaylistTrack> tracks = playlistTrackRepository.findAllByPlaylistIdInOrderByTrackOrderAsc(playlistIds);
+        Map<String, List<PlaylistTrack>> tracksByPlaylist = tracks.stream()
+            .collect(Collectors.groupingBy(PlaylistTrack::getPlaylistId));
+        Map<String, String> nameById = loadAudioNames(tracks);
+        return playlists.stream()
+            .map(p -> toView(p, toTrackViews(tracksByPlaylist.getOrDefault(p.getId(), List.of()), nameById)))
+            .toList();
+    }
+
+    private Optional<PlaylistView> findView(String broadcaster, String playlistId) {
+        return playlistViewCache.get(broadcaster, playlistId)
+            .or(() -> playlistRepository.findByIdAndBroadcaster(playlistId, normalize(broadcaster))
+                .map(p -> toView(p, loadTracks(playlistId))));
+    }
+
+    /**
+     * Current tracks of the playlist, from the cached view when the channel's playlists are cached.
+     */
+    private List<PlaylistTrackView> trackViews(String broadcaster, String playlistId) {
+        return playlistViewCache.get(broadcaster, playlistId)
+            .map(PlaylistView::tracks)
+            .orElseGet(() -> loadTracks(playlistId));
+    }
+
+    /**
+     * Views of {@code tracks} in the given order, taking audio names from the cached view where possible.
+     */
+    private List<PlaylistTrackView> trackViews(String broadcaster, String playlistId, List<PlaylistTrack> tracks) {
+        Map<String, String> nameById = playlistViewCache.get(broadcaster, playlistId)
+            .map(view -> view.tracks().stream()
+                .collect(Collectors.toMap(PlaylistTrackView::audioAssetId, PlaylistTrackView::assetName, (a, b) -> a)))
+            .filter(names -> names.keySet().containsAll(tracks.stream().map(PlaylistTrack::getAudioAssetId).toList()))
+            .orElseGet(() -> loadAudioNames(tracks));
+        return toTrackViews(tracks, nameById);
+    }
+
     private List<PlaylistTrackView> loadTracks(String playlistId) {
         List<PlaylistTrack> tracks = playlistTrackRepository.findAllByPlaylistIdOrderByTrackOrderAsc(playlistId);
-        List<String> audioIds = tracks.stream().map(PlaylistTrack::getAudioAssetId).toList();
-        Map<String, String> nameById = audioAssetRepository.findAllById(audioIds).stream()
+        return toTrackViews(tracks, loadAudioNames(tracks));
+    }
+
+    private Map<String, String> loadAudioNames(Collection<PlaylistTrack> tracks) {
+        if (tracks.isEmpty()) {
+            return Map.of();
+        }
+        List<String> audioIds = tracks.stream().map(PlaylistTrack::getAudioAssetId).distinct().toList();
+        return audioAssetRepository.findAllById(audioIds).stream()
             .collect(Collectors.toMap(AudioAsset::getId, AudioAsset::getName));
+    }
+
+    private List<PlaylistTrackView> toTrackViews(List<PlaylistTrack> tracks, Map<String, String> nameById) {
         return tracks.stream()
             .map(t -> new PlaylistTrackView(t.getId(), t.getAudioAssetId(),
                 nameById.getOrDefault(t.getAudioAssetId(), t.getAudioAssetId()), t.getTrackOrder()))
@@ -324,16 +439,14 @@ public class PlaylistService {
         return new PlaylistView(playlist.getId(), playlist.getName(), tracks);
     }
 
-    private PlaylistView refreshAndPublish(String broadcaster, String playlistId) {
-        Playlist playlist = requirePlaylist(broadcaster, playlistId);
-        List<PlaylistTrackView> tracks = loadTracks(playlistId);
-        PlaylistView view = toView(playlist, tracks);
+    private PlaylistView updateAndPublish(String broadcaster, PlaylistView view) {
+        playlistViewCache.putAfterCommit(broadcaster, view);
         publish(broadcaster, PlaylistEvent.updated(normalize(broadcaster), view));
         return view;
     }
 
     private void publish(String broadcaster, PlaylistEvent event) {
-        messagingTemplate.convertAndSend("/topic/channel/" + normalize(broadcaster), event);
+        channelEventBus.publish(broadcaster, event);
     }
 
     private static String normalize(String value) {
@@ -0,0 +1,116 @@
+package dev.kruhlmann.imgfloat.service;
+
+import dev.kruhlmann.imgfloat.model.api.response.PlaylistView;
+import dev.kruhlmann.imgfloat.util.StringNormalizer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Playlist views of each channel, in creation order, as last loaded or changed by {@link PlaylistService}. A channel
+ * is only cached as a whole, after a full listing; changes to a channel that is not cached are not recorded.
+ * Changes are applied once their transaction commits; with the single database connection no other transaction can
+ * start in between, so the cache sees changes in commit order.
+ * <p>
+ * Other nodes' changes are not visible here, so the cache is off when imgfloat runs as several nodes.
+ */
+@Service
+public class PlaylistViewCache implements MeterBinder {
+
+    private final boolean enabled;
+    private final Map<String, Map<String, PlaylistView>> viewsByChannel = new ConcurrentHashMap<>();
+    private final CacheMetrics metrics = new CacheMetrics();
+
+    public PlaylistViewCache(@Value("${IMGFLOAT_EVENT_BUS_NODES:}") String eventBusNodes) {
+        this.enabled = eventBusNodes.isBlank();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        metrics.bindTo(registry, "playlist.views", viewsByChannel::size);
+    }
+
+    public Optional<List<PlaylistView>> list(String broadcaster) {
+        return cachedChannel(broadcaster).map((views) -> List.copyOf(views.values()));
+    }
+
+    public Optional<PlaylistView> get(String broadcaster, String playlistId) {
+        return cachedChannel(broadcaster).map((views) -> views.get(playlistId));
+    }
+
+    /**
+     * Caches a full listing of the channel's playlists. Call from within the transaction that read them.
+     */
+    public void putAll(String broadcaster, List<PlaylistView> views) {
+        if (!enabled) {
+            return;
+        }
+        Map<String, PlaylistView> byId = new LinkedHashMap<>();
+        views.forEach((view) -> byId.put(view.id(), view));
+        viewsByChannel.put(key(broadcaster), byId);
+    }
+
+    /**
+     * Adds {@code view} at the end of the channel's playlists, or replaces the playlist in place.
+     */
+    public void putAfterCommit(String broadcaster, PlaylistView view) {
+        afterCommit(() ->
+            viewsByChannel.computeIfPresent(key(broadcaster), (ignored, views) -> {
+                Map<String, PlaylistView> updated = new LinkedHashMap<>(views);
+                updated.put(view.id(), view);
+                return updated;
+            })
+        );
+    }
+
+    public void removeAfterCommit(String broadcaster, String playlistId) {
+        afterCommit(() ->
+            viewsByChannel.computeIfPresent(key(broadcaster), (ignored, views) -> {
+                Map<String, PlaylistView> updated = new LinkedHashMap<>(views);
+                updated.remove(playlistId);
+                return updated;
+            })
+        );
+    }
+
+    public void evict(String broadcaster) {
+        viewsByChannel.remove(key(broadcaster));
+    }
+
+    private Optional<Map<String, PlaylistView>> cachedChannel(String broadcaster) {
+        Map<String, PlaylistView> views = viewsByChannel.get(key(broadcaster));
+        if (views == null) {
+            metrics.miss();
+        } else {
+            metrics.hit();
+        }
+        return Optional.ofNullable(views);
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            }
+        );
+    }
+
+    private static String key(String broadcaster) {
+        return StringNormalizer.toLowerCaseRoot(broadcaster);
+    }
+}
@@ -0,0 +1,97 @@
+package dev.kruhlmann.imgfloat.service;
+
+import dev.kruhlmann.imgfloat.util.StringNormalizer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Remembers for a few seconds that a user may send live previews to a channel, as drag frames arrive many times per
+ * second. Removing a channel admin or a system administrator forgets the user's entries once the removal commits.
+ * Only previews rely on this; committed changes are always authorized against the database.
+ * <p>
+ * Other nodes' removals are not visible here, so the cache is off when imgfloat runs as several nodes.
+ */
+@Service
+public class PreviewAuthorizationCache {
+
+    private static final long TTL_NANOS = 5_000_000_000L;
+    private static final int MAX_ENTRIES = 1024;
+
+    private final boolean enabled;
+    private final Map<String, Long> authorizedUntil = new ConcurrentHashMap<>();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public PreviewAuthorizationCache(@Value("${IMGFLOAT_EVENT_BUS_NODES:}") String eventBusNodes) {
+        this.enabled = eventBusNodes.isBlank();
+    }
+
+    /**
+     * Runs {@code check}, which throws when the user may not manage the channel, unless it passed for the same user
+     * and channel within the last few seconds.
+     */
+    public void authorize(String broadcaster, String username, Runnable check) {
+        if (!enabled || username == null) {
+            check.run();
+            return;
+        }
+        String key = key(broadcaster, username);
+        long now = System.nanoTime();
+        Long until = authorizedUntil.get(key);
+        if (until != null && now - until < 0) {
+            return;
+        }
+        long evictionsBeforeCheck = evictions.get();
+        check.run();
+        if (evictions.get() != evictionsBeforeCheck) {
+            // A removal committed during the check; do not remember what may be the access before it.
+            return;
+        }
+        if (authorizedUntil.size() >= MAX_ENTRIES) {
+            authorizedUntil.values().removeIf((expiry) -> now - expiry >= 0);
+        }
+        authorizedUntil.put(key, now + TTL_NANOS);
+    }
+
+    public void evictAfterCommit(String broadcaster, String username) {
+        String key = key(broadcaster, username);
+        afterCommit(() -> {
+            evictions.incrementAndGet();
+            authorizedUntil.remove(key);
+        });
+    }
+
+    /**
+     * Forgets the user's entries for every channel, e.g. once they are no longer a system administrator.
+     */
+    public void evictUserAfterCommit(String username) {
+        String prefix = StringNormalizer.toLowerCaseRoot(username) + "@";
+        afterCommit(() -> {
+            evictions.incrementAndGet();
+            authorizedUntil.keySet().removeIf((key) -> key.startsWith(prefix));
+        });
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+            new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            }
+        );
+    }
+
+    private static String key(String broadcaster, String username) {
+        return StringNormalizer.toLowerCaseRoot(username) + "@" + StringNormalizer.toLowerCaseRoot(broadcaster);
+    }
+}
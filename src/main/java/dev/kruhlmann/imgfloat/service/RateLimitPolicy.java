@@ -0,0 +1,12 @@
+package dev.kruhlmann.imgfloat.service;
+
+/**
+ * Groups of endpoints that share a rate limit. Each client has its own budget per policy.
+ */
+public enum RateLimitPolicy {
+    COPYRIGHT_REPORTS,
+    UPLOADS,
+    MARKETPLACE,
+    EMOTE_CATALOGS,
+    WEBSOCKET_MESSAGES,
+}
@@ -0,0 +1,155 @@
+package dev.kruhlmann.imgfloat.service;
+
+import dev.kruhlmann.imgfloat.model.OauthSessionUser;
+import dev.kruhlmann.imgfloat.util.LogSanitizer;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
+import org.springframework.stereotype.Service;
+
+/**
+ * Applies the configured {@link RateLimitPolicy rate limits} and counts the requests they let through and reject.
+ * A limit is written as {@code <requests>/<period>}, e.g. {@code 30/10m}; {@code 0} or {@code off} turns it off.
+ * Signed-in clients are limited per Twitch login, everyone else per IP address. The counts are published as
+ * {@code imgfloat.rate.limit.requests}, tagged with the policy and whether the request was allowed or rejected.
+ */
+@Service
+public class RateLimitService implements MeterBinder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RateLimitService.class);
+
+    private final Map<RateLimitPolicy, RateLimiter> limiters = new EnumMap<>(RateLimitPolicy.class);
+    private final Map<RateLimitPolicy, AtomicLong> allowed = new EnumMap<>(RateLimitPolicy.class);
+    private final Map<RateLimitPolicy, AtomicLong> rejected = new EnumMap<>(RateLimitPolicy.class);
+
+    public RateLimitService(
+        @Value("${IMGFLOAT_RATE_LIMIT_COPYRIGHT_REPORTS:5/1h}") String copyrightReports,
+        @Value("${IMGFLOAT_RATE_LIMIT_UPLOADS:30/10m}") String uploads,
+        @Value("${IMGFLOAT_RATE_LIMIT_MARKETPLACE:30/1m}") String marketplace,
+        @Value("${IMGFLOAT_RATE_LIMIT_EMOTE_CATALOGS:120/1m}") String emoteCatalogs,
+        @Value("${IMGFLOAT_RATE_LIMIT_WEBSOCKET_MESSAGES:100/1s}") String websocketMessages,
+        @Value("${IMGFLOAT_RATE_LIMIT_MAX_KEYS:100000}") int maxKeys
+    ) {
+        configure(RateLimitPolicy.COPYRIGHT_REPORTS, copyrightReports, maxKeys);
+        configure(RateLimitPolicy.UPLOADS, uploads, maxKeys);
+        configure(RateLimitPolicy.MARKETPLACE, marketplace, maxKeys);
+        configure(RateLimitPolicy.EMOTE_CATALOGS, emoteCatalogs, maxKeys);
+        configure(RateLimitPolicy.WEBSOCKET_MESSAGES, websocketMessages, maxKeys);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (RateLimitPolicy policy : RateLimitPolicy.values()) {
+            String name = policy.name().toLowerCase(Locale.ROOT);
+            FunctionCounter.builder("imgfloat.rate.limit.requests", allowed.get(policy), AtomicLong::doubleValue)
+                .tags("policy", name, "result", "allowed")
+                .description("Requests a rate limit let through")
+                .register(registry);
+            FunctionCounter.builder("imgfloat.rate.limit.requests", rejected.get(policy), AtomicLong::doubleValue)
+                .tags("policy", name, "result", "rejected")
+                .description("Requests a rate limit rejected")
+                .register(registry);
+        }
+    }
+
+    /**
+     * Takes one request of {@code key} against {@code policy}.
+     *
+     * @return {@code 0} when the request is allowed, otherwise how many milliseconds the client should wait
+     */
+    public long tryAcquire(RateLimitPolicy policy, String key) {
+        RateLimiter limiter = limiters.get(policy);
+        if (limiter == null) {
+            return 0;
+        }
+        long retryAfterMillis = limiter.tryAcquire(key);
+        if (retryAfterMillis == 0) {
+            allowed.get(policy).incrementAndGet();
+        } else if (rejected.get(policy).incrementAndGet() % 100 == 1) {
+            LOG.warn("Rate limit {} exceeded by {}", policy, LogSanitizer.sanitize(key));
+        }
+        return retryAfterMillis;
+    }
+
+    /**
+     * @return the key a client is limited by: its Twitch login when signed in, otherwise its address
+     */
+    public static String clientKey(Principal principal, String remoteAddress) {
+        if (principal instanceof OAuth2AuthenticationToken token) {
+            return "user:" + OauthSessionUser.from(token).login();
+        }
+        if (principal != null) {
+            return "user:" + principal.getName();
+        }
+        return "ip:" + remoteAddress;
+    }
+
+    public RateLimitReport report() {
+        List<PolicyReport> policies = Arrays.stream(RateLimitPolicy.values())
+            .map((policy) -> {
+                RateLimiter limiter = limiters.get(policy);
+                return new PolicyReport(
+                    policy,
+                    limiter != null,
+                    limiter != null ? limiter.getCapacity() : 0,
+                    limiter != null ? limiter.getPeriod().toSeconds() : 0,
+                    allowed.get(policy).get(),
+                    rejected.get(policy).get(),
+                    limiter != null ? limiter.trackedKeys() : 0
+                );
+            })
+            .toList();
+        return new RateLimitReport(policies);
+    }
+
+    private void configure(RateLimitPolicy policy, String limit, int maxKeys) {
+        allowed.put(policy, new AtomicLong());
+        rejected.put(policy, new AtomicLong());
+        RateLimiter limiter = parse(limit, maxKeys);
+        if (limiter != null) {
+            limiters.put(policy, limiter);
+        }
+    }
+
+    static RateLimiter parse(String limit, int maxKeys) {
+        String value = limit == null ? "" : limit.trim();
+        if (value.isEmpty() || value.equals("0") || value.equalsIgnoreCase("off")) {
+            return null;
+        }
+        int separator = value.indexOf('/');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Rate limit '" + limit + "' is not of the form <requests>/<period>");
+        }
+        int requests = Integer.parseInt(value.substring(0, separator).trim());
+        if (requests == 0) {
+            return null;
+        }
+        Duration period = DurationStyle.detectAndParse(value.substring(separator + 1).trim());
+        return new RateLimiter(requests, period, maxKeys);
+    }
+
+    public record PolicyReport(
+        RateLimitPolicy policy,
+        boolean enabled,
+        int requests,
+        long periodSeconds,
+        long allowed,
+        long rejected,
+        int trackedClients
+    ) {}
+
+    public record RateLimitReport(List<PolicyReport> policies) {}
+}
@@ -0,0 +1,137 @@
+package dev.kruhlmann.imgfloat.service;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket per key: each key may spend {@code capacity} tokens at once, and tokens come back at a rate of
+ * {@code capacity} per {@code period}. Buckets are kept in lock-striped, access-ordered maps with a fixed number of
+ * keys, so a flood of distinct keys evicts the least recently seen ones instead of growing without bound. A bucket
+ * idle for a whole period is full again and indistinguishable from a new one, so it is dropped as well.
+ */
+public final class RateLimiter {
+
+    private static final int STRIPES = 16;
+
+    private final int capacity;
+    private final long periodNanos;
+    private final double tokensPerNano;
+    private final LongSupplier nanoClock;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public RateLimiter(int capacity, Duration period, int maxKeys) {
+        this(capacity, period, maxKeys, System::nanoTime);
+    }
+
+    RateLimiter(int capacity, Duration period, int maxKeys, LongSupplier nanoClock) {
+        if (capacity < 1 || period.isNegative() || period.isZero()) {
+            throw new IllegalArgumentException("A rate limit needs a positive capacity and period");
+        }
+        this.capacity = capacity;
+        this.periodNanos = period.toNanos();
+        this.tokensPerNano = (double) capacity / periodNanos;
+        this.nanoClock = nanoClock;
+        int keysPerStripe = Math.max(maxKeys / STRIPES, 1);
+        for (int index = 0; index < STRIPES; index++) {
+            stripes[index] = new Stripe(keysPerStripe);
+        }
+    }
+
+    /**
+     * Takes a token from the bucket of {@code key}.
+     *
+     * @return {@code 0} when a token was taken, otherwise how many milliseconds it takes until one is available
+     */
+    public long tryAcquire(String key) {
+        long now = nanoClock.getAsLong();
+        Stripe stripe = stripes[Math.floorMod(key.hashCode(), STRIPES)];
+        synchronized (stripe) {
+            stripe.evictIdle(now);
+            Bucket bucket = stripe.buckets.get(key);
+            if (bucket == null) {
+                bucket = new Bucket(capacity, now);
+                stripe.buckets.put(key, bucket);
+            } else {
+                bucket.refill(now);
+            }
+            if (bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+                return 0;
+            }
+            long waitNanos = (long) Math.ceil((1 - bucket.tokens) * periodNanos / capacity);
+            return Math.max(1, (waitNanos + 999_999) / 1_000_000);
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public Duration getPeriod() {
+        return Duration.ofNanos(periodNanos);
+    }
+
+    /**
+     * Drops idle buckets in every stripe, not just the ones recent requests went to.
+     *
+     * @return how many keys have a bucket that is not full yet
+     */
+    public int trackedKeys() {
+        long now = nanoClock.getAsLong();
+        int keys = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.evictIdle(now);
+                keys += stripe.buckets.size();
+            }
+        }
+        return keys;
+    }
+
+    private final class Bucket {
+
+        private double tokens;
+        private long updatedAt;
+
+        private Bucket(double tokens, long updatedAt) {
+            this.tokens = tokens;
+            this.updatedAt = updatedAt;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(capacity, tokens + (now - updatedAt) * tokensPerNano);
+            updatedAt = now;
+        }
+
+        private boolean idleSince(long now) {
+            return now - updatedAt >= periodNanos;
+        }
+    }
+
+    private static final class Stripe {
+
+        private final LinkedHashMap<String, Bucket> buckets;
+
+        private Stripe(int maxKeys) {
+            this.buckets = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+                    return size() > maxKeys;
+                }
+            };
+        }
+
+        /**
+         * Drops idle buckets from the least recently used end, stopping at the first bucket still in use.
+         */
+        private void evictIdle(long now) {
+            Iterator<Bucket> iterator = buckets.values().iterator();
+            while (iterator.hasNext() && iterator.next().idleSince(now)) {
+                iterator.remove();
+            }
+        }
+    }
+}
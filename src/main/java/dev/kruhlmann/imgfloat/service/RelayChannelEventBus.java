@@ -0,0 +1,466 @@
+package dev.kruhlmann.imgfloat.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.kruhlmann.imgfloat.util.StringNormalizer;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+/**
+ * Relays channel events between imgfloat nodes over TCP so overlays receive events published on any node.
+ * <p>
+ * Every channel is owned by one node, picked by rendezvous hashing over the configured node list. A node publishing
+ * an event for a channel it does not own forwards it to the owner; the owner delivers it to its own broker and sends
+ * it to every other node. Each node pair uses one ordered connection per direction, so all nodes deliver the events
+ * of a channel in the order the owner received them. While the owner is unreachable the publishing node delivers
+ * the event itself, which keeps events flowing at the cost of ordering across nodes.
+ * <p>
+ * The relay listens on the host and port of this node's own entry, so it only binds the interface the other nodes
+ * reach it on. Connections are authenticated with a challenge signed by the shared secret and the number of open
+ * inbound connections is capped; the relay port should still only be reachable by other nodes.
+ */
+public class RelayChannelEventBus implements ChannelEventBus {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RelayChannelEventBus.class);
+    private static final byte FORWARD = 'F';
+    private static final byte DELIVER = 'D';
+    private static final int TRANSIENT_FLAG = 1;
+    private static final int TEXT_FLAG = 2;
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int NONCE_LENGTH = 16;
+    private static final int SIGNATURE_LENGTH = 32;
+    private static final int MAX_PAYLOAD_BYTES = 16 * 1024 * 1024;
+    private static final int LOCK_STRIPES = 64;
+    private static final int CONNECT_TIMEOUT_MILLIS = 3000;
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 5000;
+    private static final int INBOUND_CONNECTIONS_PER_PEER = 2;
+    private static final Duration RECONNECT_MIN_DELAY = Duration.ofMillis(250);
+    private static final Duration RECONNECT_MAX_DELAY = Duration.ofSeconds(10);
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+    private final String self;
+    private final List<String> nodes;
+    private final byte[] secret;
+    private final Map<String, Peer> peers = new LinkedHashMap<>();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final Set<Socket> inboundSockets = ConcurrentHashMap.newKeySet();
+    private final Semaphore inboundSlots;
+    private final SecureRandom random = new SecureRandom();
+    private volatile ServerSocket serverSocket;
+    private volatile boolean running;
+
+    public RelayChannelEventBus(
+        SimpMessagingTemplate messagingTemplate,
+        ObjectMapper objectMapper,
+        String self,
+        List<String> nodes,
+        String secret,
+        int queueCapacity
+    ) {
+        if (!nodes.contains(self)) {
+            throw new IllegalStateException("Event bus node " + self + " is not in the node list " + nodes);
+        }
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException("A shared event bus secret is required when event bus nodes are set");
+        }
+        this.messagingTemplate = messagingTemplate;
+        this.objectMapper = objectMapper;
+        this.self = self;
+        this.nodes = List.copyOf(nodes);
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        for (int index = 0; index < LOCK_STRIPES; index++) {
+            locks[index] = new Object();
+        }
+        for (String node : this.nodes) {
+            if (!node.equals(self)) {
+                peers.put(node, new Peer(node, Math.max(queueCapacity, 1)));
+            }
+        }
+        // A reconnecting peer can briefly hold its old connection next to the new one.
+        this.inboundSlots = new Semaphore(Math.max(peers.size(), 1) * INBOUND_CONNECTIONS_PER_PEER);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (running) {
+            return;
+        }
+        try {
+            ServerSocket socket = new ServerSocket();
+            socket.setReuseAddress(true);
+            socket.bind(address(self));
+            serverSocket = socket;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Unable to listen for event bus peers on " + self, ex);
+        }
+        running = true;
+        startThread("event-bus-accept", this::acceptConnections);
+        peers.values().forEach((peer) -> startThread("event-bus-peer-" + peer.node, peer::run));
+        LOG.info("Event bus relay listening on {} with peers {}", self, peers.keySet());
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        closeQuietly(serverSocket);
+        inboundSockets.forEach(RelayChannelEventBus::closeQuietly);
+        peers.values().forEach(Peer::close);
+    }
+
+    @Override
+    public void publish(String broadcaster, Object event) {
+        route(broadcaster, event, 0);
+    }
+
+    @Override
+    public void publishTransient(String broadcaster, Object event) {
+        route(broadcaster, event, TRANSIENT_FLAG);
+    }
+
+    /**
+     * @return the node that sequences the events of {@code channel}
+     */
+    String ownerOf(String channel) {
+        String owner = null;
+        long best = -1;
+        for (String node : nodes) {
+            CRC32 crc = new CRC32();
+            crc.update((node + "\n" + channel).getBytes(StandardCharsets.UTF_8));
+            long score = crc.getValue();
+            if (score > best || (score == best && node.compareTo(owner) < 0)) {
+                best = score;
+                owner = node;
+            }
+        }
+        return owner;
+    }
+
+    /**
+     * Serializes the event the way the broker's message converters would: strings as plain text, everything else
+     * as JSON.
+     */
+    private void route(String broadcaster, Object event, int flags) {
+        String channel = StringNormalizer.toLowerCaseRoot(broadcaster);
+        byte[] payload;
+        if (event instanceof String text) {
+            payload = text.getBytes(StandardCharsets.UTF_8);
+            flags |= TEXT_FLAG;
+        } else {
+            try {
+                payload = objectMapper.writeValueAsBytes(event);
+            } catch (JsonProcessingException ex) {
+                throw new IllegalStateException("Unable to serialize channel event for " + channel, ex);
+            }
+        }
+        String owner = ownerOf(channel);
+        if (!owner.equals(self)) {
+            if (peers.get(owner).offer(encode(FORWARD, channel, flags, payload))) {
+                return;
+            }
+            LOG.warn("Event bus owner {} of channel {} is unreachable, delivering from this node", owner, channel);
+        }
+        sequence(channel, flags, payload);
+    }
+
+    private void sequence(String channel, int flags, byte[] payload) {
+        byte[] frame = encode(DELIVER, channel, flags, payload);
+        synchronized (locks[Math.floorMod(channel.hashCode(), LOCK_STRIPES)]) {
+            deliverLocally(channel, flags, payload);
+            peers.values().forEach((peer) -> peer.offer(frame));
+        }
+    }
+
+    private void deliverLocally(String channel, int flags, byte[] payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(
+            (flags & TEXT_FLAG) != 0 ? MimeTypeUtils.TEXT_PLAIN : MimeTypeUtils.APPLICATION_JSON
+        );
+        if ((flags & TRANSIENT_FLAG) != 0) {
+            accessor.setHeader(ChannelEventLog.TRANSIENT_HEADER, true);
+        }
+        accessor.setLeaveMutable(true);
+        try {
+            messagingTemplate.send(
+                CHANNEL_TOPIC_PREFIX + channel,
+                MessageBuilder.createMessage(payload, accessor.getMessageHeaders())
+            );
+        } catch (MessagingException ex) {
+            LOG.warn("Failed to deliver relayed event for channel {}", channel, ex);
+        }
+    }
+
+    private void acceptConnections() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                if (!inboundSlots.tryAcquire()) {
+                    LOG.warn("Refused event bus connection from {}, too many open", socket.getRemoteSocketAddress());
+                    closeQuietly(socket);
+                    continue;
+                }
+                startThread("event-bus-inbound", () -> {
+                    try {
+                        receive(socket);
+                    } finally {
+                        inboundSlots.release();
+                    }
+                });
+            } catch (IOException ex) {
+                if (running) {
+                    LOG.warn("Event bus relay stopped accepting peers", ex);
+                }
+                return;
+            }
+        }
+    }
+
+    private void receive(Socket socket) {
+        inboundSockets.add(socket);
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            String peer = authenticate(socket, in, out);
+            if (peer == null) {
+                LOG.warn("Rejected event bus connection from {}", socket.getRemoteSocketAddress());
+                return;
+            }
+            while (running) {
+                byte type = in.readByte();
+                int flags = in.readUnsignedByte();
+                String channel = in.readUTF();
+                int length = in.readInt();
+                if (length < 0 || length > MAX_PAYLOAD_BYTES) {
+                    LOG.warn("Closing event bus connection from {} after a {} byte frame", peer, length);
+                    return;
+                }
+                byte[] payload = in.readNBytes(length);
+                if (payload.length != length) {
+                    return;
+                }
+                if (type == FORWARD) {
+                    sequence(channel, flags, payload);
+                } else if (type == DELIVER) {
+                    deliverLocally(channel, flags, payload);
+                } else {
+                    LOG.warn("Closing event bus connection from {} after an unknown frame", peer);
+                    return;
+                }
+            }
+        } catch (EOFException ex) {
+            LOG.debug("Event bus peer disconnected");
+        } catch (IOException ex) {
+            if (running) {
+                LOG.warn("Event bus connection from {} failed: {}", socket.getRemoteSocketAddress(), ex.getMessage());
+            }
+        } finally {
+            inboundSockets.remove(socket);
+        }
+    }
+
+    /**
+     * Challenges a new connection to sign a nonce with the shared secret. The peer gets
+     * {@value #HANDSHAKE_TIMEOUT_MILLIS} ms to answer, so that connections that never authenticate are dropped.
+     *
+     * @return the name of the authenticated peer, or {@code null} if the connection is not from a configured node
+     */
+    private String authenticate(Socket socket, DataInputStream in, DataOutputStream out) throws IOException {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        random.nextBytes(nonce);
+        socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+        try {
+            out.write(nonce);
+            out.flush();
+            byte[] signature = in.readNBytes(SIGNATURE_LENGTH);
+            if (signature.length != SIGNATURE_LENGTH || !MessageDigest.isEqual(signature, sign(nonce))) {
+                return null;
+            }
+            String peer = in.readUTF();
+            if (!peers.containsKey(peer)) {
+                return null;
+            }
+            socket.setSoTimeout(0);
+            return peer;
+        } catch (SocketTimeoutException | EOFException ex) {
+            return null;
+        }
+    }
+
+    private byte[] sign(byte[] nonce) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secret, HMAC_ALGORITHM));
+            return mac.doFinal(nonce);
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("Unable to sign event bus challenge", ex);
+        }
+    }
+
+    private static byte[] encode(byte type, String channel, int flags, byte[] payload) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length + channel.length() + 16);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(type);
+            out.writeByte(flags);
+            out.writeUTF(channel);
+            out.writeInt(payload.length);
+            out.write(payload);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static InetSocketAddress address(String node) {
+        int separator = node.lastIndexOf(':');
+        if (separator <= 0) {
+            throw new IllegalStateException("Event bus node " + node + " must be host:port");
+        }
+        return new InetSocketAddress(node.substring(0, separator), Integer.parseInt(node.substring(separator + 1)));
+    }
+
+    private static void startThread(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ex) {
+            LOG.debug("Failed to close event bus socket", ex);
+        }
+    }
+
+    /**
+     * Outbound connection to one peer. Frames are written in the order they were offered by a single sender thread.
+     * Frames offered while the peer is unreachable are dropped rather than queued behind the outage.
+     */
+    private final class Peer {
+
+        private final String node;
+        private final BlockingQueue<byte[]> queue;
+        private volatile boolean connected;
+        private volatile Socket socket;
+
+        private Peer(String node, int queueCapacity) {
+            this.node = node;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+
+        private boolean offer(byte[] frame) {
+            if (!connected) {
+                return false;
+            }
+            if (!queue.offer(frame)) {
+                LOG.warn("Event bus queue to {} is full, dropping event", node);
+                return false;
+            }
+            return true;
+        }
+
+        private void run() {
+            long delayMillis = RECONNECT_MIN_DELAY.toMillis();
+            boolean reportedUnreachable = false;
+            while (running) {
+                try (Socket connection = new Socket()) {
+                    socket = connection;
+                    connection.connect(address(node), CONNECT_TIMEOUT_MILLIS);
+                    connection.setTcpNoDelay(true);
+                    connection.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+                    DataInputStream in = new DataInputStream(connection.getInputStream());
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+                    byte[] nonce = in.readNBytes(NONCE_LENGTH);
+                    if (nonce.length != NONCE_LENGTH) {
+                        throw new EOFException("Peer closed during handshake");
+                    }
+                    out.write(sign(nonce));
+                    out.writeUTF(self);
+                    out.flush();
+                    connected = true;
+                    delayMillis = RECONNECT_MIN_DELAY.toMillis();
+                    reportedUnreachable = false;
+                    LOG.info("Connected to event bus peer {}", node);
+                    while (running) {
+                        byte[] frame = queue.poll(1, TimeUnit.SECONDS);
+                        if (frame == null) {
+                            continue;
+                        }
+                        do {
+                            out.write(frame);
+                        } while ((frame = queue.poll()) != null);
+                        out.flush();
+                    }
+                } catch (IOException ex) {
+                    if (running && !reportedUnreachable) {
+                        LOG.warn("Event bus peer {} unreachable, retrying: {}", node, ex.getMessage());
+                        reportedUnreachable = true;
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } finally {
+                    connected = false;
+                    queue.clear();
+                }
+                sleep(delayMillis);
+                delayMillis = Math.min(delayMillis * 2, RECONNECT_MAX_DELAY.toMillis());
+            }
+        }
+
+        private void close() {
+            closeQuietly(socket);
+        }
+
+        private void sleep(long millis) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
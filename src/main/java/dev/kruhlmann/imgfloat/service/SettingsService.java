@@ -2,18 +2,25 @@ package dev.kruhlmann.imgfloat.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.kruhlmann.imgfloat.model.api.response.AssetEvent;
+import dev.kruhlmann.imgfloat.model.api.response.AssetPatch;
+import dev.kruhlmann.imgfloat.model.db.imgfloat.Asset;
 import dev.kruhlmann.imgfloat.model.db.imgfloat.AudioAsset;
 import dev.kruhlmann.imgfloat.model.db.imgfloat.Settings;
 import dev.kruhlmann.imgfloat.model.db.imgfloat.VisualAsset;
+import dev.kruhlmann.imgfloat.repository.AssetRepository;
 import dev.kruhlmann.imgfloat.repository.AudioAssetRepository;
 import dev.kruhlmann.imgfloat.repository.SettingsRepository;
 import dev.kruhlmann.imgfloat.repository.VisualAssetRepository;
 import jakarta.annotation.PostConstruct;
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -21,49 +28,102 @@ public class SettingsService {
 
     private static final Logger LOG = LoggerFactory.getLogger(SettingsService.class);
 
+    private static final int CLAMP_CHUNK_SIZE = 500;
+    private static final double MIN_AUDIO_FRACTION = 0.1;
+
     private final SettingsRepository repo;
+    private final AssetRepository assetRepository;
     private final VisualAssetRepository visualAssetRepository;
     private final AudioAssetRepository audioAssetRepository;
+    private final ChannelEventBus channelEventBus;
     private final ObjectMapper objectMapper;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    private final boolean cached;
 
     public SettingsService(
         SettingsRepository repo,
+        AssetRepository assetRepository,
         VisualAssetRepository visualAssetRepository,
         AudioAssetRepository audioAssetRepository,
-        ObjectMapper objectMapper
+        ChannelEventBus channelEventBus,
+        ObjectMapper objectMapper,
+        @Value("${IMGFLOAT_EVENT_BUS_NODES:}") String eventBusNodes
     ) {
         this.repo = repo;
+        this.assetRepository = assetRepository;
         this.visualAssetRepository = visualAssetRepository;
         this.audioAssetRepository = audioAssetRepository;
+        this.channelEventBus = channelEventBus;
         this.objectMapper = objectMapper;
+        this.cached = eventBusNodes.isBlank();
     }
 
     @PostConstruct
     public void initDefaults() {
         if (repo.existsById(1)) {
+            reload();
             return;
         }
         Settings s = Settings.defaults();
         logSettings("Initializing default settings", s);
-        repo.save(s);
+        publish(repo.save(s));
     }
 
+    /**
+     * Returns a private copy of the current settings snapshot. The snapshot is only replaced when settings are
+     * written through this service, so reads never reach the database. Other nodes' writes are not visible here,
+     * so when imgfloat runs as several nodes every read loads the settings from the database instead.
+     */
     public Settings get() {
-        return repo.findById(1).orElseThrow();
+        return current().settings().copy();
+    }
+
+    /**
+     * Monotonically increasing version of the settings snapshot. Caches derived from settings can compare it
+     * against the version they were built from to detect that they are stale. With several nodes it changes on
+     * every read, as the settings may have been changed elsewhere.
+     */
+    public long getVersion() {
+        return current().version();
     }
 
-    public Settings save(Settings settings) {
+    public synchronized Settings save(Settings settings) {
         settings.setId(1);
         logSettings("Saving settings", settings);
         Settings savedSettings = repo.save(settings);
+        publish(savedSettings);
         clampAssetsToSettings(savedSettings);
         return savedSettings;
     }
 
-    public void updateLastEmoteSyncAt(Instant timestamp) {
-        Settings settings = get();
+    public synchronized void updateLastEmoteSyncAt(Instant timestamp) {
+        Settings settings = current().settings().copy();
         settings.setLastEmoteSyncAt(timestamp);
-        repo.save(settings);
+        publish(repo.save(settings));
+    }
+
+    /**
+     * Replaces the snapshot with the row currently stored in the database.
+     */
+    public synchronized void reload() {
+        publish(repo.findById(1).orElseThrow());
+    }
+
+    private Snapshot current() {
+        if (!cached) {
+            return publish(repo.findById(1).orElseThrow());
+        }
+        Snapshot current = snapshot.get();
+        if (current == null) {
+            reload();
+            current = snapshot.get();
+        }
+        return current;
+    }
+
+    private Snapshot publish(Settings settings) {
+        Settings copy = settings.copy();
+        return snapshot.updateAndGet((previous) -> new Snapshot(previous == null ? 1 : previous.version() + 1, copy));
     }
 
     public void logSettings(String msg, Settings settings) {
@@ -74,6 +134,12 @@ public class SettingsService {
         }
     }
 
+    /**
+     * Moves asset values that the new settings no longer allow back inside the configured ranges. The queries compare
+     * the values the asset getters return (volume within 0..1, audio speed and pitch at least 0.1), so each range is
+     * first moved to overlap those values: a range entirely outside them could never be reached, and the same rows
+     * would be found and clamped again on every pass.
+     */
     private void clampAssetsToSettings(Settings settings) {
         double minSpeed = settings.getMinAssetPlaybackSpeedFraction();
         double maxSpeed = settings.getMaxAssetPlaybackSpeedFraction();
@@ -81,70 +147,100 @@ public class SettingsService {
         double maxPitch = settings.getMaxAssetAudioPitchFraction();
         double minVolume = settings.getMinAssetVolumeFraction();
         double maxVolume = settings.getMaxAssetVolumeFraction();
-
-        List<VisualAsset> visualsToUpdate = new ArrayList<>();
-        for (VisualAsset visual : visualAssetRepository.findAll()) {
-            boolean changed = false;
-            double speed = visual.getSpeed();
-            double clampedSpeed = clamp(speed, minSpeed, maxSpeed);
-            if (Double.compare(speed, clampedSpeed) != 0) {
-                visual.setSpeed(clampedSpeed);
-                changed = true;
-            }
-            double volume = visual.getAudioVolume();
-            double clampedVolume = clamp(volume, minVolume, maxVolume);
-            if (Double.compare(volume, clampedVolume) != 0) {
-                visual.setAudioVolume(clampedVolume);
-                changed = true;
-            }
-            if (changed) {
-                visualsToUpdate.add(visual);
-            }
+        if (minSpeed > maxSpeed || minPitch > maxPitch || minVolume > maxVolume) {
+            // Clamping to an empty range would never converge.
+            LOG.warn("Skipping asset normalization for inverted settings ranges");
+            return;
         }
-
-        List<AudioAsset> audioToUpdate = new ArrayList<>();
-        for (AudioAsset audio : audioAssetRepository.findAll()) {
-            boolean changed = false;
-            double speed = audio.getAudioSpeed();
-            double clampedSpeed = clamp(speed, minSpeed, maxSpeed);
-            if (Double.compare(speed, clampedSpeed) != 0) {
-                audio.setAudioSpeed(clampedSpeed);
-                changed = true;
-            }
-            double pitch = audio.getAudioPitch();
-            double clampedPitch = clamp(pitch, minPitch, maxPitch);
-            if (Double.compare(pitch, clampedPitch) != 0) {
-                audio.setAudioPitch(clampedPitch);
-                changed = true;
-            }
-            double volume = audio.getAudioVolume();
-            double clampedVolume = clamp(volume, minVolume, maxVolume);
-            if (Double.compare(volume, clampedVolume) != 0) {
-                audio.setAudioVolume(clampedVolume);
-                changed = true;
+        minVolume = Math.min(minVolume, 1.0);
+        maxVolume = Math.max(maxVolume, 0.0);
+        double minAudioSpeed = minSpeed;
+        double maxAudioSpeed = Math.max(maxSpeed, MIN_AUDIO_FRACTION);
+        maxPitch = Math.max(maxPitch, MIN_AUDIO_FRACTION);
+
+        // Each pass moves its rows inside the ranges, so no more passes than rows are ever needed.
+        long visualRows = visualAssetRepository.count();
+        int visualsUpdated = 0;
+        List<String> visualIds;
+        do {
+            visualIds = visualAssetRepository.findIdsOutsideLimits(
+                minSpeed,
+                maxSpeed,
+                minVolume,
+                maxVolume,
+                CLAMP_CHUNK_SIZE
+            );
+            if (visualIds.isEmpty()) {
+                break;
             }
-            if (changed) {
-                audioToUpdate.add(audio);
+            visualAssetRepository.clampToLimits(visualIds, minSpeed, maxSpeed, minVolume, maxVolume);
+            publishClampedPatches(
+                visualIds,
+                visualAssetRepository
+                    .findByIdIn(visualIds)
+                    .stream()
+                    .collect(Collectors.toMap(VisualAsset::getId, AssetPatch::forVisualLimits))
+            );
+            visualsUpdated += visualIds.size();
+        } while (visualIds.size() == CLAMP_CHUNK_SIZE && visualsUpdated < visualRows);
+
+        long audioRows = audioAssetRepository.count();
+        int audioUpdated = 0;
+        List<String> audioIds;
+        do {
+            audioIds = audioAssetRepository.findIdsOutsideLimits(
+                minAudioSpeed,
+                maxAudioSpeed,
+                minPitch,
+                maxPitch,
+                minVolume,
+                maxVolume,
+                CLAMP_CHUNK_SIZE
+            );
+            if (audioIds.isEmpty()) {
+                break;
             }
-        }
-
-        if (!visualsToUpdate.isEmpty()) {
-            visualAssetRepository.saveAll(visualsToUpdate);
-        }
-        if (!audioToUpdate.isEmpty()) {
-            audioAssetRepository.saveAll(audioToUpdate);
-        }
+            audioAssetRepository.clampToLimits(
+                audioIds,
+                minAudioSpeed,
+                maxAudioSpeed,
+                minPitch,
+                maxPitch,
+                minVolume,
+                maxVolume
+            );
+            publishClampedPatches(
+                audioIds,
+                audioAssetRepository
+                    .findByIdIn(audioIds)
+                    .stream()
+                    .collect(Collectors.toMap(AudioAsset::getId, AssetPatch::forAudioLimits))
+            );
+            audioUpdated += audioIds.size();
+        } while (audioIds.size() == CLAMP_CHUNK_SIZE && audioUpdated < audioRows);
 
-        if (!visualsToUpdate.isEmpty() || !audioToUpdate.isEmpty()) {
+        if (visualsUpdated > 0 || audioUpdated > 0) {
             LOG.info(
                 "Normalized {} visual assets and {} audio assets to new settings ranges",
-                visualsToUpdate.size(),
-                audioToUpdate.size()
+                visualsUpdated,
+                audioUpdated
             );
         }
     }
 
-    private double clamp(double value, double min, double max) {
-        return Math.max(min, Math.min(max, value));
+    private void publishClampedPatches(List<String> assetIds, Map<String, AssetPatch> patches) {
+        for (Asset asset : assetRepository.findAllById(assetIds)) {
+            AssetPatch patch = patches.get(asset.getId());
+            if (patch == null) {
+                continue;
+            }
+            String broadcaster = asset.getBroadcaster();
+            channelEventBus.publish(
+                broadcaster,
+                AssetEvent.updated(broadcaster, patch)
+            );
+        }
     }
+
+    private record Snapshot(long version, Settings settings) {}
 }
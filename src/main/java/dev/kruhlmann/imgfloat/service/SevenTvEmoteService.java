@@ -2,6 +2,8 @@ package dev.kruhlmann.imgfloat.service;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Files;
@@ -12,20 +14,22 @@ import java.util.List;
 import dev.kruhlmann.imgfloat.util.StringNormalizer;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
-import org.springframework.web.util.UriComponentsBuilder;
 
 /**
  * Fetches, caches, and persists 7TV global and channel emote data.
@@ -34,54 +38,110 @@ import org.springframework.web.util.UriComponentsBuilder;
  * a configurable interval.
  */
 @Service
-public class SevenTvEmoteService {
+public class SevenTvEmoteService implements MeterBinder {
 
+    private static final Duration IMAGE_REVALIDATE_AFTER = Duration.ofDays(1);
+    private static final Duration EMPTY_CHANNEL_TTL = Duration.ofMinutes(10);
+    private static final Duration CHANNEL_MISS_DEADLINE = Duration.ofSeconds(2);
+    private static final EmoteCatalog EMPTY_CATALOG = EmoteCatalog.of(new CatalogBody(List.of()));
     private static final Logger LOG = LoggerFactory.getLogger(SevenTvEmoteService.class);
-    private static final String USERS_URL = "https://api.twitch.tv/helix/users";
-    private static final String USER_EMOTE_URL = "https://7tv.io/v3/users/twitch/";
 
     private final RestTemplate restTemplate;
-    private final TwitchAppAccessTokenService tokenService;
-    private final Path cacheRoot;
+    private final String userEmoteUrl;
+    private final TwitchIdentityService identityService;
+    private final EmoteFileStore fileStore;
+    private final EmoteImageFetcher imageFetcher;
     private final Map<String, CachedEmote> emoteCache = new ConcurrentHashMap<>();
-    private final Map<String, List<CachedEmote>> channelEmoteCache = new ConcurrentHashMap<>();
+    private final ChannelEmoteCache<ChannelEmotes> channelEmoteCache;
 
     public SevenTvEmoteService(
         RestTemplateBuilder builder,
-        TwitchAppAccessTokenService tokenService,
-        @Value("${IMGFLOAT_7TV_EMOTE_CACHE_PATH:#{null}}") String cachePath
+        TwitchIdentityService identityService,
+        @Value("${IMGFLOAT_7TV_EMOTE_CACHE_PATH:#{null}}") String cachePath,
+        @Value("${IMGFLOAT_7TV_API_URL:https://7tv.io/v3}") String sevenTvApiUrl,
+        @Qualifier("emoteDownloadTaskExecutor") Executor downloadExecutor,
+        @Qualifier("emoteCacheLoadTaskExecutor") Executor loadExecutor,
+        @Value("${IMGFLOAT_EMOTE_CHANNEL_CACHE_SIZE:1000}") int channelCacheSize,
+        @Value("${IMGFLOAT_EMOTE_CHANNEL_CACHE_TTL_MINUTES:60}") long channelCacheTtlMinutes
     ) {
         this.restTemplate = builder
             .setConnectTimeout(Duration.ofSeconds(20))
             .setReadTimeout(Duration.ofSeconds(20))
             .build();
-        this.tokenService = tokenService;
+        this.userEmoteUrl = sevenTvApiUrl + "/users/twitch/";
+        this.identityService = identityService;
         String root = cachePath != null
             ? cachePath
             : Paths.get(System.getProperty("java.io.tmpdir"), "imgfloat-7tv-emotes").toString();
-        this.cacheRoot = Paths.get(root).normalize().toAbsolutePath();
+        Path cacheRoot = Paths.get(root).normalize().toAbsolutePath();
         try {
-            Files.createDirectories(this.cacheRoot);
+            Files.createDirectories(cacheRoot);
         } catch (IOException ex) {
             throw new IllegalStateException("Failed to create 7TV emote cache directory", ex);
         }
+        this.fileStore = new EmoteFileStore(cacheRoot, (name) -> mediaTypeFromPath(Path.of(name)).toString());
+        this.imageFetcher = new EmoteImageFetcher(
+            "7TV",
+            restTemplate,
+            fileStore,
+            downloadExecutor,
+            IMAGE_REVALIDATE_AFTER,
+            (name) -> mediaTypeFromPath(Path.of(name)).toString()
+        );
+        this.channelEmoteCache = new ChannelEmoteCache<>(
+            "7TV",
+            (login) -> fetchChannelEmotes(login, false).map(ChannelEmotes::of),
+            (cached) -> cached.emotes().isEmpty(),
+            loadExecutor,
+            channelCacheSize,
+            Duration.ofMinutes(channelCacheTtlMinutes),
+            EMPTY_CHANNEL_TTL,
+            CHANNEL_MISS_DEADLINE
+        );
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        channelEmoteCache.bindTo(registry, "7tv.channel.emotes");
     }
 
     public List<EmoteDescriptor> getChannelEmotes(String channelLogin) {
         if (channelLogin == null || channelLogin.isBlank()) {
             return List.of();
         }
-        String normalized = StringNormalizer.toLowerCaseRoot(channelLogin);
-        List<CachedEmote> emotes = channelEmoteCache.computeIfAbsent(normalized, this::fetchChannelEmotes);
-        return emotes.stream().map(CachedEmote::descriptor).toList();
+        return channelEmoteCache
+            .get(StringNormalizer.toLowerCaseRoot(channelLogin))
+            .map((cached) -> cached.emotes().stream().map(CachedEmote::descriptor).toList())
+            .orElse(List.of());
+    }
+
+    /**
+     * Returns the channel's emotes, serialized when they were last fetched. The catalog is empty while they are
+     * still loading.
+     */
+    public EmoteCatalog getEmoteCatalog(String channelLogin) {
+        if (channelLogin == null || channelLogin.isBlank()) {
+            return EMPTY_CATALOG;
+        }
+        return channelEmoteCache
+            .get(StringNormalizer.toLowerCaseRoot(channelLogin))
+            .map(ChannelEmotes::catalog)
+            .orElse(EMPTY_CATALOG);
     }
 
-    public void refreshChannelEmotes(String channelLogin) {
+    /**
+     * Fetches the channel's emotes again. The emotes cached so far are kept when Twitch or 7TV cannot be reached.
+     *
+     * @return whether both answered
+     */
+    public boolean refreshChannelEmotes(String channelLogin) {
         if (channelLogin == null || channelLogin.isBlank()) {
-            return;
+            return true;
         }
         String normalized = StringNormalizer.toLowerCaseRoot(channelLogin);
-        channelEmoteCache.put(normalized, fetchChannelEmotes(normalized));
+        Optional<List<CachedEmote>> emotes = fetchChannelEmotes(normalized, true);
+        emotes.ifPresent((cached) -> channelEmoteCache.put(normalized, ChannelEmotes.of(cached)));
+        return emotes.isPresent();
     }
 
     public Optional<EmoteAsset> loadEmoteAsset(String emoteId) {
@@ -104,54 +164,29 @@ public class SevenTvEmoteService {
         }
     }
 
-    private List<CachedEmote> fetchChannelEmotes(String channelLogin) {
-        String broadcasterId = fetchBroadcasterId(channelLogin).orElse(null);
-        if (broadcasterId == null) {
-            return List.of();
-        }
-        String url = USER_EMOTE_URL + broadcasterId;
-        SevenTvUserResponse response = fetchEmotes(url).orElse(null);
-        SevenTvEmoteSet set = response != null ? response.emoteSet() : null;
-        if (set == null || set.emotes() == null || set.emotes().isEmpty()) {
-            return List.of();
-        }
-        List<CachedEmote> cached = set
-            .emotes()
-            .stream()
-            .map(this::cacheEmote)
-            .filter(Optional::isPresent)
-            .map(Optional::get)
-            .toList();
-        LOG.info("Loaded {} 7TV emotes for {}", cached.size(), channelLogin);
-        return cached;
-    }
-
-    private Optional<String> fetchBroadcasterId(String channelLogin) {
-        Optional<String> token = tokenService.getAccessToken();
-        Optional<String> clientId = tokenService.getClientId();
-        if (token.isEmpty() || clientId.isEmpty()) {
-            return Optional.empty();
-        }
-        UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(USERS_URL).queryParam("login", channelLogin);
-        HttpHeaders headers = new HttpHeaders();
-        headers.setBearerAuth(token.get());
-        headers.add("Client-ID", clientId.get());
+    /**
+     * Fetches the channel's emotes, or nothing when Twitch or 7TV cannot be reached. A channel that does not exist
+     * or has no 7TV account has no emotes.
+     */
+    private Optional<List<CachedEmote>> fetchChannelEmotes(String channelLogin, boolean revalidate) {
+        SevenTvUserResponse response;
         try {
-            ResponseEntity<TwitchUsersResponse> response = restTemplate.exchange(
-                builder.build(true).toUri(),
-                HttpMethod.GET,
-                new HttpEntity<>(headers),
-                TwitchUsersResponse.class
-            );
-            TwitchUsersResponse body = response.getBody();
-            if (body == null || body.data() == null || body.data().isEmpty()) {
-                return Optional.empty();
+            String broadcasterId = identityService.findUserId(channelLogin).orElse(null);
+            if (broadcasterId == null) {
+                return Optional.of(List.of());
             }
-            return body.data().stream().findFirst().map(TwitchUserData::id);
+            response = fetchEmotes(userEmoteUrl + broadcasterId).orElse(null);
         } catch (RestClientException ex) {
-            LOG.warn("Unable to fetch Twitch broadcaster id for {}", channelLogin, ex);
+            LOG.warn("Unable to fetch 7TV emotes for {}", channelLogin, ex);
             return Optional.empty();
         }
+        SevenTvEmoteSet set = response != null ? response.emoteSet() : null;
+        if (set == null || set.emotes() == null || set.emotes().isEmpty()) {
+            return Optional.of(List.of());
+        }
+        List<CachedEmote> cached = cacheEmotes(set.emotes(), revalidate);
+        LOG.info("Loaded {} 7TV emotes for {}", cached.size(), channelLogin);
+        return Optional.of(cached);
     }
 
     private Optional<SevenTvUserResponse> fetchEmotes(String url) {
@@ -163,81 +198,57 @@ public class SevenTvEmoteService {
                 SevenTvUserResponse.class
             );
             return Optional.ofNullable(response.getBody());
-        } catch (RestClientException ex) {
-            LOG.warn("Unable to fetch 7TV emotes from {}", url, ex);
+        } catch (HttpClientErrorException.NotFound ex) {
+            // Twitch users without a 7TV account
             return Optional.empty();
         }
     }
 
-    private Optional<CachedEmote> cacheEmote(SevenTvEmote emote) {
-        if (emote == null || emote.id() == null || emote.id().isBlank()) {
-            return Optional.empty();
-        }
-        return Optional.ofNullable(
-            emoteCache.computeIfAbsent(
-                emote.id(),
-                (id) -> {
-                    String imageUrl = selectImageUrl(emote);
-                    if (imageUrl == null) {
-                        return null;
-                    }
-                    return downloadEmote(id, emote.name(), imageUrl);
-                }
-            )
-        );
+    /**
+     * Downloads the images of {@code emotes} in parallel and returns those that are stored, in order.
+     */
+    private List<CachedEmote> cacheEmotes(List<SevenTvEmote> emotes, boolean revalidate) {
+        List<CompletableFuture<Optional<CachedEmote>>> pending = emotes
+            .stream()
+            .map((emote) -> cacheEmote(emote, revalidate))
+            .toList();
+        return pending.stream().map(CompletableFuture::join).flatMap(Optional::stream).toList();
     }
 
-    private CachedEmote downloadEmote(String id, String name, String imageUrl) {
-        Path filePath = resolveEmotePath(id, imageUrl);
-        MediaType mediaType = null;
-
-        if (!Files.exists(filePath)) {
-            try {
-                ResponseEntity<byte[]> response = restTemplate.getForEntity(URI.create(imageUrl), byte[].class);
-                byte[] bytes = response.getBody();
-                if (bytes == null || bytes.length == 0) {
-                    return null;
-                }
-                mediaType = response.getHeaders().getContentType();
-                Files.write(filePath, bytes);
-            } catch (IOException | RestClientException ex) {
-                LOG.warn("Unable to download 7TV emote {}", id, ex);
-                return null;
-            }
+    private CompletableFuture<Optional<CachedEmote>> cacheEmote(SevenTvEmote emote, boolean revalidate) {
+        if (emote == null || emote.id() == null || emote.id().isBlank()) {
+            return CompletableFuture.completedFuture(Optional.empty());
         }
-
-        if (mediaType == null) {
-            mediaType = mediaTypeFromPath(filePath);
+        String id = emote.id();
+        CachedEmote cached = emoteCache.get(id);
+        if (cached != null && !revalidate) {
+            return CompletableFuture.completedFuture(
+                Optional.of(new CachedEmote(id, emote.name(), cached.path(), cached.mediaType()))
+            );
         }
-        return new CachedEmote(id, name, filePath, mediaType != null ? mediaType.toString() : "image/png");
+        String imageUrl = selectImageUrl(emote);
+        if (imageUrl == null) {
+            return CompletableFuture.completedFuture(Optional.ofNullable(cached));
+        }
+        return imageFetcher
+            .fetch(id, imageUrl, extensionFromUrl(imageUrl).orElse("png"), revalidate)
+            .thenApply((stored) ->
+                stored.map((image) -> {
+                    CachedEmote fetched = new CachedEmote(id, emote.name(), image.path(), image.mediaType());
+                    emoteCache.put(id, fetched);
+                    return fetched;
+                })
+            );
     }
 
     private Optional<CachedEmote> restoreFromDisk(String id) {
-        if (id == null || id.isBlank()) {
-            return Optional.empty();
-        }
-        try {
-            List<Path> candidates;
-            try (var stream = Files.list(cacheRoot)) {
-                candidates = stream.filter((path) -> path.getFileName().toString().startsWith(id + ".")).toList();
-            }
-            if (candidates.isEmpty()) {
-                return Optional.empty();
-            }
-            Path path = candidates.get(0);
-            MediaType mediaType = mediaTypeFromPath(path);
-            CachedEmote cached = new CachedEmote(id, id, path, mediaType != null ? mediaType.toString() : "image/png");
-            emoteCache.put(id, cached);
-            return Optional.of(cached);
-        } catch (IOException ex) {
-            LOG.warn("Unable to restore cached 7TV emote {}", id, ex);
-            return Optional.empty();
-        }
-    }
-
-    private Path resolveEmotePath(String id, String imageUrl) {
-        String extension = extensionFromUrl(imageUrl).orElse("png");
-        return cacheRoot.resolve(id + "." + extension);
+        return fileStore
+            .find(id)
+            .map((stored) -> {
+                CachedEmote cached = new CachedEmote(id, id, stored.path(), stored.mediaType());
+                emoteCache.put(id, cached);
+                return cached;
+            });
     }
 
     private Optional<String> extensionFromUrl(String imageUrl) {
@@ -328,6 +339,17 @@ public class SevenTvEmoteService {
 
     public record EmoteAsset(byte[] bytes, String mediaType) {}
 
+    private record CatalogBody(List<EmoteDescriptor> channel) {}
+
+    private record ChannelEmotes(List<CachedEmote> emotes, EmoteCatalog catalog) {
+        static ChannelEmotes of(List<CachedEmote> emotes) {
+            return new ChannelEmotes(
+                emotes,
+                EmoteCatalog.of(new CatalogBody(emotes.stream().map(CachedEmote::descriptor).toList()))
+            );
+        }
+    }
+
     private record CachedEmote(String id, String name, Path path, String mediaType) {
         EmoteDescriptor descriptor() {
             return new EmoteDescriptor(id, name, "/api/7tv/emotes/" + id);
@@ -351,10 +373,4 @@ public class SevenTvEmoteService {
 
     @JsonIgnoreProperties(ignoreUnknown = true)
     private record SevenTvFile(String name, String format, String size) {}
-
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    private record TwitchUsersResponse(List<TwitchUserData> data) {}
-
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    private record TwitchUserData(String id) {}
 }
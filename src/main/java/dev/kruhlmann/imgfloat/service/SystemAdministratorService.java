@@ -20,13 +20,16 @@ public class SystemAdministratorService {
 
     private final SystemAdministratorRepository repo;
     private final Environment environment;
+    private final PreviewAuthorizationCache previewAuthorizationCache;
 
     public SystemAdministratorService(
         SystemAdministratorRepository repo,
-        Environment environment
+        Environment environment,
+        PreviewAuthorizationCache previewAuthorizationCache
     ) {
         this.repo = repo;
         this.environment = environment;
+        this.previewAuthorizationCache = previewAuthorizationCache;
     }
 
     @EventListener(ApplicationReadyEvent.class)
@@ -99,6 +102,7 @@ public class SystemAdministratorService {
         if (deleted == 0) {
             throw new IllegalArgumentException("System administrator does not exist");
         }
+        previewAuthorizationCache.evictUserAfterCommit(normalized);
     }
 
     public boolean isSysadmin(String twitchUsername) {
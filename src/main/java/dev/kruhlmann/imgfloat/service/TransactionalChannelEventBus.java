@@ -0,0 +1,162 @@
+package dev.kruhlmann.imgfloat.service;
+
+import dev.kruhlmann.imgfloat.model.api.response.AssetEvent;
+import dev.kruhlmann.imgfloat.model.api.response.ChannelEventBatch;
+import dev.kruhlmann.imgfloat.util.StringNormalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Holds back channel events published inside a transaction until it commits, so overlays never react to state they
+ * cannot read yet, and drops them when it rolls back. The events a transaction publishes to one channel are sent as
+ * a single {@link ChannelEventBatch}, split around plain text notices, in the order they were published: successive
+ * patches of the same asset are merged into one unless a layer order lies between them, and a later layer order
+ * replaces an earlier one. Events published outside a transaction, and transient events, are sent right away.
+ */
+public class TransactionalChannelEventBus implements ChannelEventBus {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TransactionalChannelEventBus.class);
+
+    private final ChannelEventBus delegate;
+
+    public TransactionalChannelEventBus(ChannelEventBus delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void publish(String broadcaster, Object event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            delegate.publish(broadcaster, event);
+            return;
+        }
+        PendingEvents pending = (PendingEvents) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingEvents();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.add(StringNormalizer.toLowerCaseRoot(broadcaster), event);
+    }
+
+    @Override
+    public void publishTransient(String broadcaster, Object event) {
+        delegate.publishTransient(broadcaster, event);
+    }
+
+    private final class PendingEvents implements TransactionSynchronization {
+
+        private final Map<String, List<Object>> eventsByChannel = new LinkedHashMap<>();
+
+        private void add(String channel, Object event) {
+            List<Object> events = eventsByChannel.computeIfAbsent(channel, (key) -> new ArrayList<>());
+            if (event instanceof AssetEvent assetEvent) {
+                event = supersede(events, assetEvent);
+            }
+            events.add(event);
+        }
+
+        /**
+         * Removes the earlier event {@code event} makes redundant and returns what should be queued in its place, at
+         * the end of the queue. Only the most recent event of the same asset is considered, so a patch never jumps
+         * over e.g. a deletion, and nothing is carried past a layer order: clients apply orders and the ranks in
+         * patches in sequence.
+         */
+        private Object supersede(List<Object> events, AssetEvent event) {
+            boolean isOrder = event.getType() == AssetEvent.Type.ORDER;
+            for (int index = events.size() - 1; index >= 0; index--) {
+                if (!(events.get(index) instanceof AssetEvent earlier)) {
+                    // A plain text notice splits the batch; keep events on their side of it.
+                    return event;
+                }
+                if (isOrder && earlier.getType() == AssetEvent.Type.ORDER) {
+                    boolean carriesOver =
+                        (event.getLayerOrder() == null && earlier.getLayerOrder() != null)
+                        || (event.getScriptLayerOrder() == null && earlier.getScriptLayerOrder() != null);
+                    if (carriesOver && index < events.size() - 1) {
+                        // Part of the earlier order would move past the events queued after it.
+                        return event;
+                    }
+                    events.remove(index);
+                    return AssetEvent.order(
+                        event.getChannel(),
+                        event.getLayerOrder() != null ? event.getLayerOrder() : earlier.getLayerOrder(),
+                        event.getScriptLayerOrder() != null ? event.getScriptLayerOrder() : earlier.getScriptLayerOrder()
+                    );
+                }
+                if (earlier.getType() == AssetEvent.Type.ORDER) {
+                    return event;
+                }
+                if (event.getAssetId() == null || !Objects.equals(event.getAssetId(), earlier.getAssetId())) {
+                    continue;
+                }
+                if (!isUpdate(event) || !isUpdate(earlier)) {
+                    return event;
+                }
+                if (event.getPayload() != null) {
+                    events.remove(index);
+                    return event;
+                }
+                if (earlier.getPatch() == null) {
+                    // A patch following a full view cannot be folded into the view; keep both in order.
+                    return event;
+                }
+                events.remove(index);
+                return AssetEvent.updated(event.getChannel(), earlier.getPatch().merge(event.getPatch()));
+            }
+            return event;
+        }
+
+        private static boolean isUpdate(AssetEvent event) {
+            return event.getType() == AssetEvent.Type.UPDATED;
+        }
+
+        @Override
+        public void afterCommit() {
+            eventsByChannel.forEach((channel, events) -> {
+                try {
+                    flush(channel, events);
+                } catch (RuntimeException ex) {
+                    LOG.warn("Failed to publish committed events for channel {}", channel, ex);
+                }
+            });
+        }
+
+        private void flush(String channel, List<Object> events) {
+            List<Object> batched = new ArrayList<>();
+            for (Object event : events) {
+                if (event instanceof String) {
+                    // Plain text notices are not JSON and cannot be nested in a batch; split the batch around them.
+                    publishBatch(channel, batched);
+                    batched.clear();
+                    delegate.publish(channel, event);
+                } else {
+                    batched.add(event);
+                }
+            }
+            publishBatch(channel, batched);
+        }
+
+        private void publishBatch(String channel, List<Object> batched) {
+            if (batched.size() == 1) {
+                delegate.publish(channel, batched.get(0));
+            } else if (!batched.isEmpty()) {
+                delegate.publish(channel, ChannelEventBatch.of(channel, batched));
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(TransactionalChannelEventBus.this);
+            if (status != STATUS_COMMITTED && !eventsByChannel.isEmpty()) {
+                LOG.debug("Discarding events of rolled back transaction for {}", eventsByChannel.keySet());
+            }
+        }
+    }
+}
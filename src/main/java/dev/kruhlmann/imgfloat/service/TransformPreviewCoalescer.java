@@ -0,0 +1,94 @@
+package dev.kruhlmann.imgfloat.service;
+
+import dev.kruhlmann.imgfloat.model.api.response.AssetEvent;
+import dev.kruhlmann.imgfloat.model.api.response.AssetPatch;
+import dev.kruhlmann.imgfloat.util.StringNormalizer;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+/**
+ * Buffers live transform previews and publishes them at a fixed tick rate. Only the latest preview of each asset is
+ * kept, so overlays receive at most one preview per asset per tick no matter how often an admin's drag handler fires.
+ * Previews are superseded by the next committed update, so they are published as transient and never replayed.
+ */
+@Service
+public class TransformPreviewCoalescer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TransformPreviewCoalescer.class);
+    private static final int MAX_TICK_RATE_HZ = 120;
+
+    private final ChannelEventBus channelEventBus;
+    private final TaskScheduler taskScheduler;
+    private final Duration tickInterval;
+    private final Map<PreviewKey, AssetPatch> pending = new ConcurrentHashMap<>();
+
+    public TransformPreviewCoalescer(
+        ChannelEventBus channelEventBus,
+        @Qualifier("previewTaskScheduler") TaskScheduler taskScheduler,
+        @Value("${IMGFLOAT_PREVIEW_TICK_HZ:30}") int tickRateHz
+    ) {
+        this.channelEventBus = channelEventBus;
+        this.taskScheduler = taskScheduler;
+        int clamped = Math.max(1, Math.min(tickRateHz, MAX_TICK_RATE_HZ));
+        this.tickInterval = Duration.ofNanos(Duration.ofSeconds(1).toNanos() / clamped);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleFlush() {
+        taskScheduler.scheduleAtFixedRate(this::flush, tickInterval);
+    }
+
+    /**
+     * Queues {@code patch} as the preview of the asset, replacing any preview that has not been published yet.
+     */
+    public void submit(String broadcaster, String assetId, AssetPatch patch) {
+        pending.put(new PreviewKey(StringNormalizer.toLowerCaseRoot(broadcaster), assetId), patch);
+    }
+
+    /**
+     * Drops the unpublished preview of the asset so it cannot reach overlays after a committed update or deletion.
+     */
+    public void discard(String broadcaster, String assetId) {
+        pending.remove(new PreviewKey(StringNormalizer.toLowerCaseRoot(broadcaster), assetId));
+    }
+
+    /**
+     * Publishes every queued preview and clears the queue.
+     *
+     * @return the number of previews published
+     */
+    public int flush() {
+        int published = 0;
+        Iterator<Map.Entry<PreviewKey, AssetPatch>> entries = pending.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<PreviewKey, AssetPatch> entry = entries.next();
+            PreviewKey key = entry.getKey();
+            AssetPatch patch = entry.getValue();
+            if (!pending.remove(key, patch)) {
+                continue;
+            }
+            try {
+                channelEventBus.publishTransient(
+                    key.broadcaster(),
+                    AssetEvent.preview(key.broadcaster(), key.assetId(), patch)
+                );
+                published++;
+            } catch (RuntimeException ex) {
+                LOG.warn("Failed to publish transform preview for asset {} in {}", key.assetId(), key.broadcaster(), ex);
+            }
+        }
+        return published;
+    }
+
+    private record PreviewKey(String broadcaster, String assetId) {}
+}
@@ -0,0 +1,285 @@
+package dev.kruhlmann.imgfloat.service;
+
+import dev.kruhlmann.imgfloat.model.api.response.TwitchChatMessage;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import javax.net.ssl.SSLSocketFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.MessagingException;
+
+/**
+ * Anonymous, read-only connection to the Twitch chat of one channel. A reader thread parses each line once and
+ * queues chat messages for {@code publisher}, which runs on the dispatch executor so that a slow broker never stalls
+ * reading from Twitch. Messages beyond the rate cap are dropped as they arrive, and when the queue is full the
+ * oldest queued message is dropped: overlays care about what is being said now.
+ * <p>
+ * The connection is re-established with a growing delay until {@link #close()} is called.
+ */
+final class TwitchChatConnection {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TwitchChatConnection.class);
+    private static final String ANONYMOUS_NICK_PREFIX = "justinfan";
+    private static final String ANONYMOUS_PASSWORD = "SCHMOOPIIE";
+    private static final int CONNECT_TIMEOUT_MILLIS = 10_000;
+    // Twitch pings every five minutes or so; a connection silent for longer is gone
+    private static final int READ_TIMEOUT_MILLIS = (int) Duration.ofMinutes(6).toMillis();
+    private static final Duration RECONNECT_MIN_DELAY = Duration.ofSeconds(1);
+    private static final Duration RECONNECT_MAX_DELAY = Duration.ofMinutes(1);
+
+    private final String channel;
+    private final URI chatUri;
+    private final Executor dispatchExecutor;
+    private final Consumer<TwitchChatMessage> publisher;
+    private final double messagesPerSecond;
+    private final BlockingQueue<TwitchChatMessage> queue;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+    private volatile boolean running = true;
+    private volatile Socket socket;
+
+    TwitchChatConnection(
+        String channel,
+        URI chatUri,
+        Executor dispatchExecutor,
+        Consumer<TwitchChatMessage> publisher,
+        double messagesPerSecond,
+        int queueCapacity
+    ) {
+        this.channel = channel;
+        this.chatUri = chatUri;
+        this.dispatchExecutor = dispatchExecutor;
+        this.publisher = publisher;
+        this.messagesPerSecond = messagesPerSecond;
+        this.tokens = messagesPerSecond;
+        this.queue = new ArrayBlockingQueue<>(Math.max(queueCapacity, 1));
+    }
+
+    void start() {
+        Thread thread = new Thread(this::run, "twitch-chat-" + channel);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void close() {
+        running = false;
+        closeQuietly(socket);
+        LOG.info(
+            "Left Twitch chat of {} after relaying {} of {} messages ({} dropped)",
+            channel,
+            published.get(),
+            received.get(),
+            dropped.get()
+        );
+    }
+
+    long dropped() {
+        return dropped.get();
+    }
+
+    long published() {
+        return published.get();
+    }
+
+    private void run() {
+        long delayMillis = RECONNECT_MIN_DELAY.toMillis();
+        boolean reportedUnreachable = false;
+        while (running && !Thread.currentThread().isInterrupted()) {
+            try (Socket connection = connect()) {
+                connection.setSoTimeout(READ_TIMEOUT_MILLIS);
+                Writer out = new BufferedWriter(
+                    new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.UTF_8)
+                );
+                BufferedReader in = new BufferedReader(
+                    new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)
+                );
+                send(out, "CAP REQ :twitch.tv/tags twitch.tv/commands");
+                send(out, "PASS " + ANONYMOUS_PASSWORD);
+                send(out, "NICK " + ANONYMOUS_NICK_PREFIX + ThreadLocalRandom.current().nextInt(10_000, 100_000));
+                send(out, "JOIN #" + channel);
+                LOG.info("Joined Twitch chat of {}", channel);
+                delayMillis = RECONNECT_MIN_DELAY.toMillis();
+                reportedUnreachable = false;
+                String line;
+                while (running && (line = in.readLine()) != null) {
+                    if (!handle(IrcMessage.parse(line), out)) {
+                        break;
+                    }
+                }
+            } catch (SocketTimeoutException ex) {
+                LOG.info("Twitch chat of {} went silent, reconnecting", channel);
+            } catch (IOException ex) {
+                if (running && !reportedUnreachable) {
+                    LOG.warn("Twitch chat of {} unreachable, retrying: {}", channel, ex.getMessage());
+                    reportedUnreachable = true;
+                }
+            }
+            if (running) {
+                sleep(delayMillis);
+                delayMillis = Math.min(delayMillis * 2, RECONNECT_MAX_DELAY.toMillis());
+            }
+        }
+    }
+
+    /**
+     * @return whether to keep reading from this connection
+     */
+    private boolean handle(IrcMessage message, Writer out) throws IOException {
+        if (message == null) {
+            return true;
+        }
+        switch (message.command()) {
+            case "PING" -> send(out, "PONG :" + (message.param(0) != null ? message.param(0) : "tmi.twitch.tv"));
+            case "RECONNECT" -> {
+                LOG.info("Twitch asked to reconnect to the chat of {}", channel);
+                return false;
+            }
+            case "PRIVMSG" -> accept(toChatMessage(message));
+            default -> {}
+        }
+        return true;
+    }
+
+    private static TwitchChatMessage toChatMessage(IrcMessage message) {
+        String displayName = message.tags().getOrDefault("display-name", "");
+        return new TwitchChatMessage(
+            message.param(0),
+            displayName.isEmpty() ? message.nick() : displayName,
+            message.param(1) != null ? message.param(1) : "",
+            message.tags(),
+            message.prefix(),
+            message.raw()
+        );
+    }
+
+    private void accept(TwitchChatMessage message) {
+        received.incrementAndGet();
+        if (!tryAcquire()) {
+            dropped.incrementAndGet();
+            return;
+        }
+        while (!queue.offer(message)) {
+            if (queue.poll() != null) {
+                dropped.incrementAndGet();
+            }
+        }
+        scheduleDrain();
+    }
+
+    private boolean tryAcquire() {
+        if (messagesPerSecond <= 0) {
+            return true;
+        }
+        long now = System.nanoTime();
+        tokens = Math.min(messagesPerSecond, tokens + ((now - refilledAt) / 1e9) * messagesPerSecond);
+        refilledAt = now;
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            try {
+                dispatchExecutor.execute(this::drain);
+            } catch (RuntimeException ex) {
+                draining.set(false);
+                LOG.warn("Unable to dispatch Twitch chat of {}", channel, ex);
+            }
+        }
+    }
+
+    private void drain() {
+        do {
+            TwitchChatMessage message;
+            while (running && (message = queue.poll()) != null) {
+                try {
+                    publisher.accept(message);
+                    published.incrementAndGet();
+                } catch (MessagingException ex) {
+                    dropped.incrementAndGet();
+                    LOG.debug("Dropped Twitch chat message of {}: {}", channel, ex.getMessage());
+                }
+            }
+            draining.set(false);
+        } while (running && !queue.isEmpty() && draining.compareAndSet(false, true));
+    }
+
+    /**
+     * Connects to the chat server, over TLS for {@code ircs} addresses. The socket is published before connecting
+     * so that {@link #close()} can abort a connection attempt.
+     */
+    private Socket connect() throws IOException {
+        Socket connection = new Socket();
+        socket = connection;
+        if (!running) {
+            connection.close();
+            throw new IOException("Connection to the Twitch chat of " + channel + " was closed");
+        }
+        try {
+            connection.connect(new InetSocketAddress(chatUri.getHost(), chatUri.getPort()), CONNECT_TIMEOUT_MILLIS);
+            if (!"ircs".equalsIgnoreCase(chatUri.getScheme())) {
+                return connection;
+            }
+            Socket tls = ((SSLSocketFactory) SSLSocketFactory.getDefault()).createSocket(
+                connection,
+                chatUri.getHost(),
+                chatUri.getPort(),
+                true
+            );
+            socket = tls;
+            return tls;
+        } catch (IOException ex) {
+            closeQuietly(connection);
+            throw ex;
+        }
+    }
+
+    private static void send(Writer out, String line) throws IOException {
+        out.write(line);
+        out.write("\r\n");
+        out.flush();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException ex) {
+            LOG.debug("Failed to close Twitch chat socket", ex);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package dev.kruhlmann.imgfloat.service;
+
+import static dev.kruhlmann.imgfloat.service.ChannelEventBus.CHANNEL_TOPIC_PREFIX;
+
+import dev.kruhlmann.imgfloat.config.StompRateLimitInterceptor;
+import dev.kruhlmann.imgfloat.repository.ChannelRepository;
+import jakarta.annotation.PreDestroy;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+/**
+ * Relays the Twitch chat of channels to overlays subscribed to {@code /topic/channel/{broadcaster}/chat}, so that
+ * all overlays of a channel on this node share one chat connection instead of opening one each. The connection is
+ * opened for the first subscriber and closed once the last subscriber has been gone for the linger time, which
+ * keeps overlay reloads from rejoining the chat. Only known channels are joined, up to a fixed number at a time.
+ * Subscribing needs no sign-in, so each WebSocket session and each client address may only follow the chat of a
+ * few channels; further chat subscriptions are not relayed.
+ * <p>
+ * When the relay is disabled, overlays read the chat from Twitch themselves.
+ */
+@Service
+public class TwitchChatRelay {
+
+    public static final String CHAT_TOPIC_SUFFIX = "/chat";
+    static final int QUEUE_CAPACITY = 200;
+    private static final Logger LOG = LoggerFactory.getLogger(TwitchChatRelay.class);
+    private static final Pattern TWITCH_LOGIN = Pattern.compile("[a-z0-9_]{1,25}");
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ChannelRepository channelRepository;
+    private final ThreadPoolTaskScheduler taskScheduler;
+    private final boolean enabled;
+    private final URI chatUri;
+    private final int maxChannels;
+    private final int maxChannelsPerSession;
+    private final int maxChannelsPerAddress;
+    private final double messagesPerSecond;
+    private final Duration linger;
+    private final Map<String, Map<String, String>> subscriptionsBySession = new HashMap<>();
+    private final Map<String, String> addressBySession = new HashMap<>();
+    private final Map<String, Map<String, Integer>> subscribersByAddress = new HashMap<>();
+    private final Map<String, Integer> subscribers = new HashMap<>();
+    private final Map<String, TwitchChatConnection> connections = new HashMap<>();
+    private final Map<String, ScheduledFuture<?>> pendingLeaves = new HashMap<>();
+
+    public TwitchChatRelay(
+        SimpMessagingTemplate messagingTemplate,
+        ChannelRepository channelRepository,
+        @Qualifier("twitchChatTaskScheduler") ThreadPoolTaskScheduler taskScheduler,
+        @Value("${IMGFLOAT_TWITCH_CHAT_RELAY_ENABLED:false}") boolean enabled,
+        @Value("${IMGFLOAT_TWITCH_CHAT_URL:ircs://irc.chat.twitch.tv:6697}") String chatUrl,
+        @Value("${IMGFLOAT_TWITCH_CHAT_MAX_CHANNELS:100}") int maxChannels,
+        @Value("${IMGFLOAT_TWITCH_CHAT_MAX_CHANNELS_PER_SESSION:2}") int maxChannelsPerSession,
+        @Value("${IMGFLOAT_TWITCH_CHAT_MAX_CHANNELS_PER_ADDRESS:10}") int maxChannelsPerAddress,
+        @Value("${IMGFLOAT_TWITCH_CHAT_MESSAGES_PER_SECOND:20}") double messagesPerSecond,
+        @Value("${IMGFLOAT_TWITCH_CHAT_LINGER_SECONDS:30}") long lingerSeconds
+    ) {
+        this.messagingTemplate = messagingTemplate;
+        this.channelRepository = channelRepository;
+        this.taskScheduler = taskScheduler;
+        this.enabled = enabled;
+        this.chatUri = URI.create(chatUrl);
+        this.maxChannels = Math.max(maxChannels, 0);
+        this.maxChannelsPerSession = Math.max(maxChannelsPerSession, 0);
+        this.maxChannelsPerAddress = Math.max(maxChannelsPerAddress, 0);
+        this.messagesPerSecond = messagesPerSecond;
+        this.linger = Duration.ofSeconds(Math.max(lingerSeconds, 0));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        if (!enabled) {
+            return;
+        }
+        Message<?> message = event.getMessage();
+        String channel = chatChannel(SimpMessageHeaderAccessor.getDestination(message.getHeaders()));
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders());
+        if (channel == null || sessionId == null || subscriptionId == null) {
+            return;
+        }
+        // Checked before taking the relay's lock, so a slow database read never holds up other sessions.
+        if (!channelRepository.existsById(channel)) {
+            LOG.debug("Not relaying the Twitch chat of unknown channel {}", channel);
+            return;
+        }
+        String address = remoteAddress(message);
+        synchronized (this) {
+            Map<String, String> subscriptions = subscriptionsBySession.computeIfAbsent(
+                sessionId,
+                (key) -> new HashMap<>()
+            );
+            if (address != null) {
+                addressBySession.putIfAbsent(sessionId, address);
+            }
+            String previous = subscriptions.remove(subscriptionId);
+            if (previous != null) {
+                removeSubscriber(sessionId, previous);
+            }
+            if (!admits(sessionId, subscriptions, channel)) {
+                LOG.debug("Not relaying the Twitch chat of {} to session {}: over its limits", channel, sessionId);
+                return;
+            }
+            subscriptions.put(subscriptionId, channel);
+            String sessionAddress = addressBySession.get(sessionId);
+            if (sessionAddress != null) {
+                subscribersByAddress
+                    .computeIfAbsent(sessionAddress, (key) -> new HashMap<>())
+                    .merge(channel, 1, Integer::sum);
+            }
+            if (subscribers.merge(channel, 1, Integer::sum) == 1) {
+                join(channel);
+            }
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        if (!enabled) {
+            return;
+        }
+        Message<?> message = event.getMessage();
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders());
+        synchronized (this) {
+            Map<String, String> subscriptions = subscriptionsBySession.get(sessionId);
+            String channel = subscriptions != null ? subscriptions.remove(subscriptionId) : null;
+            if (channel != null) {
+                removeSubscriber(sessionId, channel);
+            }
+        }
+    }
+
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            Map<String, String> subscriptions = subscriptionsBySession.remove(event.getSessionId());
+            if (subscriptions != null) {
+                subscriptions.values().forEach((channel) -> removeSubscriber(event.getSessionId(), channel));
+            }
+            addressBySession.remove(event.getSessionId());
+        }
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        pendingLeaves.values().forEach((leave) -> leave.cancel(false));
+        pendingLeaves.clear();
+        connections.values().forEach(TwitchChatConnection::close);
+        connections.clear();
+    }
+
+    synchronized TwitchChatConnection connection(String channel) {
+        return connections.get(channel);
+    }
+
+    /**
+     * Whether the session may follow {@code channel}: channels the session or its client address already follow are
+     * always admitted, others only while both are below their limits.
+     */
+    private boolean admits(String sessionId, Map<String, String> subscriptions, String channel) {
+        if (subscriptions.containsValue(channel)) {
+            return true;
+        }
+        if (subscriptions.values().stream().distinct().count() >= maxChannelsPerSession) {
+            return false;
+        }
+        String address = addressBySession.get(sessionId);
+        Map<String, Integer> addressChannels = address != null ? subscribersByAddress.get(address) : null;
+        return (
+            addressChannels == null ||
+            addressChannels.containsKey(channel) ||
+            addressChannels.size() < maxChannelsPerAddress
+        );
+    }
+
+    private void removeSubscriber(String sessionId, String channel) {
+        String address = addressBySession.get(sessionId);
+        if (address != null) {
+            Map<String, Integer> addressChannels = subscribersByAddress.get(address);
+            if (addressChannels != null) {
+                addressChannels.computeIfPresent(channel, (key, count) -> count > 1 ? count - 1 : null);
+                if (addressChannels.isEmpty()) {
+                    subscribersByAddress.remove(address);
+                }
+            }
+        }
+        Integer remaining = subscribers.computeIfPresent(channel, (key, count) -> count > 1 ? count - 1 : null);
+        if (remaining == null && connections.containsKey(channel)) {
+            ScheduledFuture<?> leave = taskScheduler.schedule(
+                () -> leaveIfUnused(channel),
+                Instant.now().plus(linger)
+            );
+            ScheduledFuture<?> previous = pendingLeaves.put(channel, leave);
+            if (previous != null) {
+                previous.cancel(false);
+            }
+        }
+    }
+
+    private void join(String channel) {
+        ScheduledFuture<?> leave = pendingLeaves.remove(channel);
+        if (leave != null) {
+            leave.cancel(false);
+        }
+        if (connections.containsKey(channel)) {
+            return;
+        }
+        if (connections.size() >= maxChannels) {
+            LOG.warn("Not relaying the Twitch chat of {}: already relaying {} channels", channel, connections.size());
+            return;
+        }
+        String destination = CHANNEL_TOPIC_PREFIX + channel + CHAT_TOPIC_SUFFIX;
+        TwitchChatConnection connection = new TwitchChatConnection(
+            channel,
+            chatUri,
+            taskScheduler,
+            (chatMessage) -> messagingTemplate.convertAndSend(destination, chatMessage),
+            messagesPerSecond,
+            QUEUE_CAPACITY
+        );
+        connections.put(channel, connection);
+        connection.start();
+    }
+
+    private synchronized void leaveIfUnused(String channel) {
+        pendingLeaves.remove(channel);
+        if (subscribers.containsKey(channel)) {
+            return;
+        }
+        TwitchChatConnection connection = connections.remove(channel);
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    private static String remoteAddress(Message<?> message) {
+        Map<String, Object> attributes = SimpMessageHeaderAccessor.getSessionAttributes(message.getHeaders());
+        Object address = attributes != null ? attributes.get(StompRateLimitInterceptor.REMOTE_ADDRESS_ATTRIBUTE) : null;
+        return address != null ? address.toString() : null;
+    }
+
+    /**
+     * @return the channel of a chat topic, or {@code null} for other destinations and channel names that cannot be
+     * Twitch logins
+     */
+    private static String chatChannel(String destination) {
+        if (
+            destination == null ||
+            !destination.startsWith(CHANNEL_TOPIC_PREFIX) ||
+            !destination.endsWith(CHAT_TOPIC_SUFFIX)
+        ) {
+            return null;
+        }
+        String channel = destination.substring(
+            CHANNEL_TOPIC_PREFIX.length(),
+            destination.length() - CHAT_TOPIC_SUFFIX.length()
+        );
+        return TWITCH_LOGIN.matcher(channel).matches() ? channel : null;
+    }
+}
@@ -2,6 +2,8 @@ package dev.kruhlmann.imgfloat.service;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Files;
@@ -14,9 +16,11 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.http.HttpEntity;
@@ -38,40 +42,78 @@ import org.springframework.web.util.UriComponentsBuilder;
  * a configurable interval.
  */
 @Service
-public class TwitchEmoteService {
+public class TwitchEmoteService implements MeterBinder {
 
+    private static final Duration IMAGE_REVALIDATE_AFTER = Duration.ofDays(1);
+    private static final Duration EMPTY_CHANNEL_TTL = Duration.ofMinutes(10);
+    private static final Duration CHANNEL_MISS_DEADLINE = Duration.ofSeconds(2);
     private static final Logger LOG = LoggerFactory.getLogger(TwitchEmoteService.class);
-    private static final String GLOBAL_EMOTE_URL = "https://api.twitch.tv/helix/chat/emotes/global";
-    private static final String CHANNEL_EMOTE_URL = "https://api.twitch.tv/helix/chat/emotes";
-    private static final String USERS_URL = "https://api.twitch.tv/helix/users";
 
     private final RestTemplate restTemplate;
+    private final String globalEmoteUrl;
+    private final String channelEmoteUrl;
     private final TwitchAppAccessTokenService tokenService;
-    private final Path cacheRoot;
+    private final TwitchIdentityService identityService;
+    private final EmoteFileStore fileStore;
+    private final EmoteImageFetcher imageFetcher;
     private final Map<String, CachedEmote> emoteCache = new ConcurrentHashMap<>();
-    private final Map<String, List<CachedEmote>> channelEmoteCache = new ConcurrentHashMap<>();
+    private final ChannelEmoteCache<ChannelEmotes> channelEmoteCache;
     private volatile List<CachedEmote> globalEmotes = List.of();
+    private volatile EmoteCatalog globalCatalog = EmoteCatalog.of(new CatalogBody(List.of(), List.of()));
     private final AtomicBoolean initialGlobalSyncScheduled = new AtomicBoolean();
 
     public TwitchEmoteService(
         RestTemplateBuilder builder,
         TwitchAppAccessTokenService tokenService,
-        @Value("${IMGFLOAT_TWITCH_EMOTE_CACHE_PATH:#{null}}") String cachePath
+        TwitchIdentityService identityService,
+        @Value("${IMGFLOAT_TWITCH_EMOTE_CACHE_PATH:#{null}}") String cachePath,
+        @Value("${IMGFLOAT_TWITCH_API_URL:https://api.twitch.tv/helix}") String apiUrl,
+        @Qualifier("emoteDownloadTaskExecutor") Executor downloadExecutor,
+        @Qualifier("emoteCacheLoadTaskExecutor") Executor loadExecutor,
+        @Value("${IMGFLOAT_EMOTE_CHANNEL_CACHE_SIZE:1000}") int channelCacheSize,
+        @Value("${IMGFLOAT_EMOTE_CHANNEL_CACHE_TTL_MINUTES:60}") long channelCacheTtlMinutes
     ) {
         this.restTemplate = builder
             .setConnectTimeout(Duration.ofSeconds(20))
             .setReadTimeout(Duration.ofSeconds(20))
             .build();
+        this.globalEmoteUrl = apiUrl + "/chat/emotes/global";
+        this.channelEmoteUrl = apiUrl + "/chat/emotes";
         this.tokenService = tokenService;
+        this.identityService = identityService;
         String root = cachePath != null
             ? cachePath
             : Paths.get(System.getProperty("java.io.tmpdir"), "imgfloat-emotes").toString();
-        this.cacheRoot = Paths.get(root).normalize().toAbsolutePath();
+        Path cacheRoot = Paths.get(root).normalize().toAbsolutePath();
         try {
-            Files.createDirectories(this.cacheRoot);
+            Files.createDirectories(cacheRoot);
         } catch (IOException ex) {
             throw new IllegalStateException("Failed to create Twitch emote cache directory", ex);
         }
+        this.fileStore = new EmoteFileStore(cacheRoot, (name) -> mediaTypeFromPath(Path.of(name)).toString());
+        this.imageFetcher = new EmoteImageFetcher(
+            "Twitch",
+            restTemplate,
+            fileStore,
+            downloadExecutor,
+            IMAGE_REVALIDATE_AFTER,
+            (name) -> mediaTypeFromPath(Path.of(name)).toString()
+        );
+        this.channelEmoteCache = new ChannelEmoteCache<>(
+            "Twitch",
+            (login) -> fetchChannelEmotes(login, false).map(this::channelEmotes),
+            (cached) -> cached.emotes().isEmpty(),
+            loadExecutor,
+            channelCacheSize,
+            Duration.ofMinutes(channelCacheTtlMinutes),
+            EMPTY_CHANNEL_TTL,
+            CHANNEL_MISS_DEADLINE
+        );
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        channelEmoteCache.bindTo(registry, "twitch.channel.emotes");
     }
 
     public List<EmoteDescriptor> getGlobalEmotes() {
@@ -89,17 +131,49 @@ public class TwitchEmoteService {
         if (channelLogin == null || channelLogin.isBlank()) {
             return List.of();
         }
+        return channelEmoteCache
+            .get(StringNormalizer.toLowerCaseRoot(channelLogin))
+            .map((cached) -> cached.emotes().stream().map(CachedEmote::descriptor).toList())
+            .orElse(List.of());
+    }
+
+    /**
+     * Returns the global emotes together with those of the channel, serialized when the emotes were last fetched.
+     * Only the global emotes are included while the channel's emotes are still loading.
+     */
+    public EmoteCatalog getEmoteCatalog(String channelLogin) {
+        if (globalEmotes.isEmpty()) {
+            ensureInitialGlobalSyncScheduled();
+        }
+        if (channelLogin == null || channelLogin.isBlank()) {
+            return globalCatalog;
+        }
         String normalized = StringNormalizer.toLowerCaseRoot(channelLogin);
-        List<CachedEmote> emotes = channelEmoteCache.computeIfAbsent(normalized, this::fetchChannelEmotes);
-        return emotes.stream().map(CachedEmote::descriptor).toList();
+        ChannelEmotes cached = channelEmoteCache.get(normalized).orElse(null);
+        if (cached == null) {
+            return globalCatalog;
+        }
+        if (cached.global() != globalEmotes) {
+            ChannelEmotes rebuilt = channelEmotes(cached.emotes());
+            channelEmoteCache.replace(normalized, cached, rebuilt);
+            cached = rebuilt;
+        }
+        return cached.catalog();
     }
 
-    public void refreshChannelEmotes(String channelLogin) {
+    /**
+     * Fetches the channel's emotes again. The emotes cached so far are kept when Twitch cannot be reached.
+     *
+     * @return whether Twitch answered
+     */
+    public boolean refreshChannelEmotes(String channelLogin) {
         if (channelLogin == null || channelLogin.isBlank()) {
-            return;
+            return true;
         }
         String normalized = StringNormalizer.toLowerCaseRoot(channelLogin);
-        channelEmoteCache.put(normalized, fetchChannelEmotes(normalized));
+        Optional<List<CachedEmote>> emotes = fetchChannelEmotes(normalized, true);
+        emotes.ifPresent((cached) -> channelEmoteCache.put(normalized, channelEmotes(cached)));
+        return emotes.isPresent();
     }
 
     public Optional<EmoteAsset> loadEmoteAsset(String emoteId) {
@@ -123,20 +197,38 @@ public class TwitchEmoteService {
     }
 
     private void warmGlobalEmotes() {
-        List<TwitchEmoteData> data = fetchEmotes(GLOBAL_EMOTE_URL);
+        HttpHeaders headers = authHeaders().orElse(null);
+        if (headers == null) {
+            return;
+        }
+        List<TwitchEmoteData> data;
+        try {
+            data = fetchEmotes(URI.create(globalEmoteUrl), headers);
+        } catch (RestClientException ex) {
+            LOG.warn("Unable to fetch global Twitch emotes", ex);
+            return;
+        }
         if (data.isEmpty()) {
             return;
         }
-        List<CachedEmote> cached = data
-            .stream()
-            .map(this::cacheEmote)
-            .filter(Optional::isPresent)
-            .map(Optional::get)
-            .toList();
+        List<CachedEmote> cached = cacheEmotes(data, true);
         globalEmotes = cached;
+        globalCatalog = channelEmotes(List.of()).catalog();
+        channelEmoteCache.replaceAll((previous) -> channelEmotes(previous.emotes()));
         LOG.info("Loaded {} global Twitch emotes", cached.size());
     }
 
+    private ChannelEmotes channelEmotes(List<CachedEmote> emotes) {
+        List<CachedEmote> global = globalEmotes;
+        EmoteCatalog catalog = EmoteCatalog.of(
+            new CatalogBody(
+                global.stream().map(CachedEmote::descriptor).toList(),
+                emotes.stream().map(CachedEmote::descriptor).toList()
+            )
+        );
+        return new ChannelEmotes(emotes, global, catalog);
+    }
+
     private void ensureInitialGlobalSyncScheduled() {
         if (initialGlobalSyncScheduled.compareAndSet(false, true)) {
             LOG.info("Scheduling initial global Twitch emote sync in the background");
@@ -162,151 +254,104 @@ public class TwitchEmoteService {
         ensureInitialGlobalSyncScheduled();
     }
 
-    private List<CachedEmote> fetchChannelEmotes(String channelLogin) {
-        String broadcasterId = fetchBroadcasterId(channelLogin).orElse(null);
-        if (broadcasterId == null) {
-            return List.of();
-        }
-        UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(CHANNEL_EMOTE_URL)
-            .queryParam("broadcaster_id", broadcasterId);
-        List<TwitchEmoteData> data = fetchEmotes(builder.toUriString());
-        if (data.isEmpty()) {
-            return List.of();
-        }
-        List<CachedEmote> cached = data
-            .stream()
-            .map(this::cacheEmote)
-            .filter(Optional::isPresent)
-            .map(Optional::get)
-            .toList();
-        LOG.info("Loaded {} Twitch emotes for {}", cached.size(), channelLogin);
-        return cached;
-    }
-
-    private Optional<String> fetchBroadcasterId(String channelLogin) {
-        Optional<String> token = tokenService.getAccessToken();
-        Optional<String> clientId = tokenService.getClientId();
-        if (token.isEmpty() || clientId.isEmpty()) {
+    /**
+     * Fetches the channel's emotes, or nothing when Twitch cannot be reached. A channel that does not exist has no
+     * emotes.
+     */
+    private Optional<List<CachedEmote>> fetchChannelEmotes(String channelLogin, boolean revalidate) {
+        HttpHeaders headers = authHeaders().orElse(null);
+        if (headers == null) {
             return Optional.empty();
         }
-        UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(USERS_URL).queryParam("login", channelLogin);
-        HttpHeaders headers = new HttpHeaders();
-        headers.setBearerAuth(token.get());
-        headers.add("Client-ID", clientId.get());
+        List<TwitchEmoteData> data;
         try {
-            ResponseEntity<TwitchUsersResponse> response = restTemplate.exchange(
-                builder.build(true).toUri(),
-                HttpMethod.GET,
-                new HttpEntity<>(headers),
-                TwitchUsersResponse.class
-            );
-            TwitchUsersResponse body = response.getBody();
-            if (body == null || body.data() == null || body.data().isEmpty()) {
-                return Optional.empty();
+            String broadcasterId = identityService.findUserId(channelLogin).orElse(null);
+            if (broadcasterId == null) {
+                return Optional.of(List.of());
             }
-            return body.data().stream().findFirst().map(TwitchUserData::id);
+            UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(channelEmoteUrl)
+                .queryParam("broadcaster_id", broadcasterId);
+            data = fetchEmotes(builder.build(true).toUri(), headers);
         } catch (RestClientException ex) {
-            LOG.warn("Unable to fetch Twitch broadcaster id for {}", channelLogin, ex);
+            LOG.warn("Unable to fetch Twitch emotes for {}", channelLogin, ex);
             return Optional.empty();
         }
+        List<CachedEmote> cached = cacheEmotes(data, revalidate);
+        LOG.info("Loaded {} Twitch emotes for {}", cached.size(), channelLogin);
+        return Optional.of(cached);
     }
 
-    private List<TwitchEmoteData> fetchEmotes(String url) {
+    private Optional<HttpHeaders> authHeaders() {
         Optional<String> token = tokenService.getAccessToken();
         Optional<String> clientId = tokenService.getClientId();
         if (token.isEmpty() || clientId.isEmpty()) {
-            return List.of();
+            return Optional.empty();
         }
         HttpHeaders headers = new HttpHeaders();
         headers.setBearerAuth(token.get());
         headers.add("Client-ID", clientId.get());
-        try {
-            ResponseEntity<TwitchEmoteResponse> response = restTemplate.exchange(
-                URI.create(url),
-                HttpMethod.GET,
-                new HttpEntity<>(headers),
-                TwitchEmoteResponse.class
-            );
-            TwitchEmoteResponse body = response.getBody();
-            if (body == null || body.data() == null) {
-                return List.of();
-            }
-            return body.data();
-        } catch (RestClientException ex) {
-            LOG.warn("Unable to fetch Twitch emotes from {}", url, ex);
-            return List.of();
-        }
+        return Optional.of(headers);
     }
 
-    private Optional<CachedEmote> cacheEmote(TwitchEmoteData emote) {
-        if (emote == null || emote.id() == null || emote.id().isBlank()) {
-            return Optional.empty();
-        }
-        return Optional.ofNullable(
-            emoteCache.computeIfAbsent(
-                emote.id(),
-                (id) -> {
-                    String imageUrl = selectImageUrl(emote);
-                    if (imageUrl == null) {
-                        return null;
-                    }
-                    return downloadEmote(id, emote.name(), imageUrl);
-                }
-            )
+    private List<TwitchEmoteData> fetchEmotes(URI uri, HttpHeaders headers) {
+        ResponseEntity<TwitchEmoteResponse> response = restTemplate.exchange(
+            uri,
+            HttpMethod.GET,
+            new HttpEntity<>(headers),
+            TwitchEmoteResponse.class
         );
-    }
-
-    private CachedEmote downloadEmote(String id, String name, String imageUrl) {
-        Path filePath = resolveEmotePath(id, imageUrl);
-        MediaType mediaType = null;
-
-        if (!Files.exists(filePath)) {
-            try {
-                ResponseEntity<byte[]> response = restTemplate.getForEntity(URI.create(imageUrl), byte[].class);
-                byte[] bytes = response.getBody();
-                if (bytes == null || bytes.length == 0) {
-                    return null;
-                }
-                mediaType = response.getHeaders().getContentType();
-                Files.write(filePath, bytes);
-            } catch (IOException | RestClientException ex) {
-                LOG.warn("Unable to download Twitch emote {}", id, ex);
-                return null;
-            }
+        TwitchEmoteResponse body = response.getBody();
+        if (body == null || body.data() == null) {
+            return List.of();
         }
+        return body.data();
+    }
 
-        if (mediaType == null) {
-            mediaType = mediaTypeFromPath(filePath);
-        }
-        return new CachedEmote(id, name, filePath, mediaType != null ? mediaType.toString() : "image/png");
+    /**
+     * Downloads the images of {@code emotes} in parallel and returns those that are stored, in order.
+     */
+    private List<CachedEmote> cacheEmotes(List<TwitchEmoteData> emotes, boolean revalidate) {
+        List<CompletableFuture<Optional<CachedEmote>>> pending = emotes
+            .stream()
+            .map((emote) -> cacheEmote(emote, revalidate))
+            .toList();
+        return pending.stream().map(CompletableFuture::join).flatMap(Optional::stream).toList();
     }
 
-    private Optional<CachedEmote> restoreFromDisk(String id) {
-        if (id == null || id.isBlank()) {
-            return Optional.empty();
+    private CompletableFuture<Optional<CachedEmote>> cacheEmote(TwitchEmoteData emote, boolean revalidate) {
+        if (emote == null || emote.id() == null || emote.id().isBlank()) {
+            return CompletableFuture.completedFuture(Optional.empty());
         }
-        try {
-            List<Path> candidates;
-            try (var stream = Files.list(cacheRoot)) {
-                candidates = stream.filter((path) -> path.getFileName().toString().startsWith(id + ".")).toList();
-            }
-            if (candidates.isEmpty()) {
-                return Optional.empty();
-            }
-            Path path = candidates.get(0);
-            MediaType mediaType = mediaTypeFromPath(path);
-            CachedEmote cached = new CachedEmote(id, id, path, mediaType != null ? mediaType.toString() : "image/png");
-            emoteCache.put(id, cached);
-            return Optional.of(cached);
-        } catch (IOException ex) {
-            LOG.warn("Unable to restore cached emote {}", id, ex);
-            return Optional.empty();
+        String id = emote.id();
+        CachedEmote cached = emoteCache.get(id);
+        if (cached != null && !revalidate) {
+            return CompletableFuture.completedFuture(
+                Optional.of(new CachedEmote(id, emote.name(), cached.path(), cached.mediaType()))
+            );
         }
+        String imageUrl = selectImageUrl(emote);
+        if (imageUrl == null) {
+            return CompletableFuture.completedFuture(Optional.ofNullable(cached));
+        }
+        return imageFetcher
+            .fetch(id, imageUrl, extensionFromUrl(imageUrl).orElse("png"), revalidate)
+            .thenApply((stored) ->
+                stored.map((image) -> {
+                    CachedEmote fetched = new CachedEmote(id, emote.name(), image.path(), image.mediaType());
+                    emoteCache.put(id, fetched);
+                    return fetched;
+                })
+            );
     }
 
-    private Path resolveEmotePath(String id, String imageUrl) {
-        String extension = extensionFromUrl(imageUrl).orElse("png");
-        return cacheRoot.resolve(id + "." + extension);
+    private Optional<CachedEmote> restoreFromDisk(String id) {
+        return fileStore
+            .find(id)
+            .map((stored) -> {
+                CachedEmote cached = new CachedEmote(id, id, stored.path(), stored.mediaType());
+                emoteCache.put(id, cached);
+                return cached;
+            });
     }
 
     private Optional<String> extensionFromUrl(String imageUrl) {
@@ -360,6 +405,13 @@ public class TwitchEmoteService {
 
     public record EmoteAsset(byte[] bytes, String mediaType) {}
 
+    private record CatalogBody(List<EmoteDescriptor> global, List<EmoteDescriptor> channel) {}
+
+    /**
+     * A channel's emotes with their catalog, which was built against {@code global}.
+     */
+    private record ChannelEmotes(List<CachedEmote> emotes, List<CachedEmote> global, EmoteCatalog catalog) {}
+
     private record CachedEmote(String id, String name, Path path, String mediaType) {
         EmoteDescriptor descriptor() {
             return new EmoteDescriptor(id, name, "/api/twitch/emotes/" + id);
@@ -378,10 +430,4 @@ public class TwitchEmoteService {
         @JsonProperty("url_2x") String url2x,
         @JsonProperty("url_4x") String url4x
     ) {}
-
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    private record TwitchUsersResponse(List<TwitchUserData> data) {}
-
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    private record TwitchUserData(String id) {}
 }
@@ -0,0 +1,204 @@
+package dev.kruhlmann.imgfloat.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import dev.kruhlmann.imgfloat.model.db.imgfloat.TwitchIdentity;
+import dev.kruhlmann.imgfloat.repository.TwitchIdentityRepository;
+import dev.kruhlmann.imgfloat.util.StringNormalizer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Resolves Twitch logins to user IDs. Resolved IDs are stored, and logins that are not stored or were resolved
+ * more than {@link #MAX_AGE} ago are looked up on Helix {@code /users}, {@value #LOGINS_PER_REQUEST} per request,
+ * with the app access token. IDs seen elsewhere, such as at OAuth login, are stored through {@link #record}.
+ */
+@Service
+public class TwitchIdentityService {
+
+    static final int LOGINS_PER_REQUEST = 100;
+    private static final Duration MAX_AGE = Duration.ofDays(30);
+    private static final Pattern TWITCH_LOGIN = Pattern.compile("[a-z0-9_]{1,25}");
+    private static final Logger LOG = LoggerFactory.getLogger(TwitchIdentityService.class);
+
+    private final TwitchIdentityRepository identityRepository;
+    private final TwitchAppAccessTokenService tokenService;
+    private final TransactionTemplate transactionTemplate;
+    private final RestTemplate restTemplate;
+    private final String usersUrl;
+
+    public TwitchIdentityService(
+        TwitchIdentityRepository identityRepository,
+        TwitchAppAccessTokenService tokenService,
+        PlatformTransactionManager transactionManager,
+        RestTemplateBuilder builder,
+        @Value("${IMGFLOAT_TWITCH_API_URL:https://api.twitch.tv/helix}") String apiUrl
+    ) {
+        this.identityRepository = identityRepository;
+        this.tokenService = tokenService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.restTemplate = builder
+            .setConnectTimeout(Duration.ofSeconds(15))
+            .setReadTimeout(Duration.ofSeconds(15))
+            .build();
+        this.usersUrl = apiUrl + "/users";
+    }
+
+    /**
+     * Returns the user ID of the login, or nothing when no such user exists.
+     *
+     * @throws RestClientException when the login has to be looked up and Twitch cannot be reached
+     */
+    public Optional<String> findUserId(String login) {
+        if (login == null || login.isBlank()) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(findUserIds(List.of(login)).get(StringNormalizer.toLowerCaseRoot(login)));
+    }
+
+    /**
+     * Returns the user IDs of the logins that belong to a user, by normalized login. Logins that cannot be valid
+     * Twitch logins are not looked up.
+     *
+     * @throws RestClientException when logins have to be looked up and Twitch cannot be reached
+     */
+    public Map<String, String> findUserIds(Collection<String> logins) {
+        List<String> normalized = logins
+            .stream()
+            .filter(Objects::nonNull)
+            .filter((login) -> !login.isBlank())
+            .map(StringNormalizer::toLowerCaseRoot)
+            .distinct()
+            .toList();
+        if (normalized.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, String> ids = new HashMap<>();
+        Instant staleBefore = Instant.now().minus(MAX_AGE);
+        for (TwitchIdentity identity : identityRepository.findAllById(normalized)) {
+            if (identity.getUpdatedAt().isAfter(staleBefore)) {
+                ids.put(identity.getLogin(), identity.getUserId());
+            }
+        }
+        List<String> missing = normalized
+            .stream()
+            .filter((login) -> !ids.containsKey(login) && TWITCH_LOGIN.matcher(login).matches())
+            .toList();
+        if (!missing.isEmpty()) {
+            Map<String, String> fetched = fetchUserIds(missing);
+            record(fetched);
+            ids.putAll(fetched);
+        }
+        return ids;
+    }
+
+    /**
+     * Stores user IDs by login. A login that now belongs to a different user replaces the stored identity, and a
+     * user stored under a previous login is moved to the new one.
+     */
+    public void record(Map<String, String> idsByLogin) {
+        Map<String, String> normalized = new HashMap<>();
+        idsByLogin.forEach((login, userId) -> {
+            if (login != null && !login.isBlank() && userId != null && !userId.isBlank()) {
+                normalized.put(StringNormalizer.toLowerCaseRoot(login), userId);
+            }
+        });
+        if (normalized.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult((status) -> {
+                List<TwitchIdentity> renamed = identityRepository
+                    .findAllByUserIdIn(normalized.values())
+                    .stream()
+                    .filter((identity) -> !identity.getUserId().equals(normalized.get(identity.getLogin())))
+                    .toList();
+                if (!renamed.isEmpty()) {
+                    identityRepository.deleteAll(renamed);
+                    identityRepository.flush();
+                }
+                Map<String, TwitchIdentity> existing = identityRepository
+                    .findAllById(normalized.keySet())
+                    .stream()
+                    .collect(Collectors.toMap(TwitchIdentity::getLogin, Function.identity()));
+                List<TwitchIdentity> identities = new ArrayList<>();
+                normalized.forEach((login, userId) -> {
+                    TwitchIdentity identity = existing.get(login);
+                    if (identity == null) {
+                        identities.add(new TwitchIdentity(login, userId));
+                    } else {
+                        identity.confirm(userId);
+                        identities.add(identity);
+                    }
+                });
+                identityRepository.saveAll(identities);
+            });
+        } catch (DataAccessException ex) {
+            LOG.warn("Unable to store {} Twitch identities", normalized.size(), ex);
+        }
+    }
+
+    private Map<String, String> fetchUserIds(List<String> logins) {
+        String token = tokenService.getAccessToken().orElse(null);
+        String clientId = tokenService.getClientId().orElse(null);
+        if (token == null || clientId == null) {
+            throw new RestClientException("No Twitch app access token to look up users with");
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token);
+        headers.add("Client-ID", clientId);
+        Map<String, String> ids = new HashMap<>();
+        for (int start = 0; start < logins.size(); start += LOGINS_PER_REQUEST) {
+            List<String> batch = logins.subList(start, Math.min(start + LOGINS_PER_REQUEST, logins.size()));
+            UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(usersUrl);
+            batch.forEach((login) -> builder.queryParam("login", login));
+            ResponseEntity<TwitchUsersResponse> response = restTemplate.exchange(
+                builder.build(true).toUri(),
+                HttpMethod.GET,
+                new HttpEntity<>(headers),
+                TwitchUsersResponse.class
+            );
+            TwitchUsersResponse body = response.getBody();
+            if (body == null || body.data() == null) {
+                continue;
+            }
+            body
+                .data()
+                .stream()
+                .filter((user) -> user != null && user.login() != null && user.id() != null)
+                .forEach((user) -> ids.put(StringNormalizer.toLowerCaseRoot(user.login()), user.id()));
+        }
+        LOG.debug("Resolved {} of {} Twitch logins", ids.size(), logins.size());
+        return ids;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private record TwitchUsersResponse(List<TwitchUserData> data) {}
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private record TwitchUserData(String id, String login) {}
+}
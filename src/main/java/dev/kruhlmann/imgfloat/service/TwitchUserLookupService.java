@@ -4,21 +4,28 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import dev.kruhlmann.imgfloat.model.api.response.TwitchUserProfile;
 import dev.kruhlmann.imgfloat.util.StringNormalizer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.function.Function;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
@@ -29,17 +36,57 @@ import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
+/**
+ * Looks up Twitch profiles and moderators for the admin panel. Profiles, including logins that belong to no user,
+ * are cached for a while, and logins that are not cached are looked up {@value
+ * TwitchIdentityService#LOGINS_PER_REQUEST} per request with several requests at a time. A channel's moderators are
+ * cached too, until they expire or {@link #invalidateModerators} is called, and the profiles of each page of
+ * moderators are looked up while the next page is requested.
+ */
 @Service
-public class TwitchUserLookupService {
+public class TwitchUserLookupService implements MeterBinder {
 
     private static final Logger LOG = LoggerFactory.getLogger(TwitchUserLookupService.class);
+    private static final int MAX_CACHED_PROFILES = 10_000;
+    private static final int MAX_CACHED_MODERATOR_LISTS = 1_000;
     private final RestTemplate restTemplate;
-
-    public TwitchUserLookupService(RestTemplateBuilder builder) {
+    private final TwitchIdentityService identityService;
+    private final Executor lookupExecutor;
+    private final String usersUrl;
+    private final String moderatorsUrl;
+    private final ExpiringCache<Optional<TwitchUserData>> profileCache;
+    private final ExpiringCache<List<String>> moderatorCache;
+
+    public TwitchUserLookupService(
+        RestTemplateBuilder builder,
+        TwitchIdentityService identityService,
+        @Qualifier("twitchLookupTaskExecutor") Executor lookupExecutor,
+        @Value("${IMGFLOAT_TWITCH_API_URL:https://api.twitch.tv/helix}") String apiUrl,
+        @Value("${IMGFLOAT_TWITCH_PROFILE_CACHE_TTL_MINUTES:60}") long profileTtlMinutes,
+        @Value("${IMGFLOAT_TWITCH_MODERATOR_CACHE_TTL_MINUTES:10}") long moderatorTtlMinutes
+    ) {
         this.restTemplate = builder
             .setConnectTimeout(Duration.ofSeconds(15))
             .setReadTimeout(Duration.ofSeconds(15))
             .build();
+        this.identityService = identityService;
+        this.lookupExecutor = lookupExecutor;
+        this.usersUrl = apiUrl + "/users";
+        this.moderatorsUrl = apiUrl + "/moderation/moderators";
+        this.profileCache = new ExpiringCache<>(
+            MAX_CACHED_PROFILES,
+            Duration.ofMinutes(Math.max(profileTtlMinutes, 0))
+        );
+        this.moderatorCache = new ExpiringCache<>(
+            MAX_CACHED_MODERATOR_LISTS,
+            Duration.ofMinutes(Math.max(moderatorTtlMinutes, 0))
+        );
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        profileCache.bindTo(registry, "twitch.profiles");
+        moderatorCache.bindTo(registry, "twitch.moderators");
     }
 
     public List<TwitchUserProfile> fetchProfiles(Collection<String> logins, String accessToken, String clientId) {
@@ -54,12 +101,12 @@ public class TwitchUserLookupService {
             .distinct()
             .toList();
 
-        Map<String, TwitchUserData> byLogin = fetchUsers(normalizedLogins, accessToken, clientId);
+        Map<String, Optional<TwitchUserData>> byLogin = resolveUsers(
+            normalizedLogins,
+            authEntity(accessToken, clientId)
+        ).join();
 
-        return normalizedLogins
-            .stream()
-            .map((login) -> toProfile(login, byLogin.get(login)))
-            .toList();
+        return toProfiles(normalizedLogins, byLogin);
     }
 
     public List<TwitchUserProfile> fetchModerators(
@@ -79,16 +126,6 @@ public class TwitchUserLookupService {
         }
 
         String normalizedBroadcaster = StringNormalizer.toLowerCaseRoot(broadcasterLogin);
-        Map<String, TwitchUserData> broadcasterData = fetchUsers(List.of(normalizedBroadcaster), accessToken, clientId);
-        String broadcasterId = Optional.ofNullable(broadcasterData.get(normalizedBroadcaster))
-            .map(TwitchUserData::id)
-            .orElse(null);
-
-        if (broadcasterId == null || broadcasterId.isBlank()) {
-            LOG.warn("No broadcaster id found for {} when fetching moderators", broadcasterLogin);
-            return List.of();
-        }
-
         Set<String> skipLogins = new HashSet<>();
         if (existingAdmins != null) {
             existingAdmins
@@ -98,18 +135,69 @@ public class TwitchUserLookupService {
                 .forEach(skipLogins::add);
         }
         skipLogins.add(normalizedBroadcaster);
+        HttpEntity<Void> entity = authEntity(accessToken, clientId);
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setBearerAuth(accessToken);
-        headers.add("Client-ID", clientId);
+        List<String> moderatorLogins = moderatorCache.get(normalizedBroadcaster);
+        List<CompletableFuture<Map<String, Optional<TwitchUserData>>>> lookups = new ArrayList<>();
+        if (moderatorLogins == null) {
+            moderatorLogins = fetchModeratorLogins(normalizedBroadcaster, entity, (page) ->
+                lookups.add(resolveUsers(withoutLogins(page, skipLogins), entity))
+            );
+            if (moderatorLogins == null) {
+                return List.of();
+            }
+            moderatorCache.put(normalizedBroadcaster, moderatorLogins);
+        } else {
+            lookups.add(resolveUsers(withoutLogins(moderatorLogins, skipLogins), entity));
+        }
+
+        List<String> suggestions = withoutLogins(moderatorLogins, skipLogins);
+        if (suggestions.isEmpty()) {
+            LOG.info("No moderator suggestions available for {} after filtering existing admins", broadcasterLogin);
+            return List.of();
+        }
+
+        Map<String, Optional<TwitchUserData>> byLogin = new HashMap<>();
+        lookups.forEach((lookup) -> byLogin.putAll(lookup.join()));
+        return toProfiles(suggestions, byLogin);
+    }
+
+    /**
+     * Drops the cached moderators of the channel, so that the next suggestions are fetched from Twitch.
+     */
+    public void invalidateModerators(String broadcasterLogin) {
+        if (broadcasterLogin != null && !broadcasterLogin.isBlank()) {
+            moderatorCache.invalidate(StringNormalizer.toLowerCaseRoot(broadcasterLogin));
+        }
+    }
+
+    /**
+     * Walks the channel's moderator pages, handing each page of logins to {@code onPage} as it arrives. Returns
+     * nothing when a page cannot be fetched.
+     */
+    private List<String> fetchModeratorLogins(
+        String broadcasterLogin,
+        HttpEntity<Void> entity,
+        Consumer<List<String>> onPage
+    ) {
+        String broadcasterId;
+        try {
+            broadcasterId = identityService.findUserId(broadcasterLogin).orElse(null);
+        } catch (RestClientException ex) {
+            LOG.warn("Unable to look up the Twitch user id of {}", broadcasterLogin, ex);
+            return null;
+        }
+
+        if (broadcasterId == null || broadcasterId.isBlank()) {
+            LOG.warn("No broadcaster id found for {} when fetching moderators", broadcasterLogin);
+            return null;
+        }
 
         List<String> moderatorLogins = new ArrayList<>();
         String cursor = null;
 
         do {
-            UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(
-                "https://api.twitch.tv/helix/moderation/moderators"
-            )
+            UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(moderatorsUrl)
                 .queryParam("broadcaster_id", broadcasterId)
                 .queryParam("first", 100);
             if (cursor != null && !cursor.isBlank()) {
@@ -120,7 +208,7 @@ public class TwitchUserLookupService {
                 ResponseEntity<TwitchModeratorsResponse> response = restTemplate.exchange(
                     builder.build(true).toUri(),
                     HttpMethod.GET,
-                    new HttpEntity<>(headers),
+                    entity,
                     TwitchModeratorsResponse.class
                 );
 
@@ -132,30 +220,33 @@ public class TwitchUserLookupService {
                     cursor
                 );
                 if (body != null && body.data() != null) {
-                    body
+                    List<String> page = body
                         .data()
                         .stream()
                         .filter(Objects::nonNull)
-                         .map(ModeratorData::userLogin)
-                         .filter(Objects::nonNull)
-                         .map(StringNormalizer::toLowerCaseRoot)
-                        .filter((login) -> !skipLogins.contains(login))
-                        .forEach(moderatorLogins::add);
+                        .map(ModeratorData::userLogin)
+                        .filter(Objects::nonNull)
+                        .map(StringNormalizer::toLowerCaseRoot)
+                        .toList();
+                    moderatorLogins.addAll(page);
+                    onPage.accept(page);
                 }
 
                 cursor = body != null && body.pagination() != null ? body.pagination().cursor() : null;
             } catch (RestClientException ex) {
                 LOG.warn("Unable to fetch Twitch moderators for {}", broadcasterLogin, ex);
-                return List.of();
+                return null;
             }
         } while (cursor != null && !cursor.isBlank());
 
-        if (moderatorLogins.isEmpty()) {
-            LOG.info("No moderator suggestions available for {} after filtering existing admins", broadcasterLogin);
-            return List.of();
-        }
+        return List.copyOf(moderatorLogins);
+    }
 
-        return fetchProfiles(moderatorLogins, accessToken, clientId);
+    private List<TwitchUserProfile> toProfiles(List<String> logins, Map<String, Optional<TwitchUserData>> byLogin) {
+        return logins
+            .stream()
+            .map((login) -> toProfile(login, byLogin.getOrDefault(login, Optional.empty()).orElse(null)))
+            .toList();
     }
 
     private TwitchUserProfile toProfile(String login, TwitchUserData data) {
@@ -165,30 +256,61 @@ public class TwitchUserLookupService {
         return new TwitchUserProfile(login, data.displayName(), data.profileImageUrl());
     }
 
-    private Map<String, TwitchUserData> fetchUsers(Collection<String> logins, String accessToken, String clientId) {
-        if (logins == null || logins.isEmpty()) {
-            return Collections.emptyMap();
-        }
-
-        List<String> normalizedLogins = logins
-            .stream()
-            .filter(Objects::nonNull)
-            .map(StringNormalizer::toLowerCaseRoot)
-            .distinct()
-            .toList();
+    private static List<String> withoutLogins(List<String> logins, Set<String> skipLogins) {
+        return logins.stream().filter((login) -> !skipLogins.contains(login)).distinct().toList();
+    }
 
+    private static HttpEntity<Void> authEntity(String accessToken, String clientId) {
         if (accessToken == null || accessToken.isBlank() || clientId == null || clientId.isBlank()) {
-            return Collections.emptyMap();
+            return null;
         }
-
         HttpHeaders headers = new HttpHeaders();
         headers.setBearerAuth(accessToken);
         headers.add("Client-ID", clientId);
+        return new HttpEntity<>(headers);
+    }
 
-        UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromHttpUrl("https://api.twitch.tv/helix/users");
-        normalizedLogins.forEach((login) -> uriBuilder.queryParam("login", login));
+    /**
+     * Returns the cached users of the logins and looks up the rest, in batches that run on the lookup executor.
+     * Logins of a batch that could not be looked up are left out, and nothing is looked up without credentials.
+     */
+    private CompletableFuture<Map<String, Optional<TwitchUserData>>> resolveUsers(
+        List<String> logins,
+        HttpEntity<Void> entity
+    ) {
+        Map<String, Optional<TwitchUserData>> byLogin = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String login : logins) {
+            Optional<TwitchUserData> cached = profileCache.get(login);
+            if (cached != null) {
+                byLogin.put(login, cached);
+            } else {
+                missing.add(login);
+            }
+        }
+        if (missing.isEmpty() || entity == null) {
+            return CompletableFuture.completedFuture(byLogin);
+        }
+
+        // Helix accepts at most 100 logins per request
+        List<CompletableFuture<Map<String, Optional<TwitchUserData>>>> batches = new ArrayList<>();
+        for (int start = 0; start < missing.size(); start += TwitchIdentityService.LOGINS_PER_REQUEST) {
+            List<String> batch = missing.subList(
+                start,
+                Math.min(start + TwitchIdentityService.LOGINS_PER_REQUEST, missing.size())
+            );
+            batches.add(CompletableFuture.supplyAsync(() -> fetchUsers(batch, entity), lookupExecutor));
+        }
+        return CompletableFuture.allOf(batches.toArray(CompletableFuture[]::new)).thenApply((ignored) -> {
+            batches.forEach((batch) -> byLogin.putAll(batch.join()));
+            return byLogin;
+        });
+    }
 
-        HttpEntity<Void> entity = new HttpEntity<>(headers);
+    private Map<String, Optional<TwitchUserData>> fetchUsers(List<String> logins, HttpEntity<Void> entity) {
+        UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromHttpUrl(usersUrl);
+        logins.forEach((login) -> uriBuilder.queryParam("login", login));
+        Map<String, TwitchUserData> found = new HashMap<>();
         try {
             ResponseEntity<TwitchUsersResponse> response = restTemplate.exchange(
                 uriBuilder.build(true).toUri(),
@@ -196,26 +318,85 @@ public class TwitchUserLookupService {
                 entity,
                 TwitchUsersResponse.class
             );
-
-            return response.getBody() == null
-                ? Collections.emptyMap()
-                : response
-                      .getBody()
-                      .data()
-                      .stream()
-                      .filter(Objects::nonNull)
-                      .collect(
-                          Collectors.toMap(
-                               (user) -> StringNormalizer.toLowerCaseRoot(user.login()),
-                              Function.identity(),
-                              (a, b) -> a,
-                              HashMap::new
-                          )
-                      );
+            if (response.getBody() != null && response.getBody().data() != null) {
+                response
+                    .getBody()
+                    .data()
+                    .stream()
+                    .filter((user) -> user != null && user.login() != null)
+                    .forEach((user) -> found.putIfAbsent(StringNormalizer.toLowerCaseRoot(user.login()), user));
+            }
         } catch (RestClientException ex) {
             LOG.warn("Unable to fetch Twitch user profiles", ex);
-            return Collections.emptyMap();
+            return Map.of();
+        }
+        identityService.record(
+            found
+                .values()
+                .stream()
+                .filter((user) -> user.id() != null)
+                .collect(Collectors.toMap(TwitchUserData::login, TwitchUserData::id, (a, b) -> a))
+        );
+        Map<String, Optional<TwitchUserData>> byLogin = new HashMap<>();
+        for (String login : logins) {
+            Optional<TwitchUserData> user = Optional.ofNullable(found.get(login));
+            profileCache.put(login, user);
+            byLogin.put(login, user);
         }
+        return byLogin;
+    }
+
+    /**
+     * Values by key for a fixed time, holding at most a fixed number of keys and dropping the least recently read.
+     */
+    private static final class ExpiringCache<V> {
+
+        private final Duration ttl;
+        private final Map<String, Entry<V>> entries;
+        private final CacheMetrics metrics = new CacheMetrics();
+
+        ExpiringCache(int maxEntries, Duration ttl) {
+            this.ttl = ttl;
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+
+        synchronized V get(String key) {
+            Entry<V> entry = entries.get(key);
+            if (entry == null) {
+                metrics.miss();
+                return null;
+            }
+            if (!entry.expiresAt().isAfter(Instant.now())) {
+                entries.remove(key);
+                metrics.miss();
+                return null;
+            }
+            metrics.hit();
+            return entry.value();
+        }
+
+        synchronized void put(String key, V value) {
+            entries.put(key, new Entry<>(value, Instant.now().plus(ttl)));
+        }
+
+        synchronized void invalidate(String key) {
+            entries.remove(key);
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+
+        void bindTo(MeterRegistry registry, String cacheName) {
+            metrics.bindTo(registry, cacheName, this::size);
+        }
+
+        private record Entry<V>(V value, Instant expiresAt) {}
     }
 
     @JsonIgnoreProperties(ignoreUnknown = true)
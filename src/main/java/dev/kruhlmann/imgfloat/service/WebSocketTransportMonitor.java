@@ -0,0 +1,251 @@
+package dev.kruhlmann.imgfloat.service;
+
+import dev.kruhlmann.imgfloat.config.WebSocketTransportSettings;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+
+/**
+ * Tracks how many broadcast messages each WebSocket session has waiting between broker fan-out and the socket, and
+ * reports them together with the broker's executor and session statistics. A session whose queue keeps growing is
+ * a slow consumer; it is disconnected once its send buffer or send time exceeds the configured limits.
+ * <p>
+ * Messages are counted when the broker fans them out rather than when they enter the outbound channel, because
+ * the broker holds each session's messages back until the previous one is written to keep them in order.
+ */
+@Service
+public class WebSocketTransportMonitor implements ExecutorChannelInterceptor {
+
+    private static final int REPORTED_SESSIONS = 20;
+
+    private final WebSocketTransportSettings settings;
+    private final ObjectProvider<AbstractBrokerMessageHandler> brokerMessageHandler;
+    private final ObjectProvider<WebSocketHandler> subProtocolWebSocketHandler;
+    private final ObjectProvider<ThreadPoolTaskExecutor> inboundExecutor;
+    private final ObjectProvider<ThreadPoolTaskExecutor> outboundExecutor;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, SessionQueue> sessions = new ConcurrentHashMap<>();
+
+    public WebSocketTransportMonitor(
+        WebSocketTransportSettings settings,
+        @Qualifier("simpleBrokerMessageHandler") ObjectProvider<AbstractBrokerMessageHandler> brokerMessageHandler,
+        @Qualifier("subProtocolWebSocketHandler") ObjectProvider<WebSocketHandler> subProtocolWebSocketHandler,
+        @Qualifier("clientInboundChannelExecutor") ObjectProvider<ThreadPoolTaskExecutor> inboundExecutor,
+        @Qualifier("clientOutboundChannelExecutor") ObjectProvider<ThreadPoolTaskExecutor> outboundExecutor,
+        MeterRegistry meterRegistry
+    ) {
+        this.settings = settings;
+        this.brokerMessageHandler = brokerMessageHandler;
+        this.subProtocolWebSocketHandler = subProtocolWebSocketHandler;
+        this.inboundExecutor = inboundExecutor;
+        this.outboundExecutor = outboundExecutor;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @return an interceptor for the broker channel that counts each broadcast against every subscribed session
+     */
+    public ChannelInterceptor brokerChannelInterceptor() {
+        return new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                fannedOut(message);
+                return message;
+            }
+        };
+    }
+
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        if (!sent) {
+            dequeued(message);
+        }
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        dequeued(message);
+    }
+
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        sessions.remove(event.getSessionId());
+    }
+
+    public TransportReport report() {
+        List<SessionReport> deepest = sessions
+            .entrySet()
+            .stream()
+            .map((entry) -> entry.getValue().report(entry.getKey()))
+            .sorted(
+                Comparator.comparingInt(SessionReport::pendingMessages)
+                    .thenComparingInt(SessionReport::maxPendingMessages)
+                    .reversed()
+            )
+            .limit(REPORTED_SESSIONS)
+            .toList();
+        return new TransportReport(
+            new Limits(
+                settings.getInboundThreads(),
+                settings.getOutboundThreads(),
+                settings.getExecutorQueueCapacity(),
+                settings.getSendBufferSizeLimitBytes(),
+                settings.getSendTimeLimitMillis(),
+                settings.getMessageSizeLimitBytes(),
+                settings.getHeartbeatMillis()
+            ),
+            executorReport(inboundExecutor.getIfAvailable()),
+            executorReport(outboundExecutor.getIfAvailable()),
+            sessionCounts(),
+            sessions.values().stream().mapToInt(SessionQueue::pending).sum(),
+            deepest
+        );
+    }
+
+    private void fannedOut(Message<?> message) {
+        if (
+            SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE ||
+            !(brokerMessageHandler.getIfAvailable() instanceof SimpleBrokerMessageHandler broker) ||
+            broker.getSubscriptionRegistry() == null
+        ) {
+            return;
+        }
+        Set<String> sessionIds = broker.getSubscriptionRegistry().findSubscriptions(message).keySet();
+        sessionIds.forEach((sessionId) -> sessions.computeIfAbsent(sessionId, (key) -> new SessionQueue()).enqueued());
+        meterRegistry
+            .summary(
+                "imgfloat.stomp.fanout",
+                "destination",
+                destinationKind(SimpMessageHeaderAccessor.getDestination(message.getHeaders())),
+                "delivery",
+                message.getHeaders().containsKey(ChannelEventLog.TRANSIENT_HEADER) ? "transient" : "regular"
+            )
+            .record(sessionIds.size());
+    }
+
+    /**
+     * @return the kind of topic without the channel name, so that fan-out is tagged the same for every channel
+     */
+    private static String destinationKind(String destination) {
+        if (destination == null || !destination.startsWith(ChannelEventBus.CHANNEL_TOPIC_PREFIX)) {
+            return "other";
+        }
+        return destination.endsWith(TwitchChatRelay.CHAT_TOPIC_SUFFIX) ? "chat" : "channel";
+    }
+
+    private void dequeued(Message<?> message) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+            return;
+        }
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        SessionQueue queue = sessionId == null ? null : sessions.get(sessionId);
+        if (queue != null) {
+            queue.dequeued();
+        }
+    }
+
+    private SessionCounts sessionCounts() {
+        if (!(subProtocolWebSocketHandler.getIfAvailable() instanceof SubProtocolWebSocketHandler handler)) {
+            return null;
+        }
+        SubProtocolWebSocketHandler.Stats stats = handler.getStats();
+        return new SessionCounts(
+            stats.getTotalSessions(),
+            stats.getWebSocketSessions(),
+            stats.getHttpStreamingSessions() + stats.getHttpPollingSessions(),
+            stats.getLimitExceededSessions(),
+            stats.getNoMessagesReceivedSessions(),
+            stats.getTransportErrorSessions()
+        );
+    }
+
+    private static ExecutorReport executorReport(ThreadPoolTaskExecutor executor) {
+        if (executor == null) {
+            return null;
+        }
+        return new ExecutorReport(
+            executor.getPoolSize(),
+            executor.getActiveCount(),
+            executor.getQueueSize(),
+            executor.getThreadPoolExecutor().getCompletedTaskCount()
+        );
+    }
+
+    private static final class SessionQueue {
+
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicInteger maxPending = new AtomicInteger();
+        private final AtomicLong delivered = new AtomicLong();
+
+        private void enqueued() {
+            maxPending.accumulateAndGet(pending.incrementAndGet(), Math::max);
+        }
+
+        private void dequeued() {
+            pending.updateAndGet((value) -> Math.max(value - 1, 0));
+            delivered.incrementAndGet();
+        }
+
+        private int pending() {
+            return pending.get();
+        }
+
+        private SessionReport report(String sessionId) {
+            return new SessionReport(sessionId, pending.get(), maxPending.get(), delivered.get());
+        }
+    }
+
+    public record Limits(
+        int inboundThreads,
+        int outboundThreads,
+        int executorQueueCapacity,
+        int sendBufferSizeLimitBytes,
+        int sendTimeLimitMillis,
+        int messageSizeLimitBytes,
+        long heartbeatMillis
+    ) {}
+
+    public record ExecutorReport(int poolSize, int activeThreads, int queuedTasks, long completedTasks) {}
+
+    public record SessionCounts(
+        int total,
+        int webSocket,
+        int sockJsFallback,
+        int limitExceeded,
+        int noMessagesReceived,
+        int transportErrors
+    ) {}
+
+    public record SessionReport(String sessionId, int pendingMessages, int maxPendingMessages, long deliveredMessages) {}
+
+    public record TransportReport(
+        Limits limits,
+        ExecutorReport inbound,
+        ExecutorReport outbound,
+        SessionCounts sessions,
+        int pendingOutboundMessages,
+        List<SessionReport> deepestSessionQueues
+    ) {}
+}
@@ -1,5 +1,7 @@
 package dev.kruhlmann.imgfloat.service.media;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -18,6 +20,12 @@ public class FfmpegService {
 
     private static final Logger LOG = LoggerFactory.getLogger(FfmpegService.class);
 
+    private final MeterRegistry meterRegistry;
+
+    public FfmpegService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
     public Optional<VideoDimensions> extractVideoDimensions(byte[] bytes) {
         return Optional.ofNullable(withTempFile(bytes, ".bin", (input) -> {
             List<String> command = List.of(
@@ -32,7 +40,7 @@ public class FfmpegService {
                 "csv=p=0:s=x",
                 input.toString()
             );
-            ProcessResult result = run(command);
+            ProcessResult result = run("probe-dimensions", command);
             if (result.exitCode() != 0) {
                 LOG.warn("ffprobe failed: {}", result.output());
                 return null;
@@ -53,6 +61,34 @@ public class FfmpegService {
         }));
     }
 
+    public Optional<Long> extractDurationMillis(byte[] bytes) {
+        return Optional.ofNullable(withTempFile(bytes, ".bin", (input) -> {
+            List<String> command = List.of(
+                "ffprobe",
+                "-v",
+                "error",
+                "-show_entries",
+                "format=duration",
+                "-of",
+                "csv=p=0",
+                input.toString()
+            );
+            ProcessResult result = run("probe-duration", command);
+            if (result.exitCode() != 0) {
+                LOG.warn("ffprobe failed: {}", result.output());
+                return null;
+            }
+            String output = result.output().trim();
+            try {
+                double seconds = Double.parseDouble(output);
+                return seconds > 0 && Double.isFinite(seconds) ? Math.round(seconds * 1000) : null;
+            } catch (NumberFormatException e) {
+                LOG.warn("Unable to parse ffprobe output: {}", output, e);
+                return null;
+            }
+        }));
+    }
+
     public Optional<byte[]> extractVideoPreview(byte[] bytes) {
         return Optional.ofNullable(withTempFile(bytes, ".bin", (input) -> {
             Path output = Files.createTempFile("imgfloat-preview", ".png");
@@ -73,7 +109,7 @@ public class FfmpegService {
                     "png",
                     output.toString()
                 );
-                ProcessResult result = run(command);
+                ProcessResult result = run("video-preview", command);
                 if (result.exitCode() != 0) {
                     LOG.warn("ffmpeg preview failed: {}", result.output());
                     return null;
@@ -109,7 +145,7 @@ public class FfmpegService {
                     "0",
                     output.toString()
                 );
-                ProcessResult result = run(command);
+                ProcessResult result = run("gif-to-webm", command);
                 if (result.exitCode() != 0) {
                     LOG.warn("ffmpeg transcode failed: {}", result.output());
                     return null;
@@ -137,7 +173,7 @@ public class FfmpegService {
                     "[0:v]split[s0][s1];[s0]palettegen=reserve_transparent=1[p];[s1][p]paletteuse",
                     output.toString()
                 );
-                ProcessResult result = run(command);
+                ProcessResult result = run("apng-to-gif", command);
                 if (result.exitCode() != 0) {
                     LOG.warn("ffmpeg APNG transcode failed: {}", result.output());
                     return null;
@@ -169,6 +205,22 @@ public class FfmpegService {
         }
     }
 
+    /**
+     * Runs an ffmpeg or ffprobe command and records how long it took under {@code operation}, a fixed name per call
+     * site.
+     */
+    private ProcessResult run(String operation, List<String> command) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            ProcessResult result = run(command);
+            outcome = result.exitCode() == 0 ? "success" : "failure";
+            return result;
+        } finally {
+            sample.stop(meterRegistry.timer("imgfloat.ffmpeg.command", "operation", operation, "outcome", outcome));
+        }
+    }
+
     private ProcessResult run(List<String> command) throws IOException {
         ProcessBuilder builder = new ProcessBuilder(new ArrayList<>(command));
         builder.redirectErrorStream(true);
@@ -1,5 +1,7 @@
 package dev.kruhlmann.imgfloat.service.media;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.URLConnection;
@@ -15,7 +17,28 @@ public class MediaDetectionService {
 
     private static final Logger LOG = LoggerFactory.getLogger(MediaDetectionService.class);
 
+    private final MeterRegistry meterRegistry;
+
+    public MediaDetectionService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
     public Optional<String> detectAllowedMediaType(MultipartFile file, byte[] bytes) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Optional<String> mediaType = detectAllowedMediaTypeUntimed(file, bytes);
+        sample.stop(
+            meterRegistry.timer(
+                "imgfloat.upload.stage",
+                "stage",
+                "detect",
+                "media.type",
+                MediaTypeRegistry.mediaTypeTag(mediaType.orElse(null))
+            )
+        );
+        return mediaType;
+    }
+
+    private Optional<String> detectAllowedMediaTypeUntimed(MultipartFile file, byte[] bytes) {
         Optional<String> detected = detectMediaType(bytes)
             .map(MediaTypeRegistry::normalizeJavaScriptMediaType)
             .filter(MediaTypeRegistry::isSupportedMediaType);
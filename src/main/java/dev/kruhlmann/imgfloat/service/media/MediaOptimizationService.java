@@ -1,8 +1,11 @@
 package dev.kruhlmann.imgfloat.service.media;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.Optional;
 import javax.imageio.ImageIO;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,13 +22,36 @@ public class MediaOptimizationService {
 
     private final MediaPreviewService previewService;
     private final FfmpegService ffmpegService;
+    private final MeterRegistry meterRegistry;
 
-    public MediaOptimizationService(MediaPreviewService previewService, FfmpegService ffmpegService) {
+    public MediaOptimizationService(
+        MediaPreviewService previewService,
+        FfmpegService ffmpegService,
+        MeterRegistry meterRegistry
+    ) {
         this.previewService = previewService;
         this.ffmpegService = ffmpegService;
+        this.meterRegistry = meterRegistry;
     }
 
     public OptimizedAsset optimizeAsset(byte[] bytes, String mediaType) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return optimizeAssetUntimed(bytes, mediaType);
+        } finally {
+            sample.stop(
+                meterRegistry.timer(
+                    "imgfloat.upload.stage",
+                    "stage",
+                    "optimize",
+                    "media.type",
+                    MediaTypeRegistry.mediaTypeTag(mediaType)
+                )
+            );
+        }
+    }
+
+    private OptimizedAsset optimizeAssetUntimed(byte[] bytes, String mediaType) throws IOException {
         if (mediaType == null || mediaType.isBlank() || bytes == null || bytes.length == 0) {
             return null;
         }
@@ -72,6 +98,16 @@ public class MediaOptimizationService {
         return optimizeImage(bytes, mediaType);
     }
 
+    /**
+     * Probes how long an audio file plays at normal speed, if ffprobe is available and understands it.
+     */
+    public Optional<Long> probeAudioDurationMillis(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return Optional.empty();
+        }
+        return ffmpegService.extractDurationMillis(bytes);
+    }
+
     private boolean isApng(String mediaType, byte[] bytes) {
         if (mediaType == null) {
             return false;
@@ -38,6 +38,15 @@ public final class MediaTypeRegistry {
         return SUPPORTED_MEDIA_TYPES.contains(normalized);
     }
 
+    /**
+     * @return the media type as a metric tag value, which is one of the supported media types or {@code other}
+     */
+    public static String mediaTypeTag(String mediaType) {
+        return isSupportedMediaType(mediaType)
+            ? normalizeJavaScriptMediaType(mediaType).toLowerCase(Locale.ROOT)
+            : "other";
+    }
+
     public static List<String> supportedMediaTypes() {
         return SUPPORTED_MEDIA_TYPES.stream().sorted().toList();
     }
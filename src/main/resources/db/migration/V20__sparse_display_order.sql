@@ -0,0 +1,5 @@
+-- Display order becomes a sparse sort key: spread the existing dense ranks so single moves fit between neighbours.
+UPDATE assets
+SET display_order = display_order * 1024
+WHERE display_order IS NOT NULL
+  AND display_order > 0;
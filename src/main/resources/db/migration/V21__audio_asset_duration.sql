@@ -0,0 +1 @@
+ALTER TABLE audio_assets ADD COLUMN duration_millis INTEGER;
@@ -0,0 +1,5 @@
+CREATE TABLE twitch_identities (
+    login TEXT PRIMARY KEY,
+    user_id TEXT NOT NULL UNIQUE,
+    updated_at TIMESTAMP NOT NULL
+);
@@ -723,6 +723,10 @@ export function createAdminConsole({
     }
 
     function handleEvent(event) {
+        if (event.type === "BATCH" && Array.isArray(event.events)) {
+            event.events.forEach(handleEvent);
+            return;
+        }
         if (event.type === "CANVAS" && event.payload) {
             applyCanvasSettings(event.payload);
             return;
@@ -738,6 +742,11 @@ export function createAdminConsole({
             drawAndList(false);
             return;
         }
+        if (event.type === "ORDER") {
+            applyOrderEvent(event);
+            drawAndList(true);
+            return;
+        }
         if (event.type === "DELETED") {
             assets.delete(assetId);
             layerOrder = layerOrder.filter((id) => id !== assetId);
@@ -828,6 +837,15 @@ export function createAdminConsole({
         }
     }
 
+    function applyOrderEvent(event) {
+        if (Array.isArray(event.layerOrder)) {
+            layerOrder = event.layerOrder.filter((id) => assets.has(id));
+        }
+        if (Array.isArray(event.scriptLayerOrder)) {
+            scriptLayerOrder = event.scriptLayerOrder.filter((id) => assets.has(id));
+        }
+    }
+
     function applyPreviewPatch(assetId, patch) {
         if (!assetId || !patch) {
             return;
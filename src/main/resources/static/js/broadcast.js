@@ -6,7 +6,7 @@ const canvas = document.getElementById("broadcast-canvas");
 const scriptLayer = document.getElementById("broadcast-script-layer");
 setUpElectronWindowFrame();
 
-const renderer = new BroadcastRenderer({ canvas, scriptLayer, broadcaster, showToast });
+const renderer = new BroadcastRenderer({ canvas, scriptLayer, broadcaster, showToast, chatRelay });
 const defaultScriptSettings = {
     allowChannelEmotesForAssets: true,
     allowSevenTvEmotesForAssets: true,
@@ -59,7 +59,8 @@ const sevenTvEmotePromise = fetch(`/api/7tv/emotes?channel=${encodeURIComponent(
 Promise.allSettled([twitchEmotePromise, sevenTvEmotePromise]).then(() => renderer.setEmoteCatalog(emoteCatalog));
 let disconnectChat = () => {};
 settingsPromise.finally(() => {
-    if (!currentScriptSettings.allowScriptChatAccess) {
+    // With the chat relay, the renderer receives chat over its own STOMP connection
+    if (chatRelay || !currentScriptSettings.allowScriptChatAccess) {
         return;
     }
     disconnectChat = connectTwitchChat(
@@ -1,6 +1,10 @@
 export const TARGET_FPS = 60;
 export const MIN_FRAME_TIME = 1000 / TARGET_FPS;
 export const VISIBILITY_THRESHOLD = 0.01;
+export const RECONNECT_MIN_DELAY_MS = 1000;
+export const RECONNECT_MAX_DELAY_MS = 30000;
+export const SOCKJS_ENDPOINT = "/ws";
+export const NATIVE_WS_ENDPOINT = "/ws/native";
 
 export const AssetKind = Object.freeze({
     AUDIO: "audio",
@@ -1,4 +1,12 @@
-import { AssetKind, MIN_FRAME_TIME, VISIBILITY_THRESHOLD } from "./constants.js";
+import {
+    AssetKind,
+    MIN_FRAME_TIME,
+    NATIVE_WS_ENDPOINT,
+    RECONNECT_MAX_DELAY_MS,
+    RECONNECT_MIN_DELAY_MS,
+    SOCKJS_ENDPOINT,
+    VISIBILITY_THRESHOLD,
+} from "./constants.js";
 import { createBroadcastState } from "./state.js";
 import { getAssetKind, isCodeAsset, isModelAsset, isVisualAsset, isVideoElement } from "./assetKinds.js";
 import { ensureLayerPosition, getLayerOrder, getRenderOrder, getScriptLayerOrder } from "./layers.js";
@@ -9,7 +17,7 @@ import { createModelManager } from "../media/modelManager.js";
 
 export class BroadcastRenderer {
     // TODO: Code smell Renderer class accumulates networking, state management, media orchestration, and rendering responsibilities.
-    constructor({ canvas, scriptLayer, broadcaster, showToast }) {
+    constructor({ canvas, scriptLayer, broadcaster, showToast, chatRelay = false }) {
         this.canvas = canvas;
         this.ctx = canvas.getContext("2d");
         this.scriptLayer = scriptLayer;
@@ -37,6 +45,8 @@ export class BroadcastRenderer {
         this.allowChannelEmotesForAssets = true;
         this.allowSevenTvEmotesForAssets = true;
         this.allowScriptChatAccess = true;
+        this.chatRelay = chatRelay;
+        this.chatSubscription = null;
 
         // Playlist state — updated by PlaylistEvents from the server
         this.playlistState = {
@@ -51,6 +61,18 @@ export class BroadcastRenderer {
             tracks: [],          // full ordered track list from last PLAYLIST_SELECTED/UPDATED
         };
         this.playlistCurrentElement = null; // the currently playing Audio element
+        this.playlistPrefetch = null; // { trackId, element } preloaded after a PLAYLIST_PREFETCH hint
+
+        // Channel event sequence, used to fetch only the missed events after a reconnect
+        this.eventEpoch = null;
+        this.lastEventSeq = null;
+        this.bufferedEvents = null; // live events received while state is being restored
+        this.reconnectDelay = RECONNECT_MIN_DELAY_MS;
+        // Native WebSocket unless unavailable or forced off with ?transport=sockjs; SockJS is the fallback
+        this.useNativeTransport =
+            typeof WebSocket !== "undefined" &&
+            new URLSearchParams(globalThis.location.search).get("transport") !== "sockjs";
+        this.nativeTransportConnected = false;
 
         this.obsBrowser = !!globalThis.obsstudio;
         this.supportsAnimatedDecode =
@@ -86,56 +108,158 @@ export class BroadcastRenderer {
     }
 
     connect() {
-        const socket = new SockJS("/ws");
-        this.stompClient = Stomp.over(socket);
-        this.stompClient.connect({}, () => {
-            this.stompClient.subscribe(`/topic/channel/${this.broadcaster}`, (payload) => {
-                const body = JSON.parse(payload.body);
-                this.handleEvent(body);
+        const nativeTransport = this.useNativeTransport;
+        this.stompClient = nativeTransport
+            ? Stomp.client(this.nativeEndpointUrl())
+            : Stomp.over(new SockJS(SOCKJS_ENDPOINT));
+        this.stompClient.connect(
+            {},
+            () => {
+                if (nativeTransport) {
+                    this.nativeTransportConnected = true;
+                }
+                this.reconnectDelay = RECONNECT_MIN_DELAY_MS;
+                this.bufferedEvents = [];
+                this.stompClient.subscribe(`/topic/channel/${this.broadcaster}`, (payload) => {
+                    this.receiveEvent(payload);
+                });
+                this.chatSubscription = null;
+                this.updateChatSubscription();
+                this.restoreState();
+
+                // Periodically persist playback position over STOMP so reconnects can resume accurately
+                clearInterval(this._positionReporterInterval);
+                this._positionReporterInterval = setInterval(() => {
+                    if (!this.playlistCurrentElement || this.playlistCurrentElement.paused) return;
+                    if (!this.playlistState.playlistId || !this.playlistState.trackId) return;
+                    this.stompClient.send(
+                        `/app/channel/${encodeURIComponent(this.broadcaster)}/playlists/${encodeURIComponent(this.playlistState.playlistId)}/position`,
+                        {},
+                        JSON.stringify({
+                            trackId: this.playlistState.trackId,
+                            position: this.playlistCurrentElement.currentTime,
+                        })
+                    );
+                }, 5000);
+            },
+            () => {
+                if (nativeTransport && !this.nativeTransportConnected) {
+                    // The native endpoint never worked from here (e.g. a proxy without WebSocket support)
+                    this.useNativeTransport = false;
+                }
+                this.scheduleReconnect();
+            }
+        );
+    }
+
+    nativeEndpointUrl() {
+        const scheme = globalThis.location.protocol === "https:" ? "wss" : "ws";
+        return `${scheme}://${globalThis.location.host}${NATIVE_WS_ENDPOINT}`;
+    }
+
+    scheduleReconnect() {
+        clearInterval(this._positionReporterInterval);
+        this._positionReporterInterval = null;
+        const delay = this.reconnectDelay;
+        this.reconnectDelay = Math.min(this.reconnectDelay * 2, RECONNECT_MAX_DELAY_MS);
+        setTimeout(() => this.connect(), delay);
+    }
+
+    receiveEvent(payload) {
+        const seq = Number(payload.headers?.seq);
+        const epoch = payload.headers?.epoch ?? null;
+        if (this.bufferedEvents) {
+            this.bufferedEvents.push({ seq, epoch, body: payload.body });
+            return;
+        }
+        this.applyEventBody(seq, epoch, payload.body);
+    }
+
+    applyEventBody(seq, epoch, body) {
+        if (Number.isFinite(seq)) {
+            if (epoch === this.eventEpoch && this.lastEventSeq !== null && seq <= this.lastEventSeq) {
+                return;
+            }
+            this.eventEpoch = epoch;
+            this.lastEventSeq = seq;
+        }
+        let event;
+        try {
+            event = JSON.parse(body);
+        } catch (e) {
+            return;
+        }
+        this.handleEvent(event);
+    }
+
+    /**
+     * Catches up after (re)connecting: replays the events missed since the last one seen, or reloads the full
+     * channel state when the server no longer has them. Live events are held back until this is done.
+     */
+    restoreState() {
+        const since = this.lastEventSeq;
+        const replayRequest =
+            since === null
+                ? Promise.resolve(null)
+                : fetch(
+                      `/api/channels/${encodeURIComponent(this.broadcaster)}/events?since=${since}&epoch=${encodeURIComponent(this.eventEpoch ?? "")}`
+                  )
+                      .then((r) => (r.ok ? r.json() : null))
+                      .catch(() => null);
+        return replayRequest
+            .then((replay) => {
+                if (replay?.complete) {
+                    replay.events.forEach((event) => this.applyEventBody(event.seq, replay.epoch, event.body));
+                    return null;
+                }
+                if (replay) {
+                    this.eventEpoch = replay.epoch;
+                    this.lastEventSeq = replay.seq;
+                }
+                return this.loadSnapshot();
+            })
+            .finally(() => {
+                const buffered = this.bufferedEvents || [];
+                this.bufferedEvents = null;
+                buffered.forEach((event) => this.applyEventBody(event.seq, event.epoch, event.body));
             });
-            fetch(`/api/channels/${this.broadcaster}/assets`)
-                .then((r) => {
-                    if (!r.ok) {
-                        throw new Error("Failed to load assets");
-                    }
-                    return r.json();
-                })
-                .then((assets) => this.renderAssets(assets))
-                .catch(() => this.showToast("Unable to load overlay assets. Retrying may help.", "error"));
-            fetch(`/api/channels/${this.broadcaster}/playlists/active`)
-                .then((r) => r.ok ? r.json() : null)
-                .then((state) => {
-                    if (!state) return;
-                    this.playlistState.playlistId = state.id;
-                    this.playlistState.playlistName = state.name;
-                    this.playlistState.tracks = Array.isArray(state.tracks) ? state.tracks : [];
-                    this.playlistState.trackCount = this.playlistState.tracks.length;
-                    if (state.isPlaying && state.currentTrackId) {
-                        this.playlistState.active = true;
-                        this.playlistState.paused = state.isPaused;
-                        this._resumeTrack(state.currentTrackId, state.trackPosition, state.isPaused);
-                    }
-                    this.updateScriptWorkerPlaylist();
-                })
-                .catch(() => {});
-
-            // Periodically persist playback position over STOMP so reconnects can resume accurately
-            this._positionReporterInterval = setInterval(() => {
-                if (!this.playlistCurrentElement || this.playlistCurrentElement.paused) return;
-                if (!this.playlistState.playlistId || !this.playlistState.trackId) return;
-                this.stompClient.send(
-                    `/app/channel/${encodeURIComponent(this.broadcaster)}/playlists/${encodeURIComponent(this.playlistState.playlistId)}/position`,
-                    {},
-                    JSON.stringify({
-                        trackId: this.playlistState.trackId,
-                        position: this.playlistCurrentElement.currentTime,
-                    })
-                );
-            }, 5000);
-        });
+    }
+
+    loadSnapshot() {
+        const assets = fetch(`/api/channels/${this.broadcaster}/assets`)
+            .then((r) => {
+                if (!r.ok) {
+                    throw new Error("Failed to load assets");
+                }
+                return r.json();
+            })
+            .then((list) => this.renderAssets(list))
+            .catch(() => this.showToast("Unable to load overlay assets. Retrying may help.", "error"));
+        const playlist = fetch(`/api/channels/${this.broadcaster}/playlists/active`)
+            .then((r) => r.ok ? r.json() : null)
+            .then((state) => {
+                if (!state) return;
+                this.playlistState.playlistId = state.id;
+                this.playlistState.playlistName = state.name;
+                this.playlistState.tracks = Array.isArray(state.tracks) ? state.tracks : [];
+                this.playlistState.trackCount = this.playlistState.tracks.length;
+                const alreadyPlaying = this.playlistCurrentElement && this.playlistState.trackId === state.currentTrackId;
+                if (state.isPlaying && state.currentTrackId && !alreadyPlaying) {
+                    this.playlistState.active = true;
+                    this.playlistState.paused = state.isPaused;
+                    this._resumeTrack(state.currentTrackId, state.trackPosition, state.isPaused);
+                }
+                this.updateScriptWorkerPlaylist();
+            })
+            .catch(() => {});
+        return Promise.all([assets, playlist]);
     }
 
     renderAssets(list) {
+        const ids = new Set(list.map((asset) => asset.id));
+        Array.from(this.state.assets.keys())
+            .filter((id) => !ids.has(id))
+            .forEach((id) => this.removeAsset(id));
         this.state.layerOrder = [];
         this.state.scriptLayerOrder = [];
         list.forEach((asset) => {
@@ -225,6 +349,10 @@ export class BroadcastRenderer {
     }
 
     handleEvent(event) {
+        if (event.type === "BATCH" && Array.isArray(event.events)) {
+            event.events.forEach((batched) => this.handleEvent(batched));
+            return;
+        }
         if (event.type === "CANVAS" && event.payload) {
             this.applyCanvasSettings(event.payload);
             return;
@@ -243,6 +371,11 @@ export class BroadcastRenderer {
             this.handleVisibilityEvent(event);
             return;
         }
+        if (event.type === "ORDER") {
+            this.applyOrderEvent(event);
+            this.draw();
+            return;
+        }
         if (event.type === "DELETED") {
             this.removeAsset(assetId);
         } else if (event.patch) {
@@ -375,6 +508,16 @@ export class BroadcastRenderer {
         }
     }
 
+    applyOrderEvent(event) {
+        if (Array.isArray(event.layerOrder)) {
+            this.state.layerOrder = event.layerOrder.filter((id) => this.state.assets.has(id));
+        }
+        if (Array.isArray(event.scriptLayerOrder)) {
+            this.state.scriptLayerOrder = event.scriptLayerOrder.filter((id) => this.state.assets.has(id));
+            this.applyScriptCanvasOrder();
+        }
+    }
+
     applyPreviewPatch(assetId, patch) {
         if (!assetId || !patch) {
             return;
@@ -554,6 +697,7 @@ export class BroadcastRenderer {
         if (!this.allowScriptChatAccess) {
             this.chatMessages = [];
         }
+        this.updateChatSubscription();
         this.refreshEmoteCatalog();
         this.updateScriptWorkerChatMessages();
         this.updateScriptWorkerEmoteCatalog();
@@ -728,6 +872,25 @@ export class BroadcastRenderer {
         return enhanced;
     }
 
+    updateChatSubscription() {
+        const wanted = this.chatRelay && this.allowScriptChatAccess;
+        if (wanted && !this.chatSubscription && this.stompClient?.connected) {
+            this.chatSubscription = this.stompClient.subscribe(
+                `/topic/channel/${this.broadcaster}/chat`,
+                (payload) => {
+                    try {
+                        this.receiveChatMessage(JSON.parse(payload.body));
+                    } catch (error) {
+                        console.warn("Unable to read relayed chat message", error);
+                    }
+                },
+            );
+        } else if (!wanted && this.chatSubscription) {
+            this.chatSubscription.unsubscribe();
+            this.chatSubscription = null;
+        }
+    }
+
     receiveChatMessage(message) {
         if (!this.allowScriptChatAccess) {
             return;
@@ -847,6 +1010,11 @@ export class BroadcastRenderer {
                 this.updateScriptWorkerPlaylist();
                 break;
             }
+            case "PLAYLIST_PREFETCH": {
+                if (playlistId !== this.playlistState.playlistId) break;
+                this._prefetchTrack(trackId, event.contentUrl);
+                break;
+            }
             case "PLAYLIST_ENDED": {
                 if (playlistId !== this.playlistState.playlistId) break;
                 this._stopPlaylistAudio();
@@ -876,7 +1044,9 @@ export class BroadcastRenderer {
         this.playlistState.trackName = track.assetName;
         this.playlistState.trackIndex = idx;
 
-        const el = new Audio(asset.url);
+        const prefetched = this.playlistPrefetch?.trackId === trackId ? this.playlistPrefetch.element : null;
+        this.playlistPrefetch = null;
+        const el = prefetched || new Audio(asset.url);
         el.preload = "auto";
         el.controls = false;
         this.audioManager.releaseMediaElement && this.audioManager.releaseMediaElement(el);
@@ -893,6 +1063,20 @@ export class BroadcastRenderer {
         el.play().catch(() => {});
     }
 
+    /**
+     * Starts loading the track the server expects to play next, so the switch does not wait for the download.
+     */
+    _prefetchTrack(trackId, contentUrl) {
+        if (!trackId || this.playlistPrefetch?.trackId === trackId) return;
+        const track = this.playlistState.tracks.find(t => t.id === trackId);
+        const url = (track && this.state.assets.get(track.audioAssetId)?.url) || contentUrl;
+        if (!url) return;
+        const el = new Audio(url);
+        el.preload = "auto";
+        el.load();
+        this.playlistPrefetch = { trackId, element: el };
+    }
+
     /**
      * Resume a track at a specific position, optionally paused.
      * Used on reconnect to restore state from the server.
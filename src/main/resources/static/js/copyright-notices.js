@@ -122,7 +122,8 @@
                 stomp.subscribe(`/topic/channel/${broadcaster}`, (frame) => {
                     try {
                         const msg = JSON.parse(frame.body);
-                        if (msg.type === "COPYRIGHT_WARNING") {
+                        const events = msg.type === "BATCH" ? msg.events : [msg];
+                        if (events.some((event) => event.type === "COPYRIGHT_WARNING")) {
                             loadNotices();
                         }
                     } catch (_) {}
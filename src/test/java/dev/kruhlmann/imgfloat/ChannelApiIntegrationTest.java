@@ -1,5 +1,6 @@
 package dev.kruhlmann.imgfloat;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasSize;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.oauth2Login;
@@ -8,19 +9,25 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import dev.kruhlmann.imgfloat.model.api.request.VisibilityRequest;
+import dev.kruhlmann.imgfloat.service.SystemAdministratorService;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import javax.imageio.ImageIO;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
@@ -34,6 +41,7 @@ import org.springframework.test.web.servlet.MockMvc;
     }
 )
 @AutoConfigureMockMvc
+@AutoConfigureObservability
 class ChannelApiIntegrationTest {
 
     @Autowired
@@ -42,6 +50,9 @@ class ChannelApiIntegrationTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private SystemAdministratorService systemAdministratorService;
+
     @Test
     void broadcasterManagesAdminsAndAssets() throws Exception {
         String broadcaster = "caster";
@@ -124,6 +135,133 @@ class ChannelApiIntegrationTest {
             .andExpect(status().isOk());
     }
 
+    @Test
+    void reorderPersistsNewLayerOrder() throws Exception {
+        String broadcaster = "orderer";
+        String bottom = uploadAsset(broadcaster);
+        String middle = uploadAsset(broadcaster);
+        String top = uploadAsset(broadcaster);
+
+        mockMvc
+            .perform(
+                post("/api/channels/{broadcaster}/assets/order", broadcaster)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(
+                        "{\"updates\":[{\"assetId\":\"" +
+                        bottom +
+                        "\",\"order\":3},{\"assetId\":\"" +
+                        top +
+                        "\",\"order\":1}]}"
+                    )
+                    .with(oauth2Login().attributes((attrs) -> attrs.put("preferred_username", broadcaster)))
+                    .with(csrf())
+            )
+            .andExpect(status().isNoContent());
+
+        mockMvc
+            .perform(
+                get("/api/channels/{broadcaster}/assets", broadcaster).with(
+                    oauth2Login().attributes((attrs) -> attrs.put("preferred_username", broadcaster))
+                )
+            )
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].id").value(bottom))
+            .andExpect(jsonPath("$[1].id").value(middle))
+            .andExpect(jsonPath("$[2].id").value(top));
+    }
+
+    @Test
+    void reconnectingOverlayReplaysMissedEvents() throws Exception {
+        String broadcaster = "replayer";
+        JsonNode initial = objectMapper.readTree(
+            mockMvc
+                .perform(get("/api/channels/{broadcaster}/events", broadcaster).param("since", "0"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.complete").value(false))
+                .andReturn()
+                .getResponse()
+                .getContentAsString()
+        );
+        String epoch = initial.get("epoch").asText();
+        long seq = initial.get("seq").asLong();
+
+        String assetId = uploadAsset(broadcaster);
+
+        mockMvc
+            .perform(
+                get("/api/channels/{broadcaster}/events", broadcaster)
+                    .param("since", Long.toString(seq))
+                    .param("epoch", epoch)
+            )
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.complete").value(true))
+            .andExpect(jsonPath("$.events", hasSize(1)))
+            .andExpect(jsonPath("$.events[0].seq").value(seq + 1))
+            .andExpect(jsonPath("$.events[0].body", containsString(assetId)));
+
+        mockMvc
+            .perform(
+                get("/api/channels/{broadcaster}/events", broadcaster)
+                    .param("since", Long.toString(seq))
+                    .param("epoch", "stale")
+            )
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.complete").value(false))
+            .andExpect(jsonPath("$.events", hasSize(0)));
+    }
+
+    private String uploadAsset(String broadcaster) throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "image.png", "image/png", samplePng());
+        return objectMapper
+            .readTree(
+                mockMvc
+                    .perform(
+                        multipart("/api/channels/{broadcaster}/assets", broadcaster)
+                            .file(file)
+                            .with(oauth2Login().attributes((attrs) -> attrs.put("preferred_username", broadcaster)))
+                            .with(csrf())
+                    )
+                    .andExpect(status().isOk())
+                    .andReturn()
+                    .getResponse()
+                    .getContentAsString()
+            )
+            .get("id")
+            .asText();
+    }
+
+    @Test
+    void prometheusEndpointPublishesPoolAndUploadMetrics() throws Exception {
+        uploadAsset("metered");
+        systemAdministratorService.addSysadmin("operator");
+
+        mockMvc
+            .perform(
+                get("/actuator/prometheus").with(
+                    oauth2Login().attributes((attrs) -> attrs.put("preferred_username", "operator"))
+                )
+            )
+            .andExpect(status().isOk())
+            .andExpect(content().string(containsString("hikaricp_connections_active{pool=\"imgfloat\"")))
+            .andExpect(content().string(containsString("hikaricp_connections_active{pool=\"imgfloat-audit\"")))
+            .andExpect(content().string(containsString("imgfloat_upload_stage_seconds_count{media_type=\"image/png\"")))
+            .andExpect(content().string(containsString("imgfloat_storage_latency_seconds_count{file=\"asset\"")))
+            .andExpect(content().string(containsString("imgfloat_channel_events_total{delivery=")))
+            .andExpect(content().string(containsString("cache_gets_total{cache=\"playlist.views\"")));
+    }
+
+    @Test
+    void prometheusEndpointIsLimitedToSystemAdministrators() throws Exception {
+        mockMvc.perform(get("/actuator/prometheus")).andExpect(status().isUnauthorized());
+        mockMvc
+            .perform(
+                get("/actuator/prometheus").with(
+                    oauth2Login().attributes((attrs) -> attrs.put("preferred_username", "caster"))
+                )
+            )
+            .andExpect(status().isForbidden());
+    }
+
     @Test
     void rejectsAdminChangesFromNonBroadcaster() throws Exception {
         mockMvc
@@ -137,6 +275,23 @@ class ChannelApiIntegrationTest {
             .andExpect(status().isForbidden());
     }
 
+    @Test
+    void emoteCatalogIsRevalidatedWithItsEtag() throws Exception {
+        String etag = mockMvc
+            .perform(get("/api/twitch/emotes").param("channel", "caster"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+            .andExpect(jsonPath("$.global").isArray())
+            .andExpect(jsonPath("$.channel").isArray())
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+
+        mockMvc
+            .perform(get("/api/twitch/emotes").param("channel", "Caster").header(HttpHeaders.IF_NONE_MATCH, etag))
+            .andExpect(status().isNotModified());
+    }
+
     private byte[] samplePng() throws IOException {
         BufferedImage image = new BufferedImage(2, 2, BufferedImage.TYPE_INT_ARGB);
         ByteArrayOutputStream out = new ByteArrayOutputStream();
@@ -4,15 +4,20 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import dev.kruhlmann.imgfloat.model.AssetType;
 import dev.kruhlmann.imgfloat.model.api.request.CodeAssetRequest;
 import dev.kruhlmann.imgfloat.model.api.request.TransformRequest;
 import dev.kruhlmann.imgfloat.model.api.request.VisibilityRequest;
+import dev.kruhlmann.imgfloat.model.api.response.AssetEvent;
+import dev.kruhlmann.imgfloat.model.api.response.AssetPatch;
 import dev.kruhlmann.imgfloat.model.api.response.AssetView;
 import dev.kruhlmann.imgfloat.model.db.imgfloat.Asset;
 import dev.kruhlmann.imgfloat.model.db.imgfloat.AudioAsset;
@@ -30,12 +35,17 @@ import dev.kruhlmann.imgfloat.repository.VisualAssetRepository;
 import dev.kruhlmann.imgfloat.service.AssetStorageService;
 import dev.kruhlmann.imgfloat.service.AuditLogService;
 import dev.kruhlmann.imgfloat.service.ChannelDirectoryService;
+import dev.kruhlmann.imgfloat.service.DisplayOrderService;
+import dev.kruhlmann.imgfloat.service.InProcessChannelEventBus;
 import dev.kruhlmann.imgfloat.service.MarketplaceScriptSeedLoader;
+import dev.kruhlmann.imgfloat.service.PreviewAuthorizationCache;
 import dev.kruhlmann.imgfloat.service.SettingsService;
+import dev.kruhlmann.imgfloat.service.TransformPreviewCoalescer;
+import dev.kruhlmann.imgfloat.service.media.FfmpegService;
 import dev.kruhlmann.imgfloat.service.media.MediaDetectionService;
 import dev.kruhlmann.imgfloat.service.media.MediaOptimizationService;
 import dev.kruhlmann.imgfloat.service.media.MediaPreviewService;
-import dev.kruhlmann.imgfloat.service.media.FfmpegService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -53,6 +63,8 @@ import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.web.server.ResponseStatusException;
 
 class ChannelDirectoryServiceTest {
@@ -86,11 +98,20 @@ class ChannelDirectoryServiceTest {
         setupInMemoryPersistence();
         Path assetRoot = Files.createTempDirectory("imgfloat-assets-test");
         Path previewRoot = Files.createTempDirectory("imgfloat-previews-test");
-        AssetStorageService assetStorageService = new AssetStorageService(assetRoot.toString(), previewRoot.toString());
-        FfmpegService ffmpegService = new FfmpegService();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AssetStorageService assetStorageService = new AssetStorageService(
+            assetRoot.toString(),
+            previewRoot.toString(),
+            meterRegistry
+        );
+        FfmpegService ffmpegService = new FfmpegService(meterRegistry);
         MediaPreviewService mediaPreviewService = new MediaPreviewService(ffmpegService);
-        MediaOptimizationService mediaOptimizationService = new MediaOptimizationService(mediaPreviewService, ffmpegService);
-        MediaDetectionService mediaDetectionService = new MediaDetectionService();
+        MediaOptimizationService mediaOptimizationService = new MediaOptimizationService(
+            mediaPreviewService,
+            ffmpegService,
+            meterRegistry
+        );
+        MediaDetectionService mediaDetectionService = new MediaDetectionService(meterRegistry);
         long uploadLimitBytes = 5_000_000L;
         Path marketplaceRoot = Files.createTempDirectory("imgfloat-marketplace-test");
         Path scriptRoot = marketplaceRoot.resolve("rotating-logo");
@@ -118,14 +139,22 @@ class ChannelDirectoryServiceTest {
                 scriptAssetAttachmentRepository,
             scriptAssetFileRepository,
                 marketplaceScriptHeartRepository,
-            messagingTemplate,
+            new InProcessChannelEventBus(messagingTemplate),
             assetStorageService,
             mediaDetectionService,
             mediaOptimizationService,
                 settingsService,
             uploadLimitBytes,
                 marketplaceScriptSeedLoader,
-                auditLogService
+                auditLogService,
+            new DisplayOrderService(
+                assetRepository,
+                new ObjectMapper(),
+                mock(PlatformTransactionManager.class),
+                mock(TaskScheduler.class)
+            ),
+            new TransformPreviewCoalescer(new InProcessChannelEventBus(messagingTemplate), mock(TaskScheduler.class), 30),
+            new PreviewAuthorizationCache("")
         );
         marketplaceService = new dev.kruhlmann.imgfloat.service.MarketplaceService(
             marketplaceScriptSeedLoader,
@@ -165,6 +194,28 @@ class ChannelDirectoryServiceTest {
         assertThat(service.updateVisibility(channel, id, visibilityRequest, "caster")).isPresent();
     }
 
+    @Test
+    void previewTransformReusesBaselineUntilTransformIsCommitted() throws Exception {
+        String channel = "caster";
+        String id = createSampleAsset(channel);
+        clearInvocations(visualAssetRepository);
+
+        TransformRequest drag = new TransformRequest();
+        drag.setX(30.0);
+        service.previewTransform(channel, id, drag);
+        drag.setX(40.0);
+        assertThat(service.previewTransform(channel, id, drag)).map(AssetPatch::x).contains(40.0);
+        verify(visualAssetRepository, times(1)).findById(id);
+
+        TransformRequest commit = validTransform();
+        commit.setX(40.0);
+        service.updateTransform(channel, id, commit, "caster");
+        clearInvocations(visualAssetRepository);
+
+        assertThat(service.previewTransform(channel, id, drag)).isEmpty();
+        verify(visualAssetRepository, times(1)).findById(id);
+    }
+
     @Test
     void rejectsInvalidTransformDimensions() throws Exception {
         String channel = "caster";
@@ -217,7 +268,7 @@ class ChannelDirectoryServiceTest {
 
         assertThat(view.speed()).isEqualTo(0.1);
         assertThat(view.audioVolume()).isEqualTo(0.01);
-        assertThat(assetRepository.findById(id).orElseThrow().getDisplayOrder()).isEqualTo(1);
+        assertThat(rankOf(channel, id)).isEqualTo(1);
     }
 
     @Test
@@ -289,8 +340,57 @@ class ChannelDirectoryServiceTest {
 
         service.reorderAssets(channel, updates, "caster");
 
-        assertThat(assetRepository.findById(id1).orElseThrow().getDisplayOrder()).isEqualTo(2);
-        assertThat(assetRepository.findById(id2).orElseThrow().getDisplayOrder()).isEqualTo(1);
+        assertThat(rankOf(channel, id1)).isEqualTo(2);
+        assertThat(rankOf(channel, id2)).isEqualTo(1);
+    }
+
+    @Test
+    void reorderAssetsWritesOnceAndPublishesSingleOrderEvent() throws Exception {
+        String channel = "caster";
+        String first = createSampleAsset(channel);
+        String second = createSampleAsset(channel);
+        String third = createSampleAsset(channel);
+        org.mockito.Mockito.clearInvocations(assetRepository, messagingTemplate);
+
+        service.reorderAssets(
+            channel,
+            List.of(
+                new dev.kruhlmann.imgfloat.model.api.request.AssetOrderRequest.AssetOrderUpdate(first, 3),
+                new dev.kruhlmann.imgfloat.model.api.request.AssetOrderRequest.AssetOrderUpdate(second, 2),
+                new dev.kruhlmann.imgfloat.model.api.request.AssetOrderRequest.AssetOrderUpdate(third, 1)
+            ),
+            "caster"
+        );
+
+        verify(assetRepository, org.mockito.Mockito.times(1)).findByBroadcaster(channel);
+        verify(assetRepository, org.mockito.Mockito.times(1)).updateDisplayOrders(anyString());
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate, org.mockito.Mockito.times(1)).convertAndSend(anyString(), captor.capture());
+        AssetEvent event = (AssetEvent) captor.getValue();
+        assertThat(event.getType()).isEqualTo(AssetEvent.Type.ORDER);
+        assertThat(event.getLayerOrder()).containsExactly(first, second, third);
+        assertThat(event.getScriptLayerOrder()).isNull();
+    }
+
+    @Test
+    void movingOneAssetRewritesOnlyThatAssetAndPublishesOneOrderEvent() throws Exception {
+        String channel = "caster";
+        String bottom = createSampleAsset(channel);
+        String middle = createSampleAsset(channel);
+        String top = createSampleAsset(channel);
+        org.mockito.Mockito.clearInvocations(assetRepository, messagingTemplate);
+
+        TransformRequest transform = new TransformRequest();
+        transform.setOrder(3);
+        service.updateTransform(channel, bottom, transform, "caster");
+
+        assertThat(rankOf(channel, bottom)).isEqualTo(3);
+        assertThat(rankOf(channel, top)).isEqualTo(2);
+        assertThat(rankOf(channel, middle)).isEqualTo(1);
+        ArgumentCaptor<String> keys = ArgumentCaptor.forClass(String.class);
+        verify(assetRepository).updateDisplayOrders(keys.capture());
+        assertThat(new ObjectMapper().readTree(keys.getValue()).fieldNames()).toIterable().containsExactly(bottom);
+        verify(messagingTemplate, org.mockito.Mockito.times(1)).convertAndSend(anyString(), any(Object.class));
     }
 
     @Test
@@ -339,6 +439,15 @@ class ChannelDirectoryServiceTest {
         return service.createAsset(channel, file, "caster").orElseThrow().id();
     }
 
+    private int rankOf(String channel, String assetId) {
+        int key = assetRepository.findById(assetId).orElseThrow().getDisplayOrder();
+        return (int) assetRepository
+            .findByBroadcaster(channel)
+            .stream()
+            .filter((asset) -> asset.getDisplayOrder() != null && asset.getDisplayOrder() <= key)
+            .count();
+    }
+
     private TransformRequest validTransform() {
         TransformRequest transform = new TransformRequest();
         transform.setX(10.0);
@@ -0,0 +1,226 @@
+package dev.kruhlmann.imgfloat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import dev.kruhlmann.imgfloat.config.WebSocketConfig;
+import dev.kruhlmann.imgfloat.service.ChannelEventBus;
+import dev.kruhlmann.imgfloat.service.RelayChannelEventBus;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+/**
+ * Runs two imgfloat nodes in one JVM, connected only through the event bus relay, with an overlay subscribed on
+ * each node.
+ */
+class MultiNodeEventBusIntegrationTest {
+
+    private static final String CHANNEL = "caster";
+    private static final int EVENTS_PER_NODE = 100;
+
+    private static int relayPortA;
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+
+    @BeforeAll
+    static void startNodes() throws IOException {
+        relayPortA = freePort();
+        String relayA = "127.0.0.1:" + relayPortA;
+        String relayB = "127.0.0.1:" + freePort();
+        nodeA = startNode(relayA, relayA + "," + relayB);
+        nodeB = startNode(relayB, relayA + "," + relayB);
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        if (nodeA != null) {
+            nodeA.close();
+        }
+        if (nodeB != null) {
+            nodeB.close();
+        }
+    }
+
+    @Test
+    void overlaysOnBothNodesReceiveEveryEventInTheSameOrder() throws Exception {
+        assertThat(nodeA.getBean("channelEventDeliveryBus")).isInstanceOf(RelayChannelEventBus.class);
+        Overlay overlayA = Overlay.connect(nodeA);
+        Overlay overlayB = Overlay.connect(nodeB);
+        try {
+            awaitRelay(overlayA, overlayB);
+
+            ChannelEventBus busA = nodeA.getBean(ChannelEventBus.class);
+            ChannelEventBus busB = nodeB.getBean(ChannelEventBus.class);
+            CompletableFuture<Void> fromA = CompletableFuture.runAsync(() -> publish(busA, "a"));
+            CompletableFuture<Void> fromB = CompletableFuture.runAsync(() -> publish(busB, "b"));
+            CompletableFuture.allOf(fromA, fromB).get(30, TimeUnit.SECONDS);
+
+            List<String> receivedOnA = overlayA.events(2 * EVENTS_PER_NODE);
+            List<String> receivedOnB = overlayB.events(2 * EVENTS_PER_NODE);
+
+            assertThat(receivedOnA).hasSize(2 * EVENTS_PER_NODE);
+            assertThat(receivedOnB).isEqualTo(receivedOnA);
+            assertThat(receivedOnA.stream().filter((event) -> event.startsWith("event:a:")).toList())
+                .isEqualTo(expected("a"));
+            assertThat(receivedOnA.stream().filter((event) -> event.startsWith("event:b:")).toList())
+                .isEqualTo(expected("b"));
+        } finally {
+            overlayA.close();
+            overlayB.close();
+        }
+    }
+
+    @Test
+    void relayClosesConnectionsThatNeverAuthenticate() throws Exception {
+        List<Socket> sockets = new ArrayList<>();
+        try {
+            for (int index = 0; index < 3; index++) {
+                Socket socket = new Socket("127.0.0.1", relayPortA);
+                socket.setSoTimeout(15_000);
+                sockets.add(socket);
+            }
+            int refused = 0;
+            for (Socket socket : sockets) {
+                InputStream in = socket.getInputStream();
+                if (in.readNBytes(16).length < 16) {
+                    refused++;
+                } else {
+                    assertThat(in.read()).isEqualTo(-1);
+                }
+            }
+            assertThat(refused).isPositive();
+        } finally {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    private static void publish(ChannelEventBus bus, String node) {
+        expected(node).forEach((event) -> bus.publish(CHANNEL, event));
+    }
+
+    private static List<String> expected(String node) {
+        List<String> events = new ArrayList<>();
+        for (int index = 0; index < EVENTS_PER_NODE; index++) {
+            events.add("event:" + node + ":" + index);
+        }
+        return events;
+    }
+
+    /**
+     * Publishes probes from each node until the other node's overlay sees them, so both relay connections are up.
+     */
+    private static void awaitRelay(Overlay overlayA, Overlay overlayB) throws InterruptedException {
+        for (Overlay receiver : List.of(overlayB, overlayA)) {
+            ChannelEventBus sender = (receiver == overlayB ? nodeA : nodeB).getBean(ChannelEventBus.class);
+            boolean received = false;
+            for (int attempt = 0; attempt < 100 && !received; attempt++) {
+                sender.publish(CHANNEL, "probe");
+                received = receiver.awaitProbe();
+            }
+            assertThat(received).isTrue();
+        }
+        Thread.sleep(500);
+        overlayA.frames.clear();
+        overlayB.frames.clear();
+    }
+
+    private static ConfigurableApplicationContext startNode(String relayNode, String relayNodes) {
+        return new SpringApplicationBuilder(ImgfloatApplication.class)
+            .run(
+                "--org.springframework.boot.test.context.SpringBootTestContextBootstrapper=true",
+                "--server.port=0",
+                "--spring.security.oauth2.client.registration.twitch.client-id=test-client-id",
+                "--spring.security.oauth2.client.registration.twitch.client-secret=test-client-secret",
+                "--spring.datasource.url=jdbc:sqlite:target/test-${random.uuid}.db",
+                "--imgfloat.audit.datasource.url=jdbc:sqlite:target/test-audit-${random.uuid}.db",
+                "--IMGFLOAT_TOKEN_ENCRYPTION_KEY=AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA=",
+                "--IMGFLOAT_EVENT_BUS_NODES=" + relayNodes,
+                "--IMGFLOAT_EVENT_BUS_NODE=" + relayNode,
+                "--IMGFLOAT_EVENT_BUS_SECRET=test-secret"
+            );
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static final class Overlay {
+
+        private final WebSocketSession session;
+        private final BlockingQueue<String> frames;
+
+        private Overlay(WebSocketSession session, BlockingQueue<String> frames) {
+            this.session = session;
+            this.frames = frames;
+        }
+
+        static Overlay connect(ConfigurableApplicationContext node) throws Exception {
+            int port = ((ServletWebServerApplicationContext) node).getWebServer().getPort();
+            BlockingQueue<String> frames = new LinkedBlockingQueue<>();
+            WebSocketSession session = new StandardWebSocketClient()
+                .execute(
+                    new TextWebSocketHandler() {
+                        @Override
+                        protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+                            frames.add(message.getPayload());
+                        }
+                    },
+                    "ws://localhost:" + port + WebSocketConfig.NATIVE_ENDPOINT
+                )
+                .get(10, TimeUnit.SECONDS);
+            session.sendMessage(new TextMessage("CONNECT\naccept-version:1.2\nhost:localhost\n\n\0"));
+            assertThat(frames.poll(10, TimeUnit.SECONDS)).startsWith("CONNECTED\n");
+            String destination = ChannelEventBus.CHANNEL_TOPIC_PREFIX + CHANNEL;
+            session.sendMessage(new TextMessage("SUBSCRIBE\nid:sub-0\ndestination:" + destination + "\n\n\0"));
+            return new Overlay(session, frames);
+        }
+
+        boolean awaitProbe() throws InterruptedException {
+            String frame = frames.poll(100, TimeUnit.MILLISECONDS);
+            return frame != null && body(frame).equals("probe");
+        }
+
+        List<String> events(int count) throws InterruptedException {
+            List<String> events = new ArrayList<>();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (events.size() < count && System.nanoTime() < deadline) {
+                String frame = frames.poll(100, TimeUnit.MILLISECONDS);
+                if (frame != null && body(frame).startsWith("event:")) {
+                    events.add(body(frame));
+                }
+            }
+            return events;
+        }
+
+        void close() throws IOException {
+            session.close();
+        }
+
+        private static String body(String frame) {
+            int start = frame.indexOf("\n\n") + 2;
+            int end = frame.indexOf('\0', start);
+            return frame.substring(start, end < 0 ? frame.length() : end);
+        }
+    }
+}
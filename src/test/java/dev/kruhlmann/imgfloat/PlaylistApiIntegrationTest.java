@@ -1,5 +1,7 @@
 package dev.kruhlmann.imgfloat;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.lessThan;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.oauth2Login;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
@@ -10,6 +12,9 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.kruhlmann.imgfloat.repository.ChannelRepository;
+import dev.kruhlmann.imgfloat.service.PlaylistPlaybackStateStore;
+import dev.kruhlmann.imgfloat.service.PlaylistService;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -36,6 +41,15 @@ class PlaylistApiIntegrationTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private PlaylistService playlistService;
+
+    @Autowired
+    private PlaylistPlaybackStateStore playbackStateStore;
+
+    @Autowired
+    private ChannelRepository channelRepository;
+
     private static final String BROADCASTER = "testcaster";
 
     private void asUser(org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder req,
@@ -163,7 +177,7 @@ class PlaylistApiIntegrationTest {
             .andExpect(jsonPath("$.isPlaying").value(true))
             .andExpect(jsonPath("$.isPaused").value(false))
             .andExpect(jsonPath("$.currentTrackId").value(trackId))
-            .andExpect(jsonPath("$.trackPosition").value(0.0));
+            .andExpect(jsonPath("$.trackPosition").value(lessThan(5.0)));
     }
 
     @Test
@@ -184,6 +198,23 @@ class PlaylistApiIntegrationTest {
             .andExpect(jsonPath("$.isPaused").value(true));
     }
 
+    @Test
+    void reportedPositionIsFlushedToChannel() throws Exception {
+        String playlistId = createPlaylist("Position Test");
+        String trackId = addTrack(playlistId, createAudioAsset());
+        selectPlaylist(playlistId);
+        play(playlistId, trackId);
+
+        playlistService.reportPosition(BROADCASTER, playlistId, trackId, 12.5);
+        playlistService.reportPosition(BROADCASTER, playlistId, "other-track", 99.0);
+
+        assertThat(channelRepository.findById(BROADCASTER).orElseThrow().getPlaylistTrackPosition()).isEqualTo(0.0);
+
+        playbackStateStore.flush();
+
+        assertThat(channelRepository.findById(BROADCASTER).orElseThrow().getPlaylistTrackPosition()).isEqualTo(12.5);
+    }
+
     @Test
     void nextCommandAdvancesTrack() throws Exception {
         String playlistId = createPlaylist("Next Test");
@@ -0,0 +1,88 @@
+package dev.kruhlmann.imgfloat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import dev.kruhlmann.imgfloat.config.WebSocketConfig;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = {
+        "spring.security.oauth2.client.registration.twitch.client-id=test-client-id",
+        "spring.security.oauth2.client.registration.twitch.client-secret=test-client-secret",
+        "spring.datasource.url=jdbc:sqlite:target/test-${random.uuid}.db",
+        "IMGFLOAT_TOKEN_ENCRYPTION_KEY=AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA=",
+    }
+)
+class WebSocketEndpointIntegrationTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Test
+    void nativeEndpointNegotiatesPerMessageDeflateAndDeliversBroadcasts() throws Exception {
+        BlockingQueue<String> frames = new LinkedBlockingQueue<>();
+        WebSocketHttpHeaders headers = new WebSocketHttpHeaders();
+        headers.setSecWebSocketExtensions(List.of(new WebSocketExtension("permessage-deflate")));
+        WebSocketSession session = new StandardWebSocketClient()
+            .execute(
+                new TextWebSocketHandler() {
+                    @Override
+                    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+                        frames.add(message.getPayload());
+                    }
+                },
+                headers,
+                URI.create("ws://localhost:" + port + WebSocketConfig.NATIVE_ENDPOINT)
+            )
+            .get(10, TimeUnit.SECONDS);
+        try {
+            assertThat(session.getExtensions()).extracting(WebSocketExtension::getName).contains("permessage-deflate");
+
+            session.sendMessage(new TextMessage("CONNECT\naccept-version:1.2\nhost:localhost\n\n\0"));
+            assertThat(frames.poll(10, TimeUnit.SECONDS)).startsWith("CONNECTED\n");
+            session.sendMessage(new TextMessage("SUBSCRIBE\nid:sub-0\ndestination:/topic/channel/caster\n\n\0"));
+
+            String payload = "{\"type\":\"DELETED\",\"channel\":\"caster\",\"assetId\":\"%s\"}".formatted(
+                "a".repeat(2048)
+            );
+            String received = null;
+            for (int attempt = 0; attempt < 50 && received == null; attempt++) {
+                messagingTemplate.convertAndSend("/topic/channel/caster", payload);
+                received = frames.poll(100, TimeUnit.MILLISECONDS);
+            }
+            assertThat(received).startsWith("MESSAGE\n").contains("subscription:sub-0").contains(payload);
+        } finally {
+            session.close();
+        }
+    }
+
+    @Test
+    void sockJsEndpointRemainsAvailable() {
+        assertThat(restTemplate.getForEntity(WebSocketConfig.SOCKJS_ENDPOINT + "/info", String.class).getStatusCode())
+            .isEqualTo(HttpStatus.OK);
+    }
+}
@@ -0,0 +1,64 @@
+package dev.kruhlmann.imgfloat.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompDecoder;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+
+class CachingStompEncoderTest {
+
+    private static final byte[] PAYLOAD = "{\"type\":\"UPDATED\",\"note\":\"a:b\\nc\"}".getBytes(StandardCharsets.UTF_8);
+    private static final Map<String, String> HEADERS = Map.of("seq", "42", "epoch", "lx:1");
+
+    @Test
+    void producesFramesEquivalentToDefaultEncoder() {
+        List<byte[]> expected = fanOut(new StompEncoder());
+        List<byte[]> actual = fanOut(new CachingStompEncoder());
+
+        assertThat(actual).hasSameSizeAs(expected);
+        for (int index = 0; index < expected.size(); index++) {
+            Message<byte[]> expectedFrame = decode(expected.get(index));
+            Message<byte[]> actualFrame = decode(actual.get(index));
+            StompHeaderAccessor expectedHeaders = StompHeaderAccessor.wrap(expectedFrame);
+            StompHeaderAccessor actualHeaders = StompHeaderAccessor.wrap(actualFrame);
+            assertThat(actualHeaders.getCommand()).isEqualTo(StompCommand.MESSAGE);
+            assertThat(actualHeaders.getMessageId()).isNotBlank();
+            assertThat(withoutMessageId(actualHeaders)).isEqualTo(withoutMessageId(expectedHeaders));
+            assertThat(actualFrame.getPayload()).isEqualTo(PAYLOAD);
+        }
+    }
+
+    @Test
+    void keepsSubscriptionHeadersPerSession() {
+        List<byte[]> frames = fanOut(new CachingStompEncoder());
+
+        assertThat(frames)
+            .extracting((frame) -> StompHeaderAccessor.wrap(decode(frame)).getSubscriptionId())
+            .containsExactlyInAnyOrder("sub-0", "sub-1", "sub-2");
+    }
+
+    private static List<byte[]> fanOut(StompEncoder encoder) {
+        StompFanOutHarness harness = new StompFanOutHarness(encoder, 3);
+        harness.broadcast(PAYLOAD, HEADERS);
+        return harness.frames();
+    }
+
+    private static Map<String, List<String>> withoutMessageId(StompHeaderAccessor headers) {
+        Map<String, List<String>> nativeHeaders = new HashMap<>(headers.toNativeHeaderMap());
+        nativeHeaders.remove(StompHeaderAccessor.STOMP_MESSAGE_ID_HEADER);
+        return nativeHeaders;
+    }
+
+    private static Message<byte[]> decode(byte[] frame) {
+        return new StompDecoder().decode(ByteBuffer.wrap(frame)).get(0);
+    }
+}
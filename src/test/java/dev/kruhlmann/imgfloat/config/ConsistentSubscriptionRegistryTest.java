@@ -0,0 +1,73 @@
+package dev.kruhlmann.imgfloat.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+
+class ConsistentSubscriptionRegistryTest {
+
+    private static final String DESTINATION = "/topic/channel/caster";
+
+    @Test
+    void subscribingDuringBroadcastRegistersTheSubscriptionOnce() throws Exception {
+        Message<byte[]> subscribe = message(SimpMessageType.SUBSCRIBE, "session", "sub-0");
+        Message<byte[]> broadcast = message(SimpMessageType.MESSAGE, null, null);
+        for (int attempt = 0; attempt < 5_000; attempt++) {
+            ConsistentSubscriptionRegistry registry = new ConsistentSubscriptionRegistry();
+            CountDownLatch start = new CountDownLatch(1);
+            Thread subscriber = new Thread(() -> {
+                awaitQuietly(start);
+                registry.registerSubscription(subscribe);
+            });
+            Thread broadcaster = new Thread(() -> {
+                awaitQuietly(start);
+                for (int lookup = 0; lookup < 3; lookup++) {
+                    registry.findSubscriptions(broadcast);
+                }
+            });
+            subscriber.start();
+            broadcaster.start();
+            start.countDown();
+            subscriber.join();
+            broadcaster.join();
+
+            assertThat(registry.findSubscriptions(broadcast).get("session")).containsExactly("sub-0");
+        }
+    }
+
+    @Test
+    void unsubscribingRemovesTheSubscriptionFromLaterBroadcasts() {
+        ConsistentSubscriptionRegistry registry = new ConsistentSubscriptionRegistry();
+        Message<byte[]> broadcast = message(SimpMessageType.MESSAGE, null, null);
+        registry.findSubscriptions(broadcast);
+        registry.registerSubscription(message(SimpMessageType.SUBSCRIBE, "session", "sub-0"));
+        assertThat(registry.findSubscriptions(broadcast)).containsOnlyKeys("session");
+
+        registry.unregisterSubscription(message(SimpMessageType.UNSUBSCRIBE, "session", "sub-0"));
+
+        assertThat(registry.findSubscriptions(broadcast)).isEmpty();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Message<byte[]> message(SimpMessageType type, String sessionId, String subscriptionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setDestination(DESTINATION);
+        if (sessionId != null) {
+            accessor.setSessionId(sessionId);
+            accessor.setSubscriptionId(subscriptionId);
+        }
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,91 @@
+package dev.kruhlmann.imgfloat.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import dev.kruhlmann.imgfloat.service.RateLimitPolicy;
+import dev.kruhlmann.imgfloat.service.RateLimitService;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class RateLimitInterceptorTest {
+
+    private final RateLimitService rateLimitService = new RateLimitService("2/1h", "off", "off", "off", "2/1s", 1000);
+
+    @Test
+    void rejectsRequestsBeyondTheLimitWithRetryAfter() throws Exception {
+        RateLimitInterceptor interceptor = new RateLimitInterceptor(
+            rateLimitService,
+            RateLimitPolicy.COPYRIGHT_REPORTS,
+            "POST"
+        );
+
+        assertThat(interceptor.preHandle(post("10.0.0.1", null), new MockHttpServletResponse(), this)).isTrue();
+        assertThat(interceptor.preHandle(post("10.0.0.1", null), new MockHttpServletResponse(), this)).isTrue();
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+
+        assertThat(interceptor.preHandle(post("10.0.0.1", null), rejected, this)).isFalse();
+        assertThat(rejected.getStatus()).isEqualTo(429);
+        assertThat(rejected.getHeader("Retry-After")).isEqualTo("1800");
+        assertThat(interceptor.preHandle(post("10.0.0.2", null), new MockHttpServletResponse(), this)).isTrue();
+    }
+
+    @Test
+    void forwardedForHeaderDoesNotGrantAFreshBudget() throws Exception {
+        RateLimitInterceptor interceptor = new RateLimitInterceptor(
+            rateLimitService,
+            RateLimitPolicy.COPYRIGHT_REPORTS,
+            "POST"
+        );
+        interceptor.preHandle(post("10.0.0.1", "1.1.1.1"), new MockHttpServletResponse(), this);
+        interceptor.preHandle(post("10.0.0.1", "2.2.2.2"), new MockHttpServletResponse(), this);
+
+        assertThat(interceptor.preHandle(post("10.0.0.1", "3.3.3.3"), new MockHttpServletResponse(), this)).isFalse();
+    }
+
+    @Test
+    void otherMethodsAreNotCounted() throws Exception {
+        RateLimitInterceptor interceptor = new RateLimitInterceptor(
+            rateLimitService,
+            RateLimitPolicy.COPYRIGHT_REPORTS,
+            "POST"
+        );
+        MockHttpServletRequest get = new MockHttpServletRequest("GET", "/api/assets/a/copyright-reports");
+
+        for (int index = 0; index < 5; index++) {
+            assertThat(interceptor.preHandle(get, new MockHttpServletResponse(), this)).isTrue();
+        }
+    }
+
+    @Test
+    void dropsStompMessagesBeyondTheLimit() {
+        StompRateLimitInterceptor interceptor = new StompRateLimitInterceptor(rateLimitService);
+
+        assertThat(interceptor.preSend(send("s1", "10.0.0.1"), null)).isNotNull();
+        assertThat(interceptor.preSend(send("s2", "10.0.0.1"), null)).isNotNull();
+        assertThat(interceptor.preSend(send("s1", "10.0.0.1"), null)).isNull();
+        assertThat(interceptor.preSend(send("s3", "10.0.0.3"), null)).isNotNull();
+    }
+
+    private static MockHttpServletRequest post(String remoteAddress, String forwardedFor) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/assets/a/copyright-reports");
+        request.setRemoteAddr(remoteAddress);
+        if (forwardedFor != null) {
+            request.addHeader("X-Forwarded-For", forwardedFor);
+        }
+        return request;
+    }
+
+    private static Message<byte[]> send(String sessionId, String remoteAddress) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setDestination("/app/channel/caster/assets/a/preview");
+        accessor.setSessionAttributes(Map.of(StompRateLimitInterceptor.REMOTE_ADDRESS_ATTRIBUTE, remoteAddress));
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,69 @@
+package dev.kruhlmann.imgfloat.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.kruhlmann.imgfloat.model.api.response.AssetEvent;
+import dev.kruhlmann.imgfloat.model.api.response.AssetPatch;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+
+/**
+ * Measures the bytes allocated on the publishing thread per broadcast, from broker fan-out to framed session
+ * messages, for a growing number of subscribers. Run with
+ * {@code mvn test -Dtest=StompFanOutBenchmark -Dimgfloat.benchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "imgfloat.benchmark", matches = "true")
+class StompFanOutBenchmark {
+
+    private static final int[] SUBSCRIBER_COUNTS = { 1, 10, 100, 1000 };
+    private static final int WARMUP_ROUNDS = 200;
+    private static final int MEASURED_ROUNDS = 500;
+
+    @Test
+    void allocationPerFanOut() throws Exception {
+        byte[] payload = new ObjectMapper().writeValueAsBytes(
+            AssetEvent.updated(
+                "caster",
+                new AssetPatch("asset-id", 120.5, 80.25, 640.0, 360.0, 15.0, null, null, 3, null, null, null, null, null, null)
+            )
+        );
+        Map<String, String> headers = Map.of("seq", "1", "epoch", "benchmark");
+
+        System.out.printf("%-12s %18s %18s %8s%n", "subscribers", "default B/fan-out", "caching B/fan-out", "ratio");
+        for (int subscribers : SUBSCRIBER_COUNTS) {
+            long baseline = measure(StompEncoder::new, subscribers, payload, headers);
+            long caching = measure(WebSocketConfig::stompEncoder, subscribers, payload, headers);
+            System.out.printf(
+                "%-12d %18d %18d %8.2f%n",
+                subscribers,
+                baseline,
+                caching,
+                (double) caching / baseline
+            );
+            if (subscribers >= 10) {
+                assertThat(caching).isLessThan(baseline);
+            }
+        }
+    }
+
+    private long measure(Supplier<StompEncoder> encoder, int subscribers, byte[] payload, Map<String, String> headers) {
+        StompFanOutHarness harness = new StompFanOutHarness(encoder.get(), subscribers);
+        Map<String, String> nativeHeaders = new LinkedHashMap<>(headers);
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            harness.broadcast(payload.clone(), nativeHeaders);
+        }
+        harness.clear();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            harness.broadcast(payload.clone(), nativeHeaders);
+        }
+        return (threads.getCurrentThreadAllocatedBytes() - before) / MEASURED_ROUNDS;
+    }
+}
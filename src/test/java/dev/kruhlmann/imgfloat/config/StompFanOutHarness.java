@@ -0,0 +1,178 @@
+package dev.kruhlmann.imgfloat.config;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.http.HttpHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.messaging.StompSubProtocolHandler;
+
+/**
+ * Wires a simple broker with the destination prefix registered in {@link WebSocketConfig} to a STOMP protocol
+ * handler and in-memory sessions, so a broadcast runs through the same fan-out and framing path as in production.
+ */
+class StompFanOutHarness {
+
+    static final String DESTINATION = "/topic/channel/caster";
+
+    private final SimpleBrokerMessageHandler broker;
+    private final Map<String, RecordingSession> sessions = new HashMap<>();
+
+    StompFanOutHarness(StompEncoder encoder, int subscribers) {
+        StompSubProtocolHandler protocolHandler = new StompSubProtocolHandler();
+        protocolHandler.setEncoder(encoder);
+        ExecutorSubscribableChannel clientOutboundChannel = new ExecutorSubscribableChannel();
+        clientOutboundChannel.subscribe((message) -> {
+            String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+            protocolHandler.handleMessageToClient(sessions.get(sessionId), message);
+        });
+        broker = new SimpleBrokerMessageHandler(
+            new ExecutorSubscribableChannel(),
+            clientOutboundChannel,
+            new ExecutorSubscribableChannel(),
+            List.of(WebSocketConfig.BROKER_DESTINATION_PREFIX)
+        );
+        broker.start();
+        for (int index = 0; index < subscribers; index++) {
+            String sessionId = "session-" + index;
+            sessions.put(sessionId, new RecordingSession(sessionId));
+            SimpMessageHeaderAccessor connect = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+            connect.setSessionId(sessionId);
+            broker.handleMessage(MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders()));
+            SimpMessageHeaderAccessor subscribe = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+            subscribe.setSessionId(sessionId);
+            subscribe.setSubscriptionId("sub-" + index);
+            subscribe.setDestination(DESTINATION);
+            broker.handleMessage(MessageBuilder.createMessage(new byte[0], subscribe.getMessageHeaders()));
+        }
+        clear();
+    }
+
+    /**
+     * Publishes {@code payload} the way the messaging template does after conversion.
+     */
+    void broadcast(byte[] payload, Map<String, String> nativeHeaders) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(DESTINATION);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        nativeHeaders.forEach(accessor::setNativeHeader);
+        Message<byte[]> message = MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+        broker.handleMessage(message);
+    }
+
+    List<byte[]> frames() {
+        List<byte[]> frames = new ArrayList<>();
+        sessions.values().forEach((session) -> frames.addAll(session.frames));
+        return frames;
+    }
+
+    void clear() {
+        sessions.values().forEach((session) -> session.frames.clear());
+    }
+
+    private static final class RecordingSession implements WebSocketSession {
+
+        private final String id;
+        private final List<byte[]> frames = new ArrayList<>();
+
+        private RecordingSession(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) {
+            if (frames.size() < 16) {
+                frames.add(((TextMessage) message).asBytes());
+            }
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public URI getUri() {
+            return null;
+        }
+
+        @Override
+        public HttpHeaders getHandshakeHeaders() {
+            return new HttpHeaders();
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return Map.of();
+        }
+
+        @Override
+        public Principal getPrincipal() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getLocalAddress() {
+            return null;
+        }
+
+        @Override
+        public InetSocketAddress getRemoteAddress() {
+            return null;
+        }
+
+        @Override
+        public String getAcceptedProtocol() {
+            return "v12.stomp";
+        }
+
+        @Override
+        public void setTextMessageSizeLimit(int messageSizeLimit) {}
+
+        @Override
+        public int getTextMessageSizeLimit() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public void setBinaryMessageSizeLimit(int messageSizeLimit) {}
+
+        @Override
+        public int getBinaryMessageSizeLimit() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public List<WebSocketExtension> getExtensions() {
+            return List.of();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {}
+
+        @Override
+        public void close(CloseStatus status) throws IOException {}
+    }
+}
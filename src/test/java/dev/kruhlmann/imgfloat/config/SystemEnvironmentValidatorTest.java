@@ -33,6 +33,18 @@ class SystemEnvironmentValidatorTest {
             .hasMessageContaining("TWITCH_CLIENT_ID");
     }
 
+    @Test
+    void validateRequiresAuditArchivePath() {
+        Environment environment = new MockEnvironment();
+        SystemEnvironmentValidator validator = new SystemEnvironmentValidator(environment);
+        setRequiredFields(validator);
+        ReflectionTestUtils.setField(validator, "auditArchivePath", null);
+
+        assertThatThrownBy(validator::validate)
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("IMGFLOAT_AUDIT_ARCHIVE_PATH");
+    }
+
     @Test
     void validateAcceptsAllRequiredFields() {
         Environment environment = new MockEnvironment();
@@ -51,6 +63,7 @@ class SystemEnvironmentValidatorTest {
         ReflectionTestUtils.setField(validator, "previewsPath", "/tmp/previews");
         ReflectionTestUtils.setField(validator, "dbPath", "/tmp/db");
         ReflectionTestUtils.setField(validator, "auditDbPath", "/tmp/audit.db");
+        ReflectionTestUtils.setField(validator, "auditArchivePath", "/tmp/audit-archive");
         ReflectionTestUtils.setField(validator, "initialSysadmin", "admin");
         ReflectionTestUtils.setField(validator, "githubClientOwner", "owner");
         ReflectionTestUtils.setField(validator, "githubClientRepo", "repo");
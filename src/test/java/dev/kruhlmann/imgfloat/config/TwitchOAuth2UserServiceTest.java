@@ -7,6 +7,8 @@ import static org.springframework.test.web.client.match.MockRestRequestMatchers.
 import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
 
 import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.HttpMethod;
@@ -33,7 +35,8 @@ class TwitchOAuth2UserServiceTest {
         RestTemplate restTemplate = TwitchOAuth2UserService.createRestTemplate(userRequest);
         MockRestServiceServer server = MockRestServiceServer.bindTo(restTemplate).build();
 
-        TwitchOAuth2UserService service = new TwitchOAuth2UserService((ignored) -> restTemplate);
+        Map<String, String> signedIn = new HashMap<>();
+        TwitchOAuth2UserService service = new TwitchOAuth2UserService((ignored) -> restTemplate, signedIn::put);
 
         server
             .expect(requestTo("https://api.twitch.tv/helix/users"))
@@ -50,6 +53,7 @@ class TwitchOAuth2UserServiceTest {
 
         assertThat(user.getName()).isEqualTo("demo");
         assertThat(user.getAttributes()).containsEntry("id", "42").containsEntry("display_name", "Demo");
+        assertThat(signedIn).containsExactly(Map.entry("demo", "42"));
         server.verify();
     }
 
@@ -0,0 +1,215 @@
+package dev.kruhlmann.imgfloat.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import dev.kruhlmann.imgfloat.model.AssetType;
+import dev.kruhlmann.imgfloat.model.api.response.AssetEvent;
+import dev.kruhlmann.imgfloat.model.api.response.AssetPatch;
+import dev.kruhlmann.imgfloat.model.api.response.AssetView;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.web.socket.sockjs.frame.Jackson2SockJsMessageCodec;
+import org.springframework.web.socket.sockjs.frame.SockJsFrame;
+
+/**
+ * Compares the bytes on the wire for a typical overlay session over the SockJS WebSocket transport, the native
+ * endpoint, and the native endpoint with permessage-deflate. Frames are encoded the way the server encodes them and
+ * wrapped in WebSocket framing; compression follows permessage-deflate with context takeover. Run with
+ * {@code mvn test -Dtest=WebSocketWireSizeBenchmark -Dimgfloat.benchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "imgfloat.benchmark", matches = "true")
+class WebSocketWireSizeBenchmark {
+
+    private static final int CREATED_ASSETS = 20;
+    private static final int PREVIEWS = 300;
+    private static final int UPDATES = 60;
+    private static final int POSITION_REPORTS = 60;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final StompEncoder encoder = WebSocketConfig.stompEncoder();
+    private final Jackson2SockJsMessageCodec sockJsCodec = new Jackson2SockJsMessageCodec();
+
+    @Test
+    void bytesOnWirePerSession() throws Exception {
+        List<String> toServer = new ArrayList<>();
+        List<String> toClient = new ArrayList<>();
+        toServer.add(frame(StompCommand.CONNECT, null, "accept-version", "1.1,1.0", "heart-beat", "10000,10000"));
+        toClient.add(frame(StompCommand.CONNECTED, null, "version", "1.1", "heart-beat", "10000,10000"));
+        toServer.add(frame(StompCommand.SUBSCRIBE, null, "id", "sub-0", "destination", "/topic/channel/caster"));
+
+        long seq = 0;
+        for (int index = 0; index < CREATED_ASSETS; index++) {
+            toClient.add(message(++seq, AssetEvent.created("caster", asset(index))));
+        }
+        for (int index = 0; index < PREVIEWS; index++) {
+            toClient.add(message(++seq, AssetEvent.preview("caster", assetId(index % 3), patch(index % 3, index))));
+        }
+        for (int index = 0; index < UPDATES; index++) {
+            toClient.add(message(++seq, AssetEvent.updated("caster", patch(index % CREATED_ASSETS, index))));
+        }
+        for (int index = 0; index < POSITION_REPORTS; index++) {
+            toServer.add(
+                frame(
+                    StompCommand.SEND,
+                    "{\"trackId\":\"track-1\",\"position\":" + (index * 5.0) + "}",
+                    "destination",
+                    "/app/channel/caster/playlists/playlist-1/position"
+                )
+            );
+        }
+
+        long sockJs = sockJsBytes(toServer, toClient);
+        long plain = nativeBytes(toServer, false) + nativeBytes(toClient, true);
+        long deflated = deflatedBytes(toServer, false) + deflatedBytes(toClient, true);
+
+        System.out.printf("%-28s %12s %8s%n", "transport", "bytes", "ratio");
+        System.out.printf("%-28s %12d %8.2f%n", "sockjs websocket", sockJs, 1.0);
+        System.out.printf("%-28s %12d %8.2f%n", "native", plain, (double) plain / sockJs);
+        System.out.printf("%-28s %12d %8.2f%n", "native + permessage-deflate", deflated, (double) deflated / sockJs);
+        assertThat(plain).isLessThan(sockJs);
+        assertThat(deflated).isLessThan(plain / 2);
+    }
+
+    private long sockJsBytes(List<String> toServer, List<String> toClient) {
+        long bytes = frameSize(SockJsFrame.openFrame().getContentBytes().length, true);
+        for (String frame : toServer) {
+            bytes += frameSize(sockJsCodec.encode(frame).length() - 1, false);
+        }
+        for (String frame : toClient) {
+            bytes += frameSize(SockJsFrame.messageFrame(sockJsCodec, frame).getContentBytes().length, true);
+        }
+        return bytes;
+    }
+
+    private static long nativeBytes(List<String> frames, boolean fromServer) {
+        return frames
+            .stream()
+            .mapToLong((frame) -> frameSize(frame.getBytes(StandardCharsets.UTF_8).length, fromServer))
+            .sum();
+    }
+
+    private static long deflatedBytes(List<String> frames, boolean fromServer) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        byte[] buffer = new byte[64 * 1024];
+        long bytes = 0;
+        for (String frame : frames) {
+            deflater.setInput(frame.getBytes(StandardCharsets.UTF_8));
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            int length;
+            while ((length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH)) > 0) {
+                compressed.write(buffer, 0, length);
+            }
+            // The empty stored block ending every flush is stripped from the message.
+            bytes += frameSize(compressed.size() - 4, fromServer);
+        }
+        deflater.end();
+        return bytes;
+    }
+
+    /**
+     * Adds the WebSocket frame header; frames sent by the browser also carry a masking key.
+     */
+    private static long frameSize(int payloadLength, boolean fromServer) {
+        int header = payloadLength < 126 ? 2 : payloadLength < 65536 ? 4 : 10;
+        return payloadLength + header + (fromServer ? 0 : 4);
+    }
+
+    private String message(long seq, AssetEvent event) throws Exception {
+        return frame(
+            StompCommand.MESSAGE,
+            objectMapper.writeValueAsString(event),
+            "destination",
+            "/topic/channel/caster",
+            "content-type",
+            "application/json",
+            "subscription",
+            "sub-0",
+            "message-id",
+            "a1b2c3d4-" + seq,
+            "seq",
+            Long.toString(seq),
+            "epoch",
+            "lx3k9f2a"
+        );
+    }
+
+    private String frame(StompCommand command, String body, String... headers) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        for (int index = 0; index < headers.length; index += 2) {
+            accessor.setNativeHeader(headers[index], headers[index + 1]);
+        }
+        byte[] payload = body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8);
+        return new String(encoder.encode(accessor.getMessageHeaders(), payload), StandardCharsets.UTF_8);
+    }
+
+    private static String assetId(int index) {
+        return "0f8e7d6c-5b4a-4392-8170-" + String.format("%012d", index);
+    }
+
+    private static AssetView asset(int index) {
+        String id = assetId(index);
+        Instant now = Instant.parse("2026-01-01T12:00:00Z");
+        return new AssetView(
+            id,
+            "caster",
+            "emote-" + index + ".gif",
+            null,
+            null,
+            null,
+            "/api/channels/caster/assets/" + id + "/content",
+            "/api/channels/caster/assets/" + id + "/preview",
+            100.0 + index,
+            200.0 + index,
+            640.0,
+            360.0,
+            0.0,
+            1.0,
+            false,
+            "image/gif",
+            "image/gif",
+            AssetType.IMAGE,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            false,
+            true,
+            now,
+            now
+        );
+    }
+
+    private static AssetPatch patch(int asset, int step) {
+        return new AssetPatch(
+            assetId(asset),
+            100.0 + step * 1.5,
+            200.0 + step * 0.75,
+            640.0,
+            360.0,
+            step % 360.0,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            null
+        );
+    }
+}
@@ -4,6 +4,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import dev.kruhlmann.imgfloat.service.media.AssetContent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -20,7 +21,7 @@ class AssetStorageServiceTest {
     void setUp() throws IOException {
         assets = Files.createTempDirectory("asset-storage-service");
         previews = Files.createTempDirectory("preview-storage-service");
-        service = new AssetStorageService(assets.toString(), previews.toString());
+        service = new AssetStorageService(assets.toString(), previews.toString(), new SimpleMeterRegistry());
     }
 
     @Test
@@ -0,0 +1,127 @@
+package dev.kruhlmann.imgfloat.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import dev.kruhlmann.imgfloat.model.db.audit.AuditLogEntry;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class AuditLogArchiveTest {
+
+    private Path root;
+    private AuditLogArchive archive;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        root = Files.createTempDirectory("audit-archive");
+        archive = new AuditLogArchive(root.toString());
+    }
+
+    @Test
+    void appendsEntriesToMonthlySegments() throws IOException {
+        archive.append(
+            List.of(
+                entry("1", "caster", "2024-01-15T10:00:00Z"),
+                entry("2", "caster", "2024-02-01T00:00:00Z")
+            )
+        );
+        archive.append(List.of(entry("3", "caster", "2024-01-20T10:00:00Z")));
+
+        try (Stream<Path> files = Files.list(root)) {
+            assertThat(files.map((path) -> path.getFileName().toString()))
+                .hasSize(3)
+                .filteredOn((name) -> name.startsWith("audit-2024-01-") && name.endsWith(".ndjson.gz"))
+                .hasSize(2);
+        }
+        assertThat(archive.search("caster", YearMonth.of(2024, 1), (entry) -> true))
+            .extracting(AuditLogEntry::getId)
+            .containsExactly("3", "1");
+        assertThat(archive.search("caster", null, (entry) -> true))
+            .extracting(AuditLogEntry::getId)
+            .containsExactly("2", "3", "1");
+    }
+
+    @Test
+    void searchDeduplicatesEntriesArchivedTwice() throws IOException {
+        AuditLogEntry entry = entry("1", "caster", "2024-01-15T10:00:00Z");
+        archive.append(List.of(entry));
+        archive.append(List.of(entry));
+
+        assertThat(archive.search("caster", null, (candidate) -> true)).hasSize(1);
+    }
+
+    @Test
+    void deleteBroadcasterRemovesOnlyThatBroadcaster() throws IOException {
+        archive.append(
+            List.of(
+                entry("1", "caster", "2024-01-15T10:00:00Z"),
+                entry("2", "other", "2024-01-16T10:00:00Z")
+            )
+        );
+
+        archive.deleteBroadcaster("caster");
+
+        assertThat(archive.search("caster", null, (entry) -> true)).isEmpty();
+        assertThat(archive.search("other", null, (entry) -> true)).extracting(AuditLogEntry::getId).containsExactly("2");
+    }
+
+    @Test
+    void damagedSegmentKeepsTheEntriesBeforeTheDamage() throws IOException {
+        Path segment = root.resolve("audit-2024-01.ndjson.gz");
+        Files.write(segment, member(line("1", "2024-01-15T10:00:00Z")));
+        byte[] torn = member(line("2", "2024-01-16T10:00:00Z"));
+        Files.write(segment, Arrays.copyOf(torn, torn.length / 2), StandardOpenOption.APPEND);
+        archive.append(List.of(entry("3", "caster", "2024-01-20T10:00:00Z")));
+
+        assertThat(archive.search("caster", YearMonth.of(2024, 1), (entry) -> true))
+            .extracting(AuditLogEntry::getId)
+            .containsExactly("3", "1");
+
+        archive.deleteBroadcaster("caster");
+
+        assertThat(archive.search("caster", null, (entry) -> true)).isEmpty();
+        try (Stream<Path> files = Files.list(root)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void ignoresTemporaryFilesLeftByAnInterruptedWrite() throws IOException {
+        Files.write(root.resolve("audit-2024-01-0.ndjson.gz.tmp"), new byte[] { 0x1f });
+
+        AuditLogArchive reopened = new AuditLogArchive(root.toString());
+
+        assertThat(reopened.search("caster", null, (entry) -> true)).isEmpty();
+        try (Stream<Path> files = Files.list(root)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    private static String line(String id, String createdAt) {
+        return "{\"id\":\"" + id + "\",\"broadcaster\":\"caster\",\"createdAt\":\"" + createdAt + "\"}\n";
+    }
+
+    private static byte[] member(String lines) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(lines.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    private AuditLogEntry entry(String id, String broadcaster, String createdAt) {
+        return new AuditLogEntry(id, broadcaster, "actor", "ACTION", "details", Instant.parse(createdAt));
+    }
+}
@@ -0,0 +1,81 @@
+package dev.kruhlmann.imgfloat.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import dev.kruhlmann.imgfloat.model.db.audit.AuditLogEntry;
+import dev.kruhlmann.imgfloat.repository.audit.AuditLogRepository;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.scheduling.TaskScheduler;
+
+class AuditLogRetentionServiceTest {
+
+    private AuditLogRepository repository;
+    private AuditLogArchive archive;
+    private AuditLogRetentionService service;
+
+    @BeforeEach
+    void setup() {
+        repository = mock(AuditLogRepository.class);
+        archive = mock(AuditLogArchive.class);
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+            "jdbc:sqlite:target/audit-retention-" + UUID.randomUUID() + ".db"
+        );
+        service = new AuditLogRetentionService(repository, archive, dataSource, mock(TaskScheduler.class), 30, 2, 60);
+    }
+
+    @Test
+    void archivesExpiredEntriesInBatchesBeforeDeletingThem() throws IOException {
+        AuditLogEntry first = entry("1");
+        AuditLogEntry second = entry("2");
+        AuditLogEntry third = entry("3");
+        when(repository.findByCreatedAtBeforeOrderByCreatedAtAsc(any(), any()))
+            .thenReturn(List.of(first, second))
+            .thenReturn(List.of(third));
+
+        AuditLogRetentionService.RetentionReport report = service.applyRetention();
+
+        verify(archive).append(List.of(first, second));
+        verify(repository).deleteAllByIdInBatch(List.of("1", "2"));
+        verify(archive).append(List.of(third));
+        verify(repository).deleteAllByIdInBatch(List.of("3"));
+        assertThat(report.archivedEntries()).isEqualTo(3);
+        assertThat(service.getLastReport()).contains(report);
+    }
+
+    @Test
+    void keepsEntriesWhenArchiveWriteFails() throws IOException {
+        when(repository.findByCreatedAtBeforeOrderByCreatedAtAsc(any(), any())).thenReturn(List.of(entry("1")));
+        doThrow(new IOException("disk full")).when(archive).append(anyList());
+
+        AuditLogRetentionService.RetentionReport report = service.applyRetention();
+
+        verify(repository, never()).deleteAllByIdInBatch(any());
+        assertThat(report.archivedEntries()).isZero();
+    }
+
+    @Test
+    void stopsWhenRepositoryFails() {
+        when(repository.findByCreatedAtBeforeOrderByCreatedAtAsc(any(), any()))
+            .thenThrow(new DataAccessResourceFailureException("db down"));
+
+        assertThat(service.applyRetention().archivedEntries()).isZero();
+    }
+
+    private AuditLogEntry entry(String id) {
+        return new AuditLogEntry(id, "caster", "actor", "ACTION", "details", Instant.parse("2020-01-01T00:00:00Z"));
+    }
+}
@@ -1,6 +1,7 @@
 package dev.kruhlmann.imgfloat.service;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 import dev.kruhlmann.imgfloat.model.db.audit.AuditLogEntry;
@@ -13,19 +14,25 @@ import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.dao.DataAccessResourceFailureException;
 
+import java.time.Instant;
+import java.time.YearMonth;
 import java.util.List;
+import java.util.function.Predicate;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class AuditLogServiceTest {
 
     private AuditLogRepository repository;
+    private AuditLogArchive archive;
     private AuditLogService service;
 
     @BeforeEach
     void setup() {
         repository = mock(AuditLogRepository.class);
-        service = new AuditLogService(repository);
+        archive = mock(AuditLogArchive.class);
+        service = new AuditLogService(repository, archive);
     }
 
     @Test
@@ -101,6 +108,29 @@ class AuditLogServiceTest {
     void deleteEntriesForBroadcasterDelegatesToRepository() {
         service.deleteEntriesForBroadcaster("Broadcaster");
         verify(repository).deleteByBroadcaster("broadcaster");
+        verify(archive).deleteBroadcaster("broadcaster");
+    }
+
+    @Test
+    void listArchivedEntriesFiltersAndPages() {
+        AuditLogEntry first = new AuditLogEntry("1", "broadcaster", "actor", "ASSET_CREATED", "a", Instant.ofEpochSecond(3));
+        AuditLogEntry second = new AuditLogEntry("2", "broadcaster", "other", "ASSET_DELETED", "b", Instant.ofEpochSecond(2));
+        when(archive.search(eq("broadcaster"), eq(YearMonth.of(2024, 1)), any()))
+            .thenAnswer((invocation) -> {
+                Predicate<AuditLogEntry> filter = invocation.getArgument(2);
+                return List.of(first, second).stream().filter(filter).toList();
+            });
+
+        Page<AuditLogEntry> result = service.listArchivedEntries("Broadcaster", "2024-01", "ACTOR", null, null, 0, 10);
+
+        assertThat(result.getContent()).containsExactly(first);
+        assertThat(result.getTotalElements()).isEqualTo(1);
+    }
+
+    @Test
+    void listArchivedEntriesRejectsMalformedMonth() {
+        assertThatThrownBy(() -> service.listArchivedEntries("broadcaster", "January", null, null, null, 0, 10))
+            .isInstanceOf(IllegalArgumentException.class);
     }
 
     @Test
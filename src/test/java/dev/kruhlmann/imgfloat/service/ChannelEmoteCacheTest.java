@@ -0,0 +1,191 @@
+package dev.kruhlmann.imgfloat.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ChannelEmoteCacheTest {
+
+    private final ExecutorService loadExecutor = Executors.newFixedThreadPool(2);
+    private final Queue<String> loads = new ConcurrentLinkedQueue<>();
+    private final Map<String, Optional<List<String>>> upstream = new ConcurrentHashMap<>();
+    private volatile CountDownLatch release = new CountDownLatch(0);
+
+    @AfterEach
+    void teardown() {
+        loadExecutor.shutdownNow();
+    }
+
+    @Test
+    void evictsTheLeastRecentlyRequestedChannel() {
+        ChannelEmoteCache<List<String>> cache =
+            cache(2, Duration.ofHours(1), Duration.ofHours(1), Duration.ofSeconds(5));
+        upstream.put("alpha", Optional.of(List.of("a")));
+        upstream.put("bravo", Optional.of(List.of("b")));
+        upstream.put("charlie", Optional.of(List.of("c")));
+        cache.get("alpha");
+        cache.get("bravo");
+        cache.get("alpha");
+
+        cache.get("charlie");
+        cache.get("alpha");
+        cache.get("bravo");
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(loads).containsExactly("alpha", "bravo", "charlie", "bravo");
+    }
+
+    @Test
+    void servesExpiredEmotesWhileReloadingInTheBackground() throws InterruptedException {
+        ChannelEmoteCache<List<String>> cache = cache(10, Duration.ZERO, Duration.ZERO, Duration.ofSeconds(5));
+        upstream.put("alpha", Optional.of(List.of("old")));
+        cache.get("alpha");
+        upstream.put("alpha", Optional.of(List.of("new")));
+        release = new CountDownLatch(1);
+
+        assertThat(cache.get("alpha")).contains(List.of("old"));
+        assertThat(cache.get("alpha")).contains(List.of("old"));
+        release.countDown();
+
+        awaitLoads(2);
+        assertThat(loads).hasSize(2);
+        assertThat(waitFor(cache, "alpha", List.of("new"))).isTrue();
+    }
+
+    @Test
+    void missGivesUpAfterTheDeadlineAndTheLoadFillsTheCache() throws InterruptedException {
+        ChannelEmoteCache<List<String>> cache =
+            cache(10, Duration.ofHours(1), Duration.ofHours(1), Duration.ofMillis(50));
+        upstream.put("alpha", Optional.of(List.of("a")));
+        release = new CountDownLatch(1);
+
+        assertThat(cache.get("alpha")).isEmpty();
+        release.countDown();
+
+        assertThat(waitFor(cache, "alpha", List.of("a"))).isTrue();
+        assertThat(loads).containsExactly("alpha");
+    }
+
+    @Test
+    void unknownChannelsAreCachedForTheShorterTime() throws InterruptedException {
+        ChannelEmoteCache<List<String>> cache = cache(10, Duration.ofHours(1), Duration.ZERO, Duration.ofSeconds(5));
+        upstream.put("alpha", Optional.of(List.of("a")));
+        upstream.put("ghost", Optional.of(List.of()));
+        cache.get("alpha");
+        cache.get("ghost");
+
+        cache.get("alpha");
+        cache.get("ghost");
+        awaitLoads(3);
+
+        assertThat(loads).containsExactly("alpha", "ghost", "ghost");
+    }
+
+    @Test
+    void unreachableProviderKeepsTheCachedEmotes() throws InterruptedException {
+        ChannelEmoteCache<List<String>> cache = cache(10, Duration.ZERO, Duration.ofHours(1), Duration.ofSeconds(5));
+        upstream.put("alpha", Optional.of(List.of("a")));
+        cache.get("alpha");
+        upstream.put("alpha", Optional.empty());
+
+        cache.get("alpha");
+        awaitLoads(2);
+        cache.get("alpha");
+
+        assertThat(cache.get("alpha")).contains(List.of("a"));
+        assertThat(loads).hasSize(2);
+    }
+
+    @Test
+    void rejectedLoadIsAMissAndTheNextRequestRetries() throws InterruptedException {
+        AtomicBoolean full = new AtomicBoolean(true);
+        Executor saturated = (task) -> {
+            if (full.get()) {
+                throw new RejectedExecutionException("queue full");
+            }
+            loadExecutor.execute(task);
+        };
+        ChannelEmoteCache<List<String>> cache =
+            cache(saturated, 10, Duration.ofHours(1), Duration.ofHours(1), Duration.ofSeconds(5));
+        upstream.put("alpha", Optional.of(List.of("a")));
+
+        assertThat(cache.get("alpha")).isEmpty();
+        assertThat(loads).isEmpty();
+        full.set(false);
+
+        assertThat(cache.get("alpha")).contains(List.of("a"));
+        assertThat(loads).containsExactly("alpha");
+    }
+
+    private ChannelEmoteCache<List<String>> cache(
+        int maxChannels,
+        Duration ttl,
+        Duration emptyTtl,
+        Duration missDeadline
+    ) {
+        return cache(loadExecutor, maxChannels, ttl, emptyTtl, missDeadline);
+    }
+
+    private ChannelEmoteCache<List<String>> cache(
+        Executor executor,
+        int maxChannels,
+        Duration ttl,
+        Duration emptyTtl,
+        Duration missDeadline
+    ) {
+        return new ChannelEmoteCache<>(
+            "Test",
+            (login) -> {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                loads.add(login);
+                return upstream.getOrDefault(login, Optional.of(List.of()));
+            },
+            List::isEmpty,
+            executor,
+            maxChannels,
+            ttl,
+            emptyTtl,
+            missDeadline
+        );
+    }
+
+    private void awaitLoads(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (loads.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        // the loaded value is stored right after the loader returns
+        Thread.sleep(20);
+    }
+
+    private static boolean waitFor(ChannelEmoteCache<List<String>> cache, String key, List<String> expected)
+        throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            if (cache.get(key).filter(expected::equals).isPresent()) {
+                return true;
+            }
+            Thread.sleep(5);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,66 @@
+package dev.kruhlmann.imgfloat.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class ChannelEventLogTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final ChannelEventLog log = new ChannelEventLog(3, Duration.ofMinutes(60), now::get);
+
+    @Test
+    void numbersEventsPerChannel() {
+        assertThat(log.append("caster", "a")).isEqualTo(1);
+        assertThat(log.append("Caster", "b")).isEqualTo(2);
+        assertThat(log.append("other", "c")).isEqualTo(1);
+    }
+
+    @Test
+    void replaysEventsAfterRequestedSequence() {
+        log.append("caster", "a");
+        log.append("caster", "b");
+        log.append("caster", "c");
+
+        ChannelEventLog.Replay replay = log.replay("caster", 1, log.getEpoch());
+
+        assertThat(replay.complete()).isTrue();
+        assertThat(replay.latest()).isEqualTo(3);
+        assertThat(replay.events()).extracting(ChannelEventLog.SequencedEvent::body).containsExactly("b", "c");
+    }
+
+    @Test
+    void requiresSnapshotOnceBufferHasRolledOver() {
+        for (int i = 0; i < 5; i++) {
+            log.append("caster", "event-" + i);
+        }
+
+        assertThat(log.replay("caster", 1, log.getEpoch()).complete()).isFalse();
+        assertThat(log.replay("caster", 2, log.getEpoch()).events()).hasSize(3);
+    }
+
+    @Test
+    void requiresSnapshotForOtherEpochOrFutureSequence() {
+        log.append("caster", "a");
+
+        assertThat(log.replay("caster", 0, "earlier").complete()).isFalse();
+        assertThat(log.replay("caster", 7, log.getEpoch()).complete()).isFalse();
+    }
+
+    @Test
+    void dropsIdleChannelsAndNumbersTheirNextEventsAboveEarlierOnes() {
+        log.append("idle", "a");
+        log.append("idle", "b");
+        String epoch = log.getEpoch();
+
+        now.addAndGet(Duration.ofMinutes(61).toNanos());
+        log.append("busy", "c");
+
+        assertThat(log.trackedChannels()).isEqualTo(1);
+        assertThat(log.replay("idle", 2, epoch).complete()).isFalse();
+        assertThat(log.append("idle", "d")).isGreaterThan(2);
+        assertThat(log.replay("idle", 2, epoch).complete()).isFalse();
+    }
+}
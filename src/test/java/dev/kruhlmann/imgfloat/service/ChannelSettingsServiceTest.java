@@ -46,7 +46,12 @@ class ChannelSettingsServiceTest {
             return ch;
         });
 
-        service = new ChannelSettingsService(channelRepository, settingsService, messagingTemplate, auditLogService);
+        service = new ChannelSettingsService(
+            channelRepository,
+            settingsService,
+            new InProcessChannelEventBus(messagingTemplate),
+            auditLogService
+        );
     }
 
     // --- canvas settings ---
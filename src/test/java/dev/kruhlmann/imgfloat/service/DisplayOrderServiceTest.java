@@ -0,0 +1,131 @@
+package dev.kruhlmann.imgfloat.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.kruhlmann.imgfloat.model.AssetType;
+import dev.kruhlmann.imgfloat.model.db.imgfloat.Asset;
+import dev.kruhlmann.imgfloat.repository.AssetRepository;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+class DisplayOrderServiceTest {
+
+    private static final Set<AssetType> LAYER = EnumSet.of(AssetType.IMAGE);
+
+    private AssetRepository assetRepository;
+    private TaskScheduler taskScheduler;
+    private DisplayOrderService service;
+    private List<Asset> assets;
+
+    @BeforeEach
+    void setup() {
+        assetRepository = mock(AssetRepository.class);
+        taskScheduler = mock(TaskScheduler.class);
+        assets = new ArrayList<>();
+        when(assetRepository.findByBroadcaster(anyString())).thenAnswer((invocation) -> List.copyOf(assets));
+        service = new DisplayOrderService(
+            assetRepository,
+            new ObjectMapper(),
+            mock(PlatformTransactionManager.class),
+            taskScheduler
+        );
+    }
+
+    @Test
+    void nextKeyLeavesGapAboveTopAsset() {
+        asset(2048);
+
+        assertThat(service.nextKey("caster", LAYER)).isEqualTo(2048 + DisplayOrderService.GAP);
+    }
+
+    @Test
+    void moveWritesOnlyTheMovedAsset() {
+        Asset bottom = asset(1024);
+        Asset middle = asset(2048);
+        Asset top = asset(3072);
+
+        DisplayOrderService.Move move = service.move("caster", top, 1, LAYER);
+
+        assertThat(move.previousRank()).isEqualTo(3);
+        assertThat(move.rank()).isEqualTo(2);
+        assertThat(top.getDisplayOrder()).isBetween(bottom.getDisplayOrder() + 1, middle.getDisplayOrder() - 1);
+        assertThat(bottom.getDisplayOrder()).isEqualTo(1024);
+        assertThat(middle.getDisplayOrder()).isEqualTo(2048);
+        verify(assetRepository).updateDisplayOrders("{\"" + top.getId() + "\":" + top.getDisplayOrder() + "}");
+        verify(taskScheduler, never()).schedule(any(Runnable.class), any(Instant.class));
+    }
+
+    @Test
+    void moveToSameRankWritesNothing() {
+        asset(1024);
+        Asset top = asset(2048);
+
+        DisplayOrderService.Move move = service.move("caster", top, 5, LAYER);
+
+        assertThat(move.changed()).isFalse();
+        verify(assetRepository, never()).updateDisplayOrders(anyString());
+    }
+
+    @Test
+    void renumbersLayerWhenNeighboursHaveNoSpaceLeft() {
+        Asset bottom = asset(1);
+        Asset middle = asset(2);
+        Asset top = asset(3);
+
+        service.move("caster", top, 1, LAYER);
+
+        assertThat(List.of(bottom, top, middle))
+            .extracting(Asset::getDisplayOrder)
+            .containsExactly(DisplayOrderService.GAP, 2 * DisplayOrderService.GAP, 3 * DisplayOrderService.GAP);
+    }
+
+    @Test
+    void schedulesRebalanceWhenGapsGetSmall() {
+        asset(10);
+        asset(20);
+        Asset top = asset(30);
+
+        service.move("caster", top, 1, LAYER);
+
+        verify(taskScheduler).schedule(any(Runnable.class), any(Instant.class));
+    }
+
+    @Test
+    void applyOrderKeepsKeysOfAssetsAlreadyInOrder() {
+        Asset a = asset(1024);
+        Asset b = asset(2048);
+        Asset c = asset(3072);
+        Asset d = asset(4096);
+
+        List<Asset> written = service.applyOrders(
+            "caster",
+            List.of(new DisplayOrderService.LayerOrder(LAYER, List.of(d, a, c, b)))
+        );
+
+        assertThat(written).containsExactly(a);
+        assertThat(List.of(d, a, c, b))
+            .extracting(Asset::getDisplayOrder)
+            .isSortedAccordingTo((left, right) -> Integer.compare(right, left));
+    }
+
+    private Asset asset(int key) {
+        Asset asset = new Asset("caster", AssetType.IMAGE);
+        asset.setDisplayOrder(key);
+        assets.add(asset);
+        return asset;
+    }
+}
@@ -0,0 +1,90 @@
+package dev.kruhlmann.imgfloat.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class EmoteFileStoreTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void storedEmoteIsFoundAfterRestartInItsSubdirectory() throws IOException {
+        new EmoteFileStore(root, (name) -> "image/png")
+            .store("abc123", "webp", new byte[] { 1, 2, 3 }, "image/webp", null, null);
+
+        EmoteFileStore.StoredEmote stored = new EmoteFileStore(root, (name) -> "image/png").find("abc123").orElseThrow();
+
+        assertThat(stored.path().getParent().getParent()).isEqualTo(root);
+        assertThat(stored.path().getFileName().toString()).isEqualTo("abc123.webp");
+        assertThat(stored.mediaType()).isEqualTo("image/webp", null, null);
+        assertThat(stored.size()).isEqualTo(3);
+        assertThat(Files.readAllBytes(stored.path())).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void laterEntryForTheSameEmoteWins() throws IOException {
+        EmoteFileStore store = new EmoteFileStore(root, (name) -> "image/png");
+        store.store("abc123", "png", new byte[] { 1 }, "image/png", null, null);
+        store.store("abc123", "gif", new byte[] { 2 }, "image/gif", null, null);
+
+        EmoteFileStore.StoredEmote stored = new EmoteFileStore(root, (name) -> "image/png").find("abc123").orElseThrow();
+
+        assertThat(stored.mediaType()).isEqualTo("image/gif");
+        assertThat(Files.readAllBytes(stored.path())).containsExactly(2);
+    }
+
+    @Test
+    void movesFlatCacheFilesIntoSubdirectoriesOnce() throws IOException {
+        Files.write(root.resolve("123.gif"), new byte[] { 7 });
+
+        EmoteFileStore.StoredEmote stored = new EmoteFileStore(root, (name) -> name.endsWith(".gif") ? "image/gif" : "image/png")
+            .find("123")
+            .orElseThrow();
+
+        assertThat(stored.mediaType()).isEqualTo("image/gif");
+        assertThat(Files.exists(root.resolve("123.gif"))).isFalse();
+        assertThat(Files.readAllBytes(stored.path())).containsExactly(7);
+        assertThat(new EmoteFileStore(root, (name) -> "unused").find("123")).contains(stored);
+    }
+
+    @Test
+    void keepsValidatorsAndReplacesTheOldFileWhenTheExtensionChanges() throws IOException {
+        EmoteFileStore store = new EmoteFileStore(root, (name) -> "image/png");
+        EmoteFileStore.StoredEmote first = store.store("abc123", "png", new byte[] { 1 }, "image/png", null, null);
+        store.store("abc123", "gif", new byte[] { 2 }, "image/gif", "\"v2\"", "Mon, 19 Oct 2026 10:00:00 GMT");
+
+        EmoteFileStore.StoredEmote stored = new EmoteFileStore(root, (name) -> "image/png").find("abc123").orElseThrow();
+
+        assertThat(stored.etag()).isEqualTo("\"v2\"");
+        assertThat(stored.lastModified()).isEqualTo("Mon, 19 Oct 2026 10:00:00 GMT");
+        assertThat(Files.exists(first.path())).isFalse();
+        try (var files = Files.list(stored.path().getParent())) {
+            assertThat(files).containsExactly(stored.path());
+        }
+    }
+
+    @Test
+    void emoteWhoseFileWasRemovedIsNotFound() throws IOException {
+        EmoteFileStore store = new EmoteFileStore(root, (name) -> "image/png");
+        EmoteFileStore.StoredEmote stored = store.store("abc123", "png", new byte[] { 1 }, "image/png", null, null);
+        Files.delete(stored.path());
+
+        assertThat(store.find("abc123")).isEmpty();
+    }
+
+    @Test
+    void rejectsIdsThatAreNotPlainNames() {
+        EmoteFileStore store = new EmoteFileStore(root, (name) -> "image/png");
+
+        assertThat(store.find("../manifest")).isEmpty();
+        assertThatThrownBy(() -> store.store("a/b", "png", new byte[] { 1 }, "image/png", null, null))
+            .isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,191 @@
+package dev.kruhlmann.imgfloat.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+
+class EmoteImageFetcherTest {
+
+    @TempDir
+    Path root;
+
+    private final AtomicInteger downloads = new AtomicInteger();
+    private final Queue<String> ifNoneMatch = new ConcurrentLinkedQueue<>();
+    private final AtomicReference<String> etag = new AtomicReference<>("\"v1\"");
+    private final AtomicReference<byte[]> image = new AtomicReference<>(new byte[] { 1, 2, 3 });
+    private final AtomicInteger failStatus = new AtomicInteger();
+    private final ExecutorService serverExecutor = Executors.newCachedThreadPool();
+    private final ExecutorService downloadExecutor = Executors.newFixedThreadPool(4);
+    private volatile CountDownLatch release = new CountDownLatch(0);
+    private HttpServer server;
+    private EmoteFileStore fileStore;
+
+    @BeforeEach
+    void setup() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/img", this::serveImage);
+        server.setExecutor(serverExecutor);
+        server.start();
+        fileStore = new EmoteFileStore(root, (name) -> "image/png");
+    }
+
+    @AfterEach
+    void teardown() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+        downloadExecutor.shutdownNow();
+    }
+
+    @Test
+    void concurrentRequestsForTheSameEmoteShareOneDownload() {
+        release = new CountDownLatch(1);
+        EmoteImageFetcher fetcher = fetcher(Duration.ofDays(1));
+
+        List<CompletableFuture<Optional<EmoteFileStore.StoredEmote>>> pending = IntStream
+            .range(0, 5)
+            .mapToObj((i) -> fetcher.fetch("abc", imageUrl(), "png", false))
+            .toList();
+        release.countDown();
+
+        assertThat(pending).allSatisfy((future) -> assertThat(future.join()).isPresent());
+        assertThat(downloads).hasValue(1);
+    }
+
+    @Test
+    void callersJoiningAFailedDownloadAllGetTheFallback() {
+        Queue<Runnable> held = new ConcurrentLinkedQueue<>();
+        EmoteImageFetcher fetcher = new EmoteImageFetcher(
+            "Test",
+            new RestTemplateBuilder().build(),
+            fileStore,
+            held::add,
+            Duration.ofDays(1),
+            (name) -> "image/png"
+        );
+
+        List<CompletableFuture<Optional<EmoteFileStore.StoredEmote>>> pending = IntStream
+            .range(0, 3)
+            .mapToObj((i) -> fetcher.fetch("abc", "not a url", "png", false))
+            .toList();
+        held.forEach(Runnable::run);
+
+        assertThat(held).hasSize(1);
+        assertThat(pending).allSatisfy((future) -> assertThat(future.join()).isEmpty());
+    }
+
+    @Test
+    void unchangedStaleImageIsRevalidatedWithoutABody() throws IOException {
+        EmoteImageFetcher fetcher = fetcher(Duration.ZERO);
+        EmoteFileStore.StoredEmote first = fetcher.fetch("abc", imageUrl(), "png", true).join().orElseThrow();
+
+        EmoteFileStore.StoredEmote revalidated = fetcher.fetch("abc", imageUrl(), "png", true).join().orElseThrow();
+
+        assertThat(ifNoneMatch).containsExactly("\"v1\"");
+        assertThat(revalidated.path()).isEqualTo(first.path());
+        assertThat(revalidated.fetchedAt()).isAfterOrEqualTo(first.fetchedAt());
+        assertThat(Files.readAllBytes(revalidated.path())).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void changedImageReplacesTheStoredFile() throws IOException {
+        EmoteImageFetcher fetcher = fetcher(Duration.ZERO);
+        fetcher.fetch("abc", imageUrl(), "png", true).join();
+        etag.set("\"v2\"");
+        image.set(new byte[] { 9 });
+
+        EmoteFileStore.StoredEmote stored = fetcher.fetch("abc", imageUrl(), "png", true).join().orElseThrow();
+
+        assertThat(stored.etag()).isEqualTo("\"v2\"");
+        assertThat(Files.readAllBytes(stored.path())).containsExactly(9);
+        assertThat(new EmoteFileStore(root, (name) -> "image/png").find("abc")).contains(stored);
+    }
+
+    @Test
+    void freshImageIsNotRequestedAgain() {
+        EmoteImageFetcher fetcher = fetcher(Duration.ofDays(1));
+        fetcher.fetch("abc", imageUrl(), "png", true).join();
+
+        fetcher.fetch("abc", imageUrl(), "png", true).join();
+
+        assertThat(downloads).hasValue(1);
+    }
+
+    @Test
+    void failedRevalidationKeepsTheStoredImage() throws IOException {
+        EmoteImageFetcher fetcher = fetcher(Duration.ZERO);
+        EmoteFileStore.StoredEmote first = fetcher.fetch("abc", imageUrl(), "png", true).join().orElseThrow();
+        failStatus.set(503);
+
+        Optional<EmoteFileStore.StoredEmote> stored = fetcher.fetch("abc", imageUrl(), "png", true).join();
+
+        assertThat(stored).contains(first);
+        assertThat(Files.readAllBytes(first.path())).containsExactly(1, 2, 3);
+    }
+
+    private EmoteImageFetcher fetcher(Duration revalidateAfter) {
+        return new EmoteImageFetcher(
+            "Test",
+            new RestTemplateBuilder().build(),
+            fileStore,
+            downloadExecutor,
+            revalidateAfter,
+            (name) -> "image/png"
+        );
+    }
+
+    private void serveImage(HttpExchange exchange) throws IOException {
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        downloads.incrementAndGet();
+        if (failStatus.get() != 0) {
+            exchange.sendResponseHeaders(failStatus.get(), -1);
+            exchange.close();
+            return;
+        }
+        String requested = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (requested != null) {
+            ifNoneMatch.add(requested);
+        }
+        exchange.getResponseHeaders().add("ETag", etag.get());
+        if (etag.get().equals(requested)) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        byte[] bytes = image.get();
+        exchange.getResponseHeaders().add("Content-Type", "image/png");
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    private String imageUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/img/abc.png";
+    }
+}
@@ -0,0 +1,269 @@
+package dev.kruhlmann.imgfloat.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dev.kruhlmann.imgfloat.model.db.imgfloat.Channel;
+import dev.kruhlmann.imgfloat.model.db.imgfloat.Settings;
+import dev.kruhlmann.imgfloat.repository.ChannelRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.scheduling.TaskScheduler;
+
+class EmoteSyncSchedulerTest {
+
+    @TempDir
+    Path cacheRoot;
+
+    private final Queue<List<String>> userLookups = new ConcurrentLinkedQueue<>();
+    private final Queue<String> channelRequests = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean providersFailing = new AtomicBoolean();
+    private final ChannelRepository channelRepository = mock(ChannelRepository.class);
+    private final SettingsService settingsService = mock(SettingsService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService serverExecutor = Executors.newCachedThreadPool();
+    private final ExecutorService downloadExecutor = Executors.newFixedThreadPool(2);
+    private final ExecutorService loadExecutor = Executors.newFixedThreadPool(2);
+    private HttpServer server;
+    private ExecutorService executor;
+    private TwitchEmoteService twitchEmoteService;
+    private SevenTvEmoteService sevenTvEmoteService;
+    private TwitchIdentityService identityService;
+
+    @BeforeEach
+    void setup() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/helix/users", (exchange) -> {
+            List<String> logins = Arrays.stream(exchange.getRequestURI().getQuery().split("&"))
+                .map((param) -> param.replace("login=", ""))
+                .toList();
+            userLookups.add(logins);
+            respond(
+                exchange,
+                200,
+                logins
+                    .stream()
+                    .map((login) -> "{\"id\":\"id-" + login + "\",\"login\":\"" + login + "\"}")
+                    .collect(Collectors.joining(",", "{\"data\":[", "]}"))
+            );
+        });
+        server.createContext("/helix/chat/emotes", (exchange) -> {
+            String query = exchange.getRequestURI().getQuery();
+            if (query == null) {
+                respond(exchange, 200, "{\"data\":[]}");
+                return;
+            }
+            String id = query.replace("broadcaster_id=id-", "");
+            channelRequests.add(id);
+            if (providersFailing.get()) {
+                respond(exchange, 500, "{}");
+                return;
+            }
+            respond(
+                exchange,
+                200,
+                "{\"data\":[{\"id\":\"e-" + id + "\",\"name\":\"Emote\",\"images\":{\"url_1x\":\"" + baseUrl() + "/img/e-" + id + ".png\"}}]}"
+            );
+        });
+        server.createContext("/7tv/users/twitch", (exchange) -> {
+            String path = exchange.getRequestURI().getPath();
+            channelRequests.add(path.substring(path.lastIndexOf("/id-") + 4));
+            respond(exchange, providersFailing.get() ? 500 : 404, "{}");
+        });
+        server.createContext("/img", (exchange) -> respond(exchange, 200, "png"));
+        server.setExecutor(serverExecutor);
+        server.start();
+
+        TwitchAppAccessTokenService tokenService = mock(TwitchAppAccessTokenService.class);
+        when(tokenService.getAccessToken()).thenReturn(Optional.of("token"));
+        when(tokenService.getClientId()).thenReturn(Optional.of("client"));
+        identityService = TwitchIdentityServiceTest.service(new ConcurrentHashMap<>(), baseUrl() + "/helix");
+        twitchEmoteService = new TwitchEmoteService(
+            new RestTemplateBuilder(),
+            tokenService,
+            identityService,
+            cacheRoot.resolve("twitch").toString(),
+            baseUrl() + "/helix",
+            downloadExecutor,
+            loadExecutor,
+            100,
+            60
+        );
+        sevenTvEmoteService = new SevenTvEmoteService(
+            new RestTemplateBuilder(),
+            identityService,
+            cacheRoot.resolve("7tv").toString(),
+            baseUrl() + "/7tv",
+            downloadExecutor,
+            loadExecutor,
+            100,
+            60
+        );
+        when(settingsService.get()).thenReturn(Settings.defaults());
+    }
+
+    @AfterEach
+    void teardown() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+        downloadExecutor.shutdownNow();
+        loadExecutor.shutdownNow();
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void refreshesEveryChannelWithEachProvider() {
+        channels("alpha", "bravo", "charlie");
+        EmoteSyncScheduler scheduler = scheduler(4, 0);
+
+        EmoteSyncScheduler.SyncReport report = scheduler.syncEmotes();
+
+        assertThat(report.channels()).isEqualTo(3);
+        assertThat(report.providers())
+            .extracting(EmoteSyncScheduler.ProviderReport::refreshed)
+            .containsExactly(3, 3);
+        assertThat(userLookups).containsExactly(List.of("alpha", "bravo", "charlie"));
+        assertThat(channelRequests).hasSize(6);
+        assertThat(twitchEmoteService.getChannelEmotes("bravo"))
+            .extracting(TwitchEmoteService.EmoteDescriptor::id)
+            .containsExactly("e-bravo");
+        assertThat(new String(sevenTvEmoteService.getEmoteCatalog("charlie").json(), StandardCharsets.UTF_8))
+            .isEqualTo("{\"channel\":[]}");
+        assertThat(channelRequests).hasSize(6);
+        assertThat(scheduler.getLastReport()).contains(report);
+    }
+
+    @Test
+    void skipsChannelsThatAreStillFresh() {
+        channels("alpha", "bravo");
+        EmoteSyncScheduler scheduler = scheduler(2, 0);
+        scheduler.recordActivity("alpha");
+        scheduler.syncEmotes();
+        userLookups.clear();
+        channelRequests.clear();
+
+        EmoteSyncScheduler.SyncReport report = scheduler.syncEmotes();
+
+        assertThat(userLookups).isEmpty();
+        assertThat(channelRequests).isEmpty();
+        assertThat(report.providers()).extracting(EmoteSyncScheduler.ProviderReport::skipped).containsExactly(2, 2);
+    }
+
+    @Test
+    void refreshesRecentlyRequestedChannelsFirst() {
+        channels("alpha", "bravo", "charlie");
+        EmoteSyncScheduler scheduler = scheduler(1, 0);
+        scheduler.recordActivity("bravo");
+        scheduler.recordActivity("CHARLIE");
+
+        scheduler.syncEmotes();
+
+        assertThat(channelRequests).startsWith("charlie", "charlie", "bravo", "bravo");
+    }
+
+    @Test
+    void remembersABoundedNumberOfRequestedLoginsAndForgetsUnknownOnes() {
+        channels("alpha");
+        EmoteSyncScheduler scheduler = scheduler(1, 0);
+        for (int index = 0; index < 20_000; index++) {
+            scheduler.recordActivity("garbage-" + index);
+        }
+        scheduler.recordActivity("alpha");
+
+        assertThat(scheduler.trackedRequests()).isEqualTo(10_000);
+        scheduler.syncEmotes();
+        assertThat(scheduler.trackedRequests()).isEqualTo(1);
+    }
+
+    @Test
+    void failedRefreshKeepsCachedEmotesAndIsRetriedNextRun() {
+        channels("alpha");
+        EmoteSyncScheduler scheduler = scheduler(1, 0);
+        assertThat(twitchEmoteService.getChannelEmotes("alpha")).hasSize(1);
+
+        providersFailing.set(true);
+        EmoteSyncScheduler.SyncReport failed = scheduler.syncEmotes();
+        providersFailing.set(false);
+        EmoteSyncScheduler.SyncReport retried = scheduler.syncEmotes();
+
+        assertThat(failed.providers()).extracting(EmoteSyncScheduler.ProviderReport::failed).containsExactly(1, 1);
+        assertThat(retried.providers())
+            .extracting(EmoteSyncScheduler.ProviderReport::refreshed)
+            .containsExactly(1, 1);
+        assertThat(twitchEmoteService.getChannelEmotes("alpha")).hasSize(1);
+        assertThat(meterRegistry.get("imgfloat.emote.refresh").tag("outcome", "failure").timers())
+            .extracting((timer) -> timer.getId().getTag("provider"))
+            .containsExactlyInAnyOrder("twitch", "7tv");
+        assertThat(meterRegistry.get("imgfloat.emote.sync").tag("outcome", "success").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void pacesRefreshesOfEachProvider() {
+        channels("alpha", "bravo", "charlie", "delta");
+        EmoteSyncScheduler scheduler = scheduler(4, 10);
+
+        EmoteSyncScheduler.SyncReport report = scheduler.syncEmotes();
+
+        // four refreshes at ten per second start no sooner than 300 ms apart from first to last
+        assertThat(report.duration().toMillis()).isGreaterThanOrEqualTo(290);
+        assertThat(report.providers())
+            .extracting(EmoteSyncScheduler.ProviderReport::refreshed)
+            .containsExactly(4, 4);
+    }
+
+    private EmoteSyncScheduler scheduler(int parallelism, double perSecond) {
+        executor = Executors.newFixedThreadPool(parallelism);
+        return new EmoteSyncScheduler(
+            settingsService,
+            channelRepository,
+            twitchEmoteService,
+            sevenTvEmoteService,
+            identityService,
+            mock(TaskScheduler.class),
+            executor,
+            meterRegistry,
+            perSecond,
+            perSecond,
+            24
+        );
+    }
+
+    private void channels(String... broadcasters) {
+        when(channelRepository.findAll()).thenReturn(Arrays.stream(broadcasters).map(Channel::new).toList());
+    }
+
+    private String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", body.startsWith("{") ? "application/json" : "image/png");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+}
@@ -0,0 +1,34 @@
+package dev.kruhlmann.imgfloat.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class IrcMessageTest {
+
+    @Test
+    void parsesTagsPrefixAndTrailingParameter() {
+        IrcMessage message = IrcMessage.parse(
+            "@badges=;display-name=Some\\sName;msg=a\\:b\\\\c :some!some@some.tmi.twitch.tv PRIVMSG #alpha :hi :) there"
+        );
+
+        assertThat(message.command()).isEqualTo("PRIVMSG");
+        assertThat(message.nick()).isEqualTo("some");
+        assertThat(message.params()).containsExactly("#alpha", "hi :) there");
+        assertThat(message.tags())
+            .containsEntry("badges", "")
+            .containsEntry("display-name", "Some Name")
+            .containsEntry("msg", "a;b\\c");
+    }
+
+    @Test
+    void parsesCommandsWithoutPrefixOrTags() {
+        IrcMessage ping = IrcMessage.parse("PING :tmi.twitch.tv");
+
+        assertThat(ping.command()).isEqualTo("PING");
+        assertThat(ping.prefix()).isEmpty();
+        assertThat(ping.param(0)).isEqualTo("tmi.twitch.tv");
+        assertThat(IrcMessage.parse("")).isNull();
+        assertThat(IrcMessage.parse("@only-tags")).isNull();
+    }
+}
@@ -0,0 +1,168 @@
+package dev.kruhlmann.imgfloat.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import dev.kruhlmann.imgfloat.model.api.response.PlaylistEvent;
+import dev.kruhlmann.imgfloat.model.db.imgfloat.AudioAsset;
+import dev.kruhlmann.imgfloat.model.db.imgfloat.PlaylistTrack;
+import dev.kruhlmann.imgfloat.repository.AudioAssetRepository;
+import dev.kruhlmann.imgfloat.repository.ChannelRepository;
+import dev.kruhlmann.imgfloat.repository.PlaylistTrackRepository;
+import dev.kruhlmann.imgfloat.service.media.AssetContent;
+import dev.kruhlmann.imgfloat.service.media.MediaOptimizationService;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ScheduledFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.scheduling.TaskScheduler;
+
+class PlaylistPlaybackEngineTest {
+
+    private final PlaylistTrackRepository playlistTrackRepository = mock(PlaylistTrackRepository.class);
+    private final AudioAssetRepository audioAssetRepository = mock(AudioAssetRepository.class);
+    private final AssetStorageService assetStorageService = mock(AssetStorageService.class);
+    private final MediaOptimizationService mediaOptimizationService = mock(MediaOptimizationService.class);
+    private final ChannelEventBus channelEventBus = mock(ChannelEventBus.class);
+    private final PlaylistService playlistService = mock(PlaylistService.class);
+    private final List<Scheduled> scheduled = new ArrayList<>();
+    private final List<Runnable> plans = new ArrayList<>();
+    private PlaylistPlaybackEngine engine;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        TaskScheduler taskScheduler = mock(TaskScheduler.class);
+        when(taskScheduler.schedule(any(Runnable.class), any(Instant.class))).thenAnswer((invocation) -> {
+            ScheduledFuture<?> future = mock(ScheduledFuture.class);
+            scheduled.add(new Scheduled(invocation.getArgument(0), invocation.getArgument(1), future));
+            return future;
+        });
+        ObjectProvider<PlaylistService> playlistServiceProvider = mock(ObjectProvider.class);
+        when(playlistServiceProvider.getObject()).thenReturn(playlistService);
+        engine = new PlaylistPlaybackEngine(
+            playlistTrackRepository,
+            audioAssetRepository,
+            mock(ChannelRepository.class),
+            assetStorageService,
+            mediaOptimizationService,
+            channelEventBus,
+            playlistServiceProvider,
+            taskScheduler,
+            plans::add,
+            5
+        );
+        when(playlistTrackRepository.findAllByPlaylistIdOrderByTrackOrderAsc("p1"))
+            .thenReturn(List.of(track("t1", "a1", 0), track("t2", "a2", 1)));
+    }
+
+    @Test
+    void schedulesPrefetchAndAdvanceFromTrackDuration() {
+        audio("a1", 60_000L, 2.0);
+
+        engine.start("caster", "p1", "t1", 10.0);
+        runPlanning();
+
+        // 50 s of audio left at double speed
+        assertThat(scheduled).hasSize(2);
+        Instant now = Instant.now();
+        assertThat(Duration.between(now, scheduled.get(0).at()).toMillis()).isCloseTo(20_000L, within(500L));
+        assertThat(Duration.between(now, scheduled.get(1).at()).toMillis()).isCloseTo(25_750L, within(500L));
+        assertThat(engine.position("caster", "p1", "t1").orElseThrow()).isCloseTo(10.0, within(0.5));
+
+        scheduled.get(0).task().run();
+        ArgumentCaptor<Object> event = ArgumentCaptor.forClass(Object.class);
+        verify(channelEventBus).publishTransient(eq("caster"), event.capture());
+        PlaylistEvent prefetch = (PlaylistEvent) event.getValue();
+        assertThat(prefetch.getType()).isEqualTo(PlaylistEvent.Type.PLAYLIST_PREFETCH);
+        assertThat(prefetch.getTrackId()).isEqualTo("t2");
+        assertThat(prefetch.getContentUrl()).isEqualTo("/api/channels/caster/assets/a2/content");
+
+        scheduled.get(1).task().run();
+        verify(playlistService).commandTrackEnded("caster", "p1", "t1");
+    }
+
+    @Test
+    void stoppedPlaybackNeitherPrefetchesNorAdvances() {
+        audio("a1", 60_000L, 1.0);
+        engine.start("caster", "p1", "t1", 0.0);
+        runPlanning();
+
+        engine.stop("caster");
+        scheduled.forEach((entry) -> entry.task().run());
+
+        scheduled.forEach((entry) -> verify(entry.future()).cancel(false));
+        verify(channelEventBus, never()).publishTransient(anyString(), any());
+        verify(playlistService, never()).commandTrackEnded(anyString(), anyString(), anyString());
+        assertThat(engine.position("caster", "p1", "t1")).isEmpty();
+    }
+
+    @Test
+    void probesStoredFileOnceWhenDurationIsUnknown() {
+        AudioAsset audio = audio("a1", null, 1.0);
+        when(assetStorageService.loadAssetFile("caster", "a1", "audio/mpeg"))
+            .thenReturn(Optional.of(new AssetContent(new byte[] { 1 }, "audio/mpeg")));
+        when(mediaOptimizationService.probeAudioDurationMillis(any())).thenReturn(Optional.of(30_000L));
+
+        engine.start("caster", "p1", "t1", 0.0);
+        runPlanning();
+
+        assertThat(audio.getDurationMillis()).isEqualTo(30_000L);
+        verify(audioAssetRepository).save(audio);
+        assertThat(scheduled).hasSize(2);
+    }
+
+    @Test
+    void unknownDurationLeavesAdvancingToOverlays() {
+        audio("a1", null, 1.0);
+        when(assetStorageService.loadAssetFile(anyString(), anyString(), anyString())).thenReturn(Optional.empty());
+
+        engine.start("caster", "p1", "t1", 0.0);
+        runPlanning();
+        engine.start("caster", "p1", "t1", 0.0);
+        runPlanning();
+
+        assertThat(scheduled).isEmpty();
+        verify(assetStorageService).loadAssetFile("caster", "a1", "audio/mpeg");
+    }
+
+    private void runPlanning() {
+        plans.remove(plans.size() - 1).run();
+    }
+
+    private AudioAsset audio(String id, Long durationMillis, double speed) {
+        AudioAsset audio = new AudioAsset(id, id);
+        audio.setMediaType("audio/mpeg");
+        audio.setDurationMillis(durationMillis);
+        audio.setAudioSpeed(speed);
+        when(audioAssetRepository.findById(id)).thenReturn(Optional.of(audio));
+        return audio;
+    }
+
+    private static PlaylistTrack track(String id, String audioAssetId, int order) {
+        PlaylistTrack track = new PlaylistTrack("p1", audioAssetId, order);
+        try {
+            var field = PlaylistTrack.class.getDeclaredField("id");
+            field.setAccessible(true);
+            field.set(track, id);
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return track;
+    }
+
+    private record Scheduled(Runnable task, Instant at, ScheduledFuture<?> future) {}
+}
@@ -6,11 +6,15 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import dev.kruhlmann.imgfloat.model.api.response.ActivePlaylistState;
 import dev.kruhlmann.imgfloat.model.api.response.PlaylistEvent;
 import dev.kruhlmann.imgfloat.model.api.response.PlaylistView;
@@ -23,13 +27,18 @@ import dev.kruhlmann.imgfloat.repository.ChannelRepository;
 import dev.kruhlmann.imgfloat.repository.PlaylistRepository;
 import dev.kruhlmann.imgfloat.repository.PlaylistTrackRepository;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalDouble;
 import java.util.concurrent.ConcurrentHashMap;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.web.server.ResponseStatusException;
 
 class PlaylistServiceTest {
@@ -39,6 +48,8 @@ class PlaylistServiceTest {
     private AudioAssetRepository audioAssetRepository;
     private ChannelRepository channelRepository;
     private SimpMessagingTemplate messagingTemplate;
+    private PlaylistPlaybackStateStore playbackStateStore;
+    private PlaylistPlaybackEngine playbackEngine;
     private PlaylistService service;
 
     // In-memory stores so we can inspect saved state
@@ -126,15 +137,27 @@ class PlaylistServiceTest {
 
         // playlistTrackRepository stubs
         when(playlistTrackRepository.findAllByPlaylistIdOrderByTrackOrderAsc(anyString())).thenAnswer(inv ->
-            List.copyOf(tracksByPlaylist.getOrDefault(inv.getArgument(0), List.of())));
-        when(playlistTrackRepository.countByPlaylistId(anyString())).thenAnswer(inv ->
-            tracksByPlaylist.getOrDefault(inv.getArgument(0), List.of()).size());
+            tracksByPlaylist.getOrDefault(inv.getArgument(0), List.of()).stream()
+                .sorted(Comparator.comparingInt(PlaylistTrack::getTrackOrder))
+                .toList());
+        when(playlistTrackRepository.findAllByPlaylistIdInOrderByTrackOrderAsc(any())).thenAnswer(inv -> {
+            Collection<String> ids = inv.getArgument(0);
+            return ids.stream()
+                .flatMap(id -> tracksByPlaylist.getOrDefault(id, List.of()).stream())
+                .sorted(Comparator.comparingInt(PlaylistTrack::getTrackOrder))
+                .toList();
+        });
         when(playlistTrackRepository.save(any(PlaylistTrack.class))).thenAnswer(inv -> {
             PlaylistTrack t = inv.getArgument(0);
             tracksByPlaylist.computeIfAbsent(t.getPlaylistId(), k -> new ArrayList<>()).add(t);
             return t;
         });
         when(playlistTrackRepository.saveAll(any())).thenAnswer(inv -> inv.getArgument(0));
+        doAnswer(inv -> {
+            PlaylistTrack t = inv.getArgument(0);
+            tracksByPlaylist.getOrDefault(t.getPlaylistId(), new ArrayList<>()).remove(t);
+            return null;
+        }).when(playlistTrackRepository).delete(any(PlaylistTrack.class));
         when(playlistTrackRepository.findById(anyString())).thenAnswer(inv -> {
             String id = inv.getArgument(0);
             return tracksByPlaylist.values().stream().flatMap(List::stream)
@@ -144,9 +167,31 @@ class PlaylistServiceTest {
         // audioAssetRepository default (overridden per test)
         when(audioAssetRepository.findAllById(any())).thenReturn(List.of());
 
+        // Applies the bulk position update the way the native query does
+        when(channelRepository.updatePlaylistTrackPositions(anyString())).thenAnswer(inv -> {
+            JsonNode positions = new ObjectMapper().readTree(inv.getArgument(0, String.class));
+            int updated = 0;
+            for (var entry : (Iterable<Map.Entry<String, JsonNode>>) positions::fields) {
+                Channel ch = channels.get(entry.getKey());
+                JsonNode pending = entry.getValue();
+                if (ch != null && ch.isPlaylistIsPlaying() && !ch.isPlaylistIsPaused()
+                        && pending.get("playlistId").asText().equals(ch.getActivePlaylistId())
+                        && pending.get("trackId").asText().equals(ch.getPlaylistCurrentTrackId())) {
+                    ch.setPlaylistTrackPosition(pending.get("position").asDouble());
+                    updated++;
+                }
+            }
+            return updated;
+        });
+
+        playbackStateStore = new PlaylistPlaybackStateStore(
+            channelRepository, new ObjectMapper(), mock(TaskScheduler.class), 15, "");
+        playbackEngine = mock(PlaylistPlaybackEngine.class);
+        when(playbackEngine.position(anyString(), anyString(), anyString())).thenReturn(OptionalDouble.empty());
         service = new PlaylistService(
             playlistRepository, playlistTrackRepository,
-            audioAssetRepository, channelRepository, messagingTemplate);
+            audioAssetRepository, channelRepository, new InProcessChannelEventBus(messagingTemplate),
+            playbackStateStore, playbackEngine, new PlaylistViewCache(""));
     }
 
     // ── createPlaylist ────────────────────────────────────────────────────
@@ -311,6 +356,70 @@ class PlaylistServiceTest {
         assertThat(saved.getPlaylistCurrentTrackId()).isEqualTo("t1");
     }
 
+    // ── listPlaylists ─────────────────────────────────────────────────────
+
+    @Test
+    void listPlaylistsLoadsTracksOfAllPlaylistsInOneQuery() {
+        channel("caster");
+        playlist("p1", "caster", "First");
+        playlist("p2", "caster", "Second");
+        track("t1", "p1", "a1", 0);
+        track("t2", "p2", "a2", 0);
+        track("t3", "p2", "a1", 1);
+        AudioAsset a1 = audioAsset("a1", "One");
+        AudioAsset a2 = audioAsset("a2", "Two");
+        when(audioAssetRepository.findAllById(any())).thenReturn(List.of(a1, a2));
+
+        List<PlaylistView> views = service.listPlaylists("caster");
+
+        assertThat(views).extracting(PlaylistView::id).containsExactlyInAnyOrder("p1", "p2");
+        PlaylistView second = views.stream().filter(v -> v.id().equals("p2")).findFirst().orElseThrow();
+        assertThat(second.tracks()).extracting(t -> t.assetName()).containsExactly("Two", "One");
+        verify(playlistTrackRepository).findAllByPlaylistIdInOrderByTrackOrderAsc(any());
+        verify(playlistTrackRepository, never()).findAllByPlaylistIdOrderByTrackOrderAsc(anyString());
+        verify(audioAssetRepository).findAllById(any());
+    }
+
+    @Test
+    void cachedListingFollowsTrackChangesWithoutReloading() {
+        channel("caster");
+        playlist("p1", "caster", "Mix");
+        track("t1", "p1", "a1", 0);
+        track("t2", "p1", "a2", 1);
+        AudioAsset a1 = audioAsset("a1", "One");
+        AudioAsset a2 = audioAsset("a2", "Two");
+        audioAsset("a3", "Three");
+        when(audioAssetRepository.findAllById(any())).thenReturn(List.of(a1, a2));
+        service.listPlaylists("caster");
+
+        PlaylistView added = service.addTrack("caster", "p1", "a3");
+        String addedId = added.tracks().get(2).id();
+        service.reorderTracks("caster", "p1", List.of(addedId, "t2", "t1"));
+        service.removeTrack("caster", "p1", "t2");
+        service.renamePlaylist("caster", "p1", "Renamed");
+
+        PlaylistView view = service.listPlaylists("caster").get(0);
+        assertThat(view.name()).isEqualTo("Renamed");
+        assertThat(view.tracks()).extracting(t -> t.id()).containsExactly(addedId, "t1");
+        assertThat(view.tracks()).extracting(t -> t.assetName()).containsExactly("Three", "One");
+        assertThat(view.tracks()).extracting(t -> t.trackOrder()).containsExactly(0, 1);
+        verify(playlistRepository, times(1)).findAllByBroadcasterOrderByCreatedAtAsc("caster");
+        verify(audioAssetRepository, times(1)).findAllById(any());
+    }
+
+    @Test
+    void cachedListingFollowsCreatedAndDeletedPlaylists() {
+        channel("caster");
+        playlist("p1", "caster", "Mix");
+        service.listPlaylists("caster");
+
+        PlaylistView created = service.createPlaylist("caster", "New");
+        service.deletePlaylist("caster", "p1");
+
+        assertThat(service.listPlaylists("caster")).extracting(PlaylistView::id).containsExactly(created.id());
+        verify(playlistRepository, times(1)).findAllByBroadcasterOrderByCreatedAtAsc("caster");
+    }
+
     // ── selectPlaylist ────────────────────────────────────────────────────
 
     @Test
@@ -469,6 +578,24 @@ class PlaylistServiceTest {
         assertThat(cap.getValue().getType()).isEqualTo(PlaylistEvent.Type.PLAYLIST_PAUSE);
     }
 
+    @Test
+    void commandPauseWritesReportedPosition() {
+        Channel ch = channel("caster");
+        playlist("p1", "caster", "Mix");
+        ch.setActivePlaylistId("p1");
+        ch.setPlaylistCurrentTrackId("t1");
+        ch.setPlaylistIsPlaying(true);
+        ch.setPlaylistTrackPosition(20.0);
+        service.reportPosition("caster", "p1", "t1", 48.0);
+
+        service.commandPause("caster", "p1");
+
+        assertThat(channels.get("caster").getPlaylistTrackPosition()).isEqualTo(48.0);
+        ActivePlaylistState state = service.getActivePlaylistState("caster").orElseThrow();
+        assertThat(state.isPaused()).isTrue();
+        assertThat(state.trackPosition()).isEqualTo(48.0);
+    }
+
     // ── commandNext ───────────────────────────────────────────────────────
 
     @Test
@@ -509,6 +636,59 @@ class PlaylistServiceTest {
         assertThat(cap.getValue().getType()).isEqualTo(PlaylistEvent.Type.PLAYLIST_ENDED);
     }
 
+    // ── commandTrackEnded ─────────────────────────────────────────────────
+
+    @Test
+    void commandTrackEndedAdvancesOnlyOnceForDuplicateReports() {
+        Channel ch = channel("caster");
+        playlist("p1", "caster", "Mix");
+        track("t1", "p1", "a1", 0);
+        track("t2", "p1", "a2", 1);
+        track("t3", "p1", "a3", 2);
+        ch.setActivePlaylistId("p1");
+        ch.setPlaylistCurrentTrackId("t1");
+        ch.setPlaylistIsPlaying(true);
+
+        service.commandTrackEnded("caster", "p1", "t1");
+        service.commandTrackEnded("caster", "p1", "t1");
+
+        assertThat(channels.get("caster").getPlaylistCurrentTrackId()).isEqualTo("t2");
+        ArgumentCaptor<PlaylistEvent> cap = ArgumentCaptor.forClass(PlaylistEvent.class);
+        verify(messagingTemplate).convertAndSend(anyString(), cap.capture());
+        assertThat(cap.getValue().getType()).isEqualTo(PlaylistEvent.Type.PLAYLIST_NEXT);
+        verify(playbackEngine).trackStartedAfterCommit("caster", "p1", "t2", 0.0);
+    }
+
+    @Test
+    void commandTrackEndedIgnoredWhilePaused() {
+        Channel ch = channel("caster");
+        playlist("p1", "caster", "Mix");
+        track("t1", "p1", "a1", 0);
+        track("t2", "p1", "a2", 1);
+        ch.setActivePlaylistId("p1");
+        ch.setPlaylistCurrentTrackId("t1");
+        ch.setPlaylistIsPlaying(true);
+        ch.setPlaylistIsPaused(true);
+
+        service.commandTrackEnded("caster", "p1", "t1");
+
+        assertThat(channels.get("caster").getPlaylistCurrentTrackId()).isEqualTo("t1");
+        verify(messagingTemplate, never()).convertAndSend(anyString(), any(Object.class));
+    }
+
+    @Test
+    void commandPauseStopsPlaybackClock() {
+        Channel ch = channel("caster");
+        playlist("p1", "caster", "Mix");
+        ch.setActivePlaylistId("p1");
+        ch.setPlaylistCurrentTrackId("t1");
+        ch.setPlaylistIsPlaying(true);
+
+        service.commandPause("caster", "p1");
+
+        verify(playbackEngine).stopAfterCommit("caster");
+    }
+
     // ── commandPrev ───────────────────────────────────────────────────────
 
     @Test
@@ -559,10 +739,56 @@ class PlaylistServiceTest {
         ch.setPlaylistIsPaused(false);
 
         service.reportPosition("caster", "p1", "t1", 55.3);
+        playbackStateStore.flush();
 
         assertThat(channels.get("caster").getPlaylistTrackPosition()).isEqualTo(55.3);
     }
 
+    @Test
+    void reportPositionIsServedFromMemoryAndWrittenOnlyOnFlush() {
+        Channel ch = channel("caster");
+        playlist("p1", "caster", "Mix");
+        ch.setActivePlaylistId("p1");
+        ch.setPlaylistCurrentTrackId("t1");
+        ch.setPlaylistIsPlaying(true);
+
+        for (int second = 1; second <= 10; second++) {
+            service.reportPosition("caster", "p1", "t1", second);
+        }
+
+        verify(channelRepository, never()).save(any(Channel.class));
+        verify(channelRepository, never()).updatePlaylistTrackPositions(anyString());
+        assertThat(channels.get("caster").getPlaylistTrackPosition()).isEqualTo(0.0);
+        assertThat(service.getActivePlaylistState("caster").orElseThrow().trackPosition()).isEqualTo(10.0);
+
+        assertThat(playbackStateStore.flush()).isEqualTo(1);
+        assertThat(playbackStateStore.flush()).isZero();
+        verify(channelRepository).updatePlaylistTrackPositions(anyString());
+        assertThat(channels.get("caster").getPlaylistTrackPosition()).isEqualTo(10.0);
+    }
+
+    @Test
+    void reportPositionFollowsOtherNodesTransitionsWhenRunningAsSeveralNodes() {
+        PlaylistPlaybackStateStore store = new PlaylistPlaybackStateStore(
+            channelRepository, new ObjectMapper(), mock(TaskScheduler.class), 15, "node-a:7000,node-b:7000");
+        Channel ch = channel("caster");
+        ch.setActivePlaylistId("p1");
+        ch.setPlaylistCurrentTrackId("t1");
+        ch.setPlaylistIsPlaying(true);
+        assertThat(store.reportPosition("caster", "p1", "t1", 12.0)).isTrue();
+        assertThat(channels.get("caster").getPlaylistTrackPosition()).isEqualTo(12.0);
+
+        // Another node moves on to the next track.
+        ch.setPlaylistCurrentTrackId("t2");
+        ch.setPlaylistTrackPosition(0.0);
+
+        assertThat(store.get("caster").orElseThrow().currentTrackId()).isEqualTo("t2");
+        assertThat(store.reportPosition("caster", "p1", "t1", 13.0)).isFalse();
+        assertThat(store.reportPosition("caster", "p1", "t2", 1.0)).isTrue();
+        assertThat(store.flush()).isZero();
+        assertThat(channels.get("caster").getPlaylistTrackPosition()).isEqualTo(1.0);
+    }
+
     @Test
     void reportPositionIgnoredWhenNotPlaying() {
         Channel ch = channel("caster");
@@ -0,0 +1,50 @@
+package dev.kruhlmann.imgfloat.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class PreviewAuthorizationCacheTest {
+
+    private final AtomicInteger checks = new AtomicInteger();
+
+    @Test
+    void remembersSuccessfulChecksUntilTheUserIsRemovedAsAdmin() {
+        PreviewAuthorizationCache cache = new PreviewAuthorizationCache("");
+
+        cache.authorize("Caster", "mod", checks::incrementAndGet);
+        cache.authorize("caster", "mod", checks::incrementAndGet);
+        assertThat(checks).hasValue(1);
+
+        cache.evictAfterCommit("caster", "Mod");
+        cache.authorize("caster", "mod", checks::incrementAndGet);
+
+        assertThat(checks).hasValue(2);
+    }
+
+    @Test
+    void removingASystemAdministratorForgetsEveryChannel() {
+        PreviewAuthorizationCache cache = new PreviewAuthorizationCache("");
+        cache.authorize("alpha", "admin", checks::incrementAndGet);
+        cache.authorize("beta", "admin", checks::incrementAndGet);
+        cache.authorize("beta", "other", checks::incrementAndGet);
+
+        cache.evictUserAfterCommit("admin");
+        cache.authorize("alpha", "admin", checks::incrementAndGet);
+        cache.authorize("beta", "admin", checks::incrementAndGet);
+        cache.authorize("beta", "other", checks::incrementAndGet);
+
+        assertThat(checks).hasValue(5);
+    }
+
+    @Test
+    void checksEveryPreviewWhenRunningAsSeveralNodes() {
+        PreviewAuthorizationCache cache = new PreviewAuthorizationCache("node-a:7000,node-b:7000");
+
+        cache.authorize("caster", "mod", checks::incrementAndGet);
+        cache.authorize("caster", "mod", checks::incrementAndGet);
+
+        assertThat(checks).hasValue(2);
+    }
+}
@@ -0,0 +1,120 @@
+package dev.kruhlmann.imgfloat.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class RateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+
+    @Test
+    void allowsABurstAndRefillsOverThePeriod() {
+        RateLimiter limiter = new RateLimiter(5, Duration.ofSeconds(10), 100, now::get);
+
+        for (int index = 0; index < 5; index++) {
+            assertThat(limiter.tryAcquire("ip:1")).isZero();
+        }
+        assertThat(limiter.tryAcquire("ip:1")).isEqualTo(2000);
+        assertThat(limiter.tryAcquire("ip:2")).isZero();
+
+        advance(Duration.ofMillis(1500));
+        assertThat(limiter.tryAcquire("ip:1")).isBetween(500L, 501L);
+        advance(Duration.ofMillis(500));
+        assertThat(limiter.tryAcquire("ip:1")).isZero();
+        assertThat(limiter.tryAcquire("ip:1")).isPositive();
+    }
+
+    @Test
+    void forgetsTheLeastRecentlySeenKeysBeyondTheLimit() {
+        RateLimiter limiter = new RateLimiter(1, Duration.ofHours(1), 16 * 4, now::get);
+
+        for (int index = 0; index < 10_000; index++) {
+            limiter.tryAcquire("ip:" + index);
+        }
+
+        assertThat(limiter.trackedKeys()).isLessThanOrEqualTo(16 * 4);
+        assertThat(limiter.tryAcquire("ip:9999")).isPositive();
+    }
+
+    @Test
+    void dropsBucketsThatHaveBeenIdleForAPeriod() {
+        RateLimiter limiter = new RateLimiter(2, Duration.ofMinutes(1), 1000, now::get);
+        for (int index = 0; index < 100; index++) {
+            limiter.tryAcquire("ip:" + index);
+        }
+
+        advance(Duration.ofSeconds(59));
+        limiter.tryAcquire("ip:0");
+        advance(Duration.ofSeconds(1));
+
+        assertThat(limiter.trackedKeys()).isEqualTo(1);
+    }
+
+    @Test
+    void parsesConfiguredLimits() {
+        RateLimiter limiter = RateLimitService.parse("30/10m", 1000);
+
+        assertThat(limiter.getCapacity()).isEqualTo(30);
+        assertThat(limiter.getPeriod()).isEqualTo(Duration.ofMinutes(10));
+        assertThat(RateLimitService.parse("off", 1000)).isNull();
+        assertThat(RateLimitService.parse("0", 1000)).isNull();
+        assertThatThrownBy(() -> RateLimitService.parse("30 per minute", 1000)).isInstanceOf(
+            IllegalArgumentException.class
+        );
+    }
+
+    @Test
+    void countsRejectionsPerPolicy() {
+        RateLimitService service = new RateLimitService("1/1h", "off", "1/1m", "1/1m", "1/1s", 1000);
+
+        assertThat(service.tryAcquire(RateLimitPolicy.COPYRIGHT_REPORTS, "ip:1")).isZero();
+        assertThat(service.tryAcquire(RateLimitPolicy.COPYRIGHT_REPORTS, "ip:1")).isPositive();
+        assertThat(service.tryAcquire(RateLimitPolicy.UPLOADS, "ip:1")).isZero();
+        assertThat(service.tryAcquire(RateLimitPolicy.UPLOADS, "ip:1")).isZero();
+
+        assertThat(service.report().policies())
+            .filteredOn((policy) -> policy.policy() == RateLimitPolicy.COPYRIGHT_REPORTS)
+            .singleElement()
+            .satisfies((policy) -> {
+                assertThat(policy.allowed()).isEqualTo(1);
+                assertThat(policy.rejected()).isEqualTo(1);
+                assertThat(policy.trackedClients()).isEqualTo(1);
+            });
+        assertThat(service.report().policies())
+            .filteredOn((policy) -> policy.policy() == RateLimitPolicy.UPLOADS)
+            .singleElement()
+            .satisfies((policy) -> assertThat(policy.enabled()).isFalse());
+    }
+
+    @Test
+    void publishesCountsAsMetersTaggedByPolicy() {
+        RateLimitService service = new RateLimitService("1/1h", "off", "1/1m", "1/1m", "1/1s", 1000);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        service.bindTo(registry);
+
+        service.tryAcquire(RateLimitPolicy.COPYRIGHT_REPORTS, "ip:1");
+        service.tryAcquire(RateLimitPolicy.COPYRIGHT_REPORTS, "ip:1");
+        service.tryAcquire(RateLimitPolicy.COPYRIGHT_REPORTS, "ip:1");
+
+        assertThat(requests(registry, "copyright_reports", "allowed")).isEqualTo(1);
+        assertThat(requests(registry, "copyright_reports", "rejected")).isEqualTo(2);
+        assertThat(requests(registry, "uploads", "allowed")).isZero();
+    }
+
+    private static double requests(SimpleMeterRegistry registry, String policy, String result) {
+        return registry
+            .get("imgfloat.rate.limit.requests")
+            .tags("policy", policy, "result", result)
+            .functionCounter()
+            .count();
+    }
+
+    private void advance(Duration duration) {
+        now.addAndGet(duration.toNanos());
+    }
+}
@@ -2,68 +2,172 @@ package dev.kruhlmann.imgfloat.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import dev.kruhlmann.imgfloat.model.db.imgfloat.AudioAsset;
+import dev.kruhlmann.imgfloat.model.AssetType;
+import dev.kruhlmann.imgfloat.model.api.response.AssetEvent;
+import dev.kruhlmann.imgfloat.model.db.imgfloat.Asset;
 import dev.kruhlmann.imgfloat.model.db.imgfloat.Settings;
 import dev.kruhlmann.imgfloat.model.db.imgfloat.VisualAsset;
+import dev.kruhlmann.imgfloat.repository.AssetRepository;
 import dev.kruhlmann.imgfloat.repository.AudioAssetRepository;
 import dev.kruhlmann.imgfloat.repository.SettingsRepository;
 import dev.kruhlmann.imgfloat.repository.VisualAssetRepository;
+import java.time.Instant;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
 
 class SettingsServiceTest {
 
     private SettingsRepository repo;
+    private AssetRepository assetRepository;
     private VisualAssetRepository visualAssetRepository;
     private AudioAssetRepository audioAssetRepository;
+    private SimpMessagingTemplate messagingTemplate;
     private SettingsService service;
 
     @BeforeEach
     void setup() {
         repo = mock(SettingsRepository.class);
+        assetRepository = mock(AssetRepository.class);
         visualAssetRepository = mock(VisualAssetRepository.class);
         audioAssetRepository = mock(AudioAssetRepository.class);
-        when(visualAssetRepository.findAll()).thenReturn(List.of());
-        when(audioAssetRepository.findAll()).thenReturn(List.of());
-        service = new SettingsService(repo, visualAssetRepository, audioAssetRepository, new ObjectMapper());
+        messagingTemplate = mock(SimpMessagingTemplate.class);
+        service = new SettingsService(
+            repo,
+            assetRepository,
+            visualAssetRepository,
+            audioAssetRepository,
+            new InProcessChannelEventBus(messagingTemplate),
+            new ObjectMapper(),
+            ""
+        );
     }
 
     @Test
     void initDefaultsCreatesSettingsWhenAbsent() {
         when(repo.existsById(1)).thenReturn(false);
+        when(repo.save(any(Settings.class))).thenAnswer((invocation) -> invocation.getArgument(0));
         service.initDefaults();
         verify(repo).save(any(Settings.class));
+        assertThat(service.getVersion()).isEqualTo(1);
     }
 
     @Test
     void initDefaultsSkipsWhenAlreadyPresent() {
         when(repo.existsById(1)).thenReturn(true);
+        when(repo.findById(1)).thenReturn(Optional.of(Settings.defaults()));
         service.initDefaults();
         verify(repo, never()).save(any());
     }
 
     @Test
-    void getReturnsStoredSettings() {
+    void getServesSnapshotWithoutQueryingRepositoryAgain() {
         Settings stored = Settings.defaults();
         stored.setId(1);
+        when(repo.existsById(1)).thenReturn(true);
+        when(repo.findById(1)).thenReturn(Optional.of(stored));
+        service.initDefaults();
+
+        Settings first = service.get();
+        Settings second = service.get();
+
+        assertThat(first).isNotSameAs(stored).isNotSameAs(second);
+        assertThat(first.getMaxAssetVolumeFraction()).isEqualTo(stored.getMaxAssetVolumeFraction());
+        verify(repo, times(1)).findById(1);
+    }
+
+    @Test
+    void getReadsOtherNodesWritesWhenRunningAsSeveralNodes() {
+        SettingsService node = new SettingsService(
+            repo,
+            assetRepository,
+            visualAssetRepository,
+            audioAssetRepository,
+            new InProcessChannelEventBus(messagingTemplate),
+            new ObjectMapper(),
+            "node-a:7000,node-b:7000"
+        );
+        Settings stored = Settings.defaults();
+        when(repo.findById(1)).thenReturn(Optional.of(stored));
+        assertThat(node.get().getCanvasFramesPerSecond()).isEqualTo(60);
+        long version = node.getVersion();
+
+        stored.setCanvasFramesPerSecond(30);
+
+        assertThat(node.get().getCanvasFramesPerSecond()).isEqualTo(30);
+        assertThat(node.getVersion()).isGreaterThan(version);
+    }
+
+    @Test
+    void mutatingReturnedSettingsDoesNotChangeSnapshot() {
+        Settings stored = Settings.defaults();
+        when(repo.findById(1)).thenReturn(Optional.of(stored));
+
+        service.get().setCanvasFramesPerSecond(1);
+
+        assertThat(service.get().getCanvasFramesPerSecond()).isEqualTo(60);
+    }
+
+    @Test
+    void writesSwapSnapshotAndBumpVersion() {
+        Settings stored = Settings.defaults();
         when(repo.findById(1)).thenReturn(Optional.of(stored));
-        assertThat(service.get()).isSameAs(stored);
+        when(repo.save(any(Settings.class))).thenAnswer((invocation) -> invocation.getArgument(0));
+        when(visualAssetRepository.findIdsOutsideLimits(anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyInt()))
+            .thenReturn(List.of());
+        when(
+            audioAssetRepository.findIdsOutsideLimits(
+                anyDouble(),
+                anyDouble(),
+                anyDouble(),
+                anyDouble(),
+                anyDouble(),
+                anyDouble(),
+                anyInt()
+            )
+        ).thenReturn(List.of());
+        long initial = service.getVersion();
+
+        Settings updated = Settings.defaults();
+        updated.setCanvasFramesPerSecond(30);
+        service.save(updated);
+        assertThat(service.getVersion()).isEqualTo(initial + 1);
+        assertThat(service.get().getCanvasFramesPerSecond()).isEqualTo(30);
+
+        Instant syncedAt = Instant.parse("2024-01-01T00:00:00Z");
+        service.updateLastEmoteSyncAt(syncedAt);
+        assertThat(service.getVersion()).isEqualTo(initial + 2);
+        assertThat(service.get().getLastEmoteSyncAt()).isEqualTo(syncedAt);
+        assertThat(service.get().getCanvasFramesPerSecond()).isEqualTo(30);
+        verify(repo, times(1)).findById(1);
     }
 
     @Test
-    void saveClampsVisualAssetSpeedToNewRange() {
-        VisualAsset visual = new VisualAsset();
-        visual.setSpeed(5.0); // exceeds max
+    void saveClampsOutOfRangeVisualAssetsAndNotifiesTheirChannel() {
+        Asset asset = new Asset("caster", AssetType.IMAGE);
+        String assetId = asset.getId();
+        VisualAsset visual = new VisualAsset(assetId, "image.png", 100, 100);
+        visual.setSpeed(2.0);
         visual.setAudioVolume(0.5);
-        when(visualAssetRepository.findAll()).thenReturn(List.of(visual));
+        when(visualAssetRepository.findIdsOutsideLimits(anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyInt()))
+            .thenReturn(List.of(assetId));
+        when(visualAssetRepository.findByIdIn(List.of(assetId))).thenReturn(List.of(visual));
+        when(assetRepository.findAllById(List.of(assetId))).thenReturn(List.of(asset));
 
         Settings settings = Settings.defaults();
         settings.setMaxAssetPlaybackSpeedFraction(2.0);
@@ -73,17 +177,25 @@ class SettingsServiceTest {
 
         service.save(settings);
 
-        verify(visualAssetRepository).saveAll(any());
-        assertThat(visual.getSpeed()).isEqualTo(2.0);
+        verify(visualAssetRepository).clampToLimits(List.of(assetId), 0.1, 2.0, 0.01, 5.0);
+        verify(visualAssetRepository, never()).findAll();
+        ArgumentCaptor<AssetEvent> event = ArgumentCaptor.forClass(AssetEvent.class);
+        verify(messagingTemplate).convertAndSend(eq("/topic/channel/caster"), event.capture());
+        assertThat(event.getValue().getPatch().speed()).isEqualTo(2.0);
     }
 
     @Test
-    void saveClampsAudioAssetPitchToNewRange() {
-        AudioAsset audio = new AudioAsset();
-        audio.setAudioSpeed(1.0);
-        audio.setAudioPitch(3.0); // exceeds max
-        audio.setAudioVolume(0.5);
-        when(audioAssetRepository.findAll()).thenReturn(List.of(audio));
+    void saveClampsOutOfRangeAudioAssets() {
+        when(audioAssetRepository.findIdsOutsideLimits(
+            anyDouble(),
+            anyDouble(),
+            anyDouble(),
+            anyDouble(),
+            anyDouble(),
+            anyDouble(),
+            anyInt()
+        ))
+            .thenReturn(List.of("audio-1"));
 
         Settings settings = Settings.defaults();
         settings.setMaxAssetAudioPitchFraction(2.0);
@@ -93,7 +205,39 @@ class SettingsServiceTest {
 
         service.save(settings);
 
-        verify(audioAssetRepository).saveAll(any());
-        assertThat(audio.getAudioPitch()).isEqualTo(2.0);
+        verify(audioAssetRepository).clampToLimits(List.of("audio-1"), 0.1, 4.0, 0.5, 2.0, 0.01, 5.0);
+        verify(audioAssetRepository, never()).findAll();
+    }
+
+    @Test
+    void saveMovesUnreachableRangesToValuesAssetsCanHave() {
+        when(visualAssetRepository.count()).thenReturn(1000L);
+        when(visualAssetRepository.findIdsOutsideLimits(anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyInt()))
+            .thenReturn(Collections.nCopies(500, "visual"));
+
+        Settings settings = Settings.defaults();
+        settings.setMinAssetVolumeFraction(1.5);
+        settings.setMaxAssetVolumeFraction(2.0);
+        settings.setMinAssetAudioPitchFraction(0.01);
+        settings.setMaxAssetAudioPitchFraction(0.05);
+        settings.setId(1);
+        when(repo.save(any())).thenReturn(settings);
+
+        service.save(settings);
+
+        verify(visualAssetRepository, times(2)).findIdsOutsideLimits(0.1, 4.0, 1.0, 2.0, 500);
+        verify(audioAssetRepository).findIdsOutsideLimits(0.1, 4.0, 0.01, 0.1, 1.0, 2.0, 500);
+    }
+
+    @Test
+    void saveDoesNotNotifyWhenNoAssetsAreOutOfRange() {
+        Settings settings = Settings.defaults();
+        settings.setId(1);
+        when(repo.save(any())).thenReturn(settings);
+
+        service.save(settings);
+
+        verify(visualAssetRepository, never()).clampToLimits(any(), anyDouble(), anyDouble(), anyDouble(), anyDouble());
+        verifyNoInteractions(messagingTemplate);
     }
 }
@@ -29,7 +29,7 @@ class SystemAdministratorServiceTest {
         when(environment.getProperty("IMGFLOAT_INITIAL_TWITCH_USERNAME_SYSADMIN")).thenReturn("admin");
         when(environment.getProperty("org.springframework.boot.test.context.SpringBootTestContextBootstrapper"))
             .thenReturn(null);
-        service = new SystemAdministratorService(repo, environment);
+        service = new SystemAdministratorService(repo, environment, new PreviewAuthorizationCache(""));
     }
 
     @Test
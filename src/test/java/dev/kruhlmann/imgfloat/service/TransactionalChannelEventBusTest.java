@@ -0,0 +1,166 @@
+package dev.kruhlmann.imgfloat.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import dev.kruhlmann.imgfloat.model.api.response.AssetEvent;
+import dev.kruhlmann.imgfloat.model.api.response.AssetPatch;
+import dev.kruhlmann.imgfloat.model.api.response.ChannelEventBatch;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+class TransactionalChannelEventBusTest {
+
+    private final ChannelEventBus delegate = mock(ChannelEventBus.class);
+    private final TransactionalChannelEventBus bus = new TransactionalChannelEventBus(delegate);
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.unbindResourceIfPossible(bus);
+    }
+
+    @Test
+    void publishesImmediatelyOutsideTransactions() {
+        AssetEvent event = AssetEvent.deleted("caster", "asset-1");
+
+        bus.publish("caster", event);
+
+        verify(delegate).publish("caster", event);
+    }
+
+    @Test
+    void mergesPatchesAndLayerOrdersIntoOneBatchAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        bus.publish("Caster", AssetEvent.updated("caster", patch("asset-1", 10.0, null)));
+        bus.publish("caster", AssetEvent.updated("caster", patch("asset-2", 5.0, null)));
+        bus.publish("caster", AssetEvent.updated("caster", patch("asset-1", null, 20.0)));
+        bus.publish("caster", AssetEvent.order("caster", List.of("asset-1", "asset-2"), null));
+        bus.publish("caster", AssetEvent.order("caster", List.of("asset-2", "asset-1"), null));
+        verify(delegate, never()).publish(any(), any());
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        ArgumentCaptor<Object> published = ArgumentCaptor.forClass(Object.class);
+        verify(delegate).publish(eq("caster"), published.capture());
+        ChannelEventBatch batch = (ChannelEventBatch) published.getValue();
+        assertThat(batch.type()).isEqualTo(ChannelEventBatch.TYPE);
+        assertThat(batch.events()).hasSize(3);
+        assertThat(((AssetEvent) batch.events().get(0)).getPatch().id()).isEqualTo("asset-2");
+        AssetEvent update = (AssetEvent) batch.events().get(1);
+        assertThat(update.getPatch().x()).isEqualTo(10.0);
+        assertThat(update.getPatch().y()).isEqualTo(20.0);
+        AssetEvent order = (AssetEvent) batch.events().get(2);
+        assertThat(order.getLayerOrder()).containsExactly("asset-2", "asset-1");
+    }
+
+    @Test
+    void patchesAndPartialOrdersDoNotMovePastALayerOrder() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        bus.publish("caster", AssetEvent.updated("caster", patch("asset-1", 10.0, null)));
+        bus.publish("caster", AssetEvent.order("caster", List.of("asset-1", "asset-2"), List.of("script-1")));
+        bus.publish("caster", AssetEvent.updated("caster", patch("asset-1", 30.0, null)));
+        bus.publish("caster", AssetEvent.order("caster", List.of("asset-2", "asset-1"), null));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        ArgumentCaptor<Object> published = ArgumentCaptor.forClass(Object.class);
+        verify(delegate).publish(eq("caster"), published.capture());
+        List<Object> events = ((ChannelEventBatch) published.getValue()).events();
+        assertThat(events).hasSize(4);
+        assertThat(((AssetEvent) events.get(0)).getPatch().x()).isEqualTo(10.0);
+        assertThat(((AssetEvent) events.get(1)).getLayerOrder()).containsExactly("asset-1", "asset-2");
+        assertThat(((AssetEvent) events.get(2)).getPatch().x()).isEqualTo(30.0);
+        assertThat(((AssetEvent) events.get(3)).getLayerOrder()).containsExactly("asset-2", "asset-1");
+    }
+
+    @Test
+    void plainTextNoticesKeepTheirPlaceBetweenBatches() {
+        TransactionSynchronizationManager.initSynchronization();
+        AssetEvent first = AssetEvent.deleted("caster", "asset-1");
+        AssetEvent second = AssetEvent.deleted("caster", "asset-2");
+        AssetEvent third = AssetEvent.deleted("caster", "asset-3");
+
+        bus.publish("caster", first);
+        bus.publish("caster", second);
+        bus.publish("caster", "notice");
+        bus.publish("caster", third);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        ArgumentCaptor<Object> published = ArgumentCaptor.forClass(Object.class);
+        verify(delegate, times(3)).publish(eq("caster"), published.capture());
+        assertThat(published.getAllValues().get(0)).isEqualTo(ChannelEventBatch.of("caster", List.of(first, second)));
+        assertThat(published.getAllValues().get(1)).isEqualTo("notice");
+        assertThat(published.getAllValues().get(2)).isSameAs(third);
+    }
+
+    @Test
+    void patchesDoNotJumpOverDeletion() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        bus.publish("caster", AssetEvent.updated("caster", patch("asset-1", 10.0, null)));
+        bus.publish("caster", AssetEvent.deleted("caster", "asset-1"));
+        bus.publish("caster", AssetEvent.updated("caster", patch("asset-1", 20.0, null)));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        ArgumentCaptor<Object> published = ArgumentCaptor.forClass(Object.class);
+        verify(delegate).publish(eq("caster"), published.capture());
+        assertThat(((ChannelEventBatch) published.getValue()).events()).hasSize(3);
+    }
+
+    @Test
+    void singleEventIsPublishedUnwrapped() {
+        TransactionSynchronizationManager.initSynchronization();
+        AssetEvent event = AssetEvent.deleted("caster", "asset-1");
+
+        bus.publish("caster", event);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        verify(delegate).publish("caster", event);
+    }
+
+    @Test
+    void rollbackPublishesNothing() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        bus.publish("caster", AssetEvent.deleted("caster", "asset-1"));
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        verify(delegate, never()).publish(any(), any());
+        assertThat(TransactionSynchronizationManager.hasResource(bus)).isFalse();
+    }
+
+    @Test
+    void transientEventsBypassTheTransaction() {
+        TransactionSynchronizationManager.initSynchronization();
+        AssetEvent preview = AssetEvent.preview("caster", "asset-1", patch("asset-1", 1.0, null));
+
+        bus.publishTransient("caster", preview);
+
+        verify(delegate).publishTransient("caster", preview);
+    }
+
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        if (status == TransactionSynchronization.STATUS_COMMITTED) {
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        }
+        synchronizations.forEach((synchronization) -> synchronization.afterCompletion(status));
+    }
+
+    private static AssetPatch patch(String assetId, Double x, Double y) {
+        return new AssetPatch(assetId, x, y, null, null, null, null, null, null, null, null, null, null, null, null);
+    }
+}
@@ -0,0 +1,72 @@
+package dev.kruhlmann.imgfloat.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import dev.kruhlmann.imgfloat.model.api.response.AssetEvent;
+import dev.kruhlmann.imgfloat.model.api.response.AssetPatch;
+import java.time.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.core.MessagePostProcessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.TaskScheduler;
+
+class TransformPreviewCoalescerTest {
+
+    private SimpMessagingTemplate messagingTemplate;
+    private TaskScheduler taskScheduler;
+    private TransformPreviewCoalescer coalescer;
+
+    @BeforeEach
+    void setup() {
+        messagingTemplate = mock(SimpMessagingTemplate.class);
+        taskScheduler = mock(TaskScheduler.class);
+        coalescer = new TransformPreviewCoalescer(new InProcessChannelEventBus(messagingTemplate), taskScheduler, 30);
+    }
+
+    @Test
+    void flushPublishesOnlyLatestPreviewPerAsset() {
+        coalescer.submit("Caster", "a", patch("a", 1.0));
+        coalescer.submit("caster", "a", patch("a", 2.0));
+        coalescer.submit("caster", "b", patch("b", 3.0));
+
+        assertThat(coalescer.flush()).isEqualTo(2);
+
+        ArgumentCaptor<Object> events = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate, times(2))
+            .convertAndSend(eq("/topic/channel/caster"), events.capture(), any(MessagePostProcessor.class));
+        assertThat(events.getAllValues())
+            .extracting((event) -> ((AssetEvent) event).getPatch().x())
+            .containsExactlyInAnyOrder(2.0, 3.0);
+        assertThat(coalescer.flush()).isZero();
+    }
+
+    @Test
+    void discardedPreviewIsNeverPublished() {
+        coalescer.submit("caster", "a", patch("a", 1.0));
+        coalescer.discard("CASTER", "a");
+
+        coalescer.flush();
+
+        verify(messagingTemplate, never()).convertAndSend(anyString(), any(Object.class), any(MessagePostProcessor.class));
+    }
+
+    @Test
+    void flushesAtConfiguredTickRate() {
+        coalescer.scheduleFlush();
+
+        verify(taskScheduler).scheduleAtFixedRate(any(Runnable.class), eq(Duration.ofNanos(33_333_333)));
+    }
+
+    private AssetPatch patch(String id, double x) {
+        return new AssetPatch(id, x, null, null, null, null, null, null, null, null, null, null, null, null, null);
+    }
+}
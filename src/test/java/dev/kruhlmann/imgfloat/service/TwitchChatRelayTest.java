@@ -0,0 +1,304 @@
+package dev.kruhlmann.imgfloat.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import dev.kruhlmann.imgfloat.config.StompRateLimitInterceptor;
+import dev.kruhlmann.imgfloat.model.api.response.TwitchChatMessage;
+import dev.kruhlmann.imgfloat.repository.ChannelRepository;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+class TwitchChatRelayTest {
+
+    private final BlockingQueue<ChatClient> clients = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Map.Entry<String, TwitchChatMessage>> published = new LinkedBlockingQueue<>();
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+    private final ChannelRepository channelRepository = mock(ChannelRepository.class);
+    private final ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+    private volatile CountDownLatch brokerStalled = new CountDownLatch(0);
+    private ServerSocket server;
+    private TwitchChatRelay relay;
+
+    @BeforeEach
+    void setup() throws IOException {
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    clients.add(new ChatClient(server.accept()));
+                } catch (IOException ex) {
+                    return;
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+        scheduler.setPoolSize(2);
+        scheduler.initialize();
+        for (String channel : List.of("alpha", "beta", "gamma", "delta")) {
+            when(channelRepository.existsById(channel)).thenReturn(true);
+        }
+        doAnswer((invocation) -> {
+            brokerStalled.await(5, TimeUnit.SECONDS);
+            published.add(Map.entry(invocation.getArgument(0), invocation.getArgument(1)));
+            return null;
+        })
+            .when(messagingTemplate)
+            .convertAndSend(anyString(), any(Object.class));
+    }
+
+    @AfterEach
+    void teardown() throws IOException {
+        if (relay != null) {
+            relay.stop();
+        }
+        scheduler.shutdown();
+        server.close();
+    }
+
+    @Test
+    void relaysChatOfSubscribedChannel() throws Exception {
+        relay = relay(0);
+        relay.onSubscribe(subscribe("s1", "0", "/topic/channel/alpha/chat"));
+
+        ChatClient client = clients.poll(5, TimeUnit.SECONDS);
+        assertThat(client).isNotNull();
+        assertThat(client.awaitLine("JOIN")).isEqualTo("JOIN #alpha");
+        client.send("PING :tmi.twitch.tv");
+        assertThat(client.awaitLine("PONG")).isEqualTo("PONG :tmi.twitch.tv");
+        client.send("@display-name=Alice;emotes=25:0-4 :alice!alice@alice.tmi.twitch.tv PRIVMSG #alpha :Kappa hi");
+
+        Map.Entry<String, TwitchChatMessage> relayed = published.poll(5, TimeUnit.SECONDS);
+        assertThat(relayed).isNotNull();
+        assertThat(relayed.getKey()).isEqualTo("/topic/channel/alpha/chat");
+        assertThat(relayed.getValue().channel()).isEqualTo("#alpha");
+        assertThat(relayed.getValue().displayName()).isEqualTo("Alice");
+        assertThat(relayed.getValue().message()).isEqualTo("Kappa hi");
+        assertThat(relayed.getValue().tags()).containsEntry("emotes", "25:0-4");
+    }
+
+    @Test
+    void sharesOneConnectionAndLeavesAfterTheLastSubscriber() throws Exception {
+        relay = relay(0);
+        relay.onSubscribe(subscribe("s1", "0", "/topic/channel/alpha/chat"));
+        relay.onSubscribe(subscribe("s2", "0", "/topic/channel/alpha/chat"));
+        ChatClient client = clients.poll(5, TimeUnit.SECONDS);
+        assertThat(client).isNotNull();
+        client.awaitLine("JOIN");
+
+        Message<byte[]> disconnect = message(SimpMessageType.DISCONNECT, "s1", null, null);
+        relay.onSessionDisconnect(new SessionDisconnectEvent(this, disconnect, "s1", CloseStatus.NORMAL));
+        assertThat(clients.poll(200, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(relay.connection("alpha")).isNotNull();
+
+        relay.onUnsubscribe(new SessionUnsubscribeEvent(this, message(SimpMessageType.UNSUBSCRIBE, "s2", "0", null)));
+
+        assertThat(client.awaitClosed()).isTrue();
+        assertThat(waitFor(() -> relay.connection("alpha") == null)).isTrue();
+    }
+
+    @Test
+    void ignoresUnknownChannelsAndOtherTopics() throws Exception {
+        relay = relay(0);
+        relay.onSubscribe(subscribe("s1", "0", "/topic/channel/ghost/chat"));
+        relay.onSubscribe(subscribe("s1", "1", "/topic/channel/Not a login/chat"));
+        relay.onSubscribe(subscribe("s1", "2", "/topic/channel/alpha"));
+
+        assertThat(clients.poll(300, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    void limitsTheChannelsEachSessionAndAddressMayFollow() throws Exception {
+        relay = relay(0);
+        relay.onSubscribe(subscribe("s1", "0", "/topic/channel/alpha/chat", "10.0.0.1"));
+        relay.onSubscribe(subscribe("s1", "1", "/topic/channel/beta/chat", "10.0.0.1"));
+        relay.onSubscribe(subscribe("s1", "2", "/topic/channel/alpha/chat", "10.0.0.1"));
+        relay.onSubscribe(subscribe("s1", "3", "/topic/channel/gamma/chat", "10.0.0.1"));
+        relay.onSubscribe(subscribe("s2", "0", "/topic/channel/gamma/chat", "10.0.0.1"));
+        relay.onSubscribe(subscribe("s3", "0", "/topic/channel/delta/chat", "10.0.0.1"));
+        relay.onSubscribe(subscribe("s4", "0", "/topic/channel/alpha/chat", "10.0.0.1"));
+
+        assertThat(waitFor(() -> clients.size() == 3)).isTrue();
+        assertThat(relay.connection("gamma")).isNotNull();
+        assertThat(relay.connection("delta")).isNull();
+
+        Message<byte[]> disconnect = message(SimpMessageType.DISCONNECT, "s2", null, null);
+        relay.onSessionDisconnect(new SessionDisconnectEvent(this, disconnect, "s2", CloseStatus.NORMAL));
+        relay.onSubscribe(subscribe("s5", "0", "/topic/channel/delta/chat", "10.0.0.1"));
+
+        assertThat(waitFor(() -> relay.connection("delta") != null)).isTrue();
+    }
+
+    @Test
+    void dropsMessagesAboveTheRateCap() throws Exception {
+        relay = relay(5);
+        relay.onSubscribe(subscribe("s1", "0", "/topic/channel/alpha/chat"));
+        ChatClient client = clients.poll(5, TimeUnit.SECONDS);
+        assertThat(client).isNotNull();
+        client.awaitLine("JOIN");
+
+        for (int index = 0; index < 50; index++) {
+            client.send(":bob!bob@bob PRIVMSG #alpha :spam " + index);
+        }
+
+        TwitchChatConnection connection = relay.connection("alpha");
+        assertThat(waitFor(() -> connection.published() + connection.dropped() == 50)).isTrue();
+        assertThat(connection.published()).isBetween(5L, 7L);
+    }
+
+    @Test
+    void slowBrokerDropsTheOldestQueuedMessages() throws Exception {
+        relay = relay(0);
+        brokerStalled = new CountDownLatch(1);
+        relay.onSubscribe(subscribe("s1", "0", "/topic/channel/alpha/chat"));
+        ChatClient client = clients.poll(5, TimeUnit.SECONDS);
+        assertThat(client).isNotNull();
+        client.awaitLine("JOIN");
+
+        int sent = TwitchChatRelay.QUEUE_CAPACITY * 3;
+        for (int index = 0; index < sent; index++) {
+            client.send(":bob!bob@bob PRIVMSG #alpha :line " + index);
+        }
+        TwitchChatConnection connection = relay.connection("alpha");
+        assertThat(waitFor(() -> connection.dropped() >= sent - TwitchChatRelay.QUEUE_CAPACITY - 1)).isTrue();
+        brokerStalled.countDown();
+
+        assertThat(waitFor(() -> connection.published() + connection.dropped() == sent)).isTrue();
+        assertThat(connection.published()).isLessThanOrEqualTo(TwitchChatRelay.QUEUE_CAPACITY + 1);
+        assertThat(published.stream().reduce((first, second) -> second).orElseThrow().getValue().message())
+            .isEqualTo("line " + (sent - 1));
+    }
+
+    private TwitchChatRelay relay(double messagesPerSecond) {
+        return new TwitchChatRelay(
+            messagingTemplate,
+            channelRepository,
+            scheduler,
+            true,
+            "irc://127.0.0.1:" + server.getLocalPort(),
+            10,
+            2,
+            3,
+            messagesPerSecond,
+            0
+        );
+    }
+
+    private SessionSubscribeEvent subscribe(String sessionId, String subscriptionId, String destination) {
+        return subscribe(sessionId, subscriptionId, destination, null);
+    }
+
+    private SessionSubscribeEvent subscribe(
+        String sessionId,
+        String subscriptionId,
+        String destination,
+        String remoteAddress
+    ) {
+        Message<byte[]> message = message(SimpMessageType.SUBSCRIBE, sessionId, subscriptionId, destination);
+        if (remoteAddress != null) {
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+            accessor.setSessionAttributes(Map.of(StompRateLimitInterceptor.REMOTE_ADDRESS_ATTRIBUTE, remoteAddress));
+            message = MessageBuilder.createMessage(message.getPayload(), accessor.getMessageHeaders());
+        }
+        return new SessionSubscribeEvent(this, message);
+    }
+
+    private static Message<byte[]> message(
+        SimpMessageType type,
+        String sessionId,
+        String subscriptionId,
+        String destination
+    ) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            Thread.sleep(10);
+        }
+        return false;
+    }
+
+    /**
+     * The chat server's side of one connection.
+     */
+    private static final class ChatClient {
+
+        private final Socket socket;
+        private final BufferedReader in;
+        private final OutputStream out;
+
+        private ChatClient(Socket socket) throws IOException {
+            this.socket = socket;
+            this.socket.setSoTimeout(5000);
+            this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            this.out = socket.getOutputStream();
+        }
+
+        private String awaitLine(String command) throws IOException {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith(command + " ")) {
+                    return line;
+                }
+            }
+            return null;
+        }
+
+        private boolean awaitClosed() throws IOException {
+            try {
+                while (in.readLine() != null) {
+                    // skip what the relay sent before leaving
+                }
+                return true;
+            } catch (SocketTimeoutException ex) {
+                return false;
+            }
+        }
+
+        private void send(String line) throws IOException {
+            out.write((line + "\r\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package dev.kruhlmann.imgfloat.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.sun.net.httpserver.HttpServer;
+import dev.kruhlmann.imgfloat.model.db.imgfloat.TwitchIdentity;
+import dev.kruhlmann.imgfloat.repository.TwitchIdentityRepository;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.client.RestClientException;
+
+class TwitchIdentityServiceTest {
+
+    private final Map<String, TwitchIdentity> stored = new ConcurrentHashMap<>();
+    private final Queue<List<String>> requests = new ConcurrentLinkedQueue<>();
+    private final Map<String, String> users = new ConcurrentHashMap<>();
+    private final AtomicBoolean failing = new AtomicBoolean();
+    private HttpServer server;
+    private TwitchIdentityService service;
+
+    @BeforeEach
+    void setup() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/helix/users", (exchange) -> {
+            List<String> logins = Arrays.stream(exchange.getRequestURI().getQuery().split("&"))
+                .map((param) -> param.replace("login=", ""))
+                .toList();
+            requests.add(logins);
+            String body = failing.get()
+                ? "{}"
+                : logins
+                    .stream()
+                    .filter(users::containsKey)
+                    .map((login) -> "{\"id\":\"" + users.get(login) + "\",\"login\":\"" + login + "\"}")
+                    .collect(Collectors.joining(",", "{\"data\":[", "]}"));
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(failing.get() ? 500 : 200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        });
+        server.start();
+        service = service(stored, "http://127.0.0.1:" + server.getAddress().getPort() + "/helix");
+    }
+
+    @AfterEach
+    void teardown() {
+        server.stop(0);
+    }
+
+    @Test
+    void looksUpLoginsInBatches() {
+        List<String> logins = IntStream.range(0, 250).mapToObj((i) -> "user" + i).toList();
+        logins.forEach((login) -> users.put(login, "id-" + login));
+
+        Map<String, String> ids = service.findUserIds(logins);
+
+        assertThat(ids).hasSize(250).containsEntry("user7", "id-user7");
+        assertThat(requests).extracting(List::size).containsExactly(100, 100, 50);
+        assertThat(stored).hasSize(250);
+    }
+
+    @Test
+    void storedLoginsAreNotLookedUpAgain() {
+        users.put("alpha", "1");
+        users.put("bravo", "2");
+        service.record(Map.of("Alpha", "1"));
+
+        assertThat(service.findUserIds(List.of("alpha", "BRAVO"))).containsOnly(
+            Map.entry("alpha", "1"),
+            Map.entry("bravo", "2")
+        );
+        assertThat(service.findUserId("bravo")).contains("2");
+        assertThat(requests).containsExactly(List.of("bravo"));
+    }
+
+    @Test
+    void renamedUserMovesToTheNewLogin() {
+        service.record(Map.of("oldname", "42"));
+
+        service.record(Map.of("newname", "42"));
+
+        assertThat(stored).containsOnlyKeys("newname");
+        assertThat(service.findUserId("newname")).contains("42");
+    }
+
+    @Test
+    void invalidAndUnknownLoginsResolveToNothing() {
+        assertThat(service.findUserIds(List.of("not a login", "ghost"))).isEmpty();
+        assertThat(requests).containsExactly(List.of("ghost"));
+        assertThat(stored).isEmpty();
+    }
+
+    @Test
+    void failedLookupIsReported() {
+        failing.set(true);
+
+        assertThatThrownBy(() -> service.findUserId("alpha")).isInstanceOf(RestClientException.class);
+    }
+
+    static TwitchIdentityService service(Map<String, TwitchIdentity> stored, String apiUrl) {
+        TwitchAppAccessTokenService tokenService = mock(TwitchAppAccessTokenService.class);
+        when(tokenService.getAccessToken()).thenReturn(Optional.of("token"));
+        when(tokenService.getClientId()).thenReturn(Optional.of("client"));
+        return new TwitchIdentityService(
+            repository(stored),
+            tokenService,
+            mock(PlatformTransactionManager.class),
+            new RestTemplateBuilder(),
+            apiUrl
+        );
+    }
+
+    @SuppressWarnings("unchecked")
+    private static TwitchIdentityRepository repository(Map<String, TwitchIdentity> stored) {
+        TwitchIdentityRepository repository = mock(TwitchIdentityRepository.class);
+        when(repository.findAllById(any())).thenAnswer((invocation) -> {
+            List<TwitchIdentity> found = new ArrayList<>();
+            ((Iterable<String>) invocation.getArgument(0)).forEach((login) -> {
+                if (stored.containsKey(login)) {
+                    found.add(stored.get(login));
+                }
+            });
+            return found;
+        });
+        when(repository.findAllByUserIdIn(any())).thenAnswer((invocation) -> {
+            Collection<String> userIds = invocation.getArgument(0);
+            return stored.values().stream().filter((identity) -> userIds.contains(identity.getUserId())).toList();
+        });
+        when(repository.saveAll(any())).thenAnswer((invocation) -> {
+            List<TwitchIdentity> identities = new ArrayList<>();
+            ((Iterable<TwitchIdentity>) invocation.getArgument(0)).forEach(identities::add);
+            identities.forEach((identity) -> stored.put(identity.getLogin(), identity));
+            return identities;
+        });
+        doAnswer((invocation) -> {
+            Iterable<TwitchIdentity> identities = invocation.getArgument(0);
+            identities.forEach((identity) -> stored.remove(identity.getLogin()));
+            return null;
+        })
+            .when(repository)
+            .deleteAll(any());
+        return repository;
+    }
+}
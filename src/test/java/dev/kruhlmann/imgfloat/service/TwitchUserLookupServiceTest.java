@@ -0,0 +1,156 @@
+package dev.kruhlmann.imgfloat.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dev.kruhlmann.imgfloat.model.api.response.TwitchUserProfile;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+
+class TwitchUserLookupServiceTest {
+
+    private static final int MODERATOR_PAGES = 3;
+
+    private final Queue<List<String>> userRequests = new ConcurrentLinkedQueue<>();
+    private final Queue<String> moderatorRequests = new ConcurrentLinkedQueue<>();
+    private final ExecutorService serverExecutor = Executors.newCachedThreadPool();
+    private final ExecutorService lookupExecutor = Executors.newFixedThreadPool(3);
+    private volatile CountDownLatch concurrentUserRequests = new CountDownLatch(0);
+    private HttpServer server;
+    private TwitchUserLookupService service;
+
+    @BeforeEach
+    void setup() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/helix/users", (exchange) -> {
+            List<String> logins = Arrays.stream(exchange.getRequestURI().getQuery().split("&"))
+                .map((param) -> param.replace("login=", ""))
+                .toList();
+            userRequests.add(logins);
+            concurrentUserRequests.countDown();
+            try {
+                concurrentUserRequests.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            respond(
+                exchange,
+                logins
+                    .stream()
+                    .filter((login) -> !login.startsWith("ghost"))
+                    .map((login) ->
+                        "{\"id\":\"id-" + login + "\",\"login\":\"" + login + "\",\"display_name\":\"" +
+                        login.toUpperCase() + "\"}"
+                    )
+                    .collect(Collectors.joining(",", "{\"data\":[", "]}"))
+            );
+        });
+        server.createContext("/helix/moderation/moderators", (exchange) -> {
+            String query = exchange.getRequestURI().getQuery();
+            int page = query.contains("after=") ? Integer.parseInt(query.replaceAll(".*after=(\\d+).*", "$1")) : 0;
+            moderatorRequests.add(query);
+            String moderators = IntStream.range(page * 100, page * 100 + 100)
+                .mapToObj((i) -> "{\"user_id\":\"" + i + "\",\"user_login\":\"mod" + i + "\"}")
+                .collect(Collectors.joining(","));
+            String cursor = page + 1 < MODERATOR_PAGES ? "\"" + (page + 1) + "\"" : "null";
+            respond(exchange, "{\"data\":[" + moderators + "],\"pagination\":{\"cursor\":" + cursor + "}}");
+        });
+        server.setExecutor(serverExecutor);
+        server.start();
+
+        TwitchIdentityService identityService = mock(TwitchIdentityService.class);
+        when(identityService.findUserId("streamer")).thenReturn(Optional.of("1"));
+        service = new TwitchUserLookupService(
+            new RestTemplateBuilder(),
+            identityService,
+            lookupExecutor,
+            "http://127.0.0.1:" + server.getAddress().getPort() + "/helix",
+            60,
+            10
+        );
+    }
+
+    @AfterEach
+    void teardown() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+        lookupExecutor.shutdownNow();
+    }
+
+    @Test
+    void looksUpProfilesInConcurrentBatchesAndCachesThem() {
+        List<String> logins = IntStream.range(0, 250).mapToObj((i) -> "user" + i).toList();
+        concurrentUserRequests = new CountDownLatch(3);
+
+        List<TwitchUserProfile> profiles = service.fetchProfiles(logins, "token", "client");
+
+        assertThat(concurrentUserRequests.getCount()).isZero();
+        assertThat(userRequests).extracting(List::size).containsExactlyInAnyOrder(100, 100, 50);
+        assertThat(profiles).hasSize(250);
+        assertThat(profiles.get(7)).isEqualTo(new TwitchUserProfile("user7", "USER7", null));
+
+        userRequests.clear();
+        assertThat(service.fetchProfiles(List.of("USER7", "user8"), "token", "client"))
+            .extracting(TwitchUserProfile::displayName)
+            .containsExactly("USER7", "USER8");
+        assertThat(userRequests).isEmpty();
+    }
+
+    @Test
+    void unknownLoginsAreCachedToo() {
+        assertThat(service.fetchProfiles(List.of("ghost"), "token", "client")).containsExactly(
+            new TwitchUserProfile("ghost", "ghost", null)
+        );
+        service.fetchProfiles(List.of("ghost"), "token", "client");
+
+        assertThat(userRequests).hasSize(1);
+    }
+
+    @Test
+    void cachesModeratorsAndFiltersCurrentAdmins() {
+        List<TwitchUserProfile> first = service.fetchModerators("streamer", List.of("mod0"), "token", "client");
+        List<TwitchUserProfile> second = service.fetchModerators("streamer", List.of("mod1"), "token", "client");
+
+        assertThat(moderatorRequests).hasSize(MODERATOR_PAGES);
+        assertThat(first).hasSize(299).extracting(TwitchUserProfile::login).doesNotContain("mod0");
+        assertThat(second).hasSize(299).extracting(TwitchUserProfile::login).contains("mod0").doesNotContain("mod1");
+        assertThat(userRequests.stream().mapToInt(List::size).sum()).isEqualTo(300);
+    }
+
+    @Test
+    void invalidatedModeratorsAreFetchedAgain() {
+        service.fetchModerators("streamer", List.of(), "token", "client");
+
+        service.invalidateModerators("Streamer");
+        service.fetchModerators("streamer", List.of(), "token", "client");
+
+        assertThat(moderatorRequests).hasSize(2 * MODERATOR_PAGES);
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+}
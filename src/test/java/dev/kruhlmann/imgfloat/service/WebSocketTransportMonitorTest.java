@@ -0,0 +1,97 @@
+package dev.kruhlmann.imgfloat.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import dev.kruhlmann.imgfloat.config.WebSocketTransportSettings;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.broker.SubscriptionRegistry;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+class WebSocketTransportMonitorTest {
+
+    private final MessageChannel channel = mock(MessageChannel.class);
+    private final MessageHandler handler = mock(MessageHandler.class);
+    private final SubscriptionRegistry subscriptionRegistry = mock(SubscriptionRegistry.class);
+    private WebSocketTransportMonitor monitor;
+    private ChannelInterceptor brokerInterceptor;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        SimpleBrokerMessageHandler broker = mock(SimpleBrokerMessageHandler.class);
+        when(broker.getSubscriptionRegistry()).thenReturn(subscriptionRegistry);
+        ObjectProvider<AbstractBrokerMessageHandler> brokerProvider = mock(ObjectProvider.class);
+        when(brokerProvider.getIfAvailable()).thenReturn(broker);
+        monitor = new WebSocketTransportMonitor(
+            new WebSocketTransportSettings(4, 6, 100, 512, 10, 128, 10),
+            brokerProvider,
+            mock(ObjectProvider.class),
+            mock(ObjectProvider.class),
+            mock(ObjectProvider.class),
+            new SimpleMeterRegistry()
+        );
+        brokerInterceptor = monitor.brokerChannelInterceptor();
+    }
+
+    @Test
+    void tracksPendingOutboundMessagesPerSession() {
+        broadcast("slow", "fast");
+        broadcast("slow");
+        monitor.afterMessageHandled(message("slow"), channel, handler, null);
+
+        WebSocketTransportMonitor.TransportReport report = monitor.report();
+
+        assertThat(report.pendingOutboundMessages()).isEqualTo(2);
+        assertThat(report.deepestSessionQueues())
+            .first()
+            .isEqualTo(new WebSocketTransportMonitor.SessionReport("slow", 1, 2, 1));
+        assertThat(report.limits().outboundThreads()).isEqualTo(6);
+        assertThat(report.limits().sendBufferSizeLimitBytes()).isEqualTo(512 * 1024);
+        assertThat(report.limits().heartbeatMillis()).isEqualTo(10_000);
+    }
+
+    @Test
+    void rejectedSendAndDisconnectReleaseSessionQueue() {
+        broadcast("viewer");
+        monitor.afterSendCompletion(message("viewer"), channel, false, new IllegalStateException("queue full"));
+        assertThat(monitor.report().pendingOutboundMessages()).isZero();
+
+        broadcast("viewer");
+        monitor.onSessionDisconnect(new SessionDisconnectEvent(this, message("viewer"), "viewer", CloseStatus.GOING_AWAY));
+
+        assertThat(monitor.report().deepestSessionQueues()).isEmpty();
+    }
+
+    private void broadcast(String... subscribedSessions) {
+        MultiValueMap<String, String> subscriptions = new LinkedMultiValueMap<>();
+        for (String sessionId : subscribedSessions) {
+            subscriptions.add(sessionId, "sub-0");
+        }
+        when(subscriptionRegistry.findSubscriptions(any())).thenReturn(subscriptions);
+        brokerInterceptor.preSend(message(null), channel);
+    }
+
+    private static Message<byte[]> message(String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
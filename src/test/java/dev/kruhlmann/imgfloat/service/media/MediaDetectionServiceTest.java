@@ -2,13 +2,14 @@ package dev.kruhlmann.imgfloat.service.media;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.io.IOException;
 import org.junit.jupiter.api.Test;
 import org.springframework.mock.web.MockMultipartFile;
 
 class MediaDetectionServiceTest {
 
-    private final MediaDetectionService service = new MediaDetectionService();
+    private final MediaDetectionService service = new MediaDetectionService(new SimpleMeterRegistry());
 
     @Test
     void acceptsMagicBytesOverDeclaredType() throws IOException {
@@ -2,6 +2,7 @@ package dev.kruhlmann.imgfloat.service.media;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -15,8 +16,9 @@ class MediaOptimizationServiceTest {
 
     @BeforeEach
     void setUp() {
-        FfmpegService ffmpegService = new FfmpegService();
-        service = new MediaOptimizationService(new MediaPreviewService(ffmpegService), ffmpegService);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        FfmpegService ffmpegService = new FfmpegService(meterRegistry);
+        service = new MediaOptimizationService(new MediaPreviewService(ffmpegService), ffmpegService, meterRegistry);
     }
 
     @Test